@@ -0,0 +1,35 @@
+#!/usr/bin/env bash
+#
+# Compiles the application into build/emr.jar and records the classes a
+# start-up loads into the class data sharing archive build/emr.jsa, which
+# scripts/emr.sh maps instead of loading those classes again.
+#
+# The training run starts the CLI with the configured backend, connects
+# eagerly so that the JDBC driver classes are recorded too, and exits from
+# the menu. Run it against a reachable database, and again after every
+# change to the sources or the driver: the JVM ignores an archive that no
+# longer matches the class path.
+
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+DRIVER="$ROOT/lib/mysql-connector-j-9.4.0.jar"
+BUILD="$ROOT/build"
+
+rm -rf "$BUILD/classes" "$BUILD/emr.jar" "$BUILD/emr.jsa"
+mkdir -p "$BUILD/classes"
+javac -cp "$DRIVER" -d "$BUILD/classes" $(find "$ROOT/src/main" -name '*.java')
+# Class data sharing only archives classes loaded from JAR files
+jar --create --file "$BUILD/emr.jar" -C "$BUILD/classes" .
+
+echo "[INFO] Recording the class data sharing archive"
+printf '6\n' | EMR_LAZY_CONNECT=false java \
+    -XX:ArchiveClassesAtExit="$BUILD/emr.jsa" \
+    -cp "$BUILD/emr.jar:$DRIVER" \
+    main.App > /dev/null 2>&1 || true
+
+if [ ! -f "$BUILD/emr.jsa" ]; then
+    echo "[ERROR] The archive was not written" >&2
+    exit 1
+fi
+echo "[OK] Wrote $BUILD/emr.jar and $BUILD/emr.jsa"
@@ -0,0 +1,80 @@
+#!/usr/bin/env bash
+#
+# Compiles the application into the native executable build/emr-native
+# with GraalVM native-image, which must be on PATH, and checks it by
+# running the CRUD session of scripts/crud-session.txt with it. The
+# executable takes the same arguments and environment variables as
+# main.App.
+#
+# The reflection, proxy and resource configuration is read from
+# native-image/META-INF/native-image/emr and is generated by
+# scripts/trace-native.sh, which must have been run first with the same
+# GraalVM, and again after every change to the sources or the driver.
+# The check writes to the mysql database configured in the environment,
+# like the trace; its output is in build/native-run.log. If the check
+# passes, scripts/startup-benchmark.sh measures the executable next to the
+# JVM modes, with the memory and the mysql backend, and the figures are
+# written to native-image/RESULTS.md, to be committed with the traced
+# configuration.
+
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+DRIVER="$ROOT/lib/mysql-connector-j-9.4.0.jar"
+BUILD="$ROOT/build"
+CONFIG="$ROOT/native-image/META-INF/native-image/emr"
+LOG="$BUILD/native-run.log"
+RESULTS="$ROOT/native-image/RESULTS.md"
+# Successful creates, updates and deletes in the session
+EXPECTED_OK=12
+
+if ! command -v native-image > /dev/null; then
+    echo "[ERROR] native-image not found; put the bin directory of GraalVM on PATH" >&2
+    exit 1
+fi
+if ! ls "$CONFIG"/*.json > /dev/null 2>&1; then
+    echo "[ERROR] No traced configuration in $CONFIG; run scripts/trace-native.sh first" >&2
+    exit 1
+fi
+
+rm -rf "$BUILD/classes" "$BUILD/emr-native"
+mkdir -p "$BUILD/classes"
+javac -cp "$DRIVER" -d "$BUILD/classes" $(find "$ROOT/src/main" -name '*.java')
+
+native-image \
+    -cp "$BUILD/classes:$DRIVER:$ROOT/native-image" \
+    -o "$BUILD/emr-native" \
+    main.App
+
+echo "[INFO] Running the CRUD session with $BUILD/emr-native"
+EMR_STORAGE_BACKEND=mysql EMR_LAZY_CONNECT=true "$BUILD/emr-native" \
+    < "$ROOT/scripts/crud-session.txt" > "$LOG" 2>&1 || true
+
+OK="$(grep -c '^\[OK\]' "$LOG" || true)"
+if grep -q '^\[ERROR\]\|^\[FATAL\]\|Exception' "$LOG" || [ "$OK" -ne "$EXPECTED_OK" ]; then
+    echo "[ERROR] The CRUD session failed on the executable ($OK successful steps); see $LOG" >&2
+    exit 1
+fi
+echo "[OK] Wrote $BUILD/emr-native and ran the CRUD session with it"
+
+if [ ! -f "$BUILD/emr.jsa" ]; then
+    "$ROOT/scripts/build-cds.sh"
+fi
+echo "[INFO] Measuring startup time and peak memory"
+{
+    echo "# Native Executable Results"
+    echo
+    echo "Measured by scripts/build-native.sh on $(date -u +%Y-%m-%d) after the CRUD"
+    echo "session passed with the executable."
+    echo
+    echo "- native-image: $(native-image --version 2>&1 | head -n 1)"
+    echo "- JVM: $(java -version 2>&1 | head -n 1)"
+    echo "- Machine: $(uname -srm), $(nproc) CPUs"
+    echo
+    echo '```'
+    EMR_STORAGE_BACKEND=memory "$ROOT/scripts/startup-benchmark.sh"
+    echo
+    EMR_STORAGE_BACKEND=mysql "$ROOT/scripts/startup-benchmark.sh"
+    echo '```'
+} > "$RESULTS"
+echo "[OK] Wrote $RESULTS; commit it with the configuration"
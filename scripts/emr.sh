@@ -0,0 +1,27 @@
+#!/usr/bin/env bash
+#
+# Starts the application in the start-up optimized mode: classes are mapped
+# from the archive written by scripts/build-cds.sh, the database connection
+# is opened in the background while the menu is shown (EMR_LAZY_CONNECT,
+# unless set otherwise), and only the quick C1 JIT compiler is used. All
+# arguments are passed to the application.
+
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+DRIVER="$ROOT/lib/mysql-connector-j-9.4.0.jar"
+BUILD="$ROOT/build"
+
+if [ ! -f "$BUILD/emr.jar" ]; then
+    echo "[ERROR] Run scripts/build-cds.sh first" >&2
+    exit 1
+fi
+
+# Short commands finish before the C2 compiler would pay off
+JAVA_OPTS=(-XX:TieredStopAtLevel=1 -Xshare:auto)
+if [ -f "$BUILD/emr.jsa" ]; then
+    JAVA_OPTS+=(-XX:SharedArchiveFile="$BUILD/emr.jsa")
+fi
+
+export EMR_LAZY_CONNECT="${EMR_LAZY_CONNECT:-true}"
+exec java "${JAVA_OPTS[@]}" -cp "$BUILD/emr.jar:$DRIVER" main.App "$@"
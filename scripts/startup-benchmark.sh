@@ -0,0 +1,86 @@
+#!/usr/bin/env bash
+#
+# Measures the wall time from launching the application to its exit from
+# the main menu, which is the fixed cost of every short command, and the
+# peak resident memory of such a run, in these launch modes:
+#
+#   plain  - classes from build/classes, eager connect (the README command)
+#   cds    - classes mapped from build/emr.jsa, eager connect
+#   fast   - scripts/emr.sh: archive, lazy connect and start-up JVM flags
+#   native - build/emr-native with lazy connect, if scripts/build-native.sh
+#            was run
+#
+# Usage: scripts/startup-benchmark.sh [runs]   (default 20 runs per mode)
+#
+# The backend is the configured one; set EMR_STORAGE_BACKEND=memory to
+# measure the JVM alone. Run scripts/build-cds.sh first.
+
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+DRIVER="$ROOT/lib/mysql-connector-j-9.4.0.jar"
+BUILD="$ROOT/build"
+RUNS="${1:-20}"
+
+if [ ! -f "$BUILD/emr.jsa" ]; then
+    echo "[ERROR] Run scripts/build-cds.sh first" >&2
+    exit 1
+fi
+
+# Prints the wall time of one run in milliseconds
+run_once() {
+    local start end
+    start=$(date +%s%N)
+    printf '6\n' | "$@" > /dev/null 2>&1 || true
+    end=$(date +%s%N)
+    echo $(( (end - start) / 1000000 ))
+}
+
+# Prints the peak resident set size of one run in MiB, sampled from
+# /proc while it runs, so it is Linux only and may miss the last moments
+peak_rss() {
+    local pid kb peak=0
+    printf '6\n' | "$@" > /dev/null 2>&1 &
+    pid=$!
+    while kb=$(awk '/^VmHWM:/ { print $2 }' "/proc/$pid/status" 2> /dev/null) &&
+        [ -n "$kb" ]; do
+        peak=$kb
+        sleep 0.005
+    done
+    wait "$pid" || true
+    echo $(( peak / 1024 ))
+}
+
+# Runs a mode once to warm the file cache, then RUNS times, and prints
+# the minimum, median and mean time, then the largest peak memory of
+# three separate runs, which are not timed since sampling costs CPU
+measure() {
+    local name="$1"
+    shift
+    local times=() rss=0 run
+    run_once "$@" > /dev/null
+    for ((i = 0; i < RUNS; i++)); do
+        times+=("$(run_once "$@")")
+    done
+    for ((i = 0; i < 3; i++)); do
+        run=$(peak_rss "$@")
+        rss=$(( run > rss ? run : rss ))
+    done
+    printf '%s\n' "${times[@]}" | sort -n | awk -v name="$name" -v rss="$rss" '
+        { t[NR] = $1; sum += $1 }
+        END {
+            median = (NR % 2) ? t[(NR + 1) / 2] : (t[NR / 2] + t[NR / 2 + 1]) / 2
+            printf "%-6s min %5d ms   median %7.1f ms   mean %7.1f ms   peak RSS %4d MiB\n",
+                name, t[1], median, sum / NR, rss
+        }'
+}
+
+echo "[INFO] $RUNS runs per mode, backend ${EMR_STORAGE_BACKEND:-mysql}"
+measure plain env EMR_LAZY_CONNECT=false \
+    java -cp "$BUILD/classes:$DRIVER" main.App
+measure cds env EMR_LAZY_CONNECT=false \
+    java -XX:SharedArchiveFile="$BUILD/emr.jsa" -cp "$BUILD/emr.jar:$DRIVER" main.App
+measure fast "$ROOT/scripts/emr.sh"
+if [ -x "$BUILD/emr-native" ]; then
+    measure native env EMR_LAZY_CONNECT="${EMR_LAZY_CONNECT:-true}" "$BUILD/emr-native"
+fi
@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+#
+# Generates the native-image configuration in
+# native-image/META-INF/native-image/emr by running the application under
+# the tracing agent of GraalVM, whose native-image must be on PATH.
+#
+# The traced runs use the mysql backend configured in the environment
+# (EMR_DB_URL, EMR_DB_USER, EMR_DB_PASSWORD or a .env file) and write to
+# it. The CLI is driven through scripts/crud-session.txt, which creates,
+# reads, lists, updates and deletes a doctor (TRACE-D1), a procedure
+# (TRACE-PR1), a patient (MRN 990001) and a history record (TRACE-H1),
+# with lazy connect as scripts/emr.sh uses it. find-duplicates is then
+# traced as a command given as an argument. Use a scratch database in
+# which those IDs are free. The configuration is only kept if every step
+# of the session succeeded; the output is in build/native-trace.log.
+
+set -euo pipefail
+
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+DRIVER="$ROOT/lib/mysql-connector-j-9.4.0.jar"
+BUILD="$ROOT/build"
+CONFIG="$ROOT/native-image/META-INF/native-image/emr"
+LOG="$BUILD/native-trace.log"
+# Successful creates, updates and deletes in the session, and find-duplicates
+EXPECTED_OK=13
+
+if ! command -v native-image > /dev/null; then
+    echo "[ERROR] native-image not found; put the bin directory of GraalVM on PATH" >&2
+    exit 1
+fi
+JAVA="$(dirname "$(command -v native-image)")/java"
+
+rm -rf "$BUILD/classes"
+mkdir -p "$BUILD/classes"
+javac -cp "$DRIVER" -d "$BUILD/classes" $(find "$ROOT/src/main" -name '*.java')
+
+TRACE="$(mktemp -d)"
+trap 'rm -rf "$TRACE"' EXIT
+
+echo "[INFO] Tracing the CRUD session"
+EMR_STORAGE_BACKEND=mysql EMR_LAZY_CONNECT=true "$JAVA" \
+    -agentlib:native-image-agent=config-output-dir="$TRACE" \
+    -cp "$BUILD/classes:$DRIVER" \
+    main.App < "$ROOT/scripts/crud-session.txt" > "$LOG" 2>&1 || true
+
+echo "[INFO] Tracing find-duplicates"
+EMR_STORAGE_BACKEND=mysql EMR_LAZY_CONNECT=true "$JAVA" \
+    -agentlib:native-image-agent=config-merge-dir="$TRACE" \
+    -cp "$BUILD/classes:$DRIVER" \
+    main.App find-duplicates "$TRACE/duplicates.csv" >> "$LOG" 2>&1 || true
+
+OK="$(grep -c '^\[OK\]' "$LOG" || true)"
+if grep -q '^\[ERROR\]\|^\[FATAL\]' "$LOG" || [ "$OK" -ne "$EXPECTED_OK" ]; then
+    echo "[ERROR] The traced session did not complete ($OK successful steps); see $LOG" >&2
+    exit 1
+fi
+
+rm -f "$CONFIG"/*.json
+cp "$TRACE"/*.json "$CONFIG"/
+echo "[OK] Wrote the traced configuration to $CONFIG"
@@ -1,7 +1,36 @@
 package main;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import main.audit.Audit;
+import main.audit.AuditLog;
+import main.audit.AuditSink;
+import main.audit.Auditor;
+import main.audit.SegmentAuditSink;
+import main.audit.TableAuditSink;
+import main.cache.PatientSnapshotStore;
+import main.cli.InterruptHandler;
 import main.cli.MainCLI;
-import main.util.Database;
+import main.config.DatabaseConfig;
+import main.dao.StorageBackend;
+import main.dao.StorageBackends;
+import main.dao.mysql.HistoryArchiver;
+import main.dao.mysql.MySqlStorageBackend;
+import main.dao.shard.ShardRebalancer;
+import main.dao.shard.ShardedStorageBackend;
+import main.event.ChangeEvent.EntityType;
+import main.event.ChangeSink;
+import main.event.FileChangeSink;
+import main.event.OutboxRelay;
+import main.event.SocketChangeSink;
+import main.exception.DatabaseException;
+import main.linkage.DuplicateDetector;
+import main.service.AppContext;
+import main.service.PurgeService;
 
 /**
  * Main entry point for the EMR (Electronic Medical Records) application.
@@ -26,45 +55,496 @@ import main.util.Database;
  *   <li>{@code EMR_DB_URL} - JDBC connection URL (e.g., jdbc:mysql://localhost:3306/emr_db)</li>
  *   <li>{@code EMR_DB_USER} - Database username</li>
  *   <li>{@code EMR_DB_PASSWORD} - Database password</li>
+ *   <li>{@code EMR_STORAGE_BACKEND} - Storage backend ({@code mysql} by default, or {@code memory})</li>
  * </ul>
  *
+ * <p>Run with {@code rebalance-shards [--dry-run]} to move patients to their
+ * shards after shards were added to the {@code sharded} backend, instead of
+ * starting the CLI.</p>
+ *
+ * <p>Run with {@code archive-history [--dry-run]} to move the patient history
+ * of years older than {@code EMR_HISTORY_HOT_YEARS} to archive tables.</p>
+ *
+ * <p>Run with {@code purge <doctors|procedures|patients|history> <file> [--dry-run]}
+ * to delete the rows whose IDs are listed in a file, one per line, with
+ * everything their deletes cascade to, in bounded chunks. Add
+ * {@code --dry-run} to only count the rows that would be deleted.</p>
+ *
+ * <p>Run with {@code find-duplicates [file]} to write the patients that are
+ * probably recorded twice to a CSV file, {@code duplicates.csv} by
+ * default.</p>
+ *
+ * <p>If {@code EMR_PATIENT_SNAPSHOT_DIR} is set, patient lookups are served
+ * from an off-heap {@link PatientSnapshotStore} in that directory. It is
+ * rebuilt from the backend when it is missing or was not closed cleanly;
+ * run with {@code rebuild-patient-snapshot} to rebuild it explicitly, for
+ * example after the database was changed by another application.</p>
+ *
+ * <p>If {@code EMR_CHANGE_EVENTS} is true, an {@link OutboxRelay} delivers
+ * the change events recorded by the services to the file named in
+ * {@code EMR_EVENT_LOG} and to the consumer at {@code EMR_EVENT_SOCKET};
+ * start-up fails if neither can be opened.</p>
+ *
+ * <p>If {@code EMR_AUDIT} is {@code file} or {@code table}, every access to
+ * patient data is recorded in an {@link AuditLog}, including the bulk reads
+ * of the maintenance commands, which are recorded as lists.</p>
+ *
+ * <p>If {@code EMR_LAZY_CONNECT} is true, the CLI starts without waiting for
+ * the database: the backend is {@link StorageBackend#warmUp() warmed up} on
+ * a background thread while the menu is shown.</p>
+ *
  * @see main.cli.MainCLI
- * @see main.util.Database
+ * @see main.dao.StorageBackends
  */
 public class App {
 
+    /** The file {@code find-duplicates} writes to by default. */
+    private static final String DUPLICATES_FILE = "duplicates.csv";
+
     /**
      * Main method - entry point of the EMR application.
      * <p>
      * This method:
      * <ol>
-     *   <li>Establishes a database connection</li>
-     *   <li>Launches the main CLI interface</li>
-     *   <li>Ensures proper cleanup of database resources on exit</li>
+     *   <li>Opens the configured storage backend</li>
+     *   <li>Installs the Ctrl-C handler that cancels running queries</li>
+     *   <li>Warms the backend up in the background, if it was opened
+     *       lazily and the CLI is started</li>
+     *   <li>Starts the audit log, if configured</li>
+     *   <li>Opens the patient snapshot, if configured</li>
+     *   <li>Starts the change event relay, if configured</li>
+     *   <li>Launches the main CLI interface, or runs the maintenance
+     *       command given in the arguments</li>
+     *   <li>Ensures proper cleanup of storage resources on exit</li>
      * </ol>
      * </p>
+     * <p>
+     * A failed command exits with status 1, after the cleanup.
+     * </p>
      *
-     * @param args command-line arguments (not used)
+     * @param args command-line arguments: none to start the CLI,
+     *             {@code rebalance-shards [--dry-run]},
+     *             {@code archive-history [--dry-run]},
+     *             {@code find-duplicates [file]},
+     *             {@code purge <type> <file> [--dry-run]} or
+     *             {@code rebuild-patient-snapshot}
      */
     public static void main(String[] args) {
-        // Initialize database connection variable
-        Database db = null;
+        int status = run(args);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs the application as described in {@link #main} and releases its
+     * resources.
+     *
+     * @param args the command-line arguments
+     * @return the exit status: 0 on success, 1 if the command failed
+     */
+    private static int run(String[] args) {
+        // Initialize storage backend variable
+        StorageBackend storage = null;
+        PatientSnapshotStore snapshot = null;
+        OutboxRelay relay = null;
+        AuditLog auditLog = null;
 
         try {
-            // Establish database connection
-            db = new Database();
+            // Open the configured storage backend
+            DatabaseConfig config = new DatabaseConfig();
+            storage = StorageBackends.open(config);
+
+            // Let Ctrl-C cancel a running query instead of exiting
+            InterruptHandler.install(storage);
+
+            // Connect while the menu renders instead of before it
+            if (config.isLazyConnect() && args.length == 0) {
+                startWarmUp(storage);
+            }
+
+            // The maintenance commands read patient data too
+            auditLog = openAuditLog(config, storage);
+            if (auditLog != null) {
+                Audit.install(auditLog);
+            }
+
+            if (args.length > 0 && args[0].equals("rebalance-shards")) {
+                return rebalanceShards(storage, args.length > 1 && args[1].equals("--dry-run"));
+            }
+            if (args.length > 0 && args[0].equals("find-duplicates")) {
+                return findDuplicates(storage, args.length > 1 ? args[1] : DUPLICATES_FILE);
+            }
+            if (args.length > 0 && args[0].equals("archive-history")) {
+                return archiveHistory(
+                    config,
+                    storage,
+                    args.length > 1 && args[1].equals("--dry-run")
+                );
+            }
+
+            boolean rebuildSnapshot =
+                args.length > 0 && args[0].equals("rebuild-patient-snapshot");
+            if (!config.getPatientSnapshotDir().isEmpty()) {
+                snapshot = openPatientSnapshot(config, storage, rebuildSnapshot);
+            } else if (rebuildSnapshot) {
+                System.err.println("[ERROR] rebuild-patient-snapshot needs EMR_PATIENT_SNAPSHOT_DIR");
+                return 1;
+            }
+            if (rebuildSnapshot) {
+                return snapshot == null ? 1 : 0;
+            }
+
+            if (config.isChangeEventsEnabled() && storage.outbox() != null) {
+                relay = startOutboxRelay(config, storage);
+                if (relay == null) {
+                    // Nothing would drain the outbox, which grows without bound
+                    return 1;
+                }
+            }
+
+            // Services are built on first use and shared from then on
+            AppContext context = new AppContext(storage, snapshot);
+            if (args.length > 0 && args[0].equals("purge")) {
+                return purge(context, args);
+            }
 
             // Start the main CLI interface
-            new MainCLI(db).start();
+            new MainCLI(context).start();
+            return 0;
         } catch (RuntimeException e) {
             // Handle any runtime exceptions and exit with error
             System.err.println("[FATAL] Application error: " + e.getMessage());
-            System.exit(1);
+            return 1;
         } finally {
-            // Ensure database connection is closed
-            if (db != null) {
-                db.close();
+            // Ensure storage resources are released
+            if (relay != null) {
+                relay.close();
+            }
+            if (auditLog != null) {
+                Audit.install(Auditor.NONE);
+                auditLog.close();
+            }
+            if (snapshot != null) {
+                snapshot.close();
+            }
+            if (storage != null) {
+                storage.close();
+            }
+        }
+    }
+
+    /**
+     * Warms up the storage backend on a daemon thread, which returns its
+     * resources when done and does not keep the application running.
+     *
+     * @param storage the opened storage backend
+     */
+    private static void startWarmUp(StorageBackend storage) {
+        Thread thread = new Thread(() -> {
+            try {
+                storage.warmUp();
+            } finally {
+                storage.releaseThreadResources();
+            }
+        }, "emr-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Opens the patient snapshot and rebuilds it from the backend if it is
+     * stale or a rebuild was requested.
+     *
+     * @param config  the application configuration
+     * @param storage the opened storage backend
+     * @param rebuild true to rebuild even if the snapshot is current
+     * @return the snapshot, or null if it could not be opened or rebuilt
+     */
+    private static PatientSnapshotStore openPatientSnapshot(
+        DatabaseConfig config,
+        StorageBackend storage,
+        boolean rebuild
+    ) {
+        PatientSnapshotStore snapshot = null;
+        try {
+            snapshot = PatientSnapshotStore.open(Paths.get(config.getPatientSnapshotDir()));
+            if (rebuild || snapshot.needsRebuild()) {
+                int patients = snapshot.rebuild(storage.patients());
+                System.out.println("[INFO] Rebuilt patient snapshot (" + patients + " patients)\n");
+            }
+            return snapshot;
+        } catch (IOException | DatabaseException e) {
+            System.out.println("[WARN] Patient snapshot unavailable: " + e.getMessage() + "\n");
+            if (snapshot != null) {
+                snapshot.close();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Starts delivering change events to the sinks named in the
+     * configuration.
+     *
+     * @param config  the application configuration
+     * @param storage the opened storage backend, which has an outbox
+     * @return the running relay, or null if no sink could be opened
+     */
+    private static OutboxRelay startOutboxRelay(DatabaseConfig config, StorageBackend storage) {
+        List<ChangeSink> sinks = new ArrayList<>();
+        if (!config.getEventLog().isEmpty()) {
+            try {
+                sinks.add(new FileChangeSink(Paths.get(config.getEventLog())));
+            } catch (IOException e) {
+                System.out.println("[WARN] Event log unavailable: " + e.getMessage() + "\n");
+            }
+        }
+        if (!config.getEventSocket().isEmpty()) {
+            try {
+                sinks.add(SocketChangeSink.parse(config.getEventSocket()));
+            } catch (IllegalArgumentException e) {
+                System.out.println("[WARN] " + e.getMessage() + "\n");
+            }
+        }
+        if (sinks.isEmpty()) {
+            System.err.println(
+                "[ERROR] Change events are enabled but no sink could be opened; " +
+                    "set EMR_EVENT_LOG or EMR_EVENT_SOCKET, or EMR_CHANGE_EVENTS=false"
+            );
+            return null;
+        }
+        System.out.println("[INFO] Delivering change events to " + sinks + "\n");
+        return new OutboxRelay(storage, sinks, config.getEventBatchSize());
+    }
+
+    /**
+     * Starts the audit log configured in {@code EMR_AUDIT}.
+     * <p>
+     * If the backend has no audit table, records are written to segment
+     * files instead.
+     * </p>
+     *
+     * @param config  the application configuration
+     * @param storage the opened storage backend
+     * @return the running audit log, or null if auditing is disabled
+     * @throws IllegalArgumentException if the destination or durability is unknown
+     * @throws RuntimeException if the audit directory cannot be opened
+     */
+    private static AuditLog openAuditLog(DatabaseConfig config, StorageBackend storage) {
+        String destination = config.getAudit().trim().toLowerCase();
+        if (destination.equals("none")) {
+            return null;
+        }
+        AuditLog.Durability durability = AuditLog.parseDurability(config.getAuditDurability());
+        if (destination.equals("table") && storage.audit() == null) {
+            System.out.println(
+                "[WARN] The " + storage.getName() + " backend has no audit table; " +
+                    "writing the audit log to " + config.getAuditDir() + "\n"
+            );
+            destination = "file";
+        }
+        AuditSink sink;
+        if (destination.equals("table")) {
+            sink = new TableAuditSink(storage);
+        } else if (destination.equals("file")) {
+            try {
+                sink = new SegmentAuditSink(
+                    Paths.get(config.getAuditDir()),
+                    SegmentAuditSink.DEFAULT_SEGMENT_BYTES
+                );
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open audit log: " + e.getMessage(), e);
+            }
+        } else {
+            throw new IllegalArgumentException(
+                "Unknown audit destination '" + config.getAudit() + "'. Use 'none', 'file' or 'table'"
+            );
+        }
+        System.out.println(
+            "[INFO] Auditing patient data access to " + sink + " (" +
+                durability.name().toLowerCase() + ")\n"
+        );
+        return new AuditLog(
+            sink,
+            durability,
+            AuditLog.DEFAULT_CAPACITY,
+            System.getProperty("user.name")
+        );
+    }
+
+    /**
+     * Moves every patient of the sharded backend to the shard that owns it
+     * and prints what was done.
+     *
+     * @param storage the opened storage backend
+     * @param dryRun  true to only report what would be moved
+     * @return the exit status: 0 on success, 1 on failure
+     */
+    private static int rebalanceShards(StorageBackend storage, boolean dryRun) {
+        if (!(storage instanceof ShardedStorageBackend)) {
+            System.err.println(
+                "[ERROR] rebalance-shards needs EMR_STORAGE_BACKEND=" +
+                    ShardedStorageBackend.NAME
+            );
+            return 1;
+        }
+        try {
+            Audit.recordList(EntityType.PATIENT);
+            Audit.recordList(EntityType.PATIENT_HISTORY);
+            ShardRebalancer.Report report = new ShardRebalancer(
+                (ShardedStorageBackend) storage
+            ).rebalance(dryRun);
+            System.out.println((dryRun ? "[INFO] Dry run. " : "[OK] ") + report);
+            return 0;
+        } catch (DatabaseException e) {
+            System.err.println("[ERROR] Rebalance failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Moves the patient history of closed years to archive tables and
+     * prints what was done. On the sharded backend every shard is archived.
+     *
+     * @param config  the application configuration
+     * @param storage the opened storage backend
+     * @param dryRun  true to only report what would be moved
+     * @return the exit status: 0 on success, 1 on failure
+     */
+    private static int archiveHistory(
+        DatabaseConfig config,
+        StorageBackend storage,
+        boolean dryRun
+    ) {
+        List<StorageBackend> backends = storage instanceof ShardedStorageBackend
+            ? ((ShardedStorageBackend) storage).getShards()
+            : List.of(storage);
+        for (StorageBackend backend : backends) {
+            if (!(backend instanceof MySqlStorageBackend)) {
+                System.err.println(
+                    "[ERROR] archive-history needs EMR_STORAGE_BACKEND=" +
+                        MySqlStorageBackend.NAME + " or " + ShardedStorageBackend.NAME
+                );
+                return 1;
+            }
+        }
+        int firstHotYear = LocalDate.now().getYear() - config.getHistoryHotYears() + 1;
+        try {
+            Audit.recordList(EntityType.PATIENT_HISTORY);
+            for (StorageBackend backend : backends) {
+                HistoryArchiver.Report report = new HistoryArchiver(
+                    (MySqlStorageBackend) backend
+                ).archiveBefore(firstHotYear, dryRun);
+                System.out.println((dryRun ? "[INFO] Dry run. " : "[OK] ") + report);
+            }
+            return 0;
+        } catch (DatabaseException e) {
+            System.err.println("[ERROR] Archiving failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    /**
+     * Deletes the rows listed in a file with everything their deletes
+     * cascade to, printing the progress and what was done.
+     * <p>
+     * The file holds one ID per line; blank lines and lines starting with
+     * {@code #} are skipped. Runs after the audit log and the patient
+     * snapshot are opened, so that deleted patients are audited and leave
+     * the snapshot.
+     * </p>
+     *
+     * @param context the services of the application
+     * @param args    the command-line arguments, starting with {@code purge}
+     * @return the exit status: 0 on success, 1 on failure
+     */
+    private static int purge(AppContext context, String[] args) {
+        if (args.length < 3) {
+            System.err.println(
+                "[ERROR] Usage: purge <doctors|procedures|patients|history> <file> [--dry-run]"
+            );
+            return 1;
+        }
+        String type = args[1];
+        boolean dryRun = args.length > 3 && args[3].equals("--dry-run");
+        List<String> ids = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(Paths.get(args[2]))) {
+                String id = line.trim();
+                if (!id.isEmpty() && !id.startsWith("#")) {
+                    ids.add(id);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[ERROR] Cannot read " + args[2] + ": " + e.getMessage());
+            return 1;
+        }
+
+        PurgeService purge = context.getPurgeService();
+        PurgeService.Progress progress = (entityType, done, total) ->
+            System.out.println("[INFO] Deleted " + done + "/" + total + " " + entityType);
+        try {
+            PurgeService.Report report;
+            switch (type) {
+                case "doctors":
+                    report = purge.purgeDoctors(ids, dryRun, progress);
+                    break;
+                case "procedures":
+                    report = purge.purgeProcedures(ids, dryRun, progress);
+                    break;
+                case "patients":
+                    List<Integer> mrns = new ArrayList<>();
+                    for (String id : ids) {
+                        mrns.add(Integer.parseInt(id));
+                    }
+                    report = purge.purgePatients(mrns, dryRun, progress);
+                    break;
+                case "history":
+                    report = purge.purgePatientHistories(ids, dryRun, progress);
+                    break;
+                default:
+                    System.err.println(
+                        "[ERROR] Unknown purge type '" + type +
+                            "'. Use 'doctors', 'procedures', 'patients' or 'history'"
+                    );
+                    return 1;
             }
+            System.out.println((dryRun ? "[INFO] Dry run. " : "[OK] ") + report);
+            return 0;
+        } catch (NumberFormatException e) {
+            System.err.println("[ERROR] Invalid MRN in " + args[2] + ": " + e.getMessage());
+            return 1;
+        } catch (DatabaseException e) {
+            System.err.println(
+                "[ERROR] Purge failed: " + e.getMessage() +
+                    "; the chunks deleted so far stay deleted, run it again to finish"
+            );
+            return 1;
+        }
+    }
+
+    /**
+     * Searches all patients for probable duplicates and writes the pairs
+     * found to a CSV file.
+     *
+     * @param storage the opened storage backend
+     * @param file    the CSV file to write
+     * @return the exit status: 0 on success, 1 on failure
+     */
+    private static int findDuplicates(StorageBackend storage, String file) {
+        try {
+            Audit.recordList(EntityType.PATIENT);
+            DuplicateDetector.Report report = new DuplicateDetector().detect(storage.patients());
+            report.writeCsv(Paths.get(file));
+            System.out.println("[OK] " + report + ", written to " + file);
+            return 0;
+        } catch (DatabaseException e) {
+            System.err.println("[ERROR] Reading patients failed: " + e.getMessage());
+            return 1;
+        } catch (IOException e) {
+            System.err.println("[ERROR] Cannot write " + file + ": " + e.getMessage());
+            return 1;
         }
     }
 }
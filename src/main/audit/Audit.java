@@ -0,0 +1,58 @@
+package main.audit;
+
+import main.event.ChangeEvent.EntityType;
+import main.exception.AuditException;
+
+/**
+ * The process-wide audit entry point used by the services.
+ * <p>
+ * Until an {@link AuditLog} is installed, accesses are not recorded.
+ * </p>
+ */
+public final class Audit {
+
+    private static volatile Auditor auditor = Auditor.NONE;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Audit() {}
+
+    /**
+     * Sets the auditor that records all further accesses.
+     *
+     * @param installed the auditor, or {@link Auditor#NONE} to stop auditing
+     */
+    public static void install(Auditor installed) {
+        auditor = installed;
+    }
+
+    /**
+     * Records an access to one record, or to the records of one patient.
+     *
+     * @param action     the kind of access
+     * @param entityType the type of the accessed records
+     * @param key        the key of the accessed record, or the MRN of the
+     *                   patient whose records were listed
+     * @throws AuditException if the access could not be recorded as
+     *                        configured
+     */
+    public static void record(AuditAction action, EntityType entityType, Object key)
+        throws AuditException {
+        Auditor current = auditor;
+        if (current != Auditor.NONE) {
+            current.record(action, entityType, String.valueOf(key));
+        }
+    }
+
+    /**
+     * Records that all records of a type were listed.
+     *
+     * @param entityType the type of the listed records
+     * @throws AuditException if the access could not be recorded as
+     *                        configured
+     */
+    public static void recordList(EntityType entityType) throws AuditException {
+        auditor.record(AuditAction.LIST, entityType, null);
+    }
+}
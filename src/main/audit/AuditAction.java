@@ -0,0 +1,19 @@
+package main.audit;
+
+/**
+ * The kinds of access recorded in the audit log.
+ */
+public enum AuditAction {
+    /** A single record was looked up. */
+    READ,
+    /** Several records were listed. */
+    LIST,
+    /** A record was created. */
+    CREATE,
+    /** A record was updated. */
+    UPDATE,
+    /** A record was deleted. */
+    DELETE,
+    /** A record was created or replaced. */
+    UPSERT
+}
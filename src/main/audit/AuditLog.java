@@ -0,0 +1,302 @@
+package main.audit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import main.event.ChangeEvent.EntityType;
+import main.exception.AuditException;
+import main.util.Metrics;
+
+/**
+ * Append-only audit log with a lock-free buffer and a background writer.
+ * <p>
+ * {@link #record} only places the entry in an {@link AuditRing} and returns,
+ * which takes well under a microsecond. A single writer thread drains the
+ * ring in batches of up to {@value #MAX_BATCH} records and writes each
+ * batch to the {@link AuditSink} at once, so the cost of a write or a
+ * flush to disk is shared by all the records of the batch.
+ * </p>
+ *
+ * <p>When the ring is full, callers wait for the writer to make room. If
+ * no room appears within two seconds, for example because the sink keeps
+ * failing, the record is dropped, counted in {@code audit.dropped} and
+ * {@link #record} throws an {@link AuditException} rather than blocking
+ * the application indefinitely. In {@link Durability#SYNC} mode, a record
+ * that is not durable within two seconds fails the same way. The log also
+ * publishes {@code audit.records}, {@code audit.batches},
+ * {@code audit.write_failures}, {@code audit.stalls} and the gauge
+ * {@code audit.backlog}.</p>
+ */
+public class AuditLog implements Auditor, AutoCloseable {
+
+    /**
+     * When recorded entries are made durable.
+     */
+    public enum Durability {
+        /** Callers wait until their record has been written and flushed. */
+        SYNC,
+        /** Every batch is flushed before the next one; callers do not wait. */
+        BATCH,
+        /** Batches are flushed about once a second; callers do not wait. */
+        ASYNC
+    }
+
+    /** Default number of records the ring can hold. */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long ASYNC_SYNC_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+    private static final long RETRY_DELAY_NS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long STALL_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(2);
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private final AuditRing ring;
+    private final AuditSink sink;
+    private final Durability durability;
+    private final String actor;
+    private final Thread writer;
+
+    private final LongAdder records = Metrics.counter("audit.records");
+    private final LongAdder batches = Metrics.counter("audit.batches");
+    private final LongAdder failures = Metrics.counter("audit.write_failures");
+    private final LongAdder stalls = Metrics.counter("audit.stalls");
+    private final LongAdder dropped = Metrics.counter("audit.dropped");
+
+    private final Object durableLock = new Object();
+
+    /** Records with a lower sequence number are durable. */
+    private volatile long durableBelow;
+    private volatile boolean closed;
+
+    /**
+     * Starts an audit log.
+     *
+     * @param sink       where the records are written; closed by the log
+     * @param durability when records are made durable
+     * @param capacity   the number of records that can wait to be written
+     * @param actor      the user recorded as making each access
+     */
+    public AuditLog(AuditSink sink, Durability durability, int capacity, String actor) {
+        this.ring = new AuditRing(capacity);
+        this.sink = sink;
+        this.durability = durability;
+        this.actor = actor;
+        Metrics.gauge("audit.backlog", ring::backlog);
+        this.writer = new Thread(this::writeLoop, "emr-audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Parses the name of a durability mode.
+     *
+     * @param name {@code sync}, {@code batch} or {@code async}, in any case
+     * @return the durability mode
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static Durability parseDurability(String name) {
+        try {
+            return Durability.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                "Unknown audit durability '" + name + "'. Use 'sync', 'batch' or 'async'"
+            );
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * In {@link Durability#SYNC} mode this waits until the record is
+     * durable; otherwise it returns as soon as the record is buffered.
+     * </p>
+     *
+     * @throws AuditException if the record was dropped because the log is
+     *                        full, or in SYNC mode did not become durable
+     *                        in time
+     */
+    @Override
+    public void record(AuditAction action, EntityType entityType, String key)
+        throws AuditException {
+        long sequence = ring.offer(System.currentTimeMillis(), action, entityType, key);
+        if (sequence < 0) {
+            sequence = offerWhenFull(action, entityType, key);
+        }
+        if (durability == Durability.SYNC) {
+            awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Writes the buffered records, stops the writer and closes the sink.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            System.out.println("[WARN] Audit writer did not finish; some records may be lost\n");
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Waits for room in the full ring and then adds the entry.
+     *
+     * @param action     the kind of access
+     * @param entityType the type of the accessed records
+     * @param key        the key of the accessed record, or null
+     * @return the sequence number of the entry
+     * @throws AuditException if no room appeared in time and the entry was
+     *                        dropped
+     */
+    private long offerWhenFull(AuditAction action, EntityType entityType, String key)
+        throws AuditException {
+        stalls.increment();
+        LockSupport.unpark(writer);
+        long deadline = System.nanoTime() + STALL_TIMEOUT_NS;
+        while (System.nanoTime() < deadline) {
+            LockSupport.parkNanos(IDLE_PARK_NS / 20);
+            long sequence = ring.offer(System.currentTimeMillis(), action, entityType, key);
+            if (sequence >= 0) {
+                return sequence;
+            }
+        }
+        dropped.increment();
+        throw new AuditException(
+            "Audit log is full; the " + action + " record of " + entityType + " was not written"
+        );
+    }
+
+    /**
+     * Waits until a record is durable, or for at most the stall timeout.
+     * A record still buffered when the log is closed is written by the
+     * close.
+     *
+     * @param sequence the sequence number of the record
+     * @throws AuditException if the record is not durable in time, or the
+     *                        wait is interrupted
+     */
+    private void awaitDurable(long sequence) throws AuditException {
+        LockSupport.unpark(writer);
+        long deadline = System.nanoTime() + STALL_TIMEOUT_NS;
+        synchronized (durableLock) {
+            while (durableBelow <= sequence && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new AuditException(
+                        "Audit record not written within " +
+                            TimeUnit.NANOSECONDS.toSeconds(STALL_TIMEOUT_NS) +
+                            " s; it is written once the audit log recovers"
+                    );
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(durableLock, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AuditException("Interrupted while writing audit record", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Body of the writer thread: drains the ring in batches until the log
+     * is closed and empty, then closes the sink.
+     */
+    private void writeLoop() {
+        List<AuditRecord> batch = new ArrayList<>(MAX_BATCH);
+        long lastSync = System.nanoTime();
+        boolean unsynced = false;
+        boolean failing = false;
+        while (true) {
+            boolean stopping = closed;
+            if (batch.isEmpty() && ring.drainTo(batch, MAX_BATCH, actor) == 0) {
+                if (unsynced && (stopping || System.nanoTime() - lastSync >= ASYNC_SYNC_INTERVAL_NS)) {
+                    unsynced = !sync();
+                    lastSync = System.nanoTime();
+                }
+                if (stopping) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NS);
+                continue;
+            }
+            try {
+                sink.write(batch);
+                if (durability != Durability.ASYNC) {
+                    sink.sync();
+                }
+                long written = batch.get(batch.size() - 1).getSequence() + 1;
+                records.add(batch.size());
+                batches.increment();
+                batch.clear();
+                if (durability == Durability.ASYNC) {
+                    unsynced = true;
+                } else {
+                    publishDurable(written);
+                }
+                if (failing) {
+                    System.out.println("[INFO] Audit log writing resumed\n");
+                    failing = false;
+                }
+            } catch (IOException | RuntimeException e) {
+                failures.increment();
+                if (!failing) {
+                    System.out.println(
+                        "[WARN] Failed to write audit log, will retry: " + e.getMessage() + "\n"
+                    );
+                    failing = true;
+                }
+                if (stopping) {
+                    System.out.println(
+                        "[ERROR] " + (batch.size() + ring.backlog()) + " audit record(s) not written\n"
+                    );
+                    break;
+                }
+                LockSupport.parkNanos(RETRY_DELAY_NS);
+            }
+        }
+        sink.close();
+    }
+
+    /**
+     * Flushes the sink after unsynced writes in {@link Durability#ASYNC} mode.
+     *
+     * @return true if the flush succeeded
+     */
+    private boolean sync() {
+        try {
+            sink.sync();
+            return true;
+        } catch (IOException e) {
+            failures.increment();
+            System.out.println("[WARN] Failed to flush audit log: " + e.getMessage() + "\n");
+            return false;
+        }
+    }
+
+    /**
+     * Marks records as durable and wakes the callers waiting for them.
+     *
+     * @param below records with a lower sequence number are durable
+     */
+    private void publishDurable(long below) {
+        durableBelow = below;
+        if (durability == Durability.SYNC) {
+            synchronized (durableLock) {
+                durableLock.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package main.audit;
+
+import main.event.ChangeEvent.EntityType;
+import main.event.RowJson;
+
+/**
+ * One entry of the audit log: who accessed which record, how and when.
+ */
+public final class AuditRecord {
+
+    private final long sequence;
+    private final long timestamp;
+    private final String actor;
+    private final AuditAction action;
+    private final EntityType entityType;
+    private final String key;
+
+    /**
+     * Constructs a new AuditRecord.
+     *
+     * @param sequence   the position of the record in the log of this process
+     * @param timestamp  the time of the access in milliseconds since the epoch
+     * @param actor      the user on whose behalf the access was made
+     * @param action     the kind of access
+     * @param entityType the type of the accessed records
+     * @param key        the key of the accessed record, the MRN of the
+     *                   patient for lists of one patient's records, or
+     *                   null for lists of all records
+     */
+    public AuditRecord(
+        long sequence,
+        long timestamp,
+        String actor,
+        AuditAction action,
+        EntityType entityType,
+        String key
+    ) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.actor = actor;
+        this.action = action;
+        this.entityType = entityType;
+        this.key = key;
+    }
+
+    /**
+     * Gets the position of the record in the log of this process. Numbers
+     * start at 0 when the application starts and have no gaps, so a
+     * missing number means a lost record.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the time of the access.
+     *
+     * @return milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the user on whose behalf the access was made.
+     *
+     * @return the user name
+     */
+    public String getActor() {
+        return actor;
+    }
+
+    /**
+     * Gets the kind of access.
+     *
+     * @return the action
+     */
+    public AuditAction getAction() {
+        return action;
+    }
+
+    /**
+     * Gets the type of the accessed records.
+     *
+     * @return the entity type
+     */
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Gets the key of the accessed record.
+     *
+     * @return the key, the MRN of the patient whose records were listed,
+     *         or null if all records were listed
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Encodes the record as one line of JSON, as written to audit segments.
+     *
+     * @return the JSON object, without a line terminator
+     */
+    public String toJson() {
+        return "{\"sequence\":" + sequence +
+            ",\"timestamp\":" + timestamp +
+            ",\"actor\":" + RowJson.quote(actor) +
+            ",\"action\":\"" + action +
+            "\",\"entity\":\"" + entityType +
+            "\",\"key\":" + RowJson.quote(key) +
+            "}";
+    }
+
+    /**
+     * Returns a string representation of this record.
+     *
+     * @return a string containing the sequence, actor, action and record
+     */
+    @Override
+    public String toString() {
+        return "AuditRecord #" + sequence + ": " + actor + " " + action + " " +
+            entityType + (key == null ? "" : " " + key);
+    }
+}
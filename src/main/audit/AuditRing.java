@@ -0,0 +1,135 @@
+package main.audit;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import main.event.ChangeEvent.EntityType;
+
+/**
+ * Bounded, lock-free queue of audit entries with many producers and one
+ * consumer.
+ * <p>
+ * The slots are allocated once, as parallel arrays, so publishing an entry
+ * allocates nothing. A producer claims the next sequence number with a
+ * compare-and-set, fills the slot and then marks it published; the
+ * consumer reads slots in sequence order and stops at the first one that
+ * is not published yet. A slot is reused only after the consumer has
+ * moved past it.
+ * </p>
+ */
+final class AuditRing {
+
+    private static final AuditAction[] ACTIONS = AuditAction.values();
+    private static final EntityType[] ENTITY_TYPES = EntityType.values();
+
+    private final int capacity;
+    private final int mask;
+    private final long[] timestamps;
+    private final byte[] actions;
+    private final byte[] entityTypes;
+    private final String[] keys;
+
+    /** The sequence number plus one of the entry in each slot, once published. */
+    private final AtomicLongArray published;
+
+    /** The next sequence number to claim. */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /** The next sequence number to consume; written by the consumer only. */
+    private volatile long consumed;
+
+    /**
+     * Constructs a new, empty ring.
+     *
+     * @param capacity the number of slots; rounded up to a power of two
+     */
+    AuditRing(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.timestamps = new long[this.capacity];
+        this.actions = new byte[this.capacity];
+        this.entityTypes = new byte[this.capacity];
+        this.keys = new String[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+    }
+
+    /**
+     * Gets the number of slots.
+     *
+     * @return the capacity
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Adds an entry if there is room.
+     *
+     * @param timestamp  the time of the access
+     * @param action     the kind of access
+     * @param entityType the type of the accessed records
+     * @param key        the key of the accessed record, or null
+     * @return the sequence number of the entry, or -1 if the ring is full
+     */
+    long offer(long timestamp, AuditAction action, EntityType entityType, String key) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= capacity) {
+                return -1;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        timestamps[slot] = timestamp;
+        actions[slot] = (byte) action.ordinal();
+        entityTypes[slot] = (byte) entityType.ordinal();
+        keys[slot] = key;
+        published.set(slot, sequence + 1);
+        return sequence;
+    }
+
+    /**
+     * Moves published entries into a list, in sequence order. Must only be
+     * called by the consumer thread.
+     *
+     * @param into  the list to add the records to
+     * @param max   the maximum number of entries to move
+     * @param actor the actor to record
+     * @return the number of entries moved
+     */
+    int drainTo(List<AuditRecord> into, int max, String actor) {
+        long next = consumed;
+        int moved = 0;
+        while (moved < max) {
+            int slot = (int) next & mask;
+            if (published.get(slot) != next + 1) {
+                break;
+            }
+            into.add(
+                new AuditRecord(
+                    next,
+                    timestamps[slot],
+                    actor,
+                    ACTIONS[actions[slot]],
+                    ENTITY_TYPES[entityTypes[slot]],
+                    keys[slot]
+                )
+            );
+            keys[slot] = null;
+            next++;
+            moved++;
+        }
+        consumed = next;
+        return moved;
+    }
+
+    /**
+     * Gets the number of claimed entries not consumed yet.
+     *
+     * @return the backlog
+     */
+    int backlog() {
+        return (int) (claimed.get() - consumed);
+    }
+}
@@ -0,0 +1,35 @@
+package main.audit;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A destination the {@link AuditLog} writes its records to.
+ * <p>
+ * Only the writer thread of the log calls a sink, so implementations need
+ * not be thread-safe. If {@link #write(List)} or {@link #sync()} throws,
+ * the log writes the same batch again later.
+ * </p>
+ */
+public interface AuditSink extends AutoCloseable {
+    /**
+     * Writes a batch of records.
+     *
+     * @param records the records, in sequence order; never empty
+     * @throws IOException if the batch could not be written
+     */
+    void write(List<AuditRecord> records) throws IOException;
+
+    /**
+     * Makes all records written so far durable.
+     *
+     * @throws IOException if the records could not be made durable
+     */
+    void sync() throws IOException;
+
+    /**
+     * Releases the resources of the sink.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,29 @@
+package main.audit;
+
+import main.event.ChangeEvent.EntityType;
+import main.exception.AuditException;
+
+/**
+ * Records accesses to patient data.
+ *
+ * @see Audit
+ */
+@FunctionalInterface
+public interface Auditor {
+    /** An auditor that records nothing. */
+    Auditor NONE = (action, entityType, key) -> {};
+
+    /**
+     * Records one access.
+     *
+     * @param action     the kind of access
+     * @param entityType the type of the accessed records
+     * @param key        the key of the accessed record, the MRN of the
+     *                   patient for lists of one patient's records, or
+     *                   null for lists of all records
+     * @throws AuditException if the access could not be recorded as
+     *                        configured
+     */
+    void record(AuditAction action, EntityType entityType, String key)
+        throws AuditException;
+}
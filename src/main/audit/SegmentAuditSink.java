@@ -0,0 +1,148 @@
+package main.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes audit records to rolling segment files, one JSON object per line.
+ * <p>
+ * Segments are named {@code audit-000001.log}, {@code audit-000002.log} and
+ * so on. A new segment is started when the current one reaches the segment
+ * size and whenever the application starts, so a segment is never
+ * modified once a later one exists and old segments can be archived or
+ * removed by their number alone.
+ * </p>
+ */
+public class SegmentAuditSink implements AuditSink {
+
+    /** Default size at which a new segment is started. */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".log";
+
+    private final Path dir;
+    private final long segmentBytes;
+    private int segmentNumber;
+    private FileChannel segment;
+    private long segmentSize;
+
+    /**
+     * Opens the audit directory, creating it if needed, and starts a new
+     * segment after the existing ones.
+     *
+     * @param dir          the audit directory
+     * @param segmentBytes the size at which a new segment is started
+     * @throws IOException if the directory or the segment cannot be created
+     */
+    public SegmentAuditSink(Path dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        this.segmentNumber = lastSegmentNumber(dir);
+        roll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<AuditRecord> records) throws IOException {
+        if (segmentSize >= segmentBytes) {
+            segment.force(false);
+            roll();
+        }
+        StringBuilder lines = new StringBuilder(records.size() * 128);
+        for (AuditRecord record : records) {
+            lines.append(record.toJson()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        segmentSize += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void sync() throws IOException {
+        segment.force(false);
+    }
+
+    /**
+     * Makes the current segment durable and closes it.
+     */
+    @Override
+    public void close() {
+        try {
+            segment.force(false);
+            segment.close();
+        } catch (IOException e) {
+            System.out.println("[WARN] Failed to close audit segment: " + e.getMessage() + "\n");
+        }
+    }
+
+    /**
+     * Returns a string representation of this sink.
+     *
+     * @return the sink type and directory
+     */
+    @Override
+    public String toString() {
+        return "segments in " + dir;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Closes the current segment, if any, and starts the next one.
+     *
+     * @throws IOException if the new segment cannot be created
+     */
+    private void roll() throws IOException {
+        if (segment != null) {
+            segment.close();
+        }
+        segmentNumber++;
+        segment = FileChannel.open(
+            dir.resolve(String.format("%s%06d%s", PREFIX, segmentNumber, SUFFIX)),
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE
+        );
+        segmentSize = 0;
+    }
+
+    /**
+     * Finds the highest segment number in a directory.
+     *
+     * @param dir the audit directory
+     * @return the highest number, or 0 if there are no segments
+     * @throws IOException if the directory cannot be listed
+     */
+    private static int lastSegmentNumber(Path dir) throws IOException {
+        int last = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    last = Math.max(
+                        last,
+                        Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()))
+                    );
+                } catch (NumberFormatException e) {
+                    // Not a segment written by this class
+                }
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,73 @@
+package main.audit;
+
+import java.io.IOException;
+import java.util.List;
+import main.dao.AuditDAO;
+import main.dao.StorageBackend;
+import main.exception.DatabaseException;
+
+/**
+ * Writes audit records to the audit table of the storage backend.
+ * <p>
+ * Every batch is committed when it is written, so {@link #sync()} has
+ * nothing left to do.
+ * </p>
+ */
+public class TableAuditSink implements AuditSink {
+
+    private final StorageBackend storage;
+    private final AuditDAO auditDAO;
+
+    /**
+     * Constructs a new TableAuditSink.
+     *
+     * @param storage the storage backend whose audit table to write
+     * @throws IllegalArgumentException if the backend has no audit table
+     */
+    public TableAuditSink(StorageBackend storage) {
+        if (storage.audit() == null) {
+            throw new IllegalArgumentException(
+                "The " + storage.getName() + " backend has no audit table"
+            );
+        }
+        this.storage = storage;
+        this.auditDAO = storage.audit();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(List<AuditRecord> records) throws IOException {
+        try {
+            auditDAO.appendAll(records);
+        } catch (DatabaseException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Does nothing; written batches are already committed.
+     */
+    @Override
+    public void sync() {}
+
+    /**
+     * Releases the connection the writer thread used; the DAO itself
+     * belongs to the storage backend.
+     */
+    @Override
+    public void close() {
+        storage.releaseThreadResources();
+    }
+
+    /**
+     * Returns a string representation of this sink.
+     *
+     * @return the sink type
+     */
+    @Override
+    public String toString() {
+        return "table audit_log";
+    }
+}
@@ -0,0 +1,348 @@
+package main.cache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-mapped hash table from MRN to record offset.
+ * <p>
+ * The table lives in a file so that a restart only has to map it again.
+ * It uses open addressing with linear probing and backward-shift deletion,
+ * like {@link main.util.IntHashMap}, over fixed-size entries. When the
+ * table gets too full, the file is extended and every entry is reinserted
+ * in place; the owning {@link PatientSnapshotStore} marks its files dirty
+ * while open, so a crash in the middle of a resize only causes a rebuild.
+ * </p>
+ *
+ * <p>File layout:</p>
+ * <pre>
+ * int magic | int version | int capacity | int size | (int mrn, int used, long offset) * capacity
+ * </pre>
+ *
+ * <p>This class is not thread-safe; the store guards it with its lock.</p>
+ */
+final class MrnIndex {
+
+    private static final int MAGIC = 0x454D5249;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 16;
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    /** Largest table that fits in one mapping. */
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    /**
+     * Receives the entries of {@link #forEach(EntryVisitor)}.
+     */
+    @FunctionalInterface
+    interface EntryVisitor {
+        /**
+         * Visits one entry.
+         *
+         * @param mrn    the MRN
+         * @param offset the record offset
+         * @throws IOException if the entry cannot be processed
+         */
+        void visit(int mrn, long offset) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int size;
+
+    /**
+     * Constructs a new MrnIndex over an open file.
+     *
+     * @param channel  the index file
+     * @param capacity the number of entries in the file
+     * @param size     the number of used entries
+     * @throws IOException if the file cannot be mapped
+     */
+    private MrnIndex(FileChannel channel, int capacity, int size) throws IOException {
+        this.channel = channel;
+        this.capacity = capacity;
+        this.size = size;
+        this.buffer = map(channel, capacity);
+    }
+
+    /**
+     * Creates an empty index, replacing any existing file.
+     *
+     * @param path the index file
+     * @return the new index
+     * @throws IOException if the file cannot be created
+     */
+    static MrnIndex create(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        MrnIndex index = new MrnIndex(channel, DEFAULT_CAPACITY, 0);
+        index.buffer.putInt(0, MAGIC);
+        index.buffer.putInt(4, FORMAT_VERSION);
+        index.writeHeader();
+        return index;
+    }
+
+    /**
+     * Maps an existing index file.
+     *
+     * @param path the index file
+     * @return the index
+     * @throws IOException if the file cannot be read or is not an index file
+     */
+    static MrnIndex open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(
+            path,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        try {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            int capacity = header.getInt(8);
+            if (
+                header.getInt(0) != MAGIC ||
+                header.getInt(4) != FORMAT_VERSION ||
+                Integer.bitCount(capacity) != 1 ||
+                capacity > MAX_CAPACITY ||
+                channel.size() < HEADER_SIZE + (long) capacity * ENTRY_SIZE
+            ) {
+                throw new IOException("Not an MRN index file: " + path);
+            }
+            return new MrnIndex(channel, capacity, header.getInt(12));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of MRNs in the index.
+     *
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Looks up the offset of an MRN.
+     *
+     * @param mrn the MRN
+     * @return the record offset, or -1 if the MRN is not present
+     */
+    long get(int mrn) {
+        int slot = find(mrn);
+        return slot < 0 ? -1 : buffer.getLong(entry(slot) + 8);
+    }
+
+    /**
+     * Maps an MRN to a record offset, growing the table if needed.
+     *
+     * @param mrn    the MRN
+     * @param offset the record offset
+     * @return the previous offset, or -1 if the MRN was not present
+     * @throws IOException if the table cannot grow
+     */
+    long put(int mrn, long offset) throws IOException {
+        int mask = capacity - 1;
+        int slot = mix(mrn) & mask;
+        while (buffer.getInt(entry(slot) + 4) != 0) {
+            if (buffer.getInt(entry(slot)) == mrn) {
+                long previous = buffer.getLong(entry(slot) + 8);
+                buffer.putLong(entry(slot) + 8, offset);
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        buffer.putInt(entry(slot), mrn);
+        buffer.putInt(entry(slot) + 4, 1);
+        buffer.putLong(entry(slot) + 8, offset);
+        size++;
+        if (size > capacity * LOAD_FACTOR) {
+            grow();
+        }
+        writeHeader();
+        return -1;
+    }
+
+    /**
+     * Removes an MRN.
+     *
+     * @param mrn the MRN
+     * @return the removed offset, or -1 if the MRN was not present
+     */
+    long remove(int mrn) {
+        int slot = find(mrn);
+        if (slot < 0) {
+            return -1;
+        }
+        long offset = buffer.getLong(entry(slot) + 8);
+        shiftBack(slot);
+        size--;
+        writeHeader();
+        return offset;
+    }
+
+    /**
+     * Visits every entry, in table order.
+     *
+     * @param visitor the visitor receiving each MRN and its record offset
+     * @throws IOException if the visitor fails
+     */
+    void forEach(EntryVisitor visitor) throws IOException {
+        for (int slot = 0; slot < capacity; slot++) {
+            if (buffer.getInt(entry(slot) + 4) != 0) {
+                visitor.visit(buffer.getInt(entry(slot)), buffer.getLong(entry(slot) + 8));
+            }
+        }
+    }
+
+    /**
+     * Writes the mapped table to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Closes the index file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Finds the slot holding an MRN.
+     *
+     * @param mrn the MRN
+     * @return the slot index, or -1 if the MRN is not present
+     */
+    private int find(int mrn) {
+        int mask = capacity - 1;
+        int slot = mix(mrn) & mask;
+        while (buffer.getInt(entry(slot) + 4) != 0) {
+            if (buffer.getInt(entry(slot)) == mrn) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the gap left by a removed entry by moving later entries of the
+     * same probe chain back into it.
+     *
+     * @param gap the slot being vacated
+     */
+    private void shiftBack(int gap) {
+        int mask = capacity - 1;
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (buffer.getInt(entry(slot) + 4) == 0) {
+                break;
+            }
+            int home = mix(buffer.getInt(entry(slot))) & mask;
+            // Move the entry only if its home slot does not lie in (gap, slot]
+            boolean movable = gap <= slot
+                ? home <= gap || home > slot
+                : home <= gap && home > slot;
+            if (movable) {
+                buffer.putInt(entry(gap), buffer.getInt(entry(slot)));
+                buffer.putLong(entry(gap) + 8, buffer.getLong(entry(slot) + 8));
+                gap = slot;
+            }
+        }
+        buffer.putInt(entry(gap) + 4, 0);
+    }
+
+    /**
+     * Doubles the table, reinserting every entry in the extended file.
+     *
+     * @throws IOException if the table is at its maximum size or the file
+     *                     cannot be extended
+     */
+    private void grow() throws IOException {
+        if (capacity == MAX_CAPACITY) {
+            throw new IOException("MRN index is full (" + size + " entries)");
+        }
+        int[] mrns = new int[size];
+        long[] offsets = new long[size];
+        int n = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (buffer.getInt(entry(slot) + 4) != 0) {
+                mrns[n] = buffer.getInt(entry(slot));
+                offsets[n++] = buffer.getLong(entry(slot) + 8);
+            }
+        }
+        for (int slot = 0; slot < capacity; slot++) {
+            buffer.putInt(entry(slot) + 4, 0);
+        }
+        capacity *= 2;
+        buffer = map(channel, capacity);
+        size = 0;
+        for (int i = 0; i < n; i++) {
+            put(mrns[i], offsets[i]);
+        }
+    }
+
+    /**
+     * Stores the capacity and size in the file header.
+     */
+    private void writeHeader() {
+        buffer.putInt(8, capacity);
+        buffer.putInt(12, size);
+    }
+
+    /**
+     * Gets the file position of an entry.
+     *
+     * @param slot the slot index
+     * @return the position of the entry
+     */
+    private static int entry(int slot) {
+        return HEADER_SIZE + slot * ENTRY_SIZE;
+    }
+
+    /**
+     * Maps a table of the given capacity, extending the file if needed.
+     *
+     * @param channel  the index file
+     * @param capacity the number of entries
+     * @return the mapping
+     * @throws IOException if the file cannot be mapped
+     */
+    private static MappedByteBuffer map(FileChannel channel, int capacity) throws IOException {
+        return channel.map(
+            FileChannel.MapMode.READ_WRITE,
+            0,
+            HEADER_SIZE + (long) capacity * ENTRY_SIZE
+        );
+    }
+
+    /**
+     * Spreads the bits of an MRN so that sequential MRNs do not cluster.
+     *
+     * @param mrn the MRN to hash
+     * @return the mixed hash
+     */
+    private static int mix(int mrn) {
+        int h = mrn * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,745 @@
+package main.cache;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import main.dao.PatientDAO;
+import main.exception.DatabaseException;
+import main.model.Patient;
+import main.model.PatientSummary;
+import main.util.Interners;
+import main.util.Metrics;
+
+/**
+ * Off-heap copy of the patient directory in memory-mapped files.
+ * <p>
+ * Patients are stored as encoded records in a data file that is mapped in
+ * 64 MiB segments, and located through an {@link MrnIndex} in a second
+ * mapped file. Neither file is read onto the Java heap: a lookup decodes
+ * one record into a {@link Patient} (or only the name fields into a
+ * {@link PatientSummary}) when it is requested, so millions of patients
+ * cost no heap objects and no garbage collection work while idle. A
+ * restart only maps the files again.
+ * </p>
+ *
+ * <p>The store is a cache of the storage backend. It is filled by
+ * {@link #rebuild(PatientDAO)} and kept current by
+ * {@link main.service.PatientService}, which calls {@link #put(Patient)}
+ * and {@link #remove(int)} after each successful write. Changes made by
+ * other processes are not seen until the next rebuild.</p>
+ *
+ * <p>Records are appended; replacing or removing a patient marks the old
+ * record dead. Once dead records make up more than half of a data file of
+ * at least {@link #COMPACT_MIN_GARBAGE_BYTES}, the live records are copied
+ * to new files that replace the old ones, blocking lookups meanwhile; a
+ * rebuild compacts the file as well. The files are marked open while in
+ * use and clean only after {@link #close()} has written them out, so after
+ * a crash {@link #needsRebuild()} reports that they must be rebuilt. If a
+ * write to the files fails, the store disables itself and every lookup
+ * misses.</p>
+ *
+ * <p>An open store holds an exclusive lock on {@code patients.lock} in its
+ * directory, so a second process cannot replace the files while the first
+ * one has them mapped; {@link #open(Path)} fails in the second process
+ * instead.</p>
+ *
+ * <p>Data file layout:</p>
+ * <pre>
+ * header: int magic | int version | int state | int unused | long end | long garbageBytes | (padding to 64 bytes)
+ * record: int length | byte live | int mrn | int dobEpochDay | int zip | long version | (u16 length, UTF-8 bytes) * 7
+ * </pre>
+ * <p>The seven strings are fname, lname, address, state, city, insurance
+ * and email. A record never spans two segments.</p>
+ */
+public final class PatientSnapshotStore implements AutoCloseable {
+
+    private static final String DATA_FILE = "patients.dat";
+    private static final String INDEX_FILE = "patients.idx";
+    private static final String LOCK_FILE = "patients.lock";
+    private static final String COMPACT_DIR = "compact";
+
+    /** Dead record bytes below which the data file is never compacted. */
+    static final long COMPACT_MIN_GARBAGE_BYTES = 16L * 1024 * 1024;
+
+    private static final int MAGIC = 0x454D5250;
+    private static final int FORMAT_VERSION = 2;
+    private static final int STATE_CLEAN = 0;
+    private static final int STATE_OPEN = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private static final int SEGMENT_SHIFT = 26;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private static final int LIVE = 4;
+    private static final int MRN = 5;
+    private static final int DOB = 9;
+    private static final int ZIP = 13;
+    private static final int VERSION = 17;
+    private static final int STRINGS = 25;
+    private static final int STRING_COUNT = 7;
+
+    /** Length stored for null strings. */
+    private static final int NULL_STRING = 0xFFFF;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Path dir;
+
+    private FileLock fileLock;
+    private FileChannel data;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private MrnIndex index;
+    private long end;
+    private long garbageBytes;
+    private boolean needsRebuild;
+    private volatile boolean failed;
+
+    /**
+     * Constructs a new PatientSnapshotStore in a directory.
+     *
+     * @param dir the directory holding the snapshot files
+     */
+    private PatientSnapshotStore(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Opens the snapshot in a directory, mapping the existing files if they
+     * were closed cleanly and creating empty ones otherwise.
+     *
+     * @param dir the directory holding the snapshot files
+     * @return the opened store; check {@link #needsRebuild()} before use
+     * @throws IOException if the files cannot be created or mapped, or
+     *                     another process has the snapshot open
+     */
+    public static PatientSnapshotStore open(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        PatientSnapshotStore store = new PatientSnapshotStore(dir);
+        store.fileLock = lock(dir);
+        try {
+            if (!store.map(STATE_CLEAN)) {
+                store.reset();
+            }
+            store.setState(STATE_OPEN);
+        } catch (IOException e) {
+            store.fileLock.channel().close();
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Tells whether the snapshot is empty or stale and must be rebuilt
+     * before it can answer lookups.
+     *
+     * @return true if {@link #rebuild(PatientDAO)} must be called
+     */
+    public boolean needsRebuild() {
+        return needsRebuild;
+    }
+
+    /**
+     * Replaces the contents of the snapshot with every patient of a DAO,
+     * streaming them so that the patients are never all on the heap.
+     *
+     * @param patients the DAO to read the patients from
+     * @return the number of patients in the snapshot
+     * @throws DatabaseException if the patients cannot be read
+     * @throws IOException       if the files cannot be written
+     */
+    public int rebuild(PatientDAO patients) throws DatabaseException, IOException {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            reset();
+            setState(STATE_OPEN);
+            try {
+                patients.streamAll(patient -> {
+                    try {
+                        append(patient);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            needsRebuild = false;
+            failed = false;
+            return index.size();
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Looks up a patient, decoding the full record.
+     *
+     * @param mrn the MRN of the patient
+     * @return the patient, or null if the snapshot does not hold it
+     */
+    public Patient get(int mrn) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            long offset = lookup(mrn);
+            if (offset < 0) {
+                return null;
+            }
+            MappedByteBuffer segment = segment(offset);
+            int position = position(offset);
+            int dob = segment.getInt(position + DOB);
+            String[] strings = new String[STRING_COUNT];
+            int at = position + STRINGS;
+            for (int i = 0; i < STRING_COUNT; i++) {
+                int length = segment.getShort(at) & 0xFFFF;
+                strings[i] = decode(segment, at + 2, length);
+                at += 2 + (length == NULL_STRING ? 0 : length);
+            }
+            Patient patient = new Patient(
+                mrn,
+                strings[0],
+                strings[1],
+                dob == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(dob),
+                strings[2],
+                Interners.STATES.intern(strings[3]),
+                Interners.CITIES.intern(strings[4]),
+                segment.getInt(position + ZIP),
+                Interners.INSURERS.intern(strings[5]),
+                strings[6]
+            );
+            patient.setVersion(segment.getLong(position + VERSION));
+            return patient;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Looks up a patient, decoding only the MRN and name.
+     *
+     * @param mrn the MRN of the patient
+     * @return the summary, or null if the snapshot does not hold the patient
+     */
+    public PatientSummary getSummary(int mrn) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            long offset = lookup(mrn);
+            if (offset < 0) {
+                return null;
+            }
+            MappedByteBuffer segment = segment(offset);
+            int at = position(offset) + STRINGS;
+            int fnameLength = segment.getShort(at) & 0xFFFF;
+            String fname = decode(segment, at + 2, fnameLength);
+            at += 2 + (fnameLength == NULL_STRING ? 0 : fnameLength);
+            String lname = decode(segment, at + 2, segment.getShort(at) & 0xFFFF);
+            return new PatientSummary(mrn, fname, lname);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of patients in the snapshot.
+     *
+     * @return the number of patients
+     */
+    public int size() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return index.size();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Stores the current version of a patient.
+     * <p>
+     * A patient whose fields do not fit the record format is removed
+     * instead, so lookups fall back to the storage backend. A patient is
+     * ignored if the snapshot already holds the same or a newer version,
+     * so that writers putting their results after committing in a
+     * different order cannot bring back an older version.
+     * </p>
+     *
+     * @param patient the patient that was created or updated
+     */
+    public void put(Patient patient) {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            if (!failed && !needsRebuild && !holdsNewer(patient)) {
+                append(patient);
+                maybeCompact();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Removes a patient.
+     *
+     * @param mrn the MRN of the deleted patient
+     */
+    public void remove(int mrn) {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            if (!failed && !needsRebuild) {
+                kill(index.remove(mrn));
+                maybeCompact();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Writes the files out and marks them clean, so the next
+     * {@link #open(Path)} can map them without a rebuild.
+     */
+    @Override
+    public void close() {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            if (!failed && !needsRebuild) {
+                for (MappedByteBuffer segment : segments) {
+                    segment.force();
+                }
+                index.force();
+                setState(STATE_CLEAN);
+            }
+            index.close();
+            data.close();
+        } catch (IOException e) {
+            System.out.println("[WARN] Could not close patient snapshot: " + e.getMessage());
+        } finally {
+            try {
+                // Closing the channel releases the lock
+                fileLock.channel().close();
+            } catch (IOException e) {
+                System.out.println("[WARN] Could not unlock patient snapshot: " + e.getMessage());
+            }
+            write.unlock();
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Takes the exclusive lock on the lock file of a snapshot directory.
+     *
+     * @param dir the directory holding the snapshot files
+     * @return the held lock
+     * @throws IOException if the lock file cannot be opened or another
+     *                     process holds the lock
+     */
+    private static FileLock lock(Path dir) throws IOException {
+        FileChannel channel = FileChannel.open(
+            dir.resolve(LOCK_FILE),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE
+        );
+        FileLock held;
+        try {
+            held = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another store of this process
+            held = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (held == null) {
+            channel.close();
+            throw new IOException("Patient snapshot in " + dir + " is in use by another process");
+        }
+        return held;
+    }
+
+    /**
+     * Maps existing snapshot files if they are in the expected state.
+     *
+     * @param expectedState {@link #STATE_CLEAN} when opening the files,
+     *                      {@link #STATE_OPEN} after compacting them
+     * @return true if the files were mapped
+     * @throws IOException if the files cannot be opened
+     */
+    private boolean map(int expectedState) throws IOException {
+        Path dataPath = dir.resolve(DATA_FILE);
+        Path indexPath = dir.resolve(INDEX_FILE);
+        if (!Files.exists(dataPath) || !Files.exists(indexPath)) {
+            return false;
+        }
+        data = FileChannel.open(dataPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (data.size() < HEADER_SIZE) {
+            data.close();
+            return false;
+        }
+        MappedByteBuffer header = mapSegment(0);
+        if (
+            header.getInt(0) != MAGIC ||
+            header.getInt(4) != FORMAT_VERSION ||
+            header.getInt(8) != expectedState
+        ) {
+            data.close();
+            return false;
+        }
+        segments.add(header);
+        end = header.getLong(16);
+        garbageBytes = header.getLong(24);
+        while (segments.size() <= (end - 1) >>> SEGMENT_SHIFT) {
+            segments.add(mapSegment(segments.size()));
+        }
+        try {
+            index = MrnIndex.open(indexPath);
+        } catch (IOException e) {
+            segments.clear();
+            data.close();
+            return false;
+        }
+        needsRebuild = false;
+        return true;
+    }
+
+    /**
+     * Replaces the files with empty ones. Callers must hold the write lock
+     * or own the store exclusively.
+     *
+     * @throws IOException if the files cannot be created
+     */
+    private void reset() throws IOException {
+        if (index != null) {
+            index.close();
+        }
+        if (data != null && data.isOpen()) {
+            data.close();
+        }
+        segments.clear();
+        data = FileChannel.open(
+            dir.resolve(DATA_FILE),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        MappedByteBuffer header = mapSegment(0);
+        header.putInt(0, MAGIC);
+        header.putInt(4, FORMAT_VERSION);
+        segments.add(header);
+        index = MrnIndex.create(dir.resolve(INDEX_FILE));
+        end = HEADER_SIZE;
+        garbageBytes = 0;
+        needsRebuild = true;
+        writeHeader();
+    }
+
+    /**
+     * Compacts the data file if dead records make up more than half of it.
+     * Caller must hold the write lock.
+     *
+     * @throws IOException if the compacted files cannot be written
+     */
+    private void maybeCompact() throws IOException {
+        if (garbageBytes >= COMPACT_MIN_GARBAGE_BYTES && garbageBytes * 2 > end - HEADER_SIZE) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies the live records to new files and replaces the current files
+     * with them. Caller must hold the write lock.
+     * <p>
+     * The current files are marked open, and so are the new ones, so a
+     * crash before both have been moved into place only causes a rebuild.
+     * </p>
+     *
+     * @throws IOException if the compacted files cannot be written
+     */
+    private void compact() throws IOException {
+        long started = System.nanoTime();
+        long before = end;
+        Path work = dir.resolve(COMPACT_DIR);
+        Files.createDirectories(work);
+        PatientSnapshotStore copy = new PatientSnapshotStore(work);
+        try {
+            copy.reset();
+            copy.setState(STATE_OPEN);
+            index.forEach((mrn, offset) -> copy.copyRecord(mrn, segment(offset), position(offset)));
+            copy.writeHeader();
+            for (MappedByteBuffer segment : copy.segments) {
+                segment.force();
+            }
+            copy.index.force();
+        } finally {
+            if (copy.index != null) {
+                copy.index.close();
+            }
+            if (copy.data != null) {
+                copy.data.close();
+            }
+        }
+        index.close();
+        data.close();
+        segments.clear();
+        Files.move(
+            work.resolve(INDEX_FILE),
+            dir.resolve(INDEX_FILE),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+        Files.move(
+            work.resolve(DATA_FILE),
+            dir.resolve(DATA_FILE),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE
+        );
+        Files.delete(work);
+        if (!map(STATE_OPEN)) {
+            throw new IOException("Compacted patient snapshot cannot be mapped");
+        }
+        Metrics.counter("patient_snapshot.compactions").increment();
+        System.out.println(
+            "[INFO] Compacted patient snapshot from " + (before >> 20) + " MiB to " +
+                (end >> 20) + " MiB in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms"
+        );
+    }
+
+    /**
+     * Appends a copy of a record of another store and points the index at
+     * it. Used by {@link #compact()}; the caller writes the header.
+     *
+     * @param mrn      the MRN of the record
+     * @param source   the segment holding the record
+     * @param position the position of the record in the segment
+     * @throws IOException if the data file or index cannot grow
+     */
+    private void copyRecord(int mrn, MappedByteBuffer source, int position) throws IOException {
+        int length = source.getInt(position);
+        if ((end & SEGMENT_MASK) + length > SEGMENT_SIZE) {
+            end = (end + SEGMENT_MASK) & ~SEGMENT_MASK;
+        }
+        long offset = end;
+        while (segments.size() <= offset >>> SEGMENT_SHIFT) {
+            segments.add(mapSegment(segments.size()));
+        }
+        segment(offset).put(position(offset), source, position, length);
+        end = offset + length;
+        index.put(mrn, offset);
+    }
+
+    /**
+     * Appends the record of a patient and points the index at it.
+     *
+     * @param patient the patient to store
+     * @throws IOException if the data file or index cannot grow
+     */
+    private void append(Patient patient) throws IOException {
+        byte[][] strings = {
+            encode(patient.getFname()),
+            encode(patient.getLname()),
+            encode(patient.getAddress()),
+            encode(patient.getState()),
+            encode(patient.getCity()),
+            encode(patient.getInsurance()),
+            encode(patient.getEmail())
+        };
+        int length = STRINGS;
+        for (byte[] string : strings) {
+            if (string != null && string.length >= NULL_STRING) {
+                // Too long for the record format; leave it to the backend
+                kill(index.remove(patient.getMrn()));
+                return;
+            }
+            length += 2 + (string == null ? 0 : string.length);
+        }
+        if ((end & SEGMENT_MASK) + length > SEGMENT_SIZE) {
+            end = (end + SEGMENT_MASK) & ~SEGMENT_MASK;
+        }
+        long offset = end;
+        while (segments.size() <= offset >>> SEGMENT_SHIFT) {
+            segments.add(mapSegment(segments.size()));
+        }
+        MappedByteBuffer segment = segment(offset);
+        int position = position(offset);
+        LocalDate dob = patient.getDob();
+        segment.putInt(position, length);
+        segment.put(position + LIVE, (byte) 1);
+        segment.putInt(position + MRN, patient.getMrn());
+        segment.putInt(position + DOB, dob == null ? Integer.MIN_VALUE : (int) dob.toEpochDay());
+        segment.putInt(position + ZIP, patient.getZip());
+        segment.putLong(position + VERSION, patient.getVersion());
+        int at = position + STRINGS;
+        for (byte[] string : strings) {
+            if (string == null) {
+                segment.putShort(at, (short) NULL_STRING);
+                at += 2;
+            } else {
+                segment.putShort(at, (short) string.length);
+                segment.put(at + 2, string, 0, string.length);
+                at += 2 + string.length;
+            }
+        }
+        end = offset + length;
+        kill(index.put(patient.getMrn(), offset));
+        writeHeader();
+    }
+
+    /**
+     * Checks whether the snapshot holds the same or a newer version of a
+     * patient. Caller must hold the lock.
+     *
+     * @param patient the patient about to be stored
+     * @return true if the stored version is not older than the patient's
+     */
+    private boolean holdsNewer(Patient patient) {
+        long offset = index.get(patient.getMrn());
+        return (
+            offset >= 0 &&
+            segment(offset).getLong(position(offset) + VERSION) >= patient.getVersion()
+        );
+    }
+
+    /**
+     * Marks a replaced or removed record dead.
+     *
+     * @param offset the record offset, or -1 for none
+     */
+    private void kill(long offset) {
+        if (offset < 0) {
+            return;
+        }
+        MappedByteBuffer segment = segment(offset);
+        int position = position(offset);
+        segment.put(position + LIVE, (byte) 0);
+        garbageBytes += segment.getInt(position);
+        writeHeader();
+    }
+
+    /**
+     * Looks up the record offset of an MRN and counts the hit or miss.
+     * Caller must hold the lock.
+     *
+     * @param mrn the MRN
+     * @return the record offset, or -1 if the store cannot answer
+     */
+    private long lookup(int mrn) {
+        long offset = failed || needsRebuild ? -1 : index.get(mrn);
+        Metrics.counter(offset < 0 ? "patient_snapshot.misses" : "patient_snapshot.hits")
+            .increment();
+        return offset;
+    }
+
+    /**
+     * Disables the store after a write to its files failed.
+     *
+     * @param e the failure
+     */
+    private void fail(IOException e) {
+        failed = true;
+        System.out.println("[WARN] Patient snapshot disabled: " + e.getMessage());
+    }
+
+    /**
+     * Stores the append position and garbage count in the data file header.
+     */
+    private void writeHeader() {
+        MappedByteBuffer header = segments.get(0);
+        header.putLong(16, end);
+        header.putLong(24, garbageBytes);
+    }
+
+    /**
+     * Writes the open/clean state to the data file header and syncs it.
+     *
+     * @param state {@link #STATE_OPEN} or {@link #STATE_CLEAN}
+     */
+    private void setState(int state) {
+        MappedByteBuffer header = segments.get(0);
+        header.putInt(8, state);
+        header.force();
+    }
+
+    /**
+     * Maps one segment of the data file, extending the file if needed.
+     *
+     * @param number the segment number
+     * @return the mapping
+     * @throws IOException if the segment cannot be mapped
+     */
+    private MappedByteBuffer mapSegment(int number) throws IOException {
+        return data.map(FileChannel.MapMode.READ_WRITE, number * SEGMENT_SIZE, SEGMENT_SIZE);
+    }
+
+    /**
+     * Gets the segment holding an offset.
+     *
+     * @param offset the record offset
+     * @return the segment
+     */
+    private MappedByteBuffer segment(long offset) {
+        return segments.get((int) (offset >>> SEGMENT_SHIFT));
+    }
+
+    /**
+     * Gets the position of an offset within its segment.
+     *
+     * @param offset the record offset
+     * @return the position in the segment
+     */
+    private static int position(long offset) {
+        return (int) (offset & SEGMENT_MASK);
+    }
+
+    /**
+     * Encodes a string as UTF-8.
+     *
+     * @param value the string, or null
+     * @return the bytes, or null
+     */
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decodes a UTF-8 string from a segment.
+     *
+     * @param segment  the segment
+     * @param position the position of the first byte
+     * @param length   the number of bytes, or {@link #NULL_STRING}
+     * @return the string, or null
+     */
+    private static String decode(MappedByteBuffer segment, int position, int length) {
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        segment.get(position, bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
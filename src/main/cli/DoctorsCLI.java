@@ -1,12 +1,13 @@
 package main.cli;
 
 import java.util.List;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 import main.exception.EntityNotFoundException;
 import main.exception.ValidationException;
 import main.model.Doctor;
+import main.service.AppContext;
 import main.service.DoctorService;
-import main.util.Database;
 
 /**
  * CLI handler for Doctor entity management.
@@ -20,13 +21,13 @@ public class DoctorsCLI extends CLI {
     private final DoctorService doctorService;
 
     /**
-     * Constructs a new DoctorsCLI with the specified database connection.
+     * Constructs a new DoctorsCLI using the services of an application context.
      *
-     * @param db the database connection to use
+     * @param context the context providing the doctor service
      */
-    public DoctorsCLI(Database db) {
+    public DoctorsCLI(AppContext context) {
         super();
-        this.doctorService = new DoctorService(db);
+        this.doctorService = context.getDoctorService();
     }
 
     /**
@@ -194,6 +195,8 @@ public class DoctorsCLI extends CLI {
             showError(e.getMessage());
         } catch (EntityNotFoundException e) {
             showNotFound("Doctor", id);
+        } catch (ConflictException e) {
+            showError(e.getMessage());
         } catch (DatabaseException e) {
             showError("Database error: " + e.getMessage());
         }
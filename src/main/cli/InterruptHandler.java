@@ -0,0 +1,106 @@
+package main.cli;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import main.dao.StorageBackend;
+
+/**
+ * Makes Ctrl-C abort the running database operation instead of the
+ * application.
+ * <p>
+ * When Ctrl-C is pressed while a query is running, the query is cancelled
+ * and the CLI reports the failed operation as usual, returning to its menu.
+ * When nothing is running, Ctrl-C exits the application as before.
+ * </p>
+ *
+ * <p>The handler uses {@code sun.misc.Signal}, which is available on all
+ * common JVMs; where it is not, the default Ctrl-C behaviour is kept. The
+ * class is looked up at run time, so that the application compiles
+ * without references to internal APIs.</p>
+ */
+public final class InterruptHandler {
+
+    /** Exit status of a process terminated by SIGINT. */
+    private static final int SIGINT_EXIT_STATUS = 130;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private InterruptHandler() {}
+
+    /**
+     * Installs the Ctrl-C handler for the given storage backend.
+     *
+     * @param storage the backend whose running operations Ctrl-C cancels
+     */
+    public static void install(StorageBackend storage) {
+        try {
+            Class<?> signalClass = Class.forName("sun.misc.Signal");
+            Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+            Object signal = signalClass.getConstructor(String.class).newInstance("INT");
+            Object handler = Proxy.newProxyInstance(
+                handlerClass.getClassLoader(),
+                new Class<?>[] { handlerClass },
+                handler(storage)
+            );
+            signalClass
+                .getMethod("handle", signalClass, handlerClass)
+                .invoke(null, signal, handler);
+        } catch (InvocationTargetException e) {
+            warn(e.getCause());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            warn(e);
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Creates the implementation of {@code sun.misc.SignalHandler}.
+     *
+     * @param storage the backend whose running operations Ctrl-C cancels
+     * @return the invocation handler of the proxy
+     */
+    private static InvocationHandler handler(StorageBackend storage) {
+        return (Object proxy, Method method, Object[] args) -> {
+            switch (method.getName()) {
+                case "handle":
+                    onInterrupt(storage);
+                    return null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "InterruptHandler";
+            }
+        };
+    }
+
+    /**
+     * Handles Ctrl-C: cancels the running operations, or exits if there
+     * are none.
+     *
+     * @param storage the backend whose running operations are cancelled
+     */
+    private static void onInterrupt(StorageBackend storage) {
+        if (storage.cancelRunningOperations() > 0) {
+            System.out.println("\n[CANCELLED] Query cancelled");
+        } else {
+            System.exit(SIGINT_EXIT_STATUS);
+        }
+    }
+
+    /**
+     * Reports that the handler could not be installed.
+     *
+     * @param cause the reason
+     */
+    private static void warn(Throwable cause) {
+        System.out.println(
+            "[WARN] Ctrl-C cannot cancel queries on this platform: " + cause.getMessage()
+        );
+    }
+}
@@ -1,6 +1,8 @@
 package main.cli;
 
-import main.util.Database;
+import java.util.Map;
+import main.service.AppContext;
+import main.util.Metrics;
 
 /**
  * Main CLI handler for the EMR Management System.
@@ -12,9 +14,13 @@ import main.util.Database;
  *   <li>Patient history management</li>
  *   <li>Procedure management</li>
  *   <li>Doctor management</li>
+ *   <li>Runtime statistics</li>
  * </ul>
  * </p>
  *
+ * <p>Each submenu is built the first time it is opened and kept for the
+ * rest of the session, over the shared services of an {@link AppContext},
+ * so returning to a menu reuses the same services and DAOs.</p>
  */
 public class MainCLI extends CLI {
 
@@ -24,16 +30,22 @@ public class MainCLI extends CLI {
     private static final String GOODBYE_MESSAGE =
         "Thank you for using EMR Management System. Goodbye!\n";
 
-    private final Database db;
+    /** The shared services of the application. */
+    private final AppContext context;
+
+    private PatientsCLI patientsCLI;
+    private PatientHistoryCLI patientHistoryCLI;
+    private ProceduresCLI proceduresCLI;
+    private DoctorsCLI doctorsCLI;
 
     /**
-     * Constructs a new MainCLI with the specified database connection.
+     * Constructs a new MainCLI using the services of an application context.
      *
-     * @param db the database connection to use for all operations
+     * @param context the context providing the services of every menu
      */
-    public MainCLI(Database db) {
+    public MainCLI(AppContext context) {
         super();
-        this.db = db;
+        this.context = context;
     }
 
     /**
@@ -58,25 +70,42 @@ public class MainCLI extends CLI {
             switch (choice) {
                 case 1:
                     // Navigate to patient management
-                    new PatientsCLI(db).start();
+                    if (patientsCLI == null) {
+                        patientsCLI = new PatientsCLI(context);
+                    }
+                    patientsCLI.start();
                     System.out.println();
                     break;
                 case 2:
                     // Navigate to patient history management
-                    new PatientHistoryCLI(db).start();
+                    if (patientHistoryCLI == null) {
+                        patientHistoryCLI = new PatientHistoryCLI(context);
+                    }
+                    patientHistoryCLI.start();
                     System.out.println();
                     break;
                 case 3:
                     // Navigate to procedure management
-                    new ProceduresCLI(db).start();
+                    if (proceduresCLI == null) {
+                        proceduresCLI = new ProceduresCLI(context);
+                    }
+                    proceduresCLI.start();
                     System.out.println();
                     break;
                 case 4:
                     // Navigate to doctor management
-                    new DoctorsCLI(db).start();
+                    if (doctorsCLI == null) {
+                        doctorsCLI = new DoctorsCLI(context);
+                    }
+                    doctorsCLI.start();
                     System.out.println();
                     break;
                 case 5:
+                    // Show runtime metrics
+                    showStatistics();
+                    System.out.println();
+                    break;
+                case 6:
                     // Exit the application
                     running = false;
                     System.out.println(GOODBYE_MESSAGE);
@@ -99,6 +128,29 @@ public class MainCLI extends CLI {
         System.out.println("2. Patient History");
         System.out.println("3. Procedures");
         System.out.println("4. Doctors");
-        System.out.println("5. Exit");
+        System.out.println("5. Statistics");
+        System.out.println("6. Exit");
+    }
+
+    /**
+     * Displays the current value of every runtime metric.
+     */
+    private void showStatistics() {
+        Map<String, Number> metrics = Metrics.snapshot();
+        if (metrics.isEmpty()) {
+            showEmpty("No statistics recorded yet");
+            return;
+        }
+        System.out.println("Statistics (" + context.getStorage().getName() + " backend)");
+        printSeparator();
+        for (Map.Entry<String, Number> metric : metrics.entrySet()) {
+            Number value = metric.getValue();
+            System.out.println(
+                metric.getKey() + ": " +
+                    (value instanceof Double
+                        ? String.format("%.4f", value.doubleValue())
+                        : value.toString())
+            );
+        }
     }
 }
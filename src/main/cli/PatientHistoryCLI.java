@@ -2,12 +2,15 @@ package main.cli;
 
 import java.time.LocalDate;
 import java.util.List;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 import main.exception.EntityNotFoundException;
 import main.exception.ValidationException;
 import main.model.PatientHistory;
+import main.model.ProcedureRef;
+import main.service.AppContext;
 import main.service.PatientHistoryService;
-import main.util.Database;
+import main.service.ProcedureService;
 
 /**
  * CLI handler for PatientHistory entity management.
@@ -19,15 +22,18 @@ import main.util.Database;
 public class PatientHistoryCLI extends CLI {
 
     private final PatientHistoryService patientHistoryService;
+    private final ProcedureService procedureService;
 
     /**
-     * Constructs a new PatientHistoryCLI with the specified database connection.
+     * Constructs a new PatientHistoryCLI using the services of an
+     * application context.
      *
-     * @param db the database connection to use
+     * @param context the context providing the patient history and procedure services
      */
-    public PatientHistoryCLI(Database db) {
+    public PatientHistoryCLI(AppContext context) {
         super();
-        this.patientHistoryService = new PatientHistoryService(db);
+        this.patientHistoryService = context.getPatientHistoryService();
+        this.procedureService = context.getProcedureService();
     }
 
     /**
@@ -55,12 +61,15 @@ public class PatientHistoryCLI extends CLI {
                     readAllPatientHistories();
                     break;
                 case 5:
-                    updatePatientHistory();
+                    readPatientHistoriesByDateRange();
                     break;
                 case 6:
-                    deletePatientHistory();
+                    updatePatientHistory();
                     break;
                 case 7:
+                    deletePatientHistory();
+                    break;
+                case 8:
                     running = false;
                     System.out.println("Returning to main menu");
                     break;
@@ -80,9 +89,10 @@ public class PatientHistoryCLI extends CLI {
         System.out.println("2. Read Patient History by Patient MRN");
         System.out.println("3. Read Patient History by ID");
         System.out.println("4. Read All Patient History");
-        System.out.println("5. Update Patient History");
-        System.out.println("6. Delete Patient History");
-        System.out.println("7. Back to Main Menu");
+        System.out.println("5. Read Patient History by Date Range");
+        System.out.println("6. Update Patient History");
+        System.out.println("7. Delete Patient History");
+        System.out.println("8. Back to Main Menu");
     }
 
     /**
@@ -94,7 +104,7 @@ public class PatientHistoryCLI extends CLI {
 
         String id = getRequiredStringInput("Enter History ID: ");
         int patientId = getIntInput("Enter Patient MRN: ");
-        String procedureId = getRequiredStringInput("Enter Procedure ID: ");
+        String procedureId = getProcedureIdInput("Enter Procedure ID (? to list): ", true);
         LocalDate date = getDateInput("Enter Date (yyyy-MM-dd): ");
         double billing = getPositiveDoubleInput("Enter Billing Amount: ");
         String doctorId = getRequiredStringInput("Enter Doctor ID: ");
@@ -208,6 +218,39 @@ public class PatientHistoryCLI extends CLI {
         System.out.println();
     }
 
+    /**
+     * Handles reading the patient histories dated within a range.
+     */
+    private void readPatientHistoriesByDateRange() {
+        printSeparator();
+        System.out.println("Read Patient History by Date Range");
+
+        LocalDate from = getDateInput("Enter Start Date (yyyy-MM-dd): ");
+        LocalDate to = getDateInput("Enter End Date (yyyy-MM-dd): ");
+
+        try {
+            System.out.println();
+            List<PatientHistory> histories =
+                patientHistoryService.getPatientHistoriesByDateRange(from, to);
+            if (!histories.isEmpty()) {
+                int count = 1;
+                for (PatientHistory h : histories) {
+                    System.out.println("Patient History " + count + ":");
+                    displayPatientHistory(h);
+                    System.out.println();
+                    count++;
+                }
+            } else {
+                showEmpty("No patient histories found in this date range");
+            }
+        } catch (ValidationException e) {
+            showError(e.getMessage());
+        } catch (DatabaseException e) {
+            showError("Database error: " + e.getMessage());
+        }
+        System.out.println();
+    }
+
     /**
      * Handles updating an existing patient history record.
      */
@@ -249,7 +292,10 @@ public class PatientHistoryCLI extends CLI {
             }
         }
 
-        input = getStringInput("Update Procedure ID (leave empty to skip): ");
+        input = getProcedureIdInput(
+            "Update Procedure ID (? to list, leave empty to skip): ",
+            false
+        );
         if (!input.isEmpty()) {
             history.setProcedureId(input);
         }
@@ -298,6 +344,8 @@ public class PatientHistoryCLI extends CLI {
             showError(e.getMessage());
         } catch (EntityNotFoundException e) {
             showError(e.getMessage());
+        } catch (ConflictException e) {
+            showError(e.getMessage());
         } catch (DatabaseException e) {
             showError("Database error: " + e.getMessage());
         }
@@ -369,4 +417,34 @@ public class PatientHistoryCLI extends CLI {
         );
         System.out.println("Doctor ID: " + history.getDoctorId());
     }
+
+    /**
+     * Prompts for a procedure ID, listing the IDs and names of all
+     * procedures whenever the user enters {@code ?}.
+     *
+     * @param prompt   the message to display to the user
+     * @param required true to keep prompting until a value is entered
+     * @return the entered procedure ID, or an empty string if not required and skipped
+     */
+    private String getProcedureIdInput(String prompt, boolean required) {
+        while (true) {
+            String input = required
+                ? getRequiredStringInput(prompt)
+                : getStringInput(prompt);
+            if (!input.equals("?")) {
+                return input;
+            }
+            try {
+                List<ProcedureRef> procedures = procedureService.getAllProcedureRefs();
+                if (procedures.isEmpty()) {
+                    showEmpty("No procedures found");
+                }
+                for (ProcedureRef procedure : procedures) {
+                    System.out.println("  " + procedure.getId() + " - " + procedure.getName());
+                }
+            } catch (DatabaseException e) {
+                showError("Database error: " + e.getMessage());
+            }
+        }
+    }
 }
@@ -2,12 +2,14 @@ package main.cli;
 
 import java.time.LocalDate;
 import java.util.List;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 import main.exception.EntityNotFoundException;
 import main.exception.ValidationException;
 import main.model.Patient;
+import main.model.PatientSummary;
+import main.service.AppContext;
 import main.service.PatientService;
-import main.util.Database;
 
 /**
  * CLI handler for Patient entity management.
@@ -21,13 +23,13 @@ public class PatientsCLI extends CLI {
     private final PatientService patientService;
 
     /**
-     * Constructs a new PatientsCLI with the specified database connection.
+     * Constructs a new PatientsCLI using the services of an application context.
      *
-     * @param db the database connection to use
+     * @param context the context providing the patient service
      */
-    public PatientsCLI(Database db) {
+    public PatientsCLI(AppContext context) {
         super();
-        this.patientService = new PatientService(db);
+        this.patientService = context.getPatientService();
     }
 
     /**
@@ -157,10 +159,10 @@ public class PatientsCLI extends CLI {
 
         try {
             System.out.println();
-            List<Patient> patients = patientService.getAllPatients();
+            List<PatientSummary> patients = patientService.getAllPatientSummaries();
             if (!patients.isEmpty()) {
                 int count = 1;
-                for (Patient p : patients) {
+                for (PatientSummary p : patients) {
                     System.out.println("Patient " + count + ":");
                     System.out.println("MRN: " + p.getMrn());
                     System.out.println("Name: " + p.getFname() + " " + p.getLname() + "\n");
@@ -276,6 +278,8 @@ public class PatientsCLI extends CLI {
             showError(e.getMessage());
         } catch (EntityNotFoundException e) {
             showNotFound("Patient", mrn);
+        } catch (ConflictException e) {
+            showError(e.getMessage());
         } catch (DatabaseException e) {
             showError("Database error: " + e.getMessage());
         }
@@ -1,12 +1,13 @@
 package main.cli;
 
 import java.util.List;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 import main.exception.EntityNotFoundException;
 import main.exception.ValidationException;
 import main.model.Procedure;
+import main.service.AppContext;
 import main.service.ProcedureService;
-import main.util.Database;
 
 /**
  * CLI handler for Procedure entity management.
@@ -20,13 +21,13 @@ public class ProceduresCLI extends CLI {
     private final ProcedureService procedureService;
 
     /**
-     * Constructs a new ProceduresCLI with the specified database connection.
+     * Constructs a new ProceduresCLI using the services of an application context.
      *
-     * @param db the database connection to use
+     * @param context the context providing the procedure service
      */
-    public ProceduresCLI(Database db) {
+    public ProceduresCLI(AppContext context) {
         super();
-        this.procedureService = new ProcedureService(db);
+        this.procedureService = context.getProcedureService();
     }
 
     /**
@@ -237,6 +238,8 @@ public class ProceduresCLI extends CLI {
             showError(e.getMessage());
         } catch (EntityNotFoundException e) {
             showNotFound("Procedure", id);
+        } catch (ConflictException e) {
+            showError(e.getMessage());
         } catch (DatabaseException e) {
             showError("Database error: " + e.getMessage());
         }
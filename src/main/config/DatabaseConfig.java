@@ -1,5 +1,12 @@
 package main.config;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import main.util.QueryClass;
+
 /**
  * Configuration class for database connection settings.
  * <p>
@@ -13,6 +20,21 @@ package main.config;
  *   <li>{@code EMR_DB_URL} - The JDBC connection URL</li>
  *   <li>{@code EMR_DB_USER} - The database username</li>
  *   <li>{@code EMR_DB_PASSWORD} - The database password</li>
+ *   <li>{@code EMR_STORAGE_BACKEND} - The storage backend to use ({@code mysql}, {@code memory} or {@code file})</li>
+ *   <li>{@code EMR_DATA_DIR} - The data directory of the {@code file} backend</li>
+ *   <li>{@code EMR_WAL_DURABILITY} - When the {@code file} backend syncs its log ({@code sync} or {@code async})</li>
+ *   <li>{@code EMR_BLOOM_FILTERS} - Whether the {@code mysql} backend uses key filters for duplicate checks before creates</li>
+ *   <li>{@code EMR_DB_POOL_SIZE} - The maximum number of open database connections</li>
+ *   <li>{@code EMR_QUERY_TIMEOUT_POINT_READ}, {@code EMR_QUERY_TIMEOUT_SCAN},
+ *       {@code EMR_QUERY_TIMEOUT_WRITE}, {@code EMR_QUERY_TIMEOUT_REPORT} -
+ *       Query timeouts in seconds per {@link QueryClass}</li>
+ *   <li>{@code EMR_DB_CONNECT_TIMEOUT_MS} - The timeout for opening a connection</li>
+ *   <li>{@code EMR_DB_SOCKET_TIMEOUT_MS} - The timeout for any single network read</li>
+ *   <li>{@code EMR_LAZY_CONNECT} - Whether the first connection is opened in the background instead of at start-up</li>
+ *   <li>{@code EMR_DB_REPLICA_URLS} - Comma-separated JDBC URLs of read replicas</li>
+ *   <li>{@code EMR_DB_MAX_REPLICA_LAG_SECONDS} - The largest replication lag at which a replica serves reads</li>
+ *   <li>{@code EMR_SHARD_URLS} - Comma-separated JDBC URLs of the shards of the {@code sharded} backend</li>
+ *   <li>{@code EMR_SHARD_VIRTUAL_NODES} - The number of points per shard on the hash ring</li>
  * </ul>
  *
  * <p><strong>Security Note:</strong> For production environments, always use
@@ -32,6 +54,54 @@ public class DatabaseConfig {
     /** Default password for local development (empty for security). */
     private static final String DEFAULT_PASSWORD = "";
 
+    /** Default storage backend. */
+    private static final String DEFAULT_STORAGE_BACKEND = "mysql";
+
+    /** Default data directory for the embedded file backend. */
+    private static final String DEFAULT_DATA_DIR = "data";
+
+    /** Default write-ahead log durability for the embedded file backend. */
+    private static final String DEFAULT_WAL_DURABILITY = "sync";
+
+    /** Key filters for duplicate checks are enabled by default. */
+    private static final String DEFAULT_BLOOM_FILTERS = "true";
+
+    /** Default maximum number of open database connections. */
+    private static final int DEFAULT_POOL_SIZE = 8;
+
+    /** Default timeout for opening a database connection. */
+    private static final int DEFAULT_CONNECT_TIMEOUT_MS = 10_000;
+
+    /**
+     * Default timeout for a single network read. It is longer than every
+     * query timeout, so that it only fires when the server stops answering.
+     */
+    private static final int DEFAULT_SOCKET_TIMEOUT_MS = 300_000;
+
+    /** The first connection is opened at start-up by default. */
+    private static final String DEFAULT_LAZY_CONNECT = "false";
+
+    /** Default largest replication lag at which a replica serves reads. */
+    private static final int DEFAULT_MAX_REPLICA_LAG_SECONDS = 5;
+
+    /** Default number of points per shard on the hash ring. */
+    private static final int DEFAULT_SHARD_VIRTUAL_NODES = 128;
+
+    /** Default number of change events delivered per batch. */
+    private static final int DEFAULT_EVENT_BATCH_SIZE = 100;
+
+    /** Default audit log destination. */
+    private static final String DEFAULT_AUDIT = "none";
+
+    /** Default directory of the audit log segments. */
+    private static final String DEFAULT_AUDIT_DIR = "audit";
+
+    /** Default durability of the audit log. */
+    private static final String DEFAULT_AUDIT_DURABILITY = "batch";
+
+    /** Default number of years of patient history kept out of the archive. */
+    private static final int DEFAULT_HISTORY_HOT_YEARS = 2;
+
     /** The JDBC connection URL. */
     private final String url;
 
@@ -41,6 +111,73 @@ public class DatabaseConfig {
     /** The database password. */
     private final String password;
 
+    /** The name of the storage backend. */
+    private final String storageBackend;
+
+    /** The data directory of the embedded file backend. */
+    private final String dataDir;
+
+    /** The write-ahead log durability mode of the embedded file backend. */
+    private final String walDurability;
+
+    /** Whether the MySQL backend uses key filters for duplicate checks. */
+    private final boolean bloomFilters;
+
+    /** The maximum number of open database connections. */
+    private final int poolSize;
+
+    /** The query timeout in seconds of each query class. */
+    private final Map<QueryClass, Integer> queryTimeouts =
+        new EnumMap<>(QueryClass.class);
+
+    /** The timeout for opening a connection, in milliseconds. */
+    private final int connectTimeoutMs;
+
+    /** The timeout for a single network read, in milliseconds. */
+    private final int socketTimeoutMs;
+
+    /** Whether the first connection is opened in the background. */
+    private final boolean lazyConnect;
+
+    /** The JDBC URLs of the read replicas. */
+    private final List<String> replicaUrls;
+
+    /** The largest replication lag at which a replica serves reads. */
+    private final int maxReplicaLagSeconds;
+
+    /** The JDBC URLs of the shards of the sharded backend. */
+    private final List<String> shardUrls;
+
+    /** The number of points per shard on the hash ring. */
+    private final int shardVirtualNodes;
+
+    /** The directory of the off-heap patient snapshot, empty if disabled. */
+    private final String patientSnapshotDir;
+
+    /** Whether writes record change events in the outbox. */
+    private final boolean changeEvents;
+
+    /** The file the change event relay appends to, empty if none. */
+    private final String eventLog;
+
+    /** The host:port the change event relay sends to, empty if none. */
+    private final String eventSocket;
+
+    /** The maximum number of change events delivered per batch. */
+    private final int eventBatchSize;
+
+    /** Where audit records are written: none, file or table. */
+    private final String audit;
+
+    /** The directory of the audit log segments. */
+    private final String auditDir;
+
+    /** The durability of the audit log: sync, batch or async. */
+    private final String auditDurability;
+
+    /** The number of recent years of patient history that are not archived. */
+    private final int historyHotYears;
+
     /**
      * Constructs a new DatabaseConfig using environment variables.
      * <p>
@@ -49,6 +186,28 @@ public class DatabaseConfig {
      *   <li>{@code EMR_DB_URL} - defaults to {@code jdbc:mysql://localhost:3306/emr_db}</li>
      *   <li>{@code EMR_DB_USER} - defaults to {@code root}</li>
      *   <li>{@code EMR_DB_PASSWORD} - defaults to empty string</li>
+     *   <li>{@code EMR_STORAGE_BACKEND} - defaults to {@code mysql}</li>
+     *   <li>{@code EMR_DATA_DIR} - defaults to {@code data}</li>
+     *   <li>{@code EMR_WAL_DURABILITY} - defaults to {@code sync}</li>
+     *   <li>{@code EMR_BLOOM_FILTERS} - defaults to {@code true}</li>
+     *   <li>{@code EMR_DB_POOL_SIZE} - defaults to {@code 8}</li>
+     *   <li>{@code EMR_QUERY_TIMEOUT_*} - default to the values in {@link QueryClass}</li>
+     *   <li>{@code EMR_DB_CONNECT_TIMEOUT_MS} - defaults to {@code 10000}</li>
+     *   <li>{@code EMR_DB_SOCKET_TIMEOUT_MS} - defaults to {@code 300000}</li>
+     *   <li>{@code EMR_LAZY_CONNECT} - defaults to {@code false}</li>
+     *   <li>{@code EMR_DB_REPLICA_URLS} - defaults to none</li>
+     *   <li>{@code EMR_DB_MAX_REPLICA_LAG_SECONDS} - defaults to {@code 5}</li>
+     *   <li>{@code EMR_SHARD_URLS} - defaults to none</li>
+     *   <li>{@code EMR_SHARD_VIRTUAL_NODES} - defaults to {@code 128}</li>
+     *   <li>{@code EMR_PATIENT_SNAPSHOT_DIR} - defaults to none (disabled)</li>
+     *   <li>{@code EMR_CHANGE_EVENTS} - defaults to {@code false}</li>
+     *   <li>{@code EMR_EVENT_LOG} - defaults to none</li>
+     *   <li>{@code EMR_EVENT_SOCKET} - defaults to none</li>
+     *   <li>{@code EMR_EVENT_BATCH_SIZE} - defaults to {@code 100}</li>
+     *   <li>{@code EMR_AUDIT} - defaults to {@code none}</li>
+     *   <li>{@code EMR_AUDIT_DIR} - defaults to {@code audit}</li>
+     *   <li>{@code EMR_AUDIT_DURABILITY} - defaults to {@code batch}</li>
+     *   <li>{@code EMR_HISTORY_HOT_YEARS} - defaults to {@code 2}</li>
      * </ul>
      * </p>
      */
@@ -56,6 +215,74 @@ public class DatabaseConfig {
         this.url = getEnvOrDefault("EMR_DB_URL", DEFAULT_URL);
         this.user = getEnvOrDefault("EMR_DB_USER", DEFAULT_USER);
         this.password = getEnvOrDefault("EMR_DB_PASSWORD", DEFAULT_PASSWORD);
+        this.storageBackend = getEnvOrDefault(
+            "EMR_STORAGE_BACKEND",
+            DEFAULT_STORAGE_BACKEND
+        );
+        this.dataDir = getEnvOrDefault("EMR_DATA_DIR", DEFAULT_DATA_DIR);
+        this.walDurability = getEnvOrDefault(
+            "EMR_WAL_DURABILITY",
+            DEFAULT_WAL_DURABILITY
+        );
+        this.bloomFilters = Boolean.parseBoolean(
+            getEnvOrDefault("EMR_BLOOM_FILTERS", DEFAULT_BLOOM_FILTERS)
+        );
+        this.poolSize = getIntEnvOrDefault("EMR_DB_POOL_SIZE", DEFAULT_POOL_SIZE, 1);
+        for (QueryClass queryClass : QueryClass.values()) {
+            queryTimeouts.put(
+                queryClass,
+                getIntEnvOrDefault(
+                    queryClass.getEnvVariable(),
+                    queryClass.getDefaultTimeoutSeconds(),
+                    0
+                )
+            );
+        }
+        this.connectTimeoutMs = getIntEnvOrDefault(
+            "EMR_DB_CONNECT_TIMEOUT_MS",
+            DEFAULT_CONNECT_TIMEOUT_MS,
+            0
+        );
+        this.socketTimeoutMs = getIntEnvOrDefault(
+            "EMR_DB_SOCKET_TIMEOUT_MS",
+            DEFAULT_SOCKET_TIMEOUT_MS,
+            0
+        );
+        this.lazyConnect = Boolean.parseBoolean(
+            getEnvOrDefault("EMR_LAZY_CONNECT", DEFAULT_LAZY_CONNECT)
+        );
+        this.replicaUrls = parseUrlList(getEnvOrDefault("EMR_DB_REPLICA_URLS", ""));
+        this.maxReplicaLagSeconds = getIntEnvOrDefault(
+            "EMR_DB_MAX_REPLICA_LAG_SECONDS",
+            DEFAULT_MAX_REPLICA_LAG_SECONDS,
+            0
+        );
+        this.shardUrls = parseUrlList(getEnvOrDefault("EMR_SHARD_URLS", ""));
+        this.shardVirtualNodes = getIntEnvOrDefault(
+            "EMR_SHARD_VIRTUAL_NODES",
+            DEFAULT_SHARD_VIRTUAL_NODES,
+            1
+        );
+        this.patientSnapshotDir = getEnvOrDefault("EMR_PATIENT_SNAPSHOT_DIR", "");
+        this.changeEvents = Boolean.parseBoolean(getEnvOrDefault("EMR_CHANGE_EVENTS", "false"));
+        this.eventLog = getEnvOrDefault("EMR_EVENT_LOG", "");
+        this.eventSocket = getEnvOrDefault("EMR_EVENT_SOCKET", "");
+        this.eventBatchSize = getIntEnvOrDefault(
+            "EMR_EVENT_BATCH_SIZE",
+            DEFAULT_EVENT_BATCH_SIZE,
+            1
+        );
+        this.audit = getEnvOrDefault("EMR_AUDIT", DEFAULT_AUDIT);
+        this.auditDir = getEnvOrDefault("EMR_AUDIT_DIR", DEFAULT_AUDIT_DIR);
+        this.auditDurability = getEnvOrDefault(
+            "EMR_AUDIT_DURABILITY",
+            DEFAULT_AUDIT_DURABILITY
+        );
+        this.historyHotYears = getIntEnvOrDefault(
+            "EMR_HISTORY_HOT_YEARS",
+            DEFAULT_HISTORY_HOT_YEARS,
+            1
+        );
     }
 
     /**
@@ -70,9 +297,100 @@ public class DatabaseConfig {
      * @param password the database password
      */
     public DatabaseConfig(String url, String user, String password) {
+        this(url, user, password, DEFAULT_STORAGE_BACKEND);
+    }
+
+    /**
+     * Constructs a new DatabaseConfig with explicit connection parameters
+     * and storage backend.
+     *
+     * @param url            the JDBC connection URL
+     * @param user           the database username
+     * @param password       the database password
+     * @param storageBackend the name of the storage backend to use
+     */
+    public DatabaseConfig(
+        String url,
+        String user,
+        String password,
+        String storageBackend
+    ) {
         this.url = url;
         this.user = user;
         this.password = password;
+        this.storageBackend = storageBackend;
+        this.dataDir = DEFAULT_DATA_DIR;
+        this.walDurability = DEFAULT_WAL_DURABILITY;
+        this.bloomFilters = Boolean.parseBoolean(DEFAULT_BLOOM_FILTERS);
+        this.poolSize = DEFAULT_POOL_SIZE;
+        for (QueryClass queryClass : QueryClass.values()) {
+            queryTimeouts.put(queryClass, queryClass.getDefaultTimeoutSeconds());
+        }
+        this.connectTimeoutMs = DEFAULT_CONNECT_TIMEOUT_MS;
+        this.socketTimeoutMs = DEFAULT_SOCKET_TIMEOUT_MS;
+        this.lazyConnect = Boolean.parseBoolean(DEFAULT_LAZY_CONNECT);
+        this.replicaUrls = Collections.emptyList();
+        this.maxReplicaLagSeconds = DEFAULT_MAX_REPLICA_LAG_SECONDS;
+        this.shardUrls = Collections.emptyList();
+        this.shardVirtualNodes = DEFAULT_SHARD_VIRTUAL_NODES;
+        this.patientSnapshotDir = "";
+        this.changeEvents = false;
+        this.eventLog = "";
+        this.eventSocket = "";
+        this.eventBatchSize = DEFAULT_EVENT_BATCH_SIZE;
+        this.audit = DEFAULT_AUDIT;
+        this.auditDir = DEFAULT_AUDIT_DIR;
+        this.auditDurability = DEFAULT_AUDIT_DURABILITY;
+        this.historyHotYears = DEFAULT_HISTORY_HOT_YEARS;
+    }
+
+    /**
+     * Constructs a copy of a configuration for another database server.
+     * <p>
+     * Replicas belong to a particular primary, so the copy has none.
+     * </p>
+     *
+     * @param base the configuration to copy
+     * @param url  the JDBC connection URL of the copy
+     */
+    private DatabaseConfig(DatabaseConfig base, String url) {
+        this.url = url;
+        this.user = base.user;
+        this.password = base.password;
+        this.storageBackend = base.storageBackend;
+        this.dataDir = base.dataDir;
+        this.walDurability = base.walDurability;
+        this.bloomFilters = base.bloomFilters;
+        this.poolSize = base.poolSize;
+        this.queryTimeouts.putAll(base.queryTimeouts);
+        this.connectTimeoutMs = base.connectTimeoutMs;
+        this.socketTimeoutMs = base.socketTimeoutMs;
+        this.lazyConnect = base.lazyConnect;
+        this.replicaUrls = Collections.emptyList();
+        this.maxReplicaLagSeconds = base.maxReplicaLagSeconds;
+        this.shardUrls = base.shardUrls;
+        this.shardVirtualNodes = base.shardVirtualNodes;
+        this.patientSnapshotDir = base.patientSnapshotDir;
+        this.changeEvents = base.changeEvents;
+        this.eventLog = base.eventLog;
+        this.eventSocket = base.eventSocket;
+        this.eventBatchSize = base.eventBatchSize;
+        this.audit = base.audit;
+        this.auditDir = base.auditDir;
+        this.auditDurability = base.auditDurability;
+        this.historyHotYears = base.historyHotYears;
+    }
+
+    /**
+     * Creates a copy of this configuration that connects to another
+     * database server with the same credentials and settings, such as one
+     * shard of the {@code sharded} backend.
+     *
+     * @param url the JDBC connection URL of the other server
+     * @return the configuration for that server, without replicas
+     */
+    public DatabaseConfig forUrl(String url) {
+        return new DatabaseConfig(this, url);
     }
 
     /**
@@ -87,6 +405,50 @@ public class DatabaseConfig {
         return value != null ? value : defaultValue;
     }
 
+    /**
+     * Gets an integer environment variable or returns a default if it is
+     * not set, not an integer or below the minimum.
+     *
+     * @param key          the environment variable name
+     * @param defaultValue the default value
+     * @param minValue     the smallest accepted value
+     * @return the environment variable value or the default value
+     */
+    private int getIntEnvOrDefault(String key, int defaultValue, int minValue) {
+        String value = System.getenv(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= minValue) {
+                return parsed;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through to the warning below
+        }
+        System.out.println(
+            "[WARN] Ignoring invalid " + key + " '" + value + "', using " + defaultValue
+        );
+        return defaultValue;
+    }
+
+    /**
+     * Splits a comma-separated list of URLs, ignoring blank entries.
+     *
+     * @param value the comma-separated list
+     * @return the URLs in order
+     */
+    private static List<String> parseUrlList(String value) {
+        List<String> urls = new ArrayList<>();
+        for (String url : value.split(",")) {
+            if (!url.isBlank()) {
+                urls.add(url.trim());
+            }
+        }
+        return Collections.unmodifiableList(urls);
+    }
+
     /**
      * Gets the JDBC connection URL.
      *
@@ -114,6 +476,263 @@ public class DatabaseConfig {
         return password;
     }
 
+    /**
+     * Gets the name of the storage backend.
+     *
+     * @return the storage backend name
+     * @see main.dao.StorageBackends
+     */
+    public String getStorageBackend() {
+        return storageBackend;
+    }
+
+    /**
+     * Gets the data directory of the embedded file backend.
+     *
+     * @return the data directory path
+     */
+    public String getDataDir() {
+        return dataDir;
+    }
+
+    /**
+     * Gets the write-ahead log durability mode of the embedded file backend.
+     * <p>
+     * {@code sync} makes every write durable on disk before it returns,
+     * batching concurrent writers into one flush (group commit).
+     * {@code async} flushes in the background; writes survive a crash of the
+     * application but the last few milliseconds can be lost on power failure.
+     * </p>
+     *
+     * @return the durability mode name
+     */
+    public String getWalDurability() {
+        return walDurability;
+    }
+
+    /**
+     * Checks whether the MySQL backend keeps Bloom filters over the primary
+     * keys, so that the duplicate check before a create skips the database
+     * for new keys.
+     * <p>
+     * The filters only see rows inserted by this process after start-up.
+     * A row inserted by another application is then rejected by the primary
+     * key instead of the duplicate check; every other existence check
+     * queries the database.
+     * </p>
+     *
+     * @return true if key filters are enabled
+     */
+    public boolean isBloomFiltersEnabled() {
+        return bloomFilters;
+    }
+
+    /**
+     * Gets the maximum number of open database connections.
+     * <p>
+     * Each thread that accesses the database uses its own connection, so
+     * this also bounds the number of concurrent database operations.
+     * </p>
+     *
+     * @return the connection pool size
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Gets the query timeout of an operation class.
+     *
+     * @param queryClass the operation class
+     * @return the timeout in seconds, or 0 for no limit
+     */
+    public int getQueryTimeoutSeconds(QueryClass queryClass) {
+        return queryTimeouts.get(queryClass);
+    }
+
+    /**
+     * Gets the timeout for opening a database connection.
+     *
+     * @return the timeout in milliseconds, or 0 for no limit
+     */
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    /**
+     * Gets the timeout for a single network read from the database.
+     * <p>
+     * This catches a server or network that stops responding altogether,
+     * which a query timeout cannot, since cancelling a query needs an
+     * answer from the server.
+     * </p>
+     *
+     * @return the timeout in milliseconds, or 0 for no limit
+     */
+    public int getSocketTimeoutMs() {
+        return socketTimeoutMs;
+    }
+
+    /**
+     * Checks whether the MySQL backend defers its first connection.
+     * <p>
+     * When enabled, the backend starts without connecting and the
+     * application opens the first connection and loads the key filters on
+     * a background thread while the menu is shown. A wrong URL or
+     * credentials are then reported by the first operation rather than at
+     * start-up.
+     * </p>
+     *
+     * @return true if the first connection is opened in the background
+     * @see main.dao.StorageBackend#warmUp()
+     */
+    public boolean isLazyConnect() {
+        return lazyConnect;
+    }
+
+    /**
+     * Gets the JDBC URLs of the read replicas of the primary database.
+     * <p>
+     * Replicas are accessed with the same user and password as the
+     * primary. Without replicas, all statements run on the primary.
+     * </p>
+     *
+     * @return the replica URLs, empty if none are configured
+     */
+    public List<String> getReplicaUrls() {
+        return replicaUrls;
+    }
+
+    /**
+     * Gets the largest replication lag at which a replica still serves
+     * reads. Reads go to the primary while every replica lags further.
+     *
+     * @return the lag tolerance in seconds
+     */
+    public int getMaxReplicaLagSeconds() {
+        return maxReplicaLagSeconds;
+    }
+
+    /**
+     * Gets the JDBC URLs of the shards of the {@code sharded} backend.
+     * <p>
+     * Patients are placed on the shards by consistent hashing of their
+     * MRN, with each shard identified by its position in this list. New
+     * shards must therefore be appended at the end; reordering or removing
+     * entries moves most patients, which then need a rebalance.
+     * </p>
+     *
+     * @return the shard URLs, empty if none are configured
+     * @see main.dao.shard.ShardedStorageBackend
+     */
+    public List<String> getShardUrls() {
+        return shardUrls;
+    }
+
+    /**
+     * Gets the number of points each shard has on the consistent hash ring.
+     * More points spread patients more evenly at a small cost in memory.
+     *
+     * @return the number of virtual nodes per shard
+     */
+    public int getShardVirtualNodes() {
+        return shardVirtualNodes;
+    }
+
+    /**
+     * Gets the directory of the off-heap patient snapshot, which serves
+     * single-patient lookups from memory-mapped files.
+     *
+     * @return the snapshot directory, empty if the snapshot is disabled
+     * @see main.cache.PatientSnapshotStore
+     */
+    public String getPatientSnapshotDir() {
+        return patientSnapshotDir;
+    }
+
+    /**
+     * Checks whether the services record a change event in the outbox for
+     * every successful write. The MySQL backend then needs the
+     * {@code outbox} table.
+     *
+     * @return true if change events are enabled
+     * @see main.event.OutboxRelay
+     */
+    public boolean isChangeEventsEnabled() {
+        return changeEvents;
+    }
+
+    /**
+     * Gets the file the change event relay appends events to as JSON lines.
+     *
+     * @return the file path, empty if events are not written to a file
+     */
+    public String getEventLog() {
+        return eventLog;
+    }
+
+    /**
+     * Gets the local socket address the change event relay sends events
+     * to as JSON lines.
+     *
+     * @return the address as {@code host:port}, empty if none
+     */
+    public String getEventSocket() {
+        return eventSocket;
+    }
+
+    /**
+     * Gets the maximum number of change events the relay delivers at once.
+     *
+     * @return the batch size
+     */
+    public int getEventBatchSize() {
+        return eventBatchSize;
+    }
+
+    /**
+     * Gets where audit records of patient data access are written:
+     * {@code none}, {@code file} (segment files in {@link #getAuditDir()})
+     * or {@code table} (the {@code audit_log} table).
+     *
+     * @return the audit destination
+     * @see main.audit.AuditLog
+     */
+    public String getAudit() {
+        return audit;
+    }
+
+    /**
+     * Gets the directory the audit log segments are written to.
+     *
+     * @return the audit directory
+     */
+    public String getAuditDir() {
+        return auditDir;
+    }
+
+    /**
+     * Gets when audit records are made durable: {@code sync},
+     * {@code batch} or {@code async}.
+     *
+     * @return the audit durability
+     */
+    public String getAuditDurability() {
+        return auditDurability;
+    }
+
+    /**
+     * Gets the number of recent years, including the current one, whose
+     * patient history stays in the main table when older years are
+     * archived.
+     *
+     * @return the number of years
+     * @see main.dao.mysql.HistoryArchiver
+     */
+    public int getHistoryHotYears() {
+        return historyHotYears;
+    }
+
     /**
      * Returns a string representation of this configuration.
      * <p>
@@ -133,6 +752,11 @@ public class DatabaseConfig {
             user +
             '\'' +
             ", password='****'" +
+            ", storageBackend='" +
+            storageBackend +
+            '\'' +
+            ", replicas=" +
+            replicaUrls.size() +
             '}'
         );
     }
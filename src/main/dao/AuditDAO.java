@@ -0,0 +1,24 @@
+package main.dao;
+
+import java.util.List;
+import main.audit.AuditRecord;
+import main.exception.DatabaseException;
+
+/**
+ * Data Access Object contract for the audit log table.
+ * <p>
+ * The audit log is append-only; records are never updated or deleted by
+ * the application.
+ * </p>
+ *
+ * @see StorageBackend#audit()
+ */
+public interface AuditDAO {
+    /**
+     * Appends a batch of audit records and commits them.
+     *
+     * @param records the records to store
+     * @throws DatabaseException if a database access error occurs
+     */
+    void appendAll(List<AuditRecord> records) throws DatabaseException;
+}
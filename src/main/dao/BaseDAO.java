@@ -1,6 +1,10 @@
 package main.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 
 /**
@@ -41,15 +45,83 @@ public interface BaseDAO<T, ID> {
      */
     List<T> readAll() throws DatabaseException;
 
+    /**
+     * Passes every entity to an action without collecting them in a list.
+     * <p>
+     * Use this to scan very large tables. The default implementation
+     * iterates over {@link #readAll()}; backends that can stream rows
+     * override it. If a backend retries the scan after a lost connection,
+     * the action sees the rows delivered before the failure again, so it
+     * should be idempotent per ID.
+     * </p>
+     *
+     * @param action the action to apply to each entity
+     * @throws DatabaseException if a database error occurs
+     */
+    default void streamAll(Consumer<? super T> action) throws DatabaseException {
+        for (T entity : readAll()) {
+            action.accept(entity);
+        }
+    }
+
     /**
      * Updates an existing entity in the database.
+     * <p>
+     * A {@link main.model.Versioned} entity is only written if the stored
+     * row still has the entity's version. The version of the row is then
+     * incremented and set on the entity.
+     * </p>
      *
      * @param entity the entity with updated values
      * @return true if the entity was updated successfully, false otherwise
+     * @throws ConflictException if the stored row has another version
      * @throws DatabaseException if a database error occurs
      */
     boolean update(T entity) throws DatabaseException;
 
+    /**
+     * Creates an entity, or replaces the stored entity with the same ID.
+     * <p>
+     * Unlike {@link #update}, an upsert does not check the row version,
+     * so the stored values always end up as those of the entity. A new
+     * row is stored with the entity's version, as by {@link #create}; a
+     * replaced row gets the next version of the stored row, so that
+     * anyone still holding the old values gets a conflict when they update
+     * it. The entity's own version is not changed; read the entity again
+     * before updating it. Upserting the same entity twice leaves the same
+     * values stored.
+     * </p>
+     *
+     * @param entity the entity to create or replace
+     * @return true if the entity was created, false if it replaced a stored one
+     * @throws DatabaseException if a database error occurs
+     */
+    boolean upsert(T entity) throws DatabaseException;
+
+    /**
+     * Creates or replaces several entities, as by {@link #upsert}.
+     * <p>
+     * The default implementation upserts the entities one at a time;
+     * backends that can write many rows at once override it. The entities
+     * are not written atomically: if one of them fails, entities before it
+     * may stay written. Run the call in a
+     * {@link StorageBackend#inTransaction transaction} to write all or none.
+     * </p>
+     *
+     * @param entities the entities to create or replace
+     * @return the number of entities that were created
+     * @throws DatabaseException if a database error occurs
+     */
+    default int upsertAll(Collection<? extends T> entities) throws DatabaseException {
+        int created = 0;
+        for (T entity : entities) {
+            if (upsert(entity)) {
+                created++;
+            }
+        }
+        return created;
+    }
+
     /**
      * Deletes an entity from the database by its ID.
      *
@@ -59,6 +131,30 @@ public interface BaseDAO<T, ID> {
      */
     boolean delete(ID id) throws DatabaseException;
 
+    /**
+     * Deletes several entities by their IDs, as by {@link #delete}.
+     * <p>
+     * The default implementation deletes the entities one at a time;
+     * backends that can delete many rows at once override it. IDs that do
+     * not exist are skipped, and each delete cascades as {@link #delete}
+     * does. As with {@link #upsertAll}, the deletes are not atomic unless
+     * the call runs in a {@link StorageBackend#inTransaction transaction}.
+     * </p>
+     *
+     * @param ids the IDs of the entities to delete
+     * @return the number of entities that were deleted
+     * @throws DatabaseException if a database error occurs
+     */
+    default int deleteAll(Collection<? extends ID> ids) throws DatabaseException {
+        int deleted = 0;
+        for (ID id : ids) {
+            if (delete(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
     /**
      * Checks if an entity with the given ID exists in the database.
      *
@@ -67,4 +163,44 @@ public interface BaseDAO<T, ID> {
      * @throws DatabaseException if a database error occurs
      */
     boolean exists(ID id) throws DatabaseException;
+
+    /**
+     * Checks if an entity with the given ID exists, before creating one
+     * with that ID.
+     * <p>
+     * Unlike {@link #exists}, the answer may come from a cache of the keys
+     * the backend has seen, so an entity created by another process can be
+     * reported absent. Use it only where the create that follows is
+     * rejected by the primary key in that case. The default implementation
+     * calls {@link #exists}.
+     * </p>
+     *
+     * @param id the ID to check
+     * @return true if an entity with the given ID exists, false otherwise
+     * @throws DatabaseException if a database error occurs
+     */
+    default boolean existsBeforeCreate(ID id) throws DatabaseException {
+        return exists(id);
+    }
+
+    /**
+     * Keeps the IDs of the entities that exist, as by {@link #exists}.
+     * <p>
+     * The default implementation checks the IDs one at a time; backends
+     * that can look up many keys at once override it.
+     * </p>
+     *
+     * @param ids the IDs to check
+     * @return the IDs of the existing entities, in the order given
+     * @throws DatabaseException if a database error occurs
+     */
+    default List<ID> readExistingIds(Collection<? extends ID> ids) throws DatabaseException {
+        List<ID> found = new ArrayList<>();
+        for (ID id : ids) {
+            if (exists(id)) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
 }
@@ -0,0 +1,60 @@
+package main.dao;
+
+import java.util.List;
+import main.event.ChangeEvent;
+import main.exception.DatabaseException;
+
+/**
+ * Data Access Object contract for the change event outbox.
+ * <p>
+ * The services append an event in the same transaction as each write, so
+ * an event is stored exactly when its change is committed. The
+ * {@link main.event.OutboxRelay} reads the oldest events, delivers them
+ * and then deletes them.
+ * </p>
+ *
+ * @see StorageBackend#outbox()
+ */
+public interface OutboxDAO {
+    /**
+     * Appends an event; the outbox assigns its sequence number.
+     *
+     * @param event the event to store
+     * @throws DatabaseException if a database access error occurs
+     */
+    void append(ChangeEvent event) throws DatabaseException;
+
+    /**
+     * Appends several events, in order.
+     * <p>
+     * The default implementation appends them one at a time; backends
+     * that can store several events per statement override it.
+     * </p>
+     *
+     * @param events the events to store
+     * @throws DatabaseException if a database access error occurs
+     */
+    default void appendAll(List<ChangeEvent> events) throws DatabaseException {
+        for (ChangeEvent event : events) {
+            append(event);
+        }
+    }
+
+    /**
+     * Reads the oldest stored events.
+     *
+     * @param limit the maximum number of events to read
+     * @return the events in sequence order, empty if there are none
+     * @throws DatabaseException if a database access error occurs
+     */
+    List<ChangeEvent> readOldest(int limit) throws DatabaseException;
+
+    /**
+     * Deletes delivered events.
+     *
+     * @param events the events to delete, as returned by {@link #readOldest(int)}
+     * @return the number of events deleted
+     * @throws DatabaseException if a database access error occurs
+     */
+    int delete(List<ChangeEvent> events) throws DatabaseException;
+}
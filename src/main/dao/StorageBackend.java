@@ -0,0 +1,207 @@
+package main.dao;
+
+import java.util.Collections;
+import java.util.List;
+import main.exception.DatabaseException;
+
+/**
+ * A storage engine that provides the DAOs for all EMR entities.
+ * <p>
+ * Each backend owns its underlying resources (a JDBC connection, in-memory
+ * tables, ...) and hands out DAOs that share them, so every DAO returned by
+ * the same backend sees the same data. All backends implement the same
+ * semantics: duplicate keys are rejected, foreign keys are checked on
+ * create and update, and deletes cascade the way the MySQL schema does.
+ * </p>
+ *
+ * <p>Backends are created through {@link StorageBackends}, which selects
+ * the implementation named in the configuration.</p>
+ *
+ * @see StorageBackends
+ */
+public interface StorageBackend extends AutoCloseable {
+    /**
+     * Work run as one transaction by {@link #inTransaction(Transaction)}.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    interface Transaction<T> {
+        /**
+         * Runs the DAO operations of the transaction.
+         *
+         * @return the result
+         * @throws DatabaseException if an operation fails
+         */
+        T run() throws DatabaseException;
+    }
+
+    /**
+     * Gets the name this backend is registered under.
+     *
+     * @return the backend name (e.g. {@code mysql})
+     */
+    String getName();
+
+    /**
+     * Gets the DAO for patients.
+     *
+     * @return the patient DAO
+     */
+    PatientDAO patients();
+
+    /**
+     * Gets the DAO for doctors.
+     *
+     * @return the doctor DAO
+     */
+    DoctorDAO doctors();
+
+    /**
+     * Gets the DAO for procedures.
+     *
+     * @return the procedure DAO
+     */
+    ProcedureDAO procedures();
+
+    /**
+     * Gets the DAO for patient history records.
+     *
+     * @return the patient history DAO
+     */
+    PatientHistoryDAO patientHistory();
+
+    /**
+     * Gets the change event outbox, if change events are enabled.
+     * <p>
+     * The default implementation returns null, meaning that the backend
+     * does not record change events.
+     * </p>
+     *
+     * @return the outbox DAO, or null if change events are disabled
+     * @see main.config.DatabaseConfig#isChangeEventsEnabled()
+     */
+    default OutboxDAO outbox() {
+        return null;
+    }
+
+    /**
+     * Gets the outboxes that the stored change events are delivered from.
+     * <p>
+     * A backend that spreads its data over several databases may keep an
+     * outbox in each, and {@link #outbox()} then routes every event to one
+     * of them. The events of one outbox are delivered in its sequence
+     * order. The default implementation returns {@link #outbox()}.
+     * </p>
+     *
+     * @return the outboxes, empty if change events are disabled
+     */
+    default List<OutboxDAO> outboxes() {
+        OutboxDAO outbox = outbox();
+        return outbox == null ? Collections.emptyList() : Collections.singletonList(outbox);
+    }
+
+    /**
+     * Gets the DAO of the audit log table, if the backend has one.
+     * <p>
+     * The default implementation returns null, meaning that audit records
+     * can only be written to files.
+     * </p>
+     *
+     * @return the audit DAO, or null if the backend has no audit table
+     * @see main.audit.TableAuditSink
+     */
+    default AuditDAO audit() {
+        return null;
+    }
+
+    /**
+     * Runs DAO operations of the calling thread as one transaction, so that
+     * either all of their changes are committed or none.
+     * <p>
+     * The default implementation just runs the work, which suits backends
+     * whose single operations cannot fail halfway.
+     * </p>
+     *
+     * @param <T>  the type of the result
+     * @param work the operations to run
+     * @return the result of the work
+     * @throws DatabaseException if the work fails or cannot be committed
+     */
+    default <T> T inTransaction(Transaction<T> work) throws DatabaseException {
+        return work.run();
+    }
+
+    /**
+     * Gets the number of threads that can usefully run operations on this
+     * backend at the same time.
+     * <p>
+     * Callers that run DAO operations on a thread pool, such as
+     * {@link main.service.AsyncServices}, size the pool to this value.
+     * </p>
+     *
+     * @return the maximum useful number of concurrent threads
+     */
+    default int getParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Does the expensive preparation of a backend that was opened without
+     * it, such as opening the first connection, so that the first
+     * operation does not wait for it.
+     * <p>
+     * The application calls this on a background thread while the menu is
+     * shown, followed by {@link #releaseThreadResources()}. Failures are not
+     * reported here; the first operation that needs the backend reports
+     * them instead. Operations may run while the backend warms up. The
+     * default implementation does nothing.
+     * </p>
+     */
+    default void warmUp() {}
+
+    /**
+     * Releases the resources this backend holds for the calling thread,
+     * such as a connection leased to it.
+     * <p>
+     * Worker threads call this before they terminate. The default
+     * implementation does nothing.
+     * </p>
+     */
+    default void releaseThreadResources() {}
+
+    /**
+     * Aborts the operation currently running on the given thread, if the
+     * backend supports it.
+     * <p>
+     * The aborted operation fails with a
+     * {@link main.exception.DatabaseException}. The default implementation
+     * does nothing, which suits backends whose operations never block.
+     * </p>
+     *
+     * @param thread the thread running the operation
+     * @return true if an operation was aborted
+     */
+    default boolean cancelOperation(Thread thread) {
+        return false;
+    }
+
+    /**
+     * Aborts the operations currently running on all threads.
+     *
+     * @return the number of operations aborted
+     * @see #cancelOperation(Thread)
+     */
+    default int cancelRunningOperations() {
+        return 0;
+    }
+
+    /**
+     * Releases all resources held by this backend.
+     * <p>
+     * It is safe to call this method more than once.
+     * </p>
+     */
+    @Override
+    void close();
+}
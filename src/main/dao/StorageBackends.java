@@ -0,0 +1,100 @@
+package main.dao;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import main.config.DatabaseConfig;
+import main.dao.file.FileStorageBackend;
+import main.dao.memory.InMemoryStorageBackend;
+import main.dao.mysql.MySqlStorageBackend;
+import main.dao.shard.ShardedStorageBackend;
+
+/**
+ * Registry of the available {@link StorageBackend} implementations.
+ * <p>
+ * Backends are registered under a name and created from a
+ * {@link DatabaseConfig}. The built-in backends are:
+ * </p>
+ * <ul>
+ *   <li>{@code mysql} - the JDBC backend for a MySQL server (default)</li>
+ *   <li>{@code memory} - a non-persistent in-memory engine</li>
+ *   <li>{@code file} - an embedded engine persisting to a local data directory</li>
+ *   <li>{@code sharded} - patients spread over several MySQL servers by MRN</li>
+ * </ul>
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * StorageBackend storage = StorageBackends.open(new DatabaseConfig());
+ * PatientDAO patients = storage.patients();
+ * // Use the DAOs
+ * storage.close();
+ * }</pre>
+ *
+ * @see StorageBackend
+ */
+public final class StorageBackends {
+
+    private static final Map<String, Function<DatabaseConfig, StorageBackend>> FACTORIES =
+        new ConcurrentHashMap<>();
+
+    static {
+        register(MySqlStorageBackend.NAME, MySqlStorageBackend::new);
+        register(InMemoryStorageBackend.NAME, config -> new InMemoryStorageBackend(config.isChangeEventsEnabled()));
+        register(FileStorageBackend.NAME, FileStorageBackend::new);
+        register(ShardedStorageBackend.NAME, ShardedStorageBackend::new);
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private StorageBackends() {}
+
+    /**
+     * Registers a backend factory under the given name.
+     * <p>
+     * Registering a name that is already taken replaces the previous factory.
+     * </p>
+     *
+     * @param name    the backend name, matched case-insensitively
+     * @param factory the function that creates the backend from a configuration
+     */
+    public static void register(
+        String name,
+        Function<DatabaseConfig, StorageBackend> factory
+    ) {
+        FACTORIES.put(name.toLowerCase(), factory);
+    }
+
+    /**
+     * Gets the names of all registered backends.
+     *
+     * @return the registered backend names, sorted
+     */
+    public static Set<String> names() {
+        return new TreeSet<>(FACTORIES.keySet());
+    }
+
+    /**
+     * Opens the backend selected by the given configuration.
+     *
+     * @param config the configuration naming the backend to use
+     * @return the opened backend
+     * @throws IllegalArgumentException if no backend is registered under the configured name
+     * @throws RuntimeException         if the backend cannot be opened
+     */
+    public static StorageBackend open(DatabaseConfig config) {
+        String name = config.getStorageBackend().toLowerCase();
+        Function<DatabaseConfig, StorageBackend> factory = FACTORIES.get(name);
+        if (factory == null) {
+            throw new IllegalArgumentException(
+                "Unknown storage backend '" +
+                    config.getStorageBackend() +
+                    "'. Available backends: " +
+                    names()
+            );
+        }
+        return factory.apply(config);
+    }
+}
@@ -0,0 +1,539 @@
+package main.dao.file;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import main.config.DatabaseConfig;
+import main.dao.DoctorDAO;
+import main.dao.OutboxDAO;
+import main.dao.PatientDAO;
+import main.dao.PatientHistoryDAO;
+import main.dao.ProcedureDAO;
+import main.dao.StorageBackend;
+import main.dao.memory.InMemoryStorageBackend;
+import main.dao.memory.MemoryStore;
+import main.dao.memory.MemoryStore.Table;
+import main.exception.DatabaseException;
+
+/**
+ * Embedded storage backend that persists entities in a local data directory.
+ * <p>
+ * This backend needs no database server. All rows are served from a
+ * {@link MemoryStore}, so reads and constraint checks run at in-memory speed
+ * with the same semantics as the MySQL backend. Durability comes from two
+ * kinds of files in the data directory:
+ * </p>
+ * <ul>
+ *   <li>{@code wal-<generation>.log} - a memory-mapped {@link WriteAheadLog}
+ *       receiving every row change before it is applied</li>
+ *   <li>{@code snapshot.dat} - a compacted {@link SnapshotFile} of all rows</li>
+ * </ul>
+ *
+ * <p>The backend holds an exclusive lock on {@code emr.lock} in the data
+ * directory while it is open, so a second process cannot open the same
+ * directory and overwrite the first one's changes with its own
+ * snapshot.</p>
+ *
+ * <p>When the active log grows past {@link #SNAPSHOT_THRESHOLD_BYTES} a new
+ * snapshot is written in the background and a new log generation started;
+ * a snapshot is also written on a clean shutdown, so that the next start-up
+ * only has to load the snapshot. After a crash the store is rebuilt by
+ * loading the latest snapshot and replaying the newer logs.</p>
+ *
+ * @see WriteAheadLog
+ * @see SnapshotFile
+ */
+public class FileStorageBackend implements StorageBackend {
+
+    /** The name this backend is registered under. */
+    public static final String NAME = "file";
+
+    /** Size of the active log that triggers a background snapshot. */
+    static final long SNAPSHOT_THRESHOLD_BYTES = 256L * 1024 * 1024;
+
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+    private static final String LOCK_FILE = "emr.lock";
+    private static final String LOG_PREFIX = "wal-";
+    private static final String LOG_SUFFIX = ".log";
+
+    private final Path dataDir;
+    private final FileLock dirLock;
+    private final WriteAheadLog.Durability durability;
+    private final MemoryStore store;
+    private final InMemoryStorageBackend tables;
+    private final ExecutorService snapshotter;
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    private final ThreadLocal<PendingCommit> pending =
+        ThreadLocal.withInitial(PendingCommit::new);
+    private volatile WriteAheadLog log;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * The last record appended by a thread that has not been committed yet.
+     */
+    private static final class PendingCommit {
+        private WriteAheadLog log;
+        private long lsn;
+    }
+
+    /**
+     * Constructs a new FileStorageBackend using the data directory and log
+     * durability from the configuration, recovering any existing data.
+     *
+     * @param config the configuration to use
+     * @throws RuntimeException if the data directory cannot be opened or recovered
+     */
+    public FileStorageBackend(DatabaseConfig config) {
+        this(
+            Paths.get(config.getDataDir()),
+            parseDurability(config.getWalDurability()),
+            config.isChangeEventsEnabled()
+        );
+    }
+
+    /**
+     * Constructs a new FileStorageBackend over the given data directory,
+     * recovering any existing data.
+     *
+     * @param dataDir      the data directory, created if missing
+     * @param durability   when log records are made durable
+     * @param changeEvents true to record change events in an in-memory outbox
+     * @throws RuntimeException if the data directory cannot be opened or
+     *                          recovered, or is in use by another process
+     */
+    FileStorageBackend(
+        Path dataDir,
+        WriteAheadLog.Durability durability,
+        boolean changeEvents
+    ) {
+        this.dataDir = dataDir;
+        this.durability = durability;
+        this.store = new MemoryStore();
+        long started = System.nanoTime();
+        long replayed;
+        try {
+            Files.createDirectories(dataDir);
+            this.dirLock = lockDirectory(dataDir);
+        } catch (IOException e) {
+            System.out.println(
+                "[ERROR] Failed to open data directory '" + dataDir + "': " +
+                    e.getMessage() + "\n"
+            );
+            throw new RuntimeException("Failed to open data directory", e);
+        } catch (DatabaseException e) {
+            System.out.println("[ERROR] " + e.getMessage() + "\n");
+            throw new RuntimeException(e.getMessage(), e);
+        }
+        try {
+            replayed = recover();
+        } catch (IOException e) {
+            System.out.println(
+                "[ERROR] Failed to open data directory '" + dataDir + "': " +
+                    e.getMessage() + "\n"
+            );
+            unlockDirectory();
+            throw new RuntimeException("Failed to open data directory", e);
+        }
+        store.setJournal(new LogJournal());
+        this.tables = new InMemoryStorageBackend(store, changeEvents);
+        this.snapshotter = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "emr-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        System.out.println(
+            "[INFO] Opened data directory '" + dataDir + "' (" +
+                store.rowCount() + " rows, " + replayed +
+                " log records replayed in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) +
+                " ms)\n"
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientDAO patients() {
+        return tables.patients();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DoctorDAO doctors() {
+        return tables.doctors();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProcedureDAO procedures() {
+        return tables.procedures();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientHistoryDAO patientHistory() {
+        return tables.patientHistory();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The outbox is kept in memory only, so events that were not delivered
+     * before the backend closed are lost.
+     * </p>
+     */
+    @Override
+    public OutboxDAO outbox() {
+        return tables.outbox();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The work runs as a {@linkplain MemoryStore#inTransaction store
+     * transaction}: a write and the append of its change event are atomic,
+     * changes undone after a failure are logged as well, and the log is
+     * flushed once when the transaction ends.
+     * </p>
+     */
+    @Override
+    public <T> T inTransaction(Transaction<T> work) throws DatabaseException {
+        return store.inTransaction(work);
+    }
+
+    /**
+     * Writes a compacted snapshot and starts a new log generation.
+     * <p>
+     * Writes are blocked while the rows are exported; reads continue.
+     * </p>
+     *
+     * @throws DatabaseException if the snapshot cannot be written
+     */
+    public synchronized void snapshot() throws DatabaseException {
+        WriteAheadLog previous = log;
+        long nextGeneration = previous.getGeneration() + 1;
+        try {
+            SnapshotFile.write(
+                dataDir.resolve(SNAPSHOT_FILE),
+                store,
+                nextGeneration,
+                () -> log = openLog(nextGeneration, null)
+            );
+        } catch (IOException e) {
+            throw new DatabaseException(
+                "Failed to write snapshot: " + e.getMessage(),
+                e
+            );
+        }
+        try {
+            previous.delete();
+        } catch (IOException e) {
+            System.out.println(
+                "[WARN] Error closing old log: " + e.getMessage()
+            );
+        }
+    }
+
+    /**
+     * Flushes the log, writes a final snapshot if the log holds any records,
+     * and releases all files, including the data directory lock.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        // Let a running background snapshot finish first
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (log.getRecordCount() > 0) {
+                snapshot();
+            }
+        } catch (DatabaseException e) {
+            System.out.println("[WARN] " + e.getMessage());
+        }
+        try {
+            log.close();
+            System.out.println("[INFO] Data directory closed");
+        } catch (IOException e) {
+            System.out.println(
+                "\n[WARN] Error closing data directory: " + e.getMessage()
+            );
+        }
+        unlockDirectory();
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Takes the exclusive lock on the lock file of a data directory.
+     *
+     * @param dataDir the data directory
+     * @return the held lock
+     * @throws IOException       if the lock file cannot be opened
+     * @throws DatabaseException if another process holds the lock
+     */
+    private static FileLock lockDirectory(Path dataDir) throws IOException, DatabaseException {
+        FileChannel channel = FileChannel.open(
+            dataDir.resolve(LOCK_FILE),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE
+        );
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another backend of this process
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new DatabaseException(
+                "Data directory '" + dataDir + "' is in use by another process"
+            );
+        }
+        return lock;
+    }
+
+    /**
+     * Releases the data directory lock.
+     */
+    private void unlockDirectory() {
+        try {
+            // Closing the channel releases the lock
+            dirLock.channel().close();
+        } catch (IOException e) {
+            System.out.println("[WARN] Error releasing data directory lock: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the latest snapshot, replays all newer logs and opens the last
+     * one for appending.
+     *
+     * @return the number of log records replayed
+     * @throws IOException if the files cannot be read
+     */
+    private long recover() throws IOException {
+        Path snapshot = dataDir.resolve(SNAPSHOT_FILE);
+        long generation = Files.exists(snapshot)
+            ? SnapshotFile.load(snapshot, store)
+            : 0;
+
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dataDir, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long fileGeneration = Long.parseLong(
+                    name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())
+                );
+                if (fileGeneration < generation) {
+                    // Already contained in the snapshot
+                    Files.deleteIfExists(file);
+                } else {
+                    generations.add(fileGeneration);
+                }
+            }
+        }
+        Collections.sort(generations);
+        if (generations.isEmpty()) {
+            generations.add(generation);
+        }
+
+        long replayed = 0;
+        for (int i = 0; i < generations.size(); i++) {
+            WriteAheadLog opened = openLog(generations.get(i), this::apply);
+            replayed += opened.getRecordCount();
+            if (i < generations.size() - 1) {
+                opened.close();
+            } else {
+                log = opened;
+            }
+        }
+        return replayed;
+    }
+
+    /**
+     * Applies one replayed log record to the store.
+     *
+     * @param type    the record type
+     * @param payload the record payload
+     * @throws IOException if the payload cannot be decoded
+     */
+    private void apply(byte type, java.io.DataInput payload) throws IOException {
+        if (type == WriteAheadLog.TYPE_PUT) {
+            store.restorePut(RowCodec.readRow(payload));
+        } else if (type == WriteAheadLog.TYPE_DELETE) {
+            Table table = RowCodec.readKeyTable(payload);
+            store.restoreDelete(table, RowCodec.readKey(payload, table));
+        } else {
+            throw new IOException("Unknown log record type: " + type);
+        }
+    }
+
+    /**
+     * Opens the log file of the given generation.
+     *
+     * @param generation the log generation
+     * @param handler    the handler receiving existing records, or null for a new log
+     * @return the opened log
+     * @throws IOException if the log cannot be opened
+     */
+    private WriteAheadLog openLog(
+        long generation,
+        WriteAheadLog.RecordHandler handler
+    ) throws IOException {
+        Path file = dataDir.resolve(
+            String.format("%s%010d%s", LOG_PREFIX, generation, LOG_SUFFIX)
+        );
+        return new WriteAheadLog(
+            file,
+            generation,
+            durability,
+            handler != null ? handler : (type, payload) -> {
+                throw new IOException("New log " + file + " is not empty");
+            }
+        );
+    }
+
+    /**
+     * Schedules a background snapshot once the active log is large enough.
+     */
+    private void maybeScheduleSnapshot() {
+        if (
+            log.size() >= SNAPSHOT_THRESHOLD_BYTES &&
+            snapshotPending.compareAndSet(false, true)
+        ) {
+            try {
+                snapshotter.execute(() -> {
+                    try {
+                        snapshot();
+                    } catch (DatabaseException e) {
+                        System.out.println("[WARN] " + e.getMessage());
+                    } finally {
+                        snapshotPending.set(false);
+                    }
+                });
+            } catch (RuntimeException e) {
+                // Shutting down; the final snapshot is written by close()
+                snapshotPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Parses a durability mode name.
+     *
+     * @param name the mode name ({@code sync} or {@code async})
+     * @return the durability mode
+     * @throws IllegalArgumentException if the name is not a known mode
+     */
+    private static WriteAheadLog.Durability parseDurability(String name) {
+        try {
+            return WriteAheadLog.Durability.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                "Unknown log durability '" + name + "'. Use 'sync' or 'async'"
+            );
+        }
+    }
+
+    /**
+     * Journal that appends every row change to the active log.
+     */
+    private final class LogJournal implements MemoryStore.Journal {
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void put(Object row) throws DatabaseException {
+            append(WriteAheadLog.TYPE_PUT, out -> RowCodec.writeRow(out, row));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void delete(Table table, Object key) throws DatabaseException {
+            append(
+                WriteAheadLog.TYPE_DELETE,
+                out -> RowCodec.writeKey(out, table, key)
+            );
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void commit() throws DatabaseException {
+            PendingCommit commit = pending.get();
+            WriteAheadLog target = commit.log;
+            if (target == null) {
+                return;
+            }
+            commit.log = null;
+            target.awaitDurable(commit.lsn);
+            maybeScheduleSnapshot();
+        }
+
+        /**
+         * Appends a record and remembers it for the calling thread's commit.
+         *
+         * @param type    the record type
+         * @param payload the record payload
+         * @throws DatabaseException if the record cannot be written
+         */
+        private void append(byte type, WriteAheadLog.PayloadWriter payload)
+            throws DatabaseException {
+            WriteAheadLog target = log;
+            try {
+                long lsn = target.append(type, payload);
+                PendingCommit commit = pending.get();
+                commit.log = target;
+                commit.lsn = lsn;
+            } catch (IOException e) {
+                throw new DatabaseException(
+                    "Failed to write to the transaction log: " + e.getMessage(),
+                    e
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package main.dao.file;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import main.dao.memory.MemoryStore.Table;
+import main.model.Doctor;
+import main.model.Patient;
+import main.model.PatientHistory;
+import main.model.Procedure;
+import main.model.Versioned;
+import main.util.Interners;
+
+/**
+ * Binary encoding of rows and row keys for the log and snapshot files.
+ * <p>
+ * Every encoded row or key starts with a one-byte table tag. Strings are
+ * written as a length-prefixed UTF-8 byte sequence (length {@code -1} for
+ * null) and dates as their epoch day, so that decoding never has to parse
+ * text.
+ * </p>
+ *
+ * <p>Rows are written with the {@link #VERSIONED} bit set in their tag and
+ * the row version right after it. Rows in files written before versions
+ * existed have the bit clear and are read with version 0.</p>
+ */
+final class RowCodec {
+
+    private static final byte TAG_PATIENT = 1;
+    private static final byte TAG_DOCTOR = 2;
+    private static final byte TAG_PROCEDURE = 3;
+    private static final byte TAG_PATIENT_HISTORY = 4;
+
+    /** Tag bit of a row followed by its version. */
+    private static final byte VERSIONED = 0x10;
+
+    /** Epoch day written for a null date. */
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private RowCodec() {}
+
+    /**
+     * Writes a row.
+     *
+     * @param out the output to write to
+     * @param row the row to write
+     * @throws IOException if the output fails
+     */
+    static void writeRow(DataOutput out, Object row) throws IOException {
+        if (row instanceof Patient) {
+            Patient p = (Patient) row;
+            out.writeByte(TAG_PATIENT | VERSIONED);
+            out.writeLong(p.getVersion());
+            out.writeInt(p.getMrn());
+            writeString(out, p.getFname());
+            writeString(out, p.getLname());
+            writeDate(out, p.getDob());
+            writeString(out, p.getAddress());
+            writeString(out, p.getState());
+            writeString(out, p.getCity());
+            out.writeInt(p.getZip());
+            writeString(out, p.getInsurance());
+            writeString(out, p.getEmail());
+        } else if (row instanceof Doctor) {
+            Doctor d = (Doctor) row;
+            out.writeByte(TAG_DOCTOR | VERSIONED);
+            out.writeLong(d.getVersion());
+            writeString(out, d.getId());
+            writeString(out, d.getName());
+        } else if (row instanceof Procedure) {
+            Procedure p = (Procedure) row;
+            out.writeByte(TAG_PROCEDURE | VERSIONED);
+            out.writeLong(p.getVersion());
+            writeString(out, p.getId());
+            writeString(out, p.getName());
+            writeString(out, p.getDescription());
+            out.writeInt(p.getDuration());
+            writeString(out, p.getDoctorId());
+        } else if (row instanceof PatientHistory) {
+            PatientHistory h = (PatientHistory) row;
+            out.writeByte(TAG_PATIENT_HISTORY | VERSIONED);
+            out.writeLong(h.getVersion());
+            writeString(out, h.getId());
+            out.writeInt(h.getPatientId());
+            writeString(out, h.getProcedureId());
+            writeDate(out, h.getDate());
+            out.writeDouble(h.getBilling());
+            writeString(out, h.getDoctorId());
+        } else {
+            throw new IllegalArgumentException("Unknown row type: " + row);
+        }
+    }
+
+    /**
+     * Reads a row written by {@link #writeRow(DataOutput, Object)}.
+     *
+     * @param in the input to read from
+     * @return the decoded row
+     * @throws IOException if the input fails or holds an unknown tag
+     */
+    static Object readRow(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        long version = (tag & VERSIONED) != 0 ? in.readLong() : 0;
+        Versioned row;
+        switch (tag & ~VERSIONED) {
+            case TAG_PATIENT:
+                row = new Patient(
+                    in.readInt(),
+                    readString(in),
+                    readString(in),
+                    readDate(in),
+                    readString(in),
+                    Interners.STATES.intern(readString(in)),
+                    Interners.CITIES.intern(readString(in)),
+                    in.readInt(),
+                    Interners.INSURERS.intern(readString(in)),
+                    readString(in)
+                );
+                break;
+            case TAG_DOCTOR:
+                row = new Doctor(readString(in), readString(in));
+                break;
+            case TAG_PROCEDURE:
+                row = new Procedure(
+                    readString(in),
+                    readString(in),
+                    readString(in),
+                    in.readInt(),
+                    readString(in)
+                );
+                break;
+            case TAG_PATIENT_HISTORY:
+                row = new PatientHistory(
+                    readString(in),
+                    in.readInt(),
+                    readString(in),
+                    readDate(in),
+                    in.readDouble(),
+                    readString(in)
+                );
+                break;
+            default:
+                throw new IOException("Unknown row tag: " + tag);
+        }
+        row.setVersion(version);
+        return row;
+    }
+
+    /**
+     * Writes the primary key of a row.
+     *
+     * @param out   the output to write to
+     * @param table the table of the row
+     * @param key   the primary key ({@code Integer} for patients, {@code String} otherwise)
+     * @throws IOException if the output fails
+     */
+    static void writeKey(DataOutput out, Table table, Object key)
+        throws IOException {
+        switch (table) {
+            case PATIENTS:
+                out.writeByte(TAG_PATIENT);
+                out.writeInt((Integer) key);
+                break;
+            case DOCTORS:
+                out.writeByte(TAG_DOCTOR);
+                writeString(out, (String) key);
+                break;
+            case PROCEDURES:
+                out.writeByte(TAG_PROCEDURE);
+                writeString(out, (String) key);
+                break;
+            case PATIENT_HISTORY:
+                out.writeByte(TAG_PATIENT_HISTORY);
+                writeString(out, (String) key);
+                break;
+        }
+    }
+
+    /**
+     * Reads the table of a key written by {@link #writeKey(DataOutput, Table, Object)}.
+     *
+     * @param in the input to read from
+     * @return the table
+     * @throws IOException if the input fails or holds an unknown tag
+     */
+    static Table readKeyTable(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_PATIENT:
+                return Table.PATIENTS;
+            case TAG_DOCTOR:
+                return Table.DOCTORS;
+            case TAG_PROCEDURE:
+                return Table.PROCEDURES;
+            case TAG_PATIENT_HISTORY:
+                return Table.PATIENT_HISTORY;
+            default:
+                throw new IOException("Unknown key tag: " + tag);
+        }
+    }
+
+    /**
+     * Reads the key value that follows the table tag.
+     *
+     * @param in    the input to read from
+     * @param table the table returned by {@link #readKeyTable(DataInput)}
+     * @return the primary key
+     * @throws IOException if the input fails
+     */
+    static Object readKey(DataInput in, Table table) throws IOException {
+        return table == Table.PATIENTS ? (Object) in.readInt() : readString(in);
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Writes a nullable string as length-prefixed UTF-8.
+     *
+     * @param out   the output to write to
+     * @param value the string, may be null
+     * @throws IOException if the output fails
+     */
+    private static void writeString(DataOutput out, String value)
+        throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutput, String)}.
+     *
+     * @param in the input to read from
+     * @return the string, or null
+     * @throws IOException if the input fails
+     */
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a nullable date as its epoch day.
+     *
+     * @param out  the output to write to
+     * @param date the date, may be null
+     * @throws IOException if the output fails
+     */
+    private static void writeDate(DataOutput out, LocalDate date)
+        throws IOException {
+        out.writeLong(date == null ? NULL_DATE : date.toEpochDay());
+    }
+
+    /**
+     * Reads a date written by {@link #writeDate(DataOutput, LocalDate)}.
+     *
+     * @param in the input to read from
+     * @return the date, or null
+     * @throws IOException if the input fails
+     */
+    private static LocalDate readDate(DataInput in) throws IOException {
+        long epochDay = in.readLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
@@ -0,0 +1,145 @@
+package main.dao.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import main.dao.memory.MemoryStore;
+
+/**
+ * Compacted snapshot of a {@link MemoryStore}.
+ * <p>
+ * A snapshot holds every live row once, together with the generation of
+ * the first log that is <em>not</em> included in it. It is written to a
+ * temporary file, synced and then atomically renamed over the previous
+ * snapshot, so a crash during a snapshot always leaves the previous one
+ * intact.
+ * </p>
+ *
+ * <p>File layout:</p>
+ * <pre>
+ * int magic | int version | long generation | (byte 1, row)* | byte 0 | long rowCount
+ * </pre>
+ */
+final class SnapshotFile {
+
+    private static final int MAGIC = 0x454D5253;
+    private static final int FORMAT_VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SnapshotFile() {}
+
+    /**
+     * Loads a snapshot into an empty store.
+     *
+     * @param path  the snapshot file
+     * @param store the store receiving the rows
+     * @return the generation of the first log not included in the snapshot
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    static long load(Path path, MemoryStore store) throws IOException {
+        try (
+            InputStream file = Files.newInputStream(path);
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(file, BUFFER_SIZE)
+            )
+        ) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not a snapshot file: " + path);
+            }
+            long generation = in.readLong();
+            long rows = 0;
+            while (in.readByte() == 1) {
+                store.restorePut(RowCodec.readRow(in));
+                rows++;
+            }
+            if (in.readLong() != rows) {
+                throw new IOException("Snapshot " + path + " is incomplete");
+            }
+            return generation;
+        }
+    }
+
+    /**
+     * Action run while writes to the store are blocked.
+     */
+    interface BlockedAction {
+        /**
+         * Runs the action.
+         *
+         * @throws IOException if the action fails
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * Writes a snapshot of the store.
+     * <p>
+     * The rows are exported with writes blocked; the given action runs at
+     * the end of the export, before writes resume, so that the caller can
+     * switch to a new log exactly at the snapshot point. The snapshot is
+     * published only after it has been synced to disk.
+     * </p>
+     *
+     * @param path         the snapshot file to replace
+     * @param store        the store to export
+     * @param generation   the generation of the first log not included in the snapshot
+     * @param whileBlocked the action to run after the last row, before writes resume
+     * @throws IOException if the snapshot cannot be written
+     */
+    static void write(
+        Path path,
+        MemoryStore store,
+        long generation,
+        BlockedAction whileBlocked
+    ) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (
+                FileOutputStream file = new FileOutputStream(temp.toFile());
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(file, BUFFER_SIZE)
+                )
+            ) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(generation);
+                long[] rows = new long[1];
+                store.export(new MemoryStore.RowVisitor() {
+                    @Override
+                    public void visit(Object row) throws IOException {
+                        out.writeByte(1);
+                        RowCodec.writeRow(out, row);
+                        rows[0]++;
+                    }
+
+                    @Override
+                    public void end() throws IOException {
+                        out.writeByte(0);
+                        out.writeLong(rows[0]);
+                        whileBlocked.run();
+                    }
+                });
+                out.flush();
+                file.getFD().sync();
+            }
+            Files.move(
+                temp,
+                path,
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE
+            );
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
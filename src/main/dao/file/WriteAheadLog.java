@@ -0,0 +1,497 @@
+package main.dao.file;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+import main.exception.DatabaseException;
+
+/**
+ * Append-only, memory-mapped redo log of one generation.
+ * <p>
+ * The log file starts with a 16-byte header (magic, format version and
+ * generation) followed by records of the form:
+ * </p>
+ * <pre>
+ * int length | int crc32c | byte type | byte[length] payload
+ * </pre>
+ *
+ * <p>The file is mapped in fixed-size regions and records never span a
+ * region boundary; a length of {@code -1} means "continue at the next
+ * region", and a length of {@code 0} marks the end of the log. Records are
+ * written straight into the mapping, so an application crash never loses an
+ * appended record; only {@link #awaitDurable(long)} guarantees that it also
+ * survives an operating system crash or power failure.</p>
+ *
+ * <p>Durability uses group commit: a single background thread forces the
+ * mapping to disk, and every writer waiting at that moment is released by
+ * the same flush. In {@link Durability#ASYNC} mode writers do not wait and
+ * the thread flushes periodically instead.</p>
+ */
+final class WriteAheadLog implements AutoCloseable {
+
+    /** Record type of an inserted or replaced row. */
+    static final byte TYPE_PUT = 1;
+
+    /** Record type of a deleted row. */
+    static final byte TYPE_DELETE = 2;
+
+    private static final int MAGIC = 0x454D5257;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final int SKIP_TO_NEXT_REGION = -1;
+    private static final int REGION_SIZE = 64 * 1024 * 1024;
+    private static final long ASYNC_FLUSH_INTERVAL_MS = 50;
+
+    /**
+     * When appended records are made durable.
+     */
+    enum Durability {
+        /** Writers wait until their records are on disk. */
+        SYNC,
+        /** Records are flushed to disk in the background. */
+        ASYNC
+    }
+
+    /**
+     * Callback receiving the records of a log during replay.
+     */
+    interface RecordHandler {
+        /**
+         * Handles one record.
+         *
+         * @param type    the record type
+         * @param payload the record payload
+         * @throws IOException if the payload cannot be decoded
+         */
+        void record(byte type, DataInput payload) throws IOException;
+    }
+
+    /**
+     * Writes the payload of a record.
+     */
+    interface PayloadWriter {
+        /**
+         * Writes the payload.
+         *
+         * @param out the output to write to
+         * @throws IOException if the output fails
+         */
+        void write(DataOutput out) throws IOException;
+    }
+
+    private final Path path;
+    private final long generation;
+    private final Durability durability;
+    private final FileChannel channel;
+
+    private final Object appendLock = new Object();
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream(256);
+    private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+    private final CRC32C crc = new CRC32C();
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long position;
+    private long recordCount;
+
+    private final Object flushLock = new Object();
+    private volatile long writtenLsn;
+    private long requestedLsn;
+    private long durableLsn;
+    private IOException failure;
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    /**
+     * Opens a log file, replaying its existing records, or creates it.
+     *
+     * @param path       the log file
+     * @param generation the generation the file must belong to
+     * @param durability when appended records are made durable
+     * @param handler    the handler receiving existing records, in order
+     * @throws IOException if the file cannot be read, written or belongs to another generation
+     */
+    WriteAheadLog(
+        Path path,
+        long generation,
+        Durability durability,
+        RecordHandler handler
+    ) throws IOException {
+        this.path = path;
+        this.generation = generation;
+        this.durability = durability;
+        this.channel = FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE
+        );
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                writeHeader();
+                position = HEADER_SIZE;
+            } else {
+                position = replay(handler);
+                // Discard a torn tail so that stale bytes are never replayed later
+                channel.truncate(position);
+            }
+            regionStart = (position / REGION_SIZE) * REGION_SIZE;
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+            region.position((int) (position - regionStart));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        writtenLsn = position;
+        durableLsn = position;
+        requestedLsn = position;
+        flusher = new Thread(this::flushLoop, "emr-wal-flusher-" + generation);
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Gets the generation of this log.
+     *
+     * @return the generation
+     */
+    long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Gets the number of records in this log, including replayed ones.
+     *
+     * @return the record count
+     */
+    long getRecordCount() {
+        synchronized (appendLock) {
+            return recordCount;
+        }
+    }
+
+    /**
+     * Gets the number of bytes used by this log.
+     *
+     * @return the log size in bytes
+     */
+    long size() {
+        return writtenLsn;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param type    the record type
+     * @param payload the writer producing the record payload
+     * @return the log sequence number to pass to {@link #awaitDurable(long)}
+     * @throws IOException if the record cannot be written
+     */
+    long append(byte type, PayloadWriter payload) throws IOException {
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IOException("Log " + path + " is closed");
+            }
+            scratch.reset();
+            payload.write(scratchOut);
+            int length = scratch.size();
+            if (RECORD_HEADER_SIZE + length + Integer.BYTES > REGION_SIZE) {
+                throw new IOException("Log record too large: " + length + " bytes");
+            }
+            byte[] bytes = scratch.toByteArray();
+            crc.reset();
+            crc.update(type);
+            crc.update(bytes, 0, length);
+
+            if (region.remaining() < RECORD_HEADER_SIZE + length + Integer.BYTES) {
+                nextRegion();
+            }
+            int start = region.position();
+            region.position(start + Integer.BYTES);
+            region.putInt((int) crc.getValue());
+            region.put(type);
+            region.put(bytes, 0, length);
+            // Publish the length last, so a partially written record reads as the end of the log
+            region.putInt(start, length);
+
+            position = regionStart + region.position();
+            recordCount++;
+            writtenLsn = position;
+            return position;
+        }
+    }
+
+    /**
+     * Waits until every record up to the given sequence number is on disk.
+     * <p>
+     * Returns immediately in {@link Durability#ASYNC} mode.
+     * </p>
+     *
+     * @param lsn the sequence number returned by {@link #append(byte, PayloadWriter)}
+     * @throws DatabaseException if flushing the log failed
+     */
+    void awaitDurable(long lsn) throws DatabaseException {
+        if (durability == Durability.ASYNC) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (lsn > requestedLsn) {
+                requestedLsn = lsn;
+                flushLock.notifyAll();
+            }
+            boolean interrupted = false;
+            while (durableLsn < lsn && failure == null) {
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durableLsn < lsn) {
+                throw new DatabaseException(
+                    "Failed to flush the transaction log: " + failure.getMessage(),
+                    failure
+                );
+            }
+        }
+    }
+
+    /**
+     * Flushes all records, stops the flusher thread and closes the file.
+     * <p>
+     * It is safe to call this method more than once.
+     * </p>
+     *
+     * @throws IOException if the final flush or close fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Closes this log and deletes its file.
+     * <p>
+     * Deletion is best effort: on platforms that refuse to delete a file
+     * that is still mapped, the file is left behind and removed at the next
+     * start-up, since its generation is then older than the snapshot.
+     * </p>
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    void delete() throws IOException {
+        close();
+        region = null;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println(
+                "[WARN] Could not delete old log " + path + ": " + e.getMessage()
+            );
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Writes the file header of a new log.
+     *
+     * @throws IOException if the header cannot be written
+     */
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(generation).flip();
+        channel.truncate(0);
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Reads all valid records, stopping at the end marker or at the first
+     * torn or corrupt record.
+     *
+     * @param handler the handler receiving the records
+     * @return the position just after the last valid record
+     * @throws IOException if the file cannot be read or belongs to another generation
+     */
+    private long replay(RecordHandler handler) throws IOException {
+        channel.position(0);
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(channel), 1 << 16)
+        );
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Not a transaction log: " + path);
+        }
+        long fileGeneration = in.readLong();
+        if (fileGeneration != generation) {
+            throw new IOException(
+                "Log " + path + " has generation " + fileGeneration +
+                    ", expected " + generation
+            );
+        }
+        long fileSize = channel.size();
+        long pos = HEADER_SIZE;
+        CRC32C check = new CRC32C();
+        try {
+            while (pos + RECORD_HEADER_SIZE <= fileSize) {
+                long regionEnd = (pos / REGION_SIZE + 1) * REGION_SIZE;
+                int length = in.readInt();
+                if (length == SKIP_TO_NEXT_REGION) {
+                    in.skipNBytes(regionEnd - pos - Integer.BYTES);
+                    pos = regionEnd;
+                    continue;
+                }
+                if (length <= 0 || pos + RECORD_HEADER_SIZE + length > regionEnd) {
+                    break;
+                }
+                int expectedCrc = in.readInt();
+                byte type = in.readByte();
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                check.reset();
+                check.update(type);
+                check.update(payload, 0, length);
+                if ((int) check.getValue() != expectedCrc) {
+                    break;
+                }
+                handler.record(type, new DataInputStream(new ByteArrayInputStream(payload)));
+                recordCount++;
+                pos += RECORD_HEADER_SIZE + length;
+            }
+        } catch (EOFException e) {
+            // A record cut off by the end of the file is a torn write; stop before it
+        }
+        return pos;
+    }
+
+    /**
+     * Moves appends to the next region, marking the rest of the current one
+     * as skipped. Caller must hold the append lock.
+     *
+     * @throws IOException if the next region cannot be mapped
+     */
+    private void nextRegion() throws IOException {
+        if (region.remaining() >= Integer.BYTES) {
+            region.putInt(region.position(), SKIP_TO_NEXT_REGION);
+        }
+        region.force();
+        regionStart += REGION_SIZE;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+    }
+
+    /**
+     * Body of the flusher thread.
+     * <p>
+     * In {@link Durability#SYNC} mode it flushes as soon as a writer waits
+     * for its records. In {@link Durability#ASYNC} mode it flushes at most
+     * once per interval, and only when records were written since the last
+     * flush; the final flush on {@link #close()} covers the rest.
+     * </p>
+     */
+    private void flushLoop() {
+        long lastFlush = System.nanoTime();
+        while (true) {
+            synchronized (flushLock) {
+                while (!closed) {
+                    long timeout = 0;
+                    if (durability == Durability.ASYNC) {
+                        long elapsed = (System.nanoTime() - lastFlush) / 1_000_000;
+                        if (elapsed >= ASYNC_FLUSH_INTERVAL_MS && writtenLsn > durableLsn) {
+                            break;
+                        }
+                        // Nothing to flush yet: wait for the next interval
+                        timeout = elapsed < ASYNC_FLUSH_INTERVAL_MS
+                            ? ASYNC_FLUSH_INTERVAL_MS - elapsed
+                            : ASYNC_FLUSH_INTERVAL_MS;
+                    } else if (requestedLsn > durableLsn) {
+                        break;
+                    }
+                    try {
+                        flushLock.wait(timeout);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            try {
+                flush();
+            } catch (IOException e) {
+                return;
+            }
+            lastFlush = System.nanoTime();
+        }
+    }
+
+    /**
+     * Forces everything written so far to disk and releases the writers
+     * waiting for it.
+     *
+     * @throws IOException if the flush fails
+     */
+    private void flush() throws IOException {
+        long target;
+        MappedByteBuffer toForce;
+        synchronized (appendLock) {
+            target = position;
+            toForce = region;
+        }
+        try {
+            if (toForce != null) {
+                toForce.force();
+            }
+        } catch (UncheckedIOException e) {
+            synchronized (flushLock) {
+                failure = e.getCause();
+                flushLock.notifyAll();
+            }
+            throw e.getCause();
+        }
+        synchronized (flushLock) {
+            if (target > durableLsn) {
+                durableLsn = target;
+            }
+            flushLock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,715 @@
+package main.dao.memory;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import main.model.PatientHistory;
+import main.util.StringDictionary;
+
+/**
+ * Column store for patient history records.
+ * <p>
+ * Instead of one {@link PatientHistory} object per record, the store keeps
+ * one primitive array per column: patient MRNs and dates (as epoch days) in
+ * {@code int[]}s, billing amounts in a {@code double[]}, and procedure and
+ * doctor IDs as {@code int} codes from a {@link StringDictionary}, so each
+ * ID string is held once however many records refer to it, and row
+ * versions in a {@code long[]}. Apart from the record's own ID, a row
+ * costs 28 bytes of array space, against well over
+ * a hundred for the object layout, and scans over a column read contiguous
+ * memory instead of chasing a pointer per record.
+ * </p>
+ *
+ * <p>Records are located by ID through an open-addressing table of row
+ * numbers. Removing a record moves the last row into its place, so row
+ * numbers are only stable until the next change. Read rows through the
+ * column accessors or a reusable {@link Row} flyweight, and materialize a
+ * {@link PatientHistory} with {@link #toHistory(int)} only when one is
+ * needed.</p>
+ *
+ * <p>This class is not thread-safe; {@link MemoryStore} guards it with its
+ * read/write lock, and only its read methods are public.</p>
+ */
+public final class HistoryColumns {
+
+    /** Epoch day stored for records without a date. */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final StringDictionary procedureCodes = new StringDictionary();
+    private final StringDictionary doctorCodes = new StringDictionary();
+
+    private String[] ids = new String[DEFAULT_CAPACITY];
+    private int[] patientIds = new int[DEFAULT_CAPACITY];
+    private int[] epochDays = new int[DEFAULT_CAPACITY];
+    private double[] billing = new double[DEFAULT_CAPACITY];
+    private int[] procedures = new int[DEFAULT_CAPACITY];
+    private int[] doctors = new int[DEFAULT_CAPACITY];
+    private long[] versions = new long[DEFAULT_CAPACITY];
+    private int size;
+
+    /** Row number plus one by hash slot of the record ID; 0 marks a free slot. */
+    private int[] slots = new int[tableSizeFor((int) (DEFAULT_CAPACITY / LOAD_FACTOR) + 1)];
+
+    /**
+     * Flyweight view of one row.
+     * <p>
+     * A row object holds no data of its own; it reads the columns at its
+     * current position, so a single instance can be moved over any number
+     * of rows without allocating. It is only valid until the store changes.
+     * </p>
+     */
+    public final class Row {
+
+        private int row;
+
+        /**
+         * Constructs a new Row positioned on the first row.
+         */
+        private Row() {}
+
+        /**
+         * Positions this view on a row.
+         *
+         * @param row the row number, from 0 to {@link #size()} - 1
+         * @return this view
+         * @throws IndexOutOfBoundsException if there is no such row
+         */
+        public Row moveTo(int row) {
+            this.row = checkRow(row);
+            return this;
+        }
+
+        /**
+         * Gets the current row number.
+         *
+         * @return the row number
+         */
+        public int getRow() {
+            return row;
+        }
+
+        /**
+         * Gets the record ID.
+         *
+         * @return the ID
+         */
+        public String getId() {
+            return ids[row];
+        }
+
+        /**
+         * Gets the MRN of the patient.
+         *
+         * @return the patient's MRN
+         */
+        public int getPatientId() {
+            return patientIds[row];
+        }
+
+        /**
+         * Gets the procedure ID.
+         *
+         * @return the procedure ID
+         */
+        public String getProcedureId() {
+            return procedureCodes.decode(procedures[row]);
+        }
+
+        /**
+         * Gets the dictionary code of the procedure ID.
+         *
+         * @return the procedure code
+         */
+        public int getProcedureCode() {
+            return procedures[row];
+        }
+
+        /**
+         * Gets the date as a count of days since 1970-01-01.
+         *
+         * @return the epoch day, or {@link #NO_DATE}
+         */
+        public int getEpochDay() {
+            return epochDays[row];
+        }
+
+        /**
+         * Gets the date.
+         *
+         * @return the date, or null if the record has none
+         */
+        public LocalDate getDate() {
+            return toDate(epochDays[row]);
+        }
+
+        /**
+         * Gets the billing amount.
+         *
+         * @return the billing amount
+         */
+        public double getBilling() {
+            return billing[row];
+        }
+
+        /**
+         * Gets the doctor ID.
+         *
+         * @return the doctor ID
+         */
+        public String getDoctorId() {
+            return doctorCodes.decode(doctors[row]);
+        }
+
+        /**
+         * Gets the dictionary code of the doctor ID.
+         *
+         * @return the doctor code
+         */
+        public int getDoctorCode() {
+            return doctors[row];
+        }
+
+        /**
+         * Gets the row version.
+         *
+         * @return the version
+         */
+        public long getVersion() {
+            return versions[row];
+        }
+
+        /**
+         * Creates a {@link PatientHistory} holding the values of this row.
+         *
+         * @return a new, detached record
+         */
+        public PatientHistory toHistory() {
+            return HistoryColumns.this.toHistory(row);
+        }
+    }
+
+    /**
+     * Gets the number of records.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the row of a record.
+     *
+     * @param id the record ID
+     * @return the row number, or -1 if there is no such record
+     */
+    public int indexOf(String id) {
+        int slot = find(id);
+        return slot < 0 ? -1 : slots[slot] - 1;
+    }
+
+    /**
+     * Creates a flyweight view, positioned on the first row.
+     *
+     * @return a new row view
+     */
+    public Row row() {
+        return new Row();
+    }
+
+    /**
+     * Gets the record ID of a row.
+     *
+     * @param row the row number
+     * @return the ID
+     */
+    public String getId(int row) {
+        return ids[checkRow(row)];
+    }
+
+    /**
+     * Gets the patient MRN of a row.
+     *
+     * @param row the row number
+     * @return the patient's MRN
+     */
+    public int getPatientId(int row) {
+        return patientIds[checkRow(row)];
+    }
+
+    /**
+     * Gets the epoch day of a row.
+     *
+     * @param row the row number
+     * @return the epoch day, or {@link #NO_DATE}
+     */
+    public int getEpochDay(int row) {
+        return epochDays[checkRow(row)];
+    }
+
+    /**
+     * Gets the billing amount of a row.
+     *
+     * @param row the row number
+     * @return the billing amount
+     */
+    public double getBilling(int row) {
+        return billing[checkRow(row)];
+    }
+
+    /**
+     * Gets the procedure code of a row.
+     *
+     * @param row the row number
+     * @return the procedure code
+     */
+    public int getProcedureCode(int row) {
+        return procedures[checkRow(row)];
+    }
+
+    /**
+     * Gets the doctor code of a row.
+     *
+     * @param row the row number
+     * @return the doctor code
+     */
+    public int getDoctorCode(int row) {
+        return doctors[checkRow(row)];
+    }
+
+    /**
+     * Gets the version of a row.
+     *
+     * @param row the row number
+     * @return the version
+     */
+    public long getVersion(int row) {
+        return versions[checkRow(row)];
+    }
+
+    /**
+     * Gets the code of a procedure ID.
+     *
+     * @param procedureId the procedure ID
+     * @return the code, or {@link StringDictionary#NO_CODE} if no record has used it
+     */
+    public int procedureCode(String procedureId) {
+        return procedureCodes.code(procedureId);
+    }
+
+    /**
+     * Gets the procedure ID of a code.
+     *
+     * @param code the procedure code
+     * @return the procedure ID
+     */
+    public String procedureId(int code) {
+        return procedureCodes.decode(code);
+    }
+
+    /**
+     * Gets the code of a doctor ID.
+     *
+     * @param doctorId the doctor ID
+     * @return the code, or {@link StringDictionary#NO_CODE} if no record has used it
+     */
+    public int doctorCode(String doctorId) {
+        return doctorCodes.code(doctorId);
+    }
+
+    /**
+     * Gets the doctor ID of a code.
+     *
+     * @param code the doctor code
+     * @return the doctor ID
+     */
+    public String doctorId(int code) {
+        return doctorCodes.decode(code);
+    }
+
+    /**
+     * Creates a {@link PatientHistory} holding the values of a row.
+     *
+     * @param row the row number
+     * @return a new, detached record
+     */
+    public PatientHistory toHistory(int row) {
+        checkRow(row);
+        PatientHistory history = new PatientHistory(
+            ids[row],
+            patientIds[row],
+            procedureCodes.decode(procedures[row]),
+            toDate(epochDays[row]),
+            billing[row],
+            doctorCodes.decode(doctors[row])
+        );
+        history.setVersion(versions[row]);
+        return history;
+    }
+
+    // ========== Analytics ==========
+
+    /**
+     * Sums the billing amounts of all records.
+     *
+     * @return the total billing
+     */
+    public double totalBilling() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += billing[i];
+        }
+        return total;
+    }
+
+    /**
+     * Sums the billing amounts of the records dated within a range.
+     *
+     * @param from the first date, inclusive
+     * @param to   the last date, inclusive
+     * @return the total billing in the range
+     */
+    public double totalBilling(LocalDate from, LocalDate to) {
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            int day = epochDays[i];
+            if (day >= first && day <= last) {
+                total += billing[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Sums the billing amounts per procedure.
+     *
+     * @return the total billing by procedure ID, ordered by ID
+     */
+    public Map<String, Double> billingByProcedure() {
+        double[] totals = new double[procedureCodes.size()];
+        for (int i = 0; i < size; i++) {
+            if (procedures[i] >= 0) {
+                totals[procedures[i]] += billing[i];
+            }
+        }
+        Map<String, Double> result = new TreeMap<>();
+        for (int code = 0; code < totals.length; code++) {
+            if (totals[code] != 0) {
+                result.put(procedureCodes.decode(code), totals[code]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts the records per doctor.
+     *
+     * @return the number of records by doctor ID, ordered by ID
+     */
+    public Map<String, Integer> visitsByDoctor() {
+        int[] counts = new int[doctorCodes.size()];
+        for (int i = 0; i < size; i++) {
+            if (doctors[i] >= 0) {
+                counts[doctors[i]]++;
+            }
+        }
+        Map<String, Integer> result = new TreeMap<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] != 0) {
+                result.put(doctorCodes.decode(code), counts[code]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Estimates the heap used by the columns and the ID table, not counting
+     * the record ID strings, which are shared with callers.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimatedBytes() {
+        // 4-byte references assume compressed oops
+        long perRow = 4L + 4 + 4 + 8 + 4 + 4 + 8;
+        return perRow * ids.length + 4L * slots.length;
+    }
+
+    // ========== Mutation ==========
+
+    /**
+     * Inserts a record, or replaces the record with the same ID.
+     *
+     * @param history the record to store
+     */
+    void put(PatientHistory history) {
+        int slot = find(history.getId());
+        int row;
+        if (slot >= 0) {
+            row = slots[slot] - 1;
+        } else {
+            if (size == ids.length) {
+                grow();
+            }
+            row = size++;
+            insertSlot(history.getId(), row);
+        }
+        LocalDate date = history.getDate();
+        ids[row] = history.getId();
+        patientIds[row] = history.getPatientId();
+        epochDays[row] = date == null ? NO_DATE : (int) date.toEpochDay();
+        billing[row] = history.getBilling();
+        procedures[row] = procedureCodes.encode(history.getProcedureId());
+        doctors[row] = doctorCodes.encode(history.getDoctorId());
+        versions[row] = history.getVersion();
+    }
+
+    /**
+     * Removes a record, moving the last row into its place.
+     *
+     * @param id the record ID
+     * @return true if the record existed
+     */
+    boolean remove(String id) {
+        int slot = find(id);
+        if (slot < 0) {
+            return false;
+        }
+        int row = slots[slot] - 1;
+        shiftBack(slot);
+        int last = --size;
+        if (row != last) {
+            ids[row] = ids[last];
+            patientIds[row] = patientIds[last];
+            epochDays[row] = epochDays[last];
+            billing[row] = billing[last];
+            procedures[row] = procedures[last];
+            doctors[row] = doctors[last];
+            versions[row] = versions[last];
+            slots[find(ids[row])] = row + 1;
+        }
+        ids[last] = null;
+        return true;
+    }
+
+    /**
+     * Collects the IDs of the records referring to a procedure.
+     *
+     * @param procedureId the procedure ID
+     * @return the IDs of the matching records
+     */
+    List<String> idsWithProcedure(String procedureId) {
+        return idsWithCode(procedures, procedureCodes.code(procedureId));
+    }
+
+    /**
+     * Collects the IDs of the records referring to a doctor.
+     *
+     * @param doctorId the doctor ID
+     * @return the IDs of the matching records
+     */
+    List<String> idsWithDoctor(String doctorId) {
+        return idsWithCode(doctors, doctorCodes.code(doctorId));
+    }
+
+    /**
+     * Collects the IDs of the records referring to any of several
+     * procedures or doctors, in one scan of both code columns.
+     *
+     * @param procedureIds the procedure IDs
+     * @param doctorIds    the doctor IDs
+     * @return the IDs of the matching records
+     */
+    List<String> idsReferencing(Collection<String> procedureIds, Collection<String> doctorIds) {
+        BitSet procedureSet = codes(procedureCodes, procedureIds);
+        BitSet doctorSet = codes(doctorCodes, doctorIds);
+        List<String> result = new ArrayList<>();
+        if (procedureSet.isEmpty() && doctorSet.isEmpty()) {
+            return result;
+        }
+        for (int i = 0; i < size; i++) {
+            // NO_CODE, a missing reference, is negative and matches nothing
+            int procedure = procedures[i];
+            int doctor = doctors[i];
+            if (procedure >= 0 && procedureSet.get(procedure)
+                || doctor >= 0 && doctorSet.get(doctor)) {
+                result.add(ids[i]);
+            }
+        }
+        return result;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Collects the IDs of the rows whose code column holds a code.
+     *
+     * @param column the code column to scan
+     * @param code   the code to match
+     * @return the IDs of the matching rows
+     */
+    private List<String> idsWithCode(int[] column, int code) {
+        List<String> result = new ArrayList<>();
+        if (code == StringDictionary.NO_CODE) {
+            return result;
+        }
+        for (int i = 0; i < size; i++) {
+            if (column[i] == code) {
+                result.add(ids[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the codes of several values, skipping those never encoded.
+     *
+     * @param dictionary the dictionary of the column
+     * @param values     the values to look up
+     * @return the set of their codes
+     */
+    private static BitSet codes(StringDictionary dictionary, Collection<String> values) {
+        BitSet result = new BitSet();
+        for (String value : values) {
+            int code = dictionary.code(value);
+            if (code != StringDictionary.NO_CODE) {
+                result.set(code);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Validates a row number.
+     *
+     * @param row the row number
+     * @return the row number
+     * @throws IndexOutOfBoundsException if there is no such row
+     */
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return row;
+    }
+
+    /**
+     * Doubles the capacity of every column and rebuilds the ID table.
+     */
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        patientIds = Arrays.copyOf(patientIds, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        billing = Arrays.copyOf(billing, capacity);
+        procedures = Arrays.copyOf(procedures, capacity);
+        doctors = Arrays.copyOf(doctors, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        slots = new int[tableSizeFor((int) (capacity / LOAD_FACTOR) + 1)];
+        for (int row = 0; row < size; row++) {
+            insertSlot(ids[row], row);
+        }
+    }
+
+    /**
+     * Finds the slot holding the row of a record ID.
+     *
+     * @param id the record ID
+     * @return the slot index, or -1 if the ID is not present
+     */
+    private int find(String id) {
+        int mask = slots.length - 1;
+        int slot = mix(id.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            if (ids[slots[slot] - 1].equals(id)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the row of a new record ID in the first free slot of its
+     * probe chain.
+     *
+     * @param id  the record ID
+     * @param row the row number
+     */
+    private void insertSlot(String id, int row) {
+        int mask = slots.length - 1;
+        int slot = mix(id.hashCode()) & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = row + 1;
+    }
+
+    /**
+     * Closes the gap left by a removed slot by moving later slots of the
+     * same probe chain back into it.
+     *
+     * @param gap the slot being vacated
+     */
+    private void shiftBack(int gap) {
+        int mask = slots.length - 1;
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (slots[slot] == 0) {
+                break;
+            }
+            int home = mix(ids[slots[slot] - 1].hashCode()) & mask;
+            // Move the slot only if its home slot does not lie in (gap, slot]
+            boolean movable = gap <= slot
+                ? home <= gap || home > slot
+                : home <= gap && home > slot;
+            if (movable) {
+                slots[gap] = slots[slot];
+                gap = slot;
+            }
+        }
+        slots[gap] = 0;
+    }
+
+    /**
+     * Converts an epoch day back to a date.
+     *
+     * @param epochDay the epoch day, or {@link #NO_DATE}
+     * @return the date, or null
+     */
+    private static LocalDate toDate(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Spreads the bits of a hash code so that similar IDs do not cluster.
+     *
+     * @param hash the hash code
+     * @return the mixed hash
+     */
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Rounds the given size up to the next power of two.
+     *
+     * @param size the requested size
+     * @return the smallest power of two that is at least {@code size}
+     */
+    private static int tableSizeFor(int size) {
+        int n = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        return Math.max(n, 2);
+    }
+}
@@ -0,0 +1,109 @@
+package main.dao.memory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import main.dao.DoctorDAO;
+import main.exception.DatabaseException;
+import main.model.Doctor;
+
+/**
+ * In-memory Data Access Object for Doctor entities.
+ * <p>
+ * This class delegates to the {@link MemoryStore} shared by all DAOs of an
+ * {@link InMemoryStorageBackend}. Deleting a doctor cascades to the
+ * doctor's procedures and history records, as in the MySQL schema.
+ * </p>
+ */
+public class InMemoryDoctorDAO implements DoctorDAO {
+
+    private final MemoryStore store;
+
+    /**
+     * Constructs a new InMemoryDoctorDAO over the given store.
+     *
+     * @param store the in-memory tables to use
+     */
+    InMemoryDoctorDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(Doctor doctor) throws DatabaseException {
+        store.createDoctor(doctor);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Doctor read(String id) {
+        return store.readDoctor(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Doctor> readAll() {
+        return store.readAllDoctors();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Doctor doctor) throws DatabaseException {
+        return store.updateDoctor(doctor);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(Doctor doctor) throws DatabaseException {
+        return store.upsertDoctors(Collections.singletonList(doctor)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The doctors are written atomically, under one lock and one journal commit.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends Doctor> doctors) throws DatabaseException {
+        return store.upsertDoctors(doctors);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(String id) throws DatabaseException {
+        return store.deleteDoctor(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The doctors are deleted atomically, under one lock and one journal commit.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends String> ids) throws DatabaseException {
+        return store.deleteDoctors(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(String id) {
+        return store.doctorExists(id);
+    }
+}
@@ -0,0 +1,68 @@
+package main.dao.memory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import main.dao.OutboxDAO;
+import main.event.ChangeEvent;
+
+/**
+ * Change event outbox kept in process memory.
+ * <p>
+ * Used by the in-memory and file backends. Events that have not been
+ * delivered yet are lost when the process ends.
+ * </p>
+ */
+public class InMemoryOutboxDAO implements OutboxDAO {
+
+    private final ArrayDeque<ChangeEvent> events = new ArrayDeque<>();
+    private long nextSequence = 1;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void append(ChangeEvent event) {
+        events.addLast(
+            new ChangeEvent(
+                nextSequence++,
+                event.getEntityType(),
+                event.getOperation(),
+                event.getKey(),
+                event.getPayload(),
+                event.getTimestamp()
+            )
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized List<ChangeEvent> readOldest(int limit) {
+        List<ChangeEvent> oldest = new ArrayList<>(Math.min(limit, events.size()));
+        for (ChangeEvent event : events) {
+            if (oldest.size() == limit) {
+                break;
+            }
+            oldest.add(event);
+        }
+        return oldest;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int delete(List<ChangeEvent> delivered) {
+        Set<Long> sequences = new HashSet<>();
+        for (ChangeEvent event : delivered) {
+            sequences.add(event.getSequence());
+        }
+        int before = events.size();
+        events.removeIf(event -> sequences.contains(event.getSequence()));
+        return before - events.size();
+    }
+}
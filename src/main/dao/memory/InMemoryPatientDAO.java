@@ -0,0 +1,117 @@
+package main.dao.memory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import main.dao.PatientDAO;
+import main.exception.DatabaseException;
+import main.model.Patient;
+
+/**
+ * In-memory Data Access Object for Patient entities.
+ * <p>
+ * This class delegates to the {@link MemoryStore} shared by all DAOs of an
+ * {@link InMemoryStorageBackend}. Deleting a patient cascades to the
+ * patient's history records, as in the MySQL schema.
+ * </p>
+ */
+public class InMemoryPatientDAO implements PatientDAO {
+
+    private final MemoryStore store;
+
+    /**
+     * Constructs a new InMemoryPatientDAO over the given store.
+     *
+     * @param store the in-memory tables to use
+     */
+    InMemoryPatientDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(Patient patient) throws DatabaseException {
+        store.createPatient(patient);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Patient read(Integer mrn) {
+        return store.readPatient(mrn);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Patient> readAll() {
+        return store.readAllPatients();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Patient patient) throws DatabaseException {
+        return store.updatePatient(patient);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(Patient patient) throws DatabaseException {
+        return store.upsertPatients(Collections.singletonList(patient)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The patients are written atomically, under one lock and one journal commit.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends Patient> patients) throws DatabaseException {
+        return store.upsertPatients(patients);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(Integer mrn) throws DatabaseException {
+        return store.deletePatient(mrn);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The patients are deleted atomically, under one lock and one journal commit.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends Integer> mrns) throws DatabaseException {
+        return store.deletePatients(mrns);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(Integer mrn) {
+        return store.patientExists(mrn);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() {
+        return store.countPatients();
+    }
+}
@@ -0,0 +1,157 @@
+package main.dao.memory;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import main.dao.PatientHistoryDAO;
+import main.exception.DatabaseException;
+import main.model.PatientHistory;
+
+/**
+ * In-memory Data Access Object for PatientHistory entities.
+ * <p>
+ * This class delegates to the {@link MemoryStore} shared by all DAOs of an
+ * {@link InMemoryStorageBackend}. The referenced patient, procedure and
+ * doctor are checked on create and update, and lookups by patient use the
+ * store's patient index instead of a scan.
+ * </p>
+ */
+public class InMemoryPatientHistoryDAO implements PatientHistoryDAO {
+
+    private final MemoryStore store;
+
+    /**
+     * Constructs a new InMemoryPatientHistoryDAO over the given store.
+     *
+     * @param store the in-memory tables to use
+     */
+    InMemoryPatientHistoryDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(PatientHistory patientHistory)
+        throws DatabaseException {
+        store.createHistory(patientHistory);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientHistory read(String id) {
+        return store.readHistory(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PatientHistory> readAll() {
+        return store.readAllHistories();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(PatientHistory patientHistory)
+        throws DatabaseException {
+        return store.updateHistory(patientHistory);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(PatientHistory patientHistory) throws DatabaseException {
+        return store.upsertHistories(Collections.singletonList(patientHistory)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The records are written atomically, under one lock and one journal commit.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends PatientHistory> patientHistories)
+        throws DatabaseException {
+        return store.upsertHistories(patientHistories);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(String id) throws DatabaseException {
+        return store.deleteHistory(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The version is checked and the record deleted under one lock.
+     * </p>
+     */
+    @Override
+    public boolean deleteIfVersion(String id, long version) throws DatabaseException {
+        return store.deleteHistoryIfVersion(id, version);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The records are deleted atomically, under one lock and one journal commit.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends String> ids) throws DatabaseException {
+        return store.deleteHistories(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(String id) {
+        return store.historyExists(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PatientHistory> readByPatientId(int patientId) {
+        return store.readHistoriesByPatient(patientId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PatientHistory> readByDateRange(LocalDate from, LocalDate to) {
+        return store.readHistoriesByDate(from, to);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Uses the store's index of records by patient and one scan of the
+     * procedure and doctor columns.
+     * </p>
+     */
+    @Override
+    public List<String> readIdsReferencing(
+        Collection<Integer> patientIds,
+        Collection<String> procedureIds,
+        Collection<String> doctorIds
+    ) {
+        return store.readHistoryIdsReferencing(patientIds, procedureIds, doctorIds);
+    }
+}
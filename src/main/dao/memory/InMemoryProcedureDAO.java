@@ -0,0 +1,120 @@
+package main.dao.memory;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import main.dao.ProcedureDAO;
+import main.exception.DatabaseException;
+import main.model.Procedure;
+
+/**
+ * In-memory Data Access Object for Procedure entities.
+ * <p>
+ * This class delegates to the {@link MemoryStore} shared by all DAOs of an
+ * {@link InMemoryStorageBackend}. The referenced doctor is checked on create
+ * and update, and deleting a procedure cascades to its history records.
+ * </p>
+ */
+public class InMemoryProcedureDAO implements ProcedureDAO {
+
+    private final MemoryStore store;
+
+    /**
+     * Constructs a new InMemoryProcedureDAO over the given store.
+     *
+     * @param store the in-memory tables to use
+     */
+    InMemoryProcedureDAO(MemoryStore store) {
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(Procedure procedure) throws DatabaseException {
+        store.createProcedure(procedure);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Procedure read(String id) {
+        return store.readProcedure(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Procedure> readAll() {
+        return store.readAllProcedures();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Procedure procedure) throws DatabaseException {
+        return store.updateProcedure(procedure);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(Procedure procedure) throws DatabaseException {
+        return store.upsertProcedures(Collections.singletonList(procedure)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The procedures are written atomically, under one lock and one journal commit.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends Procedure> procedures) throws DatabaseException {
+        return store.upsertProcedures(procedures);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(String id) throws DatabaseException {
+        return store.deleteProcedure(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The procedures are deleted atomically, under one lock and one journal commit.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends String> ids) throws DatabaseException {
+        return store.deleteProcedures(ids);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(String id) {
+        return store.procedureExists(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Uses the store's index of procedures by doctor.
+     * </p>
+     */
+    @Override
+    public List<String> readIdsByDoctors(Collection<String> doctorIds) {
+        return store.readProcedureIdsByDoctors(doctorIds);
+    }
+}
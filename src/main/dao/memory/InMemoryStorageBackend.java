@@ -0,0 +1,147 @@
+package main.dao.memory;
+
+import main.dao.DoctorDAO;
+import main.dao.OutboxDAO;
+import main.dao.PatientDAO;
+import main.dao.PatientHistoryDAO;
+import main.dao.ProcedureDAO;
+import main.dao.StorageBackend;
+import main.exception.DatabaseException;
+
+/**
+ * Storage backend that keeps all entities in process memory.
+ * <p>
+ * Data lives only as long as the backend instance and is never written to
+ * disk. This backend needs no database server, which makes it suitable for
+ * offline demos and fast test runs, and serves as a baseline for measuring
+ * JDBC overhead. It implements the same constraints as the MySQL schema,
+ * including foreign key checks and cascading deletes.
+ * </p>
+ *
+ * @see MemoryStore
+ */
+public class InMemoryStorageBackend implements StorageBackend {
+
+    /** The name this backend is registered under. */
+    public static final String NAME = "memory";
+
+    private final MemoryStore store;
+    private final PatientDAO patientDAO;
+    private final DoctorDAO doctorDAO;
+    private final ProcedureDAO procedureDAO;
+    private final PatientHistoryDAO patientHistoryDAO;
+    private final OutboxDAO outboxDAO;
+
+    /**
+     * Constructs a new, empty InMemoryStorageBackend.
+     */
+    public InMemoryStorageBackend() {
+        this(false);
+    }
+
+    /**
+     * Constructs a new, empty InMemoryStorageBackend.
+     *
+     * @param changeEvents true to record change events in an in-memory outbox
+     */
+    public InMemoryStorageBackend(boolean changeEvents) {
+        this(new MemoryStore(), changeEvents);
+        System.out.println("[INFO] Using in-memory storage (data is not persisted)\n");
+    }
+
+    /**
+     * Constructs a new InMemoryStorageBackend over an existing store.
+     * <p>
+     * Persistent backends use this constructor to serve their DAOs from a
+     * store they have recovered and attached a journal to.
+     * </p>
+     *
+     * @param store the in-memory tables to use
+     */
+    public InMemoryStorageBackend(MemoryStore store) {
+        this(store, false);
+    }
+
+    /**
+     * Constructs a new InMemoryStorageBackend over an existing store.
+     *
+     * @param store        the in-memory tables to use
+     * @param changeEvents true to record change events in an in-memory outbox
+     */
+    public InMemoryStorageBackend(MemoryStore store, boolean changeEvents) {
+        this.store = store;
+        this.outboxDAO = changeEvents ? new InMemoryOutboxDAO() : null;
+        this.patientDAO = new InMemoryPatientDAO(store);
+        this.doctorDAO = new InMemoryDoctorDAO(store);
+        this.procedureDAO = new InMemoryProcedureDAO(store);
+        this.patientHistoryDAO = new InMemoryPatientHistoryDAO(store);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientDAO patients() {
+        return patientDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DoctorDAO doctors() {
+        return doctorDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProcedureDAO procedures() {
+        return procedureDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientHistoryDAO patientHistory() {
+        return patientHistoryDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutboxDAO outbox() {
+        return outboxDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The work runs as a {@linkplain MemoryStore#inTransaction store
+     * transaction}, which holds the write lock from its first write on. A
+     * write and the append of its change event are therefore atomic, and
+     * the events are appended in the order their writes were applied.
+     * </p>
+     */
+    @Override
+    public <T> T inTransaction(Transaction<T> work) throws DatabaseException {
+        return store.inTransaction(work);
+    }
+
+    /**
+     * Does nothing; in-memory data is simply discarded with the backend.
+     */
+    @Override
+    public void close() {}
+}
@@ -0,0 +1,1633 @@
+package main.dao.memory;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import main.dao.StorageBackend;
+import main.exception.ConflictException;
+import main.exception.DatabaseException;
+import main.model.Doctor;
+import main.model.Patient;
+import main.model.PatientHistory;
+import main.model.Procedure;
+import main.model.Versioned;
+import main.util.IntHashMap;
+import main.util.Interners;
+
+/**
+ * In-memory tables backing the {@link InMemoryStorageBackend}.
+ * <p>
+ * The store keeps one primary table per entity and secondary indexes for
+ * every foreign key, which are used for {@code readByPatientId} and for
+ * cascading deletes without scanning. It enforces the same rules as the
+ * MySQL schema:
+ * </p>
+ * <ul>
+ *   <li>primary keys are unique</li>
+ *   <li>procedures must reference an existing doctor</li>
+ *   <li>history records must reference an existing patient, procedure and doctor</li>
+ *   <li>deleting a doctor, procedure or patient cascades to the rows referencing it</li>
+ *   <li>an update only applies to a row that still has the entity's version</li>
+ *   <li>an upsert replaces a stored row whatever its version, and increments it</li>
+ * </ul>
+ *
+ * <p>Patients are keyed by MRN in an {@link IntHashMap}; doctors and
+ * procedures are {@link ConcurrentHashMap}s so that their point reads do
+ * not take any lock. History records, by far the largest table, are kept
+ * in a {@link HistoryColumns} column store, which encodes procedure and
+ * doctor IDs as dictionary codes; cascades find the records of a procedure
+ * or doctor by scanning the code column instead of keeping an index. All
+ * writes, and all reads that touch the patient table, the history table or
+ * a secondary index, run under a read/write lock so that foreign key checks
+ * and cascades are atomic. Entities are copied on the way in and out, so
+ * callers can never mutate stored rows.</p>
+ *
+ * <p>Every row change, including rows removed by a cascade, is reported to
+ * the store's {@link Journal} before it is applied. A persistent backend can
+ * use the journal as a redo log and rebuild the store later through
+ * {@link #restorePut(Object)} and {@link #restoreDelete(Table, Object)}.</p>
+ *
+ * <p>{@link #inTransaction} runs several writes as one: from its first
+ * write until it ends, the transaction keeps the write lock, so no other
+ * thread sees its changes half done, and if it fails, its changes are
+ * undone and the undo is journaled as well.</p>
+ */
+public class MemoryStore {
+
+    /**
+     * The tables held by the store.
+     */
+    public enum Table {
+        PATIENTS,
+        DOCTORS,
+        PROCEDURES,
+        PATIENT_HISTORY
+    }
+
+    /**
+     * Receives every row change made by the store.
+     * <p>
+     * {@link #put(Object)} and {@link #delete(Table, Object)} are called
+     * while the store's write lock is held, in the order the changes are
+     * applied. {@link #commit()} is called once per write operation after
+     * the lock has been released, so that slow durability work does not
+     * block other writers.
+     * </p>
+     */
+    public interface Journal {
+        /** A journal that discards all changes. */
+        Journal NONE = new Journal() {
+            @Override
+            public void put(Object row) {}
+
+            @Override
+            public void delete(Table table, Object key) {}
+
+            @Override
+            public void commit() {}
+        };
+
+        /**
+         * Records that a row was inserted or replaced.
+         *
+         * @param row the new row ({@link Patient}, {@link Doctor}, {@link Procedure} or {@link PatientHistory})
+         * @throws DatabaseException if the change cannot be recorded
+         */
+        void put(Object row) throws DatabaseException;
+
+        /**
+         * Records that a row was deleted.
+         *
+         * @param table the table of the deleted row
+         * @param key   the primary key of the deleted row
+         * @throws DatabaseException if the change cannot be recorded
+         */
+        void delete(Table table, Object key) throws DatabaseException;
+
+        /**
+         * Makes the changes recorded by the calling thread durable.
+         *
+         * @throws DatabaseException if the changes cannot be made durable
+         */
+        void commit() throws DatabaseException;
+    }
+
+    /**
+     * Callback used to export the contents of the store.
+     */
+    public interface RowVisitor {
+        /**
+         * Visits one row.
+         *
+         * @param row the row
+         * @throws IOException if the row cannot be processed
+         */
+        void visit(Object row) throws IOException;
+
+        /**
+         * Called after the last row, while writes are still blocked.
+         *
+         * @throws IOException if the export cannot be completed
+         */
+        default void end() throws IOException {}
+    }
+
+    /**
+     * A row as it was before a transaction changed it.
+     */
+    private static final class Undo {
+        final Table table;
+        final Object key;
+
+        /** The previous row, or null if the row did not exist. */
+        final Object row;
+
+        Undo(Table table, Object key, Object row) {
+            this.table = table;
+            this.key = key;
+            this.row = row;
+        }
+    }
+
+    /**
+     * The state of the calling thread's transaction.
+     */
+    private static final class TransactionState {
+        final List<Undo> undo = new ArrayList<>();
+
+        /** Whether the transaction holds the write lock. */
+        boolean locked;
+    }
+
+    /**
+     * A write operation run under the store's write lock.
+     *
+     * @param <T> the result type
+     */
+    private interface WriteAction<T> {
+        T run() throws DatabaseException;
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile Journal journal = Journal.NONE;
+
+    /** The transaction of the calling thread, or null outside one. */
+    private final ThreadLocal<TransactionState> transaction = new ThreadLocal<>();
+
+    private final IntHashMap<Patient> patients = new IntHashMap<>();
+    private final Map<String, Doctor> doctors = new ConcurrentHashMap<>();
+    private final Map<String, Procedure> procedures = new ConcurrentHashMap<>();
+    private final HistoryColumns histories = new HistoryColumns();
+
+    /** Procedure IDs by doctor ID. */
+    private final Map<String, Set<String>> proceduresByDoctor = new TreeMap<>();
+
+    /** History IDs by patient MRN. */
+    private final IntHashMap<Set<String>> historiesByPatient = new IntHashMap<>();
+
+    /**
+     * Sets the journal that receives all subsequent row changes.
+     *
+     * @param journal the journal to use, or {@link Journal#NONE}
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    // ========== Patients ==========
+
+    /**
+     * Inserts a new patient.
+     *
+     * @param patient the patient to insert
+     * @throws DatabaseException if a patient with the same MRN already exists
+     */
+    void createPatient(Patient patient) throws DatabaseException {
+        write(() -> {
+            if (patients.containsKey(patient.getMrn())) {
+                throw duplicate("patient", patient.getMrn(), "patients");
+            }
+            Patient row = copy(patient);
+            logPut(row);
+            patients.put(row.getMrn(), row);
+            return null;
+        });
+    }
+
+    /**
+     * Reads a patient by MRN.
+     *
+     * @param mrn the MRN to look up
+     * @return a copy of the patient, or null if not found
+     */
+    Patient readPatient(int mrn) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            Patient patient = patients.get(mrn);
+            return patient == null ? null : copy(patient);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Reads all patients ordered by MRN.
+     *
+     * @return copies of all patients
+     */
+    List<Patient> readAllPatients() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            List<Patient> result = new ArrayList<>(patients.size());
+            for (Patient patient : patients.valuesByKey()) {
+                result.add(copy(patient));
+            }
+            return result;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Replaces an existing patient if it still has the patient's version,
+     * and increments the version.
+     *
+     * @param patient the patient with updated values
+     * @return true if the patient existed and was updated
+     * @throws ConflictException if the stored patient has another version
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    boolean updatePatient(Patient patient) throws DatabaseException {
+        return write(() -> {
+            Patient existing = patients.get(patient.getMrn());
+            if (existing == null) {
+                return false;
+            }
+            checkVersion(existing, patient, "Patient", patient.getMrn());
+            Patient row = copy(patient);
+            row.setVersion(existing.getVersion() + 1);
+            logPut(row);
+            patients.put(row.getMrn(), row);
+            patient.setVersion(row.getVersion());
+            return true;
+        });
+    }
+
+    /**
+     * Inserts patients, or replaces the stored patients with the same MRN,
+     * under one write lock and one journal commit.
+     *
+     * @param batch the patients to write
+     * @return the number of patients that were inserted
+     * @throws DatabaseException if the changes cannot be journaled
+     */
+    int upsertPatients(Collection<? extends Patient> batch) throws DatabaseException {
+        return write(() -> {
+            int created = 0;
+            for (Patient patient : batch) {
+                Patient existing = patients.get(patient.getMrn());
+                Patient row = copy(patient);
+                if (existing != null) {
+                    row.setVersion(existing.getVersion() + 1);
+                } else {
+                    created++;
+                }
+                logPut(row);
+                patients.put(row.getMrn(), row);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Deletes a patient and, by cascade, all of the patient's history records.
+     *
+     * @param mrn the MRN of the patient to delete
+     * @return true if the patient existed and was deleted
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    boolean deletePatient(int mrn) throws DatabaseException {
+        return write(() -> removePatient(mrn));
+    }
+
+    /**
+     * Deletes several patients, each with its cascade, under one write lock
+     * and one journal commit.
+     *
+     * @param mrns the MRNs of the patients to delete
+     * @return the number of patients that existed and were deleted
+     * @throws DatabaseException if the changes cannot be journaled
+     */
+    int deletePatients(Collection<? extends Integer> mrns) throws DatabaseException {
+        return write(() -> {
+            int deleted = 0;
+            for (int mrn : mrns) {
+                if (removePatient(mrn)) {
+                    deleted++;
+                }
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Checks whether a patient exists.
+     *
+     * @param mrn the MRN to check
+     * @return true if the patient exists
+     */
+    boolean patientExists(int mrn) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return patients.containsKey(mrn);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Counts the patients.
+     *
+     * @return the number of patients
+     */
+    int countPatients() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return patients.size();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    // ========== Doctors ==========
+
+    /**
+     * Inserts a new doctor.
+     *
+     * @param doctor the doctor to insert
+     * @throws DatabaseException if a doctor with the same ID already exists
+     */
+    void createDoctor(Doctor doctor) throws DatabaseException {
+        write(() -> {
+            if (doctors.containsKey(doctor.getId())) {
+                throw duplicate("doctor", doctor.getId(), "doctors");
+            }
+            Doctor row = copy(doctor);
+            logPut(row);
+            doctors.put(row.getId(), row);
+            return null;
+        });
+    }
+
+    /**
+     * Reads a doctor by ID.
+     *
+     * @param id the doctor ID
+     * @return a copy of the doctor, or null if not found
+     */
+    Doctor readDoctor(String id) {
+        Doctor doctor = doctors.get(id);
+        return doctor == null ? null : copy(doctor);
+    }
+
+    /**
+     * Reads all doctors ordered by ID.
+     *
+     * @return copies of all doctors
+     */
+    List<Doctor> readAllDoctors() {
+        List<Doctor> result = new ArrayList<>(doctors.size());
+        for (Doctor doctor : new TreeMap<>(doctors).values()) {
+            result.add(copy(doctor));
+        }
+        return result;
+    }
+
+    /**
+     * Replaces an existing doctor if it still has the doctor's version,
+     * and increments the version.
+     *
+     * @param doctor the doctor with updated values
+     * @return true if the doctor existed and was updated
+     * @throws ConflictException if the stored doctor has another version
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    boolean updateDoctor(Doctor doctor) throws DatabaseException {
+        return write(() -> {
+            Doctor existing = doctors.get(doctor.getId());
+            if (existing == null) {
+                return false;
+            }
+            checkVersion(existing, doctor, "Doctor", doctor.getId());
+            Doctor row = copy(doctor);
+            row.setVersion(existing.getVersion() + 1);
+            logPut(row);
+            doctors.put(row.getId(), row);
+            doctor.setVersion(row.getVersion());
+            return true;
+        });
+    }
+
+    /**
+     * Inserts doctors, or replaces the stored doctors with the same ID,
+     * under one write lock and one journal commit.
+     *
+     * @param batch the doctors to write
+     * @return the number of doctors that were inserted
+     * @throws DatabaseException if the changes cannot be journaled
+     */
+    int upsertDoctors(Collection<? extends Doctor> batch) throws DatabaseException {
+        return write(() -> {
+            int created = 0;
+            for (Doctor doctor : batch) {
+                Doctor existing = doctors.get(doctor.getId());
+                Doctor row = copy(doctor);
+                if (existing != null) {
+                    row.setVersion(existing.getVersion() + 1);
+                } else {
+                    created++;
+                }
+                logPut(row);
+                doctors.put(row.getId(), row);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Deletes a doctor and, by cascade, the doctor's procedures and every
+     * history record referencing the doctor or one of those procedures.
+     *
+     * @param id the ID of the doctor to delete
+     * @return true if the doctor existed and was deleted
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    boolean deleteDoctor(String id) throws DatabaseException {
+        return write(() -> removeDoctor(id));
+    }
+
+    /**
+     * Deletes several doctors, each with its cascade, under one write lock
+     * and one journal commit.
+     *
+     * @param ids the IDs of the doctors to delete
+     * @return the number of doctors that existed and were deleted
+     * @throws DatabaseException if the changes cannot be journaled
+     */
+    int deleteDoctors(Collection<? extends String> ids) throws DatabaseException {
+        return write(() -> {
+            int deleted = 0;
+            for (String id : ids) {
+                if (removeDoctor(id)) {
+                    deleted++;
+                }
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Checks whether a doctor exists.
+     *
+     * @param id the doctor ID to check
+     * @return true if the doctor exists
+     */
+    boolean doctorExists(String id) {
+        return doctors.containsKey(id);
+    }
+
+    // ========== Procedures ==========
+
+    /**
+     * Inserts a new procedure.
+     *
+     * @param procedure the procedure to insert
+     * @throws DatabaseException if the ID is taken or the doctor does not exist
+     */
+    void createProcedure(Procedure procedure) throws DatabaseException {
+        write(() -> {
+            if (procedures.containsKey(procedure.getId())) {
+                throw duplicate("procedure", procedure.getId(), "procedures");
+            }
+            checkProcedureReferences("create", procedure);
+            Procedure row = copy(procedure);
+            logPut(row);
+            putProcedure(row);
+            return null;
+        });
+    }
+
+    /**
+     * Reads a procedure by ID.
+     *
+     * @param id the procedure ID
+     * @return a copy of the procedure, or null if not found
+     */
+    Procedure readProcedure(String id) {
+        Procedure procedure = procedures.get(id);
+        return procedure == null ? null : copy(procedure);
+    }
+
+    /**
+     * Reads all procedures ordered by ID.
+     *
+     * @return copies of all procedures
+     */
+    List<Procedure> readAllProcedures() {
+        List<Procedure> result = new ArrayList<>(procedures.size());
+        for (Procedure procedure : new TreeMap<>(procedures).values()) {
+            result.add(copy(procedure));
+        }
+        return result;
+    }
+
+    /**
+     * Replaces an existing procedure if it still has the procedure's
+     * version, and increments the version.
+     *
+     * @param procedure the procedure with updated values
+     * @return true if the procedure existed and was updated
+     * @throws ConflictException if the stored procedure has another version
+     * @throws DatabaseException if the referenced doctor does not exist
+     */
+    boolean updateProcedure(Procedure procedure) throws DatabaseException {
+        return write(() -> {
+            Procedure existing = procedures.get(procedure.getId());
+            if (existing == null) {
+                return false;
+            }
+            checkVersion(existing, procedure, "Procedure", procedure.getId());
+            checkProcedureReferences("update", procedure);
+            Procedure row = copy(procedure);
+            row.setVersion(existing.getVersion() + 1);
+            logPut(row);
+            removeProcedureIndexes(existing);
+            putProcedure(row);
+            procedure.setVersion(row.getVersion());
+            return true;
+        });
+    }
+
+    /**
+     * Inserts procedures, or replaces the stored procedures with the same
+     * ID, under one write lock and one journal commit. The doctors of all
+     * procedures are checked before any of them is written.
+     *
+     * @param batch the procedures to write
+     * @return the number of procedures that were inserted
+     * @throws DatabaseException if a referenced doctor does not exist
+     */
+    int upsertProcedures(Collection<? extends Procedure> batch) throws DatabaseException {
+        return write(() -> {
+            for (Procedure procedure : batch) {
+                checkProcedureReferences("upsert", procedure);
+            }
+            int created = 0;
+            for (Procedure procedure : batch) {
+                Procedure existing = procedures.get(procedure.getId());
+                Procedure row = copy(procedure);
+                if (existing != null) {
+                    row.setVersion(existing.getVersion() + 1);
+                    removeProcedureIndexes(existing);
+                } else {
+                    created++;
+                }
+                logPut(row);
+                putProcedure(row);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Deletes a procedure and, by cascade, every history record referencing it.
+     *
+     * @param id the ID of the procedure to delete
+     * @return true if the procedure existed and was deleted
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    boolean deleteProcedure(String id) throws DatabaseException {
+        return write(() -> removeProcedure(id));
+    }
+
+    /**
+     * Deletes several procedures, each with its cascade, under one write
+     * lock and one journal commit.
+     *
+     * @param ids the IDs of the procedures to delete
+     * @return the number of procedures that existed and were deleted
+     * @throws DatabaseException if the changes cannot be journaled
+     */
+    int deleteProcedures(Collection<? extends String> ids) throws DatabaseException {
+        return write(() -> {
+            int deleted = 0;
+            for (String id : ids) {
+                if (removeProcedure(id)) {
+                    deleted++;
+                }
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Collects the IDs of the procedures of several doctors using the
+     * doctor index.
+     *
+     * @param doctorIds the doctor IDs
+     * @return the IDs of their procedures
+     */
+    List<String> readProcedureIdsByDoctors(Collection<String> doctorIds) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            List<String> result = new ArrayList<>();
+            for (String doctorId : doctorIds) {
+                Set<String> ids = proceduresByDoctor.get(doctorId);
+                if (ids != null) {
+                    result.addAll(ids);
+                }
+            }
+            return result;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Checks whether a procedure exists.
+     *
+     * @param id the procedure ID to check
+     * @return true if the procedure exists
+     */
+    boolean procedureExists(String id) {
+        return procedures.containsKey(id);
+    }
+
+    // ========== Patient History ==========
+
+    /**
+     * Inserts a new patient history record.
+     *
+     * @param history the record to insert
+     * @throws DatabaseException if the ID is taken or a referenced entity does not exist
+     */
+    void createHistory(PatientHistory history) throws DatabaseException {
+        write(() -> {
+            if (histories.indexOf(history.getId()) >= 0) {
+                throw duplicate("patient history", history.getId(), "patient_history");
+            }
+            checkHistoryReferences("create", history);
+            logPut(copy(history));
+            putHistory(history);
+            return null;
+        });
+    }
+
+    /**
+     * Reads a patient history record by ID.
+     *
+     * @param id the record ID
+     * @return a copy of the record, or null if not found
+     */
+    PatientHistory readHistory(String id) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            int row = histories.indexOf(id);
+            return row < 0 ? null : histories.toHistory(row);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Reads all patient history records ordered by ID.
+     *
+     * @return copies of all records
+     */
+    List<PatientHistory> readAllHistories() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            List<PatientHistory> result = new ArrayList<>(histories.size());
+            for (int row = 0; row < histories.size(); row++) {
+                result.add(histories.toHistory(row));
+            }
+            result.sort(Comparator.comparing(PatientHistory::getId));
+            return result;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Reads the history records of one patient using the patient index.
+     *
+     * @param patientId the patient's MRN
+     * @return copies of the patient's records ordered by ID
+     */
+    List<PatientHistory> readHistoriesByPatient(int patientId) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            Set<String> ids = historiesByPatient.get(patientId);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            List<PatientHistory> result = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                result.add(histories.toHistory(histories.indexOf(id)));
+            }
+            return result;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Reads the history records dated within a range by scanning the date
+     * column.
+     *
+     * @param from the first date, inclusive
+     * @param to   the last date, inclusive
+     * @return copies of the records ordered by date and then by ID
+     */
+    List<PatientHistory> readHistoriesByDate(LocalDate from, LocalDate to) {
+        int first = (int) from.toEpochDay();
+        int last = (int) to.toEpochDay();
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            List<PatientHistory> result = new ArrayList<>();
+            for (int row = 0; row < histories.size(); row++) {
+                int day = histories.getEpochDay(row);
+                if (day >= first && day <= last) {
+                    result.add(histories.toHistory(row));
+                }
+            }
+            result.sort(
+                Comparator.comparing(PatientHistory::getDate).thenComparing(PatientHistory::getId)
+            );
+            return result;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Replaces an existing patient history record if it still has the
+     * record's version, and increments the version.
+     *
+     * @param history the record with updated values
+     * @return true if the record existed and was updated
+     * @throws ConflictException if the stored record has another version
+     * @throws DatabaseException if a referenced entity does not exist
+     */
+    boolean updateHistory(PatientHistory history) throws DatabaseException {
+        return write(() -> {
+            int row = histories.indexOf(history.getId());
+            if (row < 0) {
+                return false;
+            }
+            long version = histories.getVersion(row);
+            if (version != history.getVersion()) {
+                throw new ConflictException("Patient history", history.getId());
+            }
+            checkHistoryReferences("update", history);
+            PatientHistory updated = copy(history);
+            updated.setVersion(version + 1);
+            logPut(updated);
+            removeHistoryIndexes(histories.getId(row), histories.getPatientId(row));
+            putHistory(updated);
+            history.setVersion(updated.getVersion());
+            return true;
+        });
+    }
+
+    /**
+     * Inserts patient history records, or replaces the stored records with
+     * the same ID, under one write lock and one journal commit. The
+     * references of all records are checked before any of them is written.
+     *
+     * @param batch the records to write
+     * @return the number of records that were inserted
+     * @throws DatabaseException if a referenced entity does not exist
+     */
+    int upsertHistories(Collection<? extends PatientHistory> batch) throws DatabaseException {
+        return write(() -> {
+            for (PatientHistory history : batch) {
+                checkHistoryReferences("upsert", history);
+            }
+            int created = 0;
+            for (PatientHistory history : batch) {
+                PatientHistory row = copy(history);
+                int existing = histories.indexOf(history.getId());
+                if (existing >= 0) {
+                    row.setVersion(histories.getVersion(existing) + 1);
+                    removeHistoryIndexes(history.getId(), histories.getPatientId(existing));
+                } else {
+                    created++;
+                }
+                logPut(row);
+                putHistory(row);
+            }
+            return created;
+        });
+    }
+
+    /**
+     * Deletes a patient history record.
+     *
+     * @param id the ID of the record to delete
+     * @return true if the record existed and was deleted
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    boolean deleteHistory(String id) throws DatabaseException {
+        return write(() -> removeHistory(id));
+    }
+
+    /**
+     * Deletes a patient history record if it still has the given version.
+     *
+     * @param id      the ID of the record to delete
+     * @param version the version the record must have
+     * @return true if the record existed with that version and was deleted
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    boolean deleteHistoryIfVersion(String id, long version) throws DatabaseException {
+        return write(() -> {
+            int row = histories.indexOf(id);
+            return row >= 0 && histories.getVersion(row) == version && removeHistory(id);
+        });
+    }
+
+    /**
+     * Deletes several patient history records under one write lock and one
+     * journal commit.
+     *
+     * @param ids the IDs of the records to delete
+     * @return the number of records that existed and were deleted
+     * @throws DatabaseException if the changes cannot be journaled
+     */
+    int deleteHistories(Collection<? extends String> ids) throws DatabaseException {
+        return write(() -> {
+            int deleted = 0;
+            for (String id : ids) {
+                if (removeHistory(id)) {
+                    deleted++;
+                }
+            }
+            return deleted;
+        });
+    }
+
+    /**
+     * Collects the IDs of the history records referencing any of several
+     * patients, procedures or doctors, using the patient index and one scan
+     * of the procedure and doctor columns.
+     *
+     * @param patientIds   the patient MRNs
+     * @param procedureIds the procedure IDs
+     * @param doctorIds    the doctor IDs
+     * @return the IDs of the matching records, each once
+     */
+    List<String> readHistoryIdsReferencing(
+        Collection<Integer> patientIds,
+        Collection<String> procedureIds,
+        Collection<String> doctorIds
+    ) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            Set<String> result = new LinkedHashSet<>();
+            for (int patientId : patientIds) {
+                Set<String> ids = historiesByPatient.get(patientId);
+                if (ids != null) {
+                    result.addAll(ids);
+                }
+            }
+            result.addAll(histories.idsReferencing(procedureIds, doctorIds));
+            return new ArrayList<>(result);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Checks whether a patient history record exists.
+     *
+     * @param id the record ID to check
+     * @return true if the record exists
+     */
+    boolean historyExists(String id) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return histories.indexOf(id) >= 0;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    // ========== Transactions ==========
+
+    /**
+     * Runs writes of the calling thread as one transaction.
+     * <p>
+     * From the first write on, the transaction holds the write lock until
+     * it ends, so other threads see all of its changes or none, and its
+     * writes are ordered with the writes of other threads as a whole. If
+     * the work throws, every change it made is undone and the undo is
+     * journaled, so a replay of the journal ends in the same state. The
+     * journal is committed once, after the lock is released. A nested call
+     * joins the enclosing transaction.
+     * </p>
+     *
+     * @param <T>  the type of the result
+     * @param work the writes to run
+     * @return the result of the work
+     * @throws DatabaseException if the work fails or the journal cannot be
+     *                           committed
+     */
+    public <T> T inTransaction(StorageBackend.Transaction<T> work) throws DatabaseException {
+        if (transaction.get() != null) {
+            return work.run();
+        }
+        TransactionState state = new TransactionState();
+        transaction.set(state);
+        T result;
+        try {
+            result = work.run();
+        } catch (Throwable e) {
+            if (!state.undo.isEmpty()) {
+                try {
+                    rollback(state.undo);
+                } catch (DatabaseException undoFailure) {
+                    e.addSuppressed(undoFailure);
+                }
+            }
+            throw e;
+        } finally {
+            transaction.remove();
+            if (state.locked) {
+                lock.writeLock().unlock();
+            }
+        }
+        if (state.locked) {
+            journal.commit();
+        }
+        return result;
+    }
+
+    // ========== Recovery ==========
+
+    /**
+     * Inserts or replaces a row without any checks and without journaling.
+     * <p>
+     * Used to rebuild the store from a snapshot or redo log. Cascades are
+     * not applied, since the journal records every cascaded change itself.
+     * </p>
+     *
+     * @param row the row to store
+     */
+    public void restorePut(Object row) {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            if (row instanceof Patient) {
+                Patient patient = (Patient) row;
+                patients.put(patient.getMrn(), patient);
+            } else if (row instanceof Doctor) {
+                Doctor doctor = (Doctor) row;
+                doctors.put(doctor.getId(), doctor);
+            } else if (row instanceof Procedure) {
+                Procedure procedure = (Procedure) row;
+                Procedure existing = procedures.get(procedure.getId());
+                if (existing != null) {
+                    removeProcedureIndexes(existing);
+                }
+                putProcedure(procedure);
+            } else if (row instanceof PatientHistory) {
+                PatientHistory history = (PatientHistory) row;
+                int existing = histories.indexOf(history.getId());
+                if (existing >= 0) {
+                    removeHistoryIndexes(history.getId(), histories.getPatientId(existing));
+                }
+                putHistory(history);
+            } else {
+                throw new IllegalArgumentException("Unknown row type: " + row);
+            }
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Deletes a row without any checks, cascades or journaling.
+     *
+     * @param table the table of the row
+     * @param key   the primary key of the row
+     */
+    public void restoreDelete(Table table, Object key) {
+        Lock write = lock.writeLock();
+        write.lock();
+        try {
+            switch (table) {
+                case PATIENTS:
+                    patients.remove((Integer) key);
+                    break;
+                case DOCTORS:
+                    doctors.remove(key);
+                    break;
+                case PROCEDURES:
+                    Procedure procedure = procedures.remove(key);
+                    if (procedure != null) {
+                        removeProcedureIndexes(procedure);
+                    }
+                    break;
+                case PATIENT_HISTORY:
+                    int row = histories.indexOf((String) key);
+                    if (row >= 0) {
+                        removeHistoryIndexes((String) key, histories.getPatientId(row));
+                        histories.remove((String) key);
+                    }
+                    break;
+            }
+        } finally {
+            write.unlock();
+        }
+    }
+
+    /**
+     * Visits every row with writes blocked, in dependency order (doctors,
+     * procedures, patients, then history records).
+     *
+     * @param visitor the visitor receiving the rows
+     * @throws IOException if the visitor fails
+     */
+    public void export(RowVisitor visitor) throws IOException {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            for (Doctor doctor : doctors.values()) {
+                visitor.visit(doctor);
+            }
+            for (Procedure procedure : procedures.values()) {
+                visitor.visit(procedure);
+            }
+            for (Patient patient : patients.valuesByKey()) {
+                visitor.visit(patient);
+            }
+            HistoryColumns.Row history = histories.row();
+            for (int row = 0; row < histories.size(); row++) {
+                visitor.visit(history.moveTo(row).toHistory());
+            }
+            visitor.end();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Runs a read-only scan over the history column store with writes
+     * blocked, for analytics that should not materialize a
+     * {@link PatientHistory} per record. The columns and any
+     * {@link HistoryColumns.Row} views must not be used after the scan
+     * returns.
+     *
+     * @param scan the scan to run
+     * @param <T>  the result type
+     * @return the result of the scan
+     */
+    public <T> T scanHistories(Function<HistoryColumns, T> scan) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return scan.apply(histories);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Counts all rows in the store.
+     *
+     * @return the total number of rows across all tables
+     */
+    public long rowCount() {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return (long) patients.size() + doctors.size() +
+                procedures.size() + histories.size();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Runs a write operation under the write lock, then commits the journal.
+     * <p>
+     * Within a {@linkplain #inTransaction transaction}, the first write
+     * takes the write lock a second time, for the rest of the transaction,
+     * and the journal is committed when the transaction ends.
+     * </p>
+     *
+     * @param action the operation to run
+     * @param <T>    the result type
+     * @return the result of the operation
+     * @throws DatabaseException if the operation or the commit fails
+     */
+    private <T> T write(WriteAction<T> action) throws DatabaseException {
+        T result;
+        TransactionState state = transaction.get();
+        Lock write = lock.writeLock();
+        write.lock();
+        if (state != null && !state.locked) {
+            write.lock();
+            state.locked = true;
+        }
+        try {
+            result = action.run();
+        } finally {
+            write.unlock();
+        }
+        if (state == null) {
+            journal.commit();
+        }
+        return result;
+    }
+
+    /**
+     * Reports an inserted or replaced row to the journal and, within a
+     * transaction, remembers the row it replaces. Caller must hold the
+     * write lock and apply the change right after.
+     *
+     * @param row the new row
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    private void logPut(Object row) throws DatabaseException {
+        Table table = tableOf(row);
+        Object key = keyOf(row);
+        Object previous = transaction.get() != null ? current(table, key) : null;
+        journal.put(row);
+        remember(table, key, previous);
+    }
+
+    /**
+     * Reports a deleted row to the journal and, within a transaction,
+     * remembers the row. Caller must hold the write lock and apply the
+     * change right after.
+     *
+     * @param table the table of the row
+     * @param key   the primary key of the row
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    private void logDelete(Table table, Object key) throws DatabaseException {
+        Object previous = transaction.get() != null ? current(table, key) : null;
+        journal.delete(table, key);
+        remember(table, key, previous);
+    }
+
+    /**
+     * Adds a row to the undo log of the calling thread's transaction, if
+     * any.
+     *
+     * @param table    the table of the row
+     * @param key      the primary key of the row
+     * @param previous the row before the change, or null if it did not exist
+     */
+    private void remember(Table table, Object key, Object previous) {
+        TransactionState state = transaction.get();
+        if (state != null) {
+            state.undo.add(new Undo(table, key, previous));
+        }
+    }
+
+    /**
+     * Undoes the changes of a failed transaction, newest first, and
+     * journals the undo. Caller must hold the write lock.
+     *
+     * @param undo the undo log of the transaction
+     * @throws DatabaseException if the undo cannot be journaled
+     */
+    private void rollback(List<Undo> undo) throws DatabaseException {
+        for (int i = undo.size() - 1; i >= 0; i--) {
+            Undo change = undo.get(i);
+            if (change.row == null) {
+                journal.delete(change.table, change.key);
+                restoreDelete(change.table, change.key);
+            } else {
+                journal.put(change.row);
+                restorePut(change.row);
+            }
+        }
+    }
+
+    /**
+     * Gets the stored row of a key. Caller must hold the write lock.
+     *
+     * @param table the table of the row
+     * @param key   the primary key of the row
+     * @return the stored row, or null if there is none
+     */
+    private Object current(Table table, Object key) {
+        switch (table) {
+            case PATIENTS:
+                return patients.get((Integer) key);
+            case DOCTORS:
+                return doctors.get(key);
+            case PROCEDURES:
+                return procedures.get(key);
+            default:
+                int row = histories.indexOf((String) key);
+                return row < 0 ? null : histories.toHistory(row);
+        }
+    }
+
+    /**
+     * Gets the table of a row.
+     *
+     * @param row the row
+     * @return the table storing rows of its type
+     */
+    private static Table tableOf(Object row) {
+        if (row instanceof Patient) {
+            return Table.PATIENTS;
+        } else if (row instanceof Doctor) {
+            return Table.DOCTORS;
+        } else if (row instanceof Procedure) {
+            return Table.PROCEDURES;
+        }
+        return Table.PATIENT_HISTORY;
+    }
+
+    /**
+     * Gets the primary key of a row.
+     *
+     * @param row the row
+     * @return the MRN or ID of the row
+     */
+    private static Object keyOf(Object row) {
+        if (row instanceof Patient) {
+            return ((Patient) row).getMrn();
+        } else if (row instanceof Doctor) {
+            return ((Doctor) row).getId();
+        } else if (row instanceof Procedure) {
+            return ((Procedure) row).getId();
+        }
+        return ((PatientHistory) row).getId();
+    }
+
+    /**
+     * Stores a procedure and indexes it. Caller must hold the write lock.
+     *
+     * @param procedure the procedure to store
+     */
+    private void putProcedure(Procedure procedure) {
+        procedures.put(procedure.getId(), procedure);
+        index(proceduresByDoctor, procedure.getDoctorId(), procedure.getId());
+    }
+
+    /**
+     * Removes a procedure from the doctor index. Caller must hold the write lock.
+     *
+     * @param procedure the stored procedure
+     */
+    private void removeProcedureIndexes(Procedure procedure) {
+        unindex(proceduresByDoctor, procedure.getDoctorId(), procedure.getId());
+    }
+
+    /**
+     * Removes a patient and cascades to the patient's history records.
+     * Caller must hold the write lock.
+     *
+     * @param mrn the patient's MRN
+     * @return true if the patient existed
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    private boolean removePatient(int mrn) throws DatabaseException {
+        if (!patients.containsKey(mrn)) {
+            return false;
+        }
+        logDelete(Table.PATIENTS, mrn);
+        patients.remove(mrn);
+        Set<String> cascade = historiesByPatient.get(mrn);
+        if (cascade != null) {
+            for (String historyId : new ArrayList<>(cascade)) {
+                removeHistory(historyId);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes a doctor and cascades to the doctor's procedures and every
+     * history record referencing the doctor or one of those procedures.
+     * Caller must hold the write lock.
+     *
+     * @param id the doctor ID
+     * @return true if the doctor existed
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    private boolean removeDoctor(String id) throws DatabaseException {
+        if (!doctors.containsKey(id)) {
+            return false;
+        }
+        logDelete(Table.DOCTORS, id);
+        doctors.remove(id);
+        Set<String> cascadeProcedures = proceduresByDoctor.get(id);
+        if (cascadeProcedures != null) {
+            for (String procedureId : new ArrayList<>(cascadeProcedures)) {
+                removeProcedure(procedureId);
+            }
+        }
+        for (String historyId : histories.idsWithDoctor(id)) {
+            removeHistory(historyId);
+        }
+        return true;
+    }
+
+    /**
+     * Removes a procedure and cascades to its history records.
+     * Caller must hold the write lock.
+     *
+     * @param id the procedure ID
+     * @return true if the procedure existed
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    private boolean removeProcedure(String id) throws DatabaseException {
+        Procedure existing = procedures.get(id);
+        if (existing == null) {
+            return false;
+        }
+        logDelete(Table.PROCEDURES, id);
+        procedures.remove(id);
+        removeProcedureIndexes(existing);
+        for (String historyId : histories.idsWithProcedure(id)) {
+            removeHistory(historyId);
+        }
+        return true;
+    }
+
+    /**
+     * Stores a history record and indexes it. Caller must hold the write lock.
+     *
+     * @param history the record to store
+     */
+    private void putHistory(PatientHistory history) {
+        histories.put(history);
+        Set<String> byPatient = historiesByPatient.get(history.getPatientId());
+        if (byPatient == null) {
+            byPatient = new TreeSet<>();
+            historiesByPatient.put(history.getPatientId(), byPatient);
+        }
+        byPatient.add(history.getId());
+    }
+
+    /**
+     * Removes a history record from the patient index. Caller must hold the
+     * write lock.
+     *
+     * @param id        the record ID
+     * @param patientId the MRN the record is indexed under
+     */
+    private void removeHistoryIndexes(String id, int patientId) {
+        Set<String> byPatient = historiesByPatient.get(patientId);
+        if (byPatient != null) {
+            byPatient.remove(id);
+            if (byPatient.isEmpty()) {
+                historiesByPatient.remove(patientId);
+            }
+        }
+    }
+
+    /**
+     * Removes a history record and its index entries.
+     * Caller must hold the write lock.
+     *
+     * @param id the record ID
+     * @return true if the record existed
+     * @throws DatabaseException if the change cannot be journaled
+     */
+    private boolean removeHistory(String id) throws DatabaseException {
+        int row = histories.indexOf(id);
+        if (row < 0) {
+            return false;
+        }
+        logDelete(Table.PATIENT_HISTORY, id);
+        removeHistoryIndexes(id, histories.getPatientId(row));
+        histories.remove(id);
+        return true;
+    }
+
+    /**
+     * Verifies that an entity still has the version of the stored row.
+     *
+     * @param stored     the stored row
+     * @param entity     the entity being written
+     * @param entityType the entity name used in the error message
+     * @param key        the primary key of the entity
+     * @throws ConflictException if the versions differ
+     */
+    private static void checkVersion(
+        Versioned stored,
+        Versioned entity,
+        String entityType,
+        Object key
+    ) throws ConflictException {
+        if (stored.getVersion() != entity.getVersion()) {
+            throw new ConflictException(entityType, String.valueOf(key));
+        }
+    }
+
+    /**
+     * Verifies the foreign key of a procedure.
+     *
+     * @param operation the operation name used in the error message
+     * @param procedure the procedure to check
+     * @throws DatabaseException if the referenced doctor does not exist
+     */
+    private void checkProcedureReferences(String operation, Procedure procedure)
+        throws DatabaseException {
+        if (!doctors.containsKey(procedure.getDoctorId())) {
+            throw foreignKeyViolation(operation, "procedure", "procedures", "proc_to_doc_fk");
+        }
+    }
+
+    /**
+     * Verifies the foreign keys of a history record.
+     *
+     * @param operation the operation name used in the error message
+     * @param history   the record to check
+     * @throws DatabaseException if a referenced entity does not exist
+     */
+    private void checkHistoryReferences(String operation, PatientHistory history)
+        throws DatabaseException {
+        if (!doctors.containsKey(history.getDoctorId())) {
+            throw foreignKeyViolation(operation, "patient history", "patient_history", "ph_to_doc_fk");
+        }
+        if (!patients.containsKey(history.getPatientId())) {
+            throw foreignKeyViolation(operation, "patient history", "patient_history", "ph_to_pat_fk");
+        }
+        if (!procedures.containsKey(history.getProcedureId())) {
+            throw foreignKeyViolation(operation, "patient history", "patient_history", "ph_to_proc_fk");
+        }
+    }
+
+    /**
+     * Adds an ID to a secondary index entry.
+     *
+     * @param index the index to update
+     * @param key   the indexed foreign key value
+     * @param id    the ID of the referencing row
+     */
+    private static void index(Map<String, Set<String>> index, String key, String id) {
+        index.computeIfAbsent(key, k -> new TreeSet<>()).add(id);
+    }
+
+    /**
+     * Removes an ID from a secondary index entry, dropping the entry when empty.
+     *
+     * @param index the index to update
+     * @param key   the indexed foreign key value
+     * @param id    the ID of the referencing row
+     */
+    private static void unindex(Map<String, Set<String>> index, String key, String id) {
+        Set<String> ids = index.getOrDefault(key, Collections.emptySet());
+        ids.remove(id);
+        if (ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    /**
+     * Builds the exception for a duplicate primary key, worded like MySQL's.
+     *
+     * @param entity the entity name used in the message
+     * @param key    the duplicate key
+     * @param table  the table name
+     * @return the exception to throw
+     */
+    private static DatabaseException duplicate(String entity, Object key, String table) {
+        return new DatabaseException(
+            "Failed to create " + entity + ": Duplicate entry '" + key +
+                "' for key '" + table + ".PRIMARY'"
+        );
+    }
+
+    /**
+     * Builds the exception for a foreign key violation, worded like MySQL's.
+     *
+     * @param operation  the operation name (create, update or upsert)
+     * @param entity     the entity name used in the message
+     * @param table      the child table name
+     * @param constraint the violated constraint name
+     * @return the exception to throw
+     */
+    private static DatabaseException foreignKeyViolation(
+        String operation,
+        String entity,
+        String table,
+        String constraint
+    ) {
+        return new DatabaseException(
+            "Failed to " + operation + " " + entity +
+                ": Cannot add or update a child row: a foreign key constraint fails (`" +
+                table + "`, CONSTRAINT `" + constraint + "`)"
+        );
+    }
+
+    /**
+     * Creates a detached copy of a patient.
+     *
+     * @param p the patient to copy
+     * @return the copy
+     */
+    private static Patient copy(Patient p) {
+        Patient copy = new Patient(
+            p.getMrn(),
+            p.getFname(),
+            p.getLname(),
+            p.getDob(),
+            p.getAddress(),
+            Interners.STATES.intern(p.getState()),
+            Interners.CITIES.intern(p.getCity()),
+            p.getZip(),
+            Interners.INSURERS.intern(p.getInsurance()),
+            p.getEmail()
+        );
+        copy.setVersion(p.getVersion());
+        return copy;
+    }
+
+    /**
+     * Creates a detached copy of a doctor.
+     *
+     * @param d the doctor to copy
+     * @return the copy
+     */
+    private static Doctor copy(Doctor d) {
+        Doctor copy = new Doctor(d.getId(), d.getName());
+        copy.setVersion(d.getVersion());
+        return copy;
+    }
+
+    /**
+     * Creates a detached copy of a procedure.
+     *
+     * @param p the procedure to copy
+     * @return the copy
+     */
+    private static Procedure copy(Procedure p) {
+        Procedure copy = new Procedure(
+            p.getId(),
+            p.getName(),
+            p.getDescription(),
+            p.getDuration(),
+            p.getDoctorId()
+        );
+        copy.setVersion(p.getVersion());
+        return copy;
+    }
+
+    /**
+     * Creates a detached copy of a patient history record.
+     *
+     * @param h the record to copy
+     * @return the copy
+     */
+    private static PatientHistory copy(PatientHistory h) {
+        PatientHistory copy = new PatientHistory(
+            h.getId(),
+            h.getPatientId(),
+            h.getProcedureId(),
+            h.getDate(),
+            h.getBilling(),
+            h.getDoctorId()
+        );
+        copy.setVersion(h.getVersion());
+        return copy;
+    }
+}
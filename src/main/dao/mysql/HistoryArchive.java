@@ -0,0 +1,146 @@
+package main.dao.mysql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import main.exception.DatabaseException;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * The catalog of patient history years moved to archive tables.
+ * <p>
+ * Each archived year has its own compressed table,
+ * {@code patient_history_<year>}, listed in the {@code history_archive}
+ * table. The catalog is cached and reloaded every
+ * {@value #REFRESH_INTERVAL_MS} ms, so years archived by another instance
+ * become visible within that time. The catalog is read from the primary,
+ * since a replica may not list a year that was just archived. A database
+ * without the catalog table simply has no archived years.
+ * </p>
+ *
+ * @see HistoryArchiver
+ */
+final class HistoryArchive {
+
+    /** The table holding the records of years that are not archived. */
+    static final String HOT_TABLE = "patient_history";
+
+    /** The table listing the archived years. */
+    static final String CATALOG_TABLE = "history_archive";
+
+    private static final long REFRESH_INTERVAL_MS = 30_000;
+
+    /** SQL state of a missing table. */
+    private static final String NO_SUCH_TABLE = "42S02";
+
+    private final Database db;
+    private volatile int[] years = new int[0];
+    private volatile long loadedAt;
+
+    /**
+     * Constructs a new HistoryArchive; the catalog is loaded on first use.
+     *
+     * @param db the database holding the archive
+     */
+    HistoryArchive(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * Gets the name of the archive table of a year.
+     *
+     * @param year the year
+     * @return the table name
+     */
+    static String tableFor(int year) {
+        return HOT_TABLE + "_" + year;
+    }
+
+    /**
+     * Gets the archive tables of all archived years, newest first.
+     *
+     * @return the table names, empty if nothing is archived
+     * @throws DatabaseException if the catalog cannot be read
+     */
+    List<String> allTables() throws DatabaseException {
+        List<String> tables = new ArrayList<>();
+        for (int year : years()) {
+            tables.add(tableFor(year));
+        }
+        return tables;
+    }
+
+    /**
+     * Gets the archive tables of the archived years that overlap a date
+     * range, newest first. Tables of other years are pruned from queries.
+     *
+     * @param from the first date, inclusive
+     * @param to   the last date, inclusive
+     * @return the table names, empty if no archived year overlaps
+     * @throws DatabaseException if the catalog cannot be read
+     */
+    List<String> tablesBetween(LocalDate from, LocalDate to) throws DatabaseException {
+        List<String> tables = new ArrayList<>();
+        for (int year : years()) {
+            if (year >= from.getYear() && year <= to.getYear()) {
+                tables.add(tableFor(year));
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Checks whether any year is archived.
+     *
+     * @return true if there is at least one archive table
+     * @throws DatabaseException if the catalog cannot be read
+     */
+    boolean isEmpty() throws DatabaseException {
+        return years().length == 0;
+    }
+
+    /**
+     * Reloads the catalog now.
+     *
+     * @throws DatabaseException if the catalog cannot be read
+     */
+    void refresh() throws DatabaseException {
+        String sql = "SELECT year FROM " + CATALOG_TABLE + " ORDER BY year DESC";
+
+        try {
+            years = db.executeOnPrimary(sql, QueryClass.POINT_READ, stmt -> {
+                List<Integer> loaded = new ArrayList<>();
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        loaded.add(resultSet.getInt(1));
+                    }
+                }
+                return loaded.stream().mapToInt(Integer::intValue).toArray();
+            });
+        } catch (SQLException e) {
+            if (!NO_SUCH_TABLE.equals(e.getSQLState())) {
+                throw db.failure("Failed to read the history archive catalog", e);
+            }
+            years = new int[0];
+        }
+        loadedAt = System.currentTimeMillis();
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Gets the archived years, reloading the catalog if it is stale.
+     *
+     * @return the years, newest first
+     * @throws DatabaseException if the catalog cannot be read
+     */
+    private int[] years() throws DatabaseException {
+        if (System.currentTimeMillis() - loadedAt > REFRESH_INTERVAL_MS) {
+            refresh();
+        }
+        return years;
+    }
+}
@@ -0,0 +1,388 @@
+package main.dao.mysql;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import main.exception.DatabaseException;
+import main.util.Database;
+import main.util.Metrics;
+import main.util.QueryClass;
+
+/**
+ * Moves the patient history records of closed years to archive tables.
+ * <p>
+ * MySQL cannot partition {@code patient_history} by date, because
+ * partitioned InnoDB tables do not support the foreign keys the table
+ * relies on. Instead, every closed year gets its own compressed table,
+ * {@code patient_history_<year>}, with the same cascading foreign keys,
+ * and is listed in the {@code history_archive} catalog; both are created
+ * on demand. Deleting a patient, doctor or procedure thus deletes its
+ * archived records in the same statement. Archive tables created without
+ * the keys get them on the next run, after their orphaned records are
+ * deleted.
+ * {@link MySqlPatientHistoryDAO} reads the archive tables together with
+ * the main table and skips those outside the dates of a query.
+ * </p>
+ *
+ * <p>A year is registered in the catalog before any of its records move,
+ * and its records are then moved one month at a time, each month in one
+ * transaction that copies and deletes the same rows. An interrupted run
+ * can be run again. Records dated in an archived year that are created
+ * later stay in the main table until the next run. Moved rows are counted
+ * in the {@code history.archived} {@link Metrics} counter.</p>
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * HistoryArchiver.Report report = new HistoryArchiver(backend).archiveBefore(2024, false);
+ * System.out.println(report);
+ * }</pre>
+ */
+public class HistoryArchiver {
+
+    private static final String COLUMNS =
+        "id, patientId, procedureId, date, billing, doctorId, version";
+
+    private final Database db;
+    private final HistoryArchive archive;
+
+    /**
+     * The outcome of an archival run.
+     */
+    public static final class Report {
+        private final boolean dryRun;
+        private final Map<Integer, Long> rowsByYear = new TreeMap<>();
+
+        /**
+         * Constructs an empty report.
+         *
+         * @param dryRun whether the run only counted the records
+         */
+        private Report(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        /**
+         * Checks whether the run only counted the records.
+         *
+         * @return true for a dry run
+         */
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        /**
+         * Gets the number of records archived per year.
+         *
+         * @return the record counts by year, in year order
+         */
+        public Map<Integer, Long> getRowsByYear() {
+            return Collections.unmodifiableMap(rowsByYear);
+        }
+
+        /**
+         * Gets the total number of records archived.
+         *
+         * @return the record count
+         */
+        public long getTotalRows() {
+            long total = 0;
+            for (long rows : rowsByYear.values()) {
+                total += rows;
+            }
+            return total;
+        }
+
+        /**
+         * Returns a string representation of this report.
+         *
+         * @return a summary of the archived years
+         */
+        @Override
+        public String toString() {
+            if (rowsByYear.isEmpty()) {
+                return "No patient history to archive";
+            }
+            return (dryRun ? "Would archive " : "Archived ") + getTotalRows() +
+                " patient history record(s) by year: " + rowsByYear;
+        }
+    }
+
+    /**
+     * Constructs a new HistoryArchiver for a MySQL backend.
+     *
+     * @param backend the backend whose history to archive
+     */
+    public HistoryArchiver(MySqlStorageBackend backend) {
+        this.db = backend.getDatabase();
+        this.archive = backend.getHistoryArchive();
+    }
+
+    /**
+     * Archives the records of every year before a given year.
+     * <p>
+     * Unless this is a dry run, archive tables without foreign keys get
+     * them first.
+     * </p>
+     *
+     * @param firstOpenYear the first year whose records stay in the main table
+     * @param dryRun        true to only count the records that would be moved
+     * @return what was archived
+     * @throws DatabaseException if a database access error occurs; months
+     *                           moved before the error stay archived
+     */
+    public Report archiveBefore(int firstOpenYear, boolean dryRun) throws DatabaseException {
+        Report report = new Report(dryRun);
+        Map<Integer, Long> pending = countClosedYears(firstOpenYear);
+        if (dryRun) {
+            report.rowsByYear.putAll(pending);
+            return report;
+        }
+        for (String table : archive.allTables()) {
+            addMissingForeignKeys(table);
+        }
+        if (!pending.isEmpty()) {
+            createCatalog();
+        }
+        for (int year : pending.keySet()) {
+            report.rowsByYear.put(year, archiveYear(year));
+        }
+        return report;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Counts the records in the main table per year before a given year.
+     *
+     * @param firstOpenYear the first year that is not counted
+     * @return the record counts by year
+     * @throws DatabaseException if a database access error occurs
+     */
+    private Map<Integer, Long> countClosedYears(int firstOpenYear) throws DatabaseException {
+        String sql =
+            "SELECT YEAR(date), COUNT(*) FROM " + HistoryArchive.HOT_TABLE +
+            " WHERE date < ? GROUP BY YEAR(date)";
+
+        try {
+            return db.executeOnPrimary(sql, QueryClass.REPORT, stmt -> {
+                stmt.setDate(1, Date.valueOf(LocalDate.of(firstOpenYear, 1, 1)));
+                Map<Integer, Long> counts = new TreeMap<>();
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        counts.put(resultSet.getInt(1), resultSet.getLong(2));
+                    }
+                }
+                return counts;
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to count patient history by year", e);
+        }
+    }
+
+    /**
+     * Moves the records of one year to its archive table.
+     *
+     * @param year the year
+     * @return the number of records moved
+     * @throws DatabaseException if a database access error occurs
+     */
+    private long archiveYear(int year) throws DatabaseException {
+        String table = HistoryArchive.tableFor(year);
+        update(
+            "CREATE TABLE IF NOT EXISTS " + table + " (" +
+                "id varchar(25) NOT NULL, " +
+                "patientId int NOT NULL, " +
+                "procedureId varchar(25) NOT NULL, " +
+                "date date NOT NULL, " +
+                "billing double NOT NULL, " +
+                "doctorId varchar(25) NOT NULL, " +
+                "version bigint NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (id), " +
+                "KEY procedureId_idx (procedureId), " +
+                "KEY doctorId_idx (doctorId), " +
+                "KEY patientId_idx (patientId), " +
+                "KEY date_idx (date), " +
+                foreignKeys(table, "CONSTRAINT ") +
+                ") ROW_FORMAT=COMPRESSED",
+            "Failed to create archive table " + table
+        );
+        // Register the year first, so that readers look in the table before rows move
+        update(
+            "INSERT INTO " + HistoryArchive.CATALOG_TABLE + " (year, row_count, archived_at) " +
+                "VALUES (" + year + ", 0, " + System.currentTimeMillis() + ") AS new " +
+                "ON DUPLICATE KEY UPDATE archived_at = new.archived_at",
+            "Failed to register archive year " + year
+        );
+        archive.refresh();
+
+        long moved = 0;
+        for (int month = 1; month <= 12; month++) {
+            LocalDate from = LocalDate.of(year, month, 1);
+            moved += moveMonth(table, year, from, from.plusMonths(1));
+        }
+        return moved;
+    }
+
+    /**
+     * Moves the records of one month in one transaction.
+     *
+     * @param table the archive table
+     * @param year  the archived year
+     * @param from  the first day of the month
+     * @param to    the first day of the next month
+     * @return the number of records moved
+     * @throws DatabaseException if a database access error occurs or the
+     *                           month changed while it was moved
+     */
+    private int moveMonth(String table, int year, LocalDate from, LocalDate to)
+        throws DatabaseException {
+        String range = " WHERE date >= ? AND date < ?";
+        int moved = db.inTransaction(() -> {
+            int copied = updateRange(
+                "INSERT INTO " + table + " (" + COLUMNS + ") SELECT " + COLUMNS +
+                    " FROM " + HistoryArchive.HOT_TABLE + range,
+                from,
+                to
+            );
+            if (copied == 0) {
+                return 0;
+            }
+            int deleted = updateRange(
+                "DELETE FROM " + HistoryArchive.HOT_TABLE + range,
+                from,
+                to
+            );
+            if (deleted != copied) {
+                throw new DatabaseException(
+                    "Patient history of " + from.getYear() + "-" + from.getMonthValue() +
+                        " changed while it was archived; run the archival again"
+                );
+            }
+            update(
+                "UPDATE " + HistoryArchive.CATALOG_TABLE + " SET row_count = row_count + " +
+                    copied + " WHERE year = " + year,
+                "Failed to update archive catalog"
+            );
+            return copied;
+        });
+        Metrics.counter("history.archived").add(moved);
+        return moved;
+    }
+
+    /**
+     * Creates the archive catalog if it does not exist.
+     *
+     * @throws DatabaseException if a database access error occurs
+     */
+    private void createCatalog() throws DatabaseException {
+        update(
+            "CREATE TABLE IF NOT EXISTS " + HistoryArchive.CATALOG_TABLE + " (" +
+                "year int NOT NULL, " +
+                "row_count bigint NOT NULL, " +
+                "archived_at bigint NOT NULL, " +
+                "PRIMARY KEY (year))",
+            "Failed to create the archive catalog"
+        );
+    }
+
+    /**
+     * Adds the foreign keys to an archive table created without them.
+     * Records whose patient, doctor or procedure no longer exists are
+     * deleted first, since the keys would reject them.
+     *
+     * @param table the archive table
+     * @throws DatabaseException if a database access error occurs
+     */
+    private void addMissingForeignKeys(String table) throws DatabaseException {
+        String sql =
+            "SELECT COUNT(*) FROM information_schema.REFERENTIAL_CONSTRAINTS " +
+            "WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+
+        long keys;
+        try {
+            keys = db.executeOnPrimary(sql, QueryClass.REPORT, stmt -> {
+                stmt.setString(1, table);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    return resultSet.next() ? resultSet.getLong(1) : 0L;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to read the foreign keys of " + table, e);
+        }
+        if (keys > 0) {
+            return;
+        }
+        update(
+            "DELETE a FROM " + table + " a " +
+                "LEFT JOIN patients p ON p.mrn = a.patientId " +
+                "LEFT JOIN doctors d ON d.id = a.doctorId " +
+                "LEFT JOIN procedures pr ON pr.id = a.procedureId " +
+                "WHERE p.mrn IS NULL OR d.id IS NULL OR pr.id IS NULL",
+            "Failed to delete orphaned records from " + table
+        );
+        update(
+            "ALTER TABLE " + table + " " + foreignKeys(table, "ADD CONSTRAINT "),
+            "Failed to add foreign keys to " + table
+        );
+    }
+
+    /**
+     * Returns the foreign key clauses of an archive table, the same as
+     * those of the main table.
+     *
+     * @param table  the archive table, whose name prefixes the constraint names
+     * @param clause what each clause starts with, {@code CONSTRAINT} in a
+     *               table definition or {@code ADD CONSTRAINT} in an
+     *               {@code ALTER TABLE}
+     * @return the comma-separated clauses
+     */
+    private static String foreignKeys(String table, String clause) {
+        return clause + table + "_to_doc_fk FOREIGN KEY (doctorId) " +
+                "REFERENCES doctors (id) ON DELETE CASCADE ON UPDATE CASCADE, " +
+            clause + table + "_to_pat_fk FOREIGN KEY (patientId) " +
+                "REFERENCES patients (mrn) ON DELETE CASCADE ON UPDATE CASCADE, " +
+            clause + table + "_to_proc_fk FOREIGN KEY (procedureId) " +
+                "REFERENCES procedures (id) ON DELETE CASCADE ON UPDATE CASCADE";
+    }
+
+    /**
+     * Runs a statement without parameters.
+     *
+     * @param sql     the statement
+     * @param failure the message of the exception thrown on failure
+     * @return the number of affected rows
+     * @throws DatabaseException if a database access error occurs
+     */
+    private int update(String sql, String failure) throws DatabaseException {
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> stmt.executeUpdate());
+        } catch (SQLException e) {
+            throw db.failure(failure, e);
+        }
+    }
+
+    /**
+     * Runs a statement over a date range of the main table.
+     *
+     * @param sql  the statement, with the two date parameters of the range
+     * @param from the first date, inclusive
+     * @param to   the last date, exclusive
+     * @return the number of affected rows
+     * @throws DatabaseException if a database access error occurs
+     */
+    private int updateRange(String sql, LocalDate from, LocalDate to) throws DatabaseException {
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setDate(1, Date.valueOf(from));
+                stmt.setDate(2, Date.valueOf(to));
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to move patient history to the archive", e);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package main.dao.mysql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import main.exception.DatabaseException;
+import main.util.Collation;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * Statements over many keys at once, using {@code IN} lists of at most
+ * {@value #KEYS_PER_STATEMENT} keys.
+ * <p>
+ * Bounding the list keeps each statement within the driver's packet size,
+ * and for deletes bounds the rows locked and the undo log written by one
+ * statement. Each statement is atomic; a batch of several statements is
+ * not, unless the caller runs it in a transaction.
+ * </p>
+ */
+final class KeyBatches {
+
+    /** The maximum number of keys in one {@code IN} list. */
+    static final int KEYS_PER_STATEMENT = 500;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private KeyBatches() {}
+
+    /**
+     * Deletes the rows of a table whose key is in a collection.
+     *
+     * @param db        the database to write to
+     * @param table     the table name
+     * @param keyColumn the key column
+     * @param keys      the keys of the rows to delete
+     * @param failure   the message of the exception thrown if a statement fails
+     * @return the number of rows deleted
+     * @throws DatabaseException if a statement fails
+     */
+    static int delete(
+        Database db,
+        String table,
+        String keyColumn,
+        Collection<?> keys,
+        String failure
+    ) throws DatabaseException {
+        int deleted = 0;
+        for (List<?> chunk : chunks(keys)) {
+            String sql = "DELETE FROM " + table + " WHERE " + keyColumn + inList(chunk.size());
+            try {
+                deleted += db.execute(sql, QueryClass.WRITE, stmt -> {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setObject(i + 1, chunk.get(i));
+                    }
+                    return stmt.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw db.failure(failure, e);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Reads one string column of the rows of several tables whose value in
+     * another column is in a collection.
+     *
+     * @param db          the database to read from
+     * @param tables      the tables to read, combined with {@code UNION ALL}
+     * @param column      the column to read
+     * @param whereColumn the column matched against the values
+     * @param values      the values to match
+     * @param failure     the message of the exception thrown if a query fails
+     * @return the column values of the matching rows
+     * @throws DatabaseException if a query fails
+     */
+    static List<String> select(
+        Database db,
+        List<String> tables,
+        String column,
+        String whereColumn,
+        Collection<?> values,
+        String failure
+    ) throws DatabaseException {
+        List<String> result = new ArrayList<>();
+        for (List<?> chunk : chunks(values)) {
+            StringBuilder sql = new StringBuilder();
+            for (String table : tables) {
+                if (sql.length() > 0) {
+                    sql.append(" UNION ALL ");
+                }
+                sql.append("SELECT ").append(column).append(" FROM ").append(table)
+                    .append(" WHERE ").append(whereColumn).append(inList(chunk.size()));
+            }
+            try {
+                db.execute(sql.toString(), QueryClass.SCAN, stmt -> {
+                    int index = 1;
+                    for (int t = 0; t < tables.size(); t++) {
+                        for (Object value : chunk) {
+                            stmt.setObject(index++, value);
+                        }
+                    }
+                    try (ResultSet resultSet = stmt.executeQuery()) {
+                        while (resultSet.next()) {
+                            result.add(resultSet.getString(1));
+                        }
+                    }
+                    return null;
+                });
+            } catch (SQLException e) {
+                throw db.failure(failure, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the keys that are in the key column of at least one of several
+     * tables. String keys are matched under the collation of the key
+     * column, so {@code "d1"} is kept when {@code "D1"} is stored.
+     *
+     * @param <K>       the key type
+     * @param db        the database to read from
+     * @param tables    the tables to look in, combined with {@code UNION ALL}
+     * @param keyColumn the key column
+     * @param keys      the keys to check
+     * @param failure   the message of the exception thrown if a query fails
+     * @return the keys found, each once, in the order given
+     * @throws DatabaseException if a query fails
+     */
+    static <K> List<K> existing(
+        Database db,
+        List<String> tables,
+        String keyColumn,
+        Collection<? extends K> keys,
+        String failure
+    ) throws DatabaseException {
+        Set<Object> stored = new HashSet<>();
+        for (List<?> chunk : chunks(keys)) {
+            StringBuilder sql = new StringBuilder();
+            for (String table : tables) {
+                if (sql.length() > 0) {
+                    sql.append(" UNION ALL ");
+                }
+                sql.append("SELECT ").append(keyColumn).append(" FROM ").append(table)
+                    .append(" WHERE ").append(keyColumn).append(inList(chunk.size()));
+            }
+            try {
+                db.execute(sql.toString(), QueryClass.SCAN, stmt -> {
+                    int index = 1;
+                    for (int t = 0; t < tables.size(); t++) {
+                        for (Object key : chunk) {
+                            stmt.setObject(index++, key);
+                        }
+                    }
+                    try (ResultSet resultSet = stmt.executeQuery()) {
+                        while (resultSet.next()) {
+                            stored.add(collated(resultSet.getObject(1)));
+                        }
+                    }
+                    return null;
+                });
+            } catch (SQLException e) {
+                throw db.failure(failure, e);
+            }
+        }
+        List<K> found = new ArrayList<>();
+        for (K key : keys) {
+            if (stored.remove(collated(key))) {
+                found.add(key);
+            }
+        }
+        return found;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Splits keys into lists of at most {@value #KEYS_PER_STATEMENT}.
+     *
+     * @param keys the keys
+     * @return the lists, in the order of the keys
+     */
+    private static List<List<?>> chunks(Collection<?> keys) {
+        List<?> all = new ArrayList<>(keys);
+        List<List<?>> chunks = new ArrayList<>();
+        for (int from = 0; from < all.size(); from += KEYS_PER_STATEMENT) {
+            chunks.add(all.subList(from, Math.min(all.size(), from + KEYS_PER_STATEMENT)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Builds an {@code IN} list of placeholders.
+     *
+     * @param size the number of placeholders
+     * @return the clause, with a leading space
+     */
+    private static String inList(int size) {
+        return " IN (" + String.join(", ", Collections.nCopies(size, "?")) + ")";
+    }
+
+    /**
+     * Brings a key to the form under which the key column compares it.
+     *
+     * @param key the key as given or stored
+     * @return the normalized key for strings, the key itself otherwise
+     */
+    private static Object collated(Object key) {
+        return key instanceof String ? Collation.key((String) key) : key;
+    }
+}
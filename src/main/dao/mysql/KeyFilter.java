@@ -0,0 +1,312 @@
+package main.dao.mysql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import main.util.BloomFilter;
+import main.util.Collation;
+import main.util.Database;
+import main.util.Metrics;
+import main.util.QueryClass;
+
+/**
+ * Bloom filter over the primary keys of one table.
+ * <p>
+ * The filter is loaded from the table when the backend starts or, when the
+ * connection is deferred, while it warms up or else on its first use, and
+ * every key inserted through
+ * the DAO is added to it, so a negative answer from
+ * {@link #mightContain(int)} means the key is not in the table and the
+ * duplicate check before a create can skip its query. Deleted keys stay in the filter and
+ * only cost an extra query. When more keys have been added than the filter
+ * was sized for, it is rebuilt from the table. While another thread loads
+ * the filter, lookups query the database instead of waiting.
+ * </p>
+ *
+ * <p>String keys are compared the way the case- and accent-insensitive
+ * collation of the key columns compares them: they are stored and looked
+ * up {@link Collation#key(String) normalized}, so {@code "d1"} is not reported
+ * absent when {@code "D1"} exists. Folding more keys together than the
+ * collation does only costs false positives.</p>
+ *
+ * <p>Rows inserted by <em>other</em> processes after start-up are not in the
+ * filter, so it is only consulted where the primary key catches a wrong
+ * answer; all other existence checks query the table.</p>
+ *
+ * <p>The following metrics are reported per table:</p>
+ * <ul>
+ *   <li>{@code bloom.<table>.skipped} - lookups answered without a query</li>
+ *   <li>{@code bloom.<table>.false_positives} - queries for keys that did not exist</li>
+ *   <li>{@code bloom.<table>.false_positive_rate} - false positives among all absent keys</li>
+ * </ul>
+ */
+final class KeyFilter {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long MIN_CAPACITY = 1 << 16;
+
+    /** Filter that never skips a query. */
+    static final KeyFilter DISABLED = new KeyFilter();
+
+    private final Database db;
+    private final String table;
+    private final String column;
+    private final boolean intKeys;
+    private final LongAdder skipped;
+    private final LongAdder falsePositives;
+    private volatile BloomFilter filter;
+    private long keyCount;
+
+    /** Whether the load has started; it is not retried if it fails. */
+    private final AtomicBoolean loadStarted;
+
+    /** Keys inserted after a deferred load started, added once it completes. */
+    private List<Object> pending;
+
+    /**
+     * Constructs the disabled filter.
+     */
+    private KeyFilter() {
+        this.db = null;
+        this.table = null;
+        this.column = null;
+        this.intKeys = false;
+        this.skipped = new LongAdder();
+        this.falsePositives = new LongAdder();
+        this.loadStarted = new AtomicBoolean(true);
+    }
+
+    /**
+     * Constructs a new KeyFilter and, unless deferred, loads it from the
+     * table.
+     *
+     * @param db      the database connection
+     * @param table   the table name
+     * @param column  the primary key column
+     * @param intKeys true if the key column is an integer, false for strings
+     * @param load    true to load the filter now, false to wait for
+     *                {@link #load()} or the first use
+     */
+    KeyFilter(Database db, String table, String column, boolean intKeys, boolean load) {
+        this.db = db;
+        this.table = table;
+        this.column = column;
+        this.intKeys = intKeys;
+        this.skipped = Metrics.counter("bloom." + table + ".skipped");
+        this.falsePositives = Metrics.counter("bloom." + table + ".false_positives");
+        Metrics.gauge("bloom." + table + ".false_positive_rate", this::falsePositiveRate);
+        this.loadStarted = new AtomicBoolean();
+        this.pending = new ArrayList<>();
+        if (load) {
+            load();
+        }
+    }
+
+    /**
+     * Loads the filter from the table, unless its load has already started.
+     * <p>
+     * If the keys cannot be loaded, a warning is printed and the filter
+     * stays disabled, so lookups always query the database. Keys inserted
+     * through the DAO between the start of the load and its query, possibly
+     * in a transaction the load cannot see yet, are added once it
+     * completes; keys inserted during the load wait for it. The disabled
+     * filter ignores this call.
+     * </p>
+     */
+    void load() {
+        if (loadStarted.compareAndSet(false, true)) {
+            loadNow();
+        }
+    }
+
+    /**
+     * Checks whether an integer key may be in the table, counting a
+     * definite negative as a skipped query.
+     *
+     * @param key the key to check
+     * @return false if the key is definitely not in the table, true otherwise
+     */
+    boolean mightContain(int key) {
+        BloomFilter current = loaded();
+        if (current == null || current.mightContain(key)) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    /**
+     * Checks whether a string key may be in the table, counting a
+     * definite negative as a skipped query.
+     *
+     * @param key the key to check
+     * @return false if the key is definitely not in the table, true otherwise
+     */
+    boolean mightContain(String key) {
+        BloomFilter current = loaded();
+        if (current == null || current.mightContain(Collation.key(key))) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    /**
+     * Records the result of a query made after {@code mightContain} returned true.
+     *
+     * @param found whether the key was found in the table
+     */
+    void recordQuery(boolean found) {
+        if (!found && filter != null) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Adds an inserted integer key.
+     *
+     * @param key the key
+     */
+    synchronized void add(int key) {
+        BloomFilter current = loaded();
+        if (current != null) {
+            current.add(key);
+            afterAdd(current);
+        } else if (pending != null) {
+            pending.add(key);
+        }
+    }
+
+    /**
+     * Adds an inserted string key.
+     *
+     * @param key the key
+     */
+    synchronized void add(String key) {
+        String normalized = Collation.key(key);
+        BloomFilter current = loaded();
+        if (current != null) {
+            current.add(normalized);
+            afterAdd(current);
+        } else if (pending != null) {
+            pending.add(normalized);
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Returns the filter, loading it first if this is its first use.
+     *
+     * @return the filter, or null while another thread loads it or if it
+     *         is disabled
+     */
+    private BloomFilter loaded() {
+        BloomFilter current = filter;
+        if (current == null) {
+            load();
+            current = filter;
+        }
+        return current;
+    }
+
+    /**
+     * Loads the filter and adds the pending keys, as described in
+     * {@link #load()}.
+     */
+    private synchronized void loadNow() {
+        try {
+            rebuild();
+            for (Object key : pending) {
+                if (key instanceof Integer) {
+                    filter.add((Integer) key);
+                } else {
+                    filter.add((String) key);
+                }
+            }
+            keyCount += pending.size();
+        } catch (SQLException e) {
+            System.out.println(
+                "[WARN] Key filter for " + table + " disabled: " + e.getMessage()
+            );
+        }
+        pending = null;
+    }
+
+    /**
+     * Rebuilds the filter once it holds more keys than it was sized for.
+     * Caller must hold the lock.
+     *
+     * @param current the filter the key was added to
+     */
+    private void afterAdd(BloomFilter current) {
+        if (++keyCount > current.getCapacity()) {
+            try {
+                rebuild();
+            } catch (SQLException e) {
+                filter = null;
+                System.out.println(
+                    "[WARN] Key filter for " + table + " disabled: " + e.getMessage()
+                );
+            }
+        }
+    }
+
+    /**
+     * Loads all keys of the table into a new filter sized for twice the
+     * current row count. The keys are read from the primary, since a
+     * lagging replica could miss keys and make the filter reject them.
+     *
+     * @throws SQLException if the keys cannot be read
+     */
+    private synchronized void rebuild() throws SQLException {
+        long rows = db.executeOnPrimary(
+            "SELECT COUNT(*) FROM " + table,
+            QueryClass.REPORT,
+            stmt -> {
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            }
+        );
+
+        long capacity = Math.max(rows * 2, MIN_CAPACITY);
+        BloomFilter loaded = db.executeOnPrimary(
+            "SELECT " + column + " FROM " + table,
+            QueryClass.REPORT,
+            stmt -> {
+                // Start over if the load is retried on a new connection
+                BloomFilter keys = new BloomFilter(capacity, FALSE_POSITIVE_RATE);
+                // Stream the keys instead of buffering the whole result
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        if (intKeys) {
+                            keys.add(resultSet.getInt(1));
+                        } else {
+                            keys.add(Collation.key(resultSet.getString(1)));
+                        }
+                    }
+                }
+                return keys;
+            }
+        );
+        keyCount = rows;
+        filter = loaded;
+    }
+
+    /**
+     * Computes the share of absent keys that the filter failed to reject.
+     *
+     * @return the observed false positive rate, or 0 if no absent key was looked up
+     */
+    private double falsePositiveRate() {
+        long positives = falsePositives.sum();
+        long negatives = positives + skipped.sum();
+        return negatives == 0 ? 0 : (double) positives / negatives;
+    }
+}
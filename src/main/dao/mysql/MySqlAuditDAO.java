@@ -0,0 +1,70 @@
+package main.dao.mysql;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import main.audit.AuditRecord;
+import main.dao.AuditDAO;
+import main.exception.DatabaseException;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * Data Access Object for the {@code audit_log} table.
+ * <p>
+ * A batch is written with multi-row {@code INSERT} statements of up to
+ * {@value #ROWS_PER_STATEMENT} rows each, so a batch of audit records costs
+ * a few round trips instead of one per record.
+ * </p>
+ */
+public class MySqlAuditDAO implements AuditDAO {
+
+    /** The maximum number of rows inserted by one statement. */
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    private static final String INSERT_PREFIX =
+        "INSERT INTO audit_log (sequence, created_at, actor, action, entity, entity_key) VALUES ";
+
+    private final Database db;
+
+    /**
+     * Constructs a new MySqlAuditDAO with the specified database connection.
+     *
+     * @param db the database connection to use
+     */
+    public MySqlAuditDAO(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void appendAll(List<AuditRecord> records) throws DatabaseException {
+        for (int from = 0; from < records.size(); from += ROWS_PER_STATEMENT) {
+            List<AuditRecord> chunk = records.subList(
+                from,
+                Math.min(records.size(), from + ROWS_PER_STATEMENT)
+            );
+            String sql =
+                INSERT_PREFIX + String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?, ?, ?, ?)"));
+
+            try {
+                db.execute(sql, QueryClass.WRITE, stmt -> {
+                    int index = 1;
+                    for (AuditRecord record : chunk) {
+                        stmt.setLong(index++, record.getSequence());
+                        stmt.setLong(index++, record.getTimestamp());
+                        stmt.setString(index++, record.getActor());
+                        stmt.setString(index++, record.getAction().name());
+                        stmt.setString(index++, record.getEntityType().name());
+                        stmt.setString(index++, record.getKey());
+                    }
+                    return stmt.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw db.failure("Failed to write audit records", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package main.dao.mysql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import main.dao.DoctorDAO;
+import main.exception.ConflictException;
+import main.exception.DatabaseException;
+import main.model.Doctor;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * Data Access Object for Doctor entities.
+ * <p>
+ * This class provides CRUD operations for the doctors table in the database.
+ * It implements the DoctorDAO interface to ensure consistent operation signatures
+ * across all DAO classes.
+ * </p>
+ *
+ */
+public class MySqlDoctorDAO implements DoctorDAO {
+
+    /**
+     * The columns read into an entity, in the order in which
+     * {@link #mapResultSetToDoctor(ResultSet)} reads them by position.
+     */
+    private static final String COLUMNS =
+        "id, name, version";
+
+    /** The statements creating or replacing doctors. */
+    private static final UpsertStatements<Doctor> UPSERTS =
+        new UpsertStatements<>("doctors", COLUMNS, MySqlDoctorDAO::bindRow);
+
+    private final Database db;
+    private final KeyFilter keys;
+
+    /**
+     * Constructs a new MySqlDoctorDAO with the specified database connection.
+     *
+     * @param db the database connection to use
+     */
+    public MySqlDoctorDAO(Database db) {
+        this(db, KeyFilter.DISABLED);
+    }
+
+    /**
+     * Constructs a new MySqlDoctorDAO that skips {@link #existsBeforeCreate} queries for keys
+     * rejected by the given key filter.
+     *
+     * @param db   the database connection to use
+     * @param keys the filter over the primary keys of the table
+     */
+    MySqlDoctorDAO(Database db, KeyFilter keys) {
+        this.db = db;
+        this.keys = keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(Doctor doctor) throws DatabaseException {
+        String sql = "INSERT INTO doctors (id, name, version) VALUES (?, ?, ?)";
+
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setString(1, doctor.getId());
+                stmt.setString(2, doctor.getName());
+                stmt.setLong(3, doctor.getVersion());
+
+                boolean created = stmt.executeUpdate() > 0;
+                if (created) {
+                    keys.add(doctor.getId());
+                }
+                return created;
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to create doctor", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Doctor read(String id) throws DatabaseException {
+        String sql = "SELECT " + COLUMNS + " FROM doctors WHERE id = ?";
+
+        try {
+            return db.execute(sql, QueryClass.POINT_READ, stmt -> {
+                stmt.setString(1, id);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    if (resultSet.next()) {
+                        return mapResultSetToDoctor(resultSet);
+                    }
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to read doctor", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Doctor> readAll() throws DatabaseException {
+        String sql = "SELECT " + COLUMNS + " FROM doctors";
+
+        try {
+            return db.execute(sql, QueryClass.SCAN, stmt -> {
+                List<Doctor> doctors = new ArrayList<>();
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        doctors.add(mapResultSetToDoctor(resultSet));
+                    }
+                    return doctors;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to read all doctors", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The rows are streamed from the server one at a time, so memory use
+     * does not grow with the size of the table. The scan is not retried if
+     * the connection fails, since the rows already handed to the action
+     * would be handed over again.
+     * </p>
+     */
+    @Override
+    public void streamAll(Consumer<? super Doctor> action) throws DatabaseException {
+        String sql = "SELECT " + COLUMNS + " FROM doctors";
+
+        try {
+            db.executeOnce(sql, QueryClass.SCAN, stmt -> {
+                // Connector/J streams a forward-only result set at this fetch size
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        action.accept(mapResultSetToDoctor(resultSet));
+                    }
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to stream doctors", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The row is only updated if it still has the doctor's version.
+     * </p>
+     *
+     * @throws ConflictException if the doctor was changed since it was read
+     */
+    @Override
+    public boolean update(Doctor doctor) throws DatabaseException {
+        String sql =
+            "UPDATE doctors SET name = ?, version = version + 1 WHERE id = ? AND version = ?";
+
+        int updated;
+        try {
+            updated = db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setString(1, doctor.getName());
+                stmt.setString(2, doctor.getId());
+                stmt.setLong(3, doctor.getVersion());
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to update doctor", e);
+        }
+        return RowVersion.completeUpdate(db, updated, doctor, "doctors", "id", doctor.getId(), "Doctor");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(Doctor doctor) throws DatabaseException {
+        return upsertAll(Collections.singletonList(doctor)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The doctors are written with multi-row
+     * {@code INSERT ... ON DUPLICATE KEY UPDATE} statements of up to
+     * {@value UpsertStatements#ROWS_PER_STATEMENT} rows each.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends Doctor> doctors) throws DatabaseException {
+        int created = UPSERTS.write(db, new ArrayList<>(doctors), "Failed to upsert doctors");
+        for (Doctor doctor : doctors) {
+            keys.add(doctor.getId());
+        }
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(String id) throws DatabaseException {
+        String sql = "DELETE FROM doctors WHERE id = ?";
+
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setString(1, id);
+                return stmt.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to delete doctor", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Deletes up to {@value KeyBatches#KEYS_PER_STATEMENT} doctors per
+     * statement, each with its cascade.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends String> ids) throws DatabaseException {
+        return KeyBatches.delete(db, "doctors", "id", ids, "Failed to delete doctors");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(String id) throws DatabaseException {
+        String sql = "SELECT COUNT(*) FROM doctors WHERE id = ?";
+
+        try {
+            return db.execute(sql, QueryClass.POINT_READ, stmt -> {
+                stmt.setString(1, id);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    if (resultSet.next()) {
+                        return resultSet.getInt(1) > 0;
+                    }
+                    return false;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to check doctor existence", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Skips the query for a key rejected by the key filter.
+     * </p>
+     */
+    @Override
+    public boolean existsBeforeCreate(String id) throws DatabaseException {
+        if (!keys.mightContain(id)) {
+            return false;
+        }
+        boolean found = exists(id);
+        keys.recordQuery(found);
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Looks up to {@value KeyBatches#KEYS_PER_STATEMENT} keys per query.
+     * </p>
+     */
+    @Override
+    public List<String> readExistingIds(Collection<? extends String> ids) throws DatabaseException {
+        return KeyBatches.existing(
+            db,
+            Collections.singletonList("doctors"),
+            "id",
+            ids,
+            "Failed to check doctor existence"
+        );
+    }
+
+    /**
+     * Maps a ResultSet row to a Doctor object.
+     *
+     * @param resultSet the ResultSet positioned at a valid row
+     * @return a Doctor object populated with data from the ResultSet
+     * @throws SQLException if a database access error occurs
+     */
+    private Doctor mapResultSetToDoctor(ResultSet resultSet)
+        throws SQLException {
+        Doctor doctor = new Doctor(
+            resultSet.getString(1),
+            resultSet.getString(2)
+        );
+        doctor.setVersion(resultSet.getLong(3));
+        return doctor;
+    }
+
+    /**
+     * Binds the columns of a doctor, in {@link #COLUMNS} order.
+     *
+     * @param stmt   the statement
+     * @param index  the index of the first parameter of the row
+     * @param doctor the doctor
+     * @return the index of the first parameter of the next row
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static int bindRow(PreparedStatement stmt, int index, Doctor doctor)
+        throws SQLException {
+        stmt.setString(index++, doctor.getId());
+        stmt.setString(index++, doctor.getName());
+        stmt.setLong(index++, doctor.getVersion());
+        return index;
+    }
+}
@@ -0,0 +1,175 @@
+package main.dao.mysql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import main.dao.OutboxDAO;
+import main.event.ChangeEvent;
+import main.exception.DatabaseException;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * Data Access Object for the change event outbox table.
+ * <p>
+ * Events are appended through the connection of the calling thread, so
+ * inside {@link Database#inTransaction} they commit or roll back together
+ * with the write they describe. Sequence numbers come from the table's
+ * {@code AUTO_INCREMENT} column. Reads always go to the primary, since a
+ * replica may not have the newest events yet.
+ * </p>
+ */
+public class MySqlOutboxDAO implements OutboxDAO {
+
+    /**
+     * The columns read into an event, in the order in which
+     * {@link #mapResultSetToEvent(ResultSet)} reads them by position.
+     */
+    private static final String COLUMNS =
+        "sequence, entity, operation, entity_key, payload, created_at";
+
+    /** The maximum number of events appended by one statement. */
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    private static final String INSERT_PREFIX =
+        "INSERT INTO outbox (entity, operation, entity_key, payload, created_at) VALUES ";
+
+    private final Database db;
+
+    /**
+     * Constructs a new MySqlOutboxDAO with the specified database connection.
+     *
+     * @param db the database connection to use
+     */
+    public MySqlOutboxDAO(Database db) {
+        this.db = db;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void append(ChangeEvent event) throws DatabaseException {
+        String sql =
+            "INSERT INTO outbox (entity, operation, entity_key, payload, created_at) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+        try {
+            db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setString(1, event.getEntityType().name());
+                stmt.setString(2, event.getOperation().name());
+                stmt.setString(3, event.getKey());
+                stmt.setString(4, event.getPayload());
+                stmt.setLong(5, event.getTimestamp());
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to append change event", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The events are inserted with multi-row statements of up to
+     * {@value #ROWS_PER_STATEMENT} rows each, which assign their sequence
+     * numbers in order.
+     * </p>
+     */
+    @Override
+    public void appendAll(List<ChangeEvent> events) throws DatabaseException {
+        for (int from = 0; from < events.size(); from += ROWS_PER_STATEMENT) {
+            List<ChangeEvent> chunk = events.subList(
+                from,
+                Math.min(events.size(), from + ROWS_PER_STATEMENT)
+            );
+            String sql =
+                INSERT_PREFIX + String.join(", ", Collections.nCopies(chunk.size(), "(?, ?, ?, ?, ?)"));
+
+            try {
+                db.execute(sql, QueryClass.WRITE, stmt -> {
+                    int index = 1;
+                    for (ChangeEvent event : chunk) {
+                        stmt.setString(index++, event.getEntityType().name());
+                        stmt.setString(index++, event.getOperation().name());
+                        stmt.setString(index++, event.getKey());
+                        stmt.setString(index++, event.getPayload());
+                        stmt.setLong(index++, event.getTimestamp());
+                    }
+                    return stmt.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw db.failure("Failed to append change events", e);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ChangeEvent> readOldest(int limit) throws DatabaseException {
+        String sql = "SELECT " + COLUMNS + " FROM outbox ORDER BY sequence LIMIT ?";
+
+        try {
+            return db.executeOnPrimary(sql, QueryClass.SCAN, stmt -> {
+                stmt.setInt(1, limit);
+                List<ChangeEvent> events = new ArrayList<>();
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        events.add(mapResultSetToEvent(resultSet));
+                    }
+                    return events;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to read change events", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int delete(List<ChangeEvent> events) throws DatabaseException {
+        if (events.isEmpty()) {
+            return 0;
+        }
+        String sql =
+            "DELETE FROM outbox WHERE sequence IN (" +
+                String.join(", ", Collections.nCopies(events.size(), "?")) + ")";
+
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                for (int i = 0; i < events.size(); i++) {
+                    stmt.setLong(i + 1, events.get(i).getSequence());
+                }
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to delete change events", e);
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Maps the current row of a result set to a ChangeEvent.
+     *
+     * @param resultSet the result set positioned on a row
+     * @return the event
+     * @throws SQLException if a column cannot be read
+     */
+    private ChangeEvent mapResultSetToEvent(ResultSet resultSet) throws SQLException {
+        return new ChangeEvent(
+            resultSet.getLong(1),
+            ChangeEvent.EntityType.valueOf(resultSet.getString(2)),
+            ChangeEvent.Operation.valueOf(resultSet.getString(3)),
+            resultSet.getString(4),
+            resultSet.getString(5),
+            resultSet.getLong(6)
+        );
+    }
+}
@@ -0,0 +1,545 @@
+package main.dao.mysql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import main.dao.PatientDAO;
+import main.exception.ConflictException;
+import main.exception.DatabaseException;
+import main.model.Patient;
+import main.model.PatientSummary;
+import main.util.Database;
+import main.util.Interners;
+import main.util.QueryClass;
+
+/**
+ * Data Access Object for Patient entities.
+ * <p>
+ * This class provides CRUD operations for the patients table in the database.
+ * It handles the conversion between Java objects and database records,
+ * including date format handling for legacy data.
+ * </p>
+ *
+ */
+public class MySqlPatientDAO implements PatientDAO {
+
+    private static final DateTimeFormatter DOB_FORMATTER =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter LEGACY_DOB_FORMATTER =
+        DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter US_DOB_FORMATTER =
+        DateTimeFormatter.ofPattern("M/d/yyyy");
+
+    /**
+     * The columns read into an entity, in the order in which
+     * {@link #mapResultSetToPatient(ResultSet)} reads them by position.
+     */
+    private static final String COLUMNS =
+        "mrn, fname, lname, dob, address, state, city, zip, insurance, email, version";
+
+    private static final Patient.Field[] FIELDS = Patient.Field.values();
+
+    /** The update statements, with the columns in {@link Patient.Field} order. */
+    private static final UpdateTemplates UPDATES = new UpdateTemplates(
+        "patients",
+        "mrn",
+        "fname", "lname", "dob", "address", "state", "city", "zip", "insurance", "email"
+    );
+
+    /** The statements creating or replacing patients. */
+    private static final UpsertStatements<Patient> UPSERTS =
+        new UpsertStatements<>("patients", COLUMNS, MySqlPatientDAO::bindRow);
+
+    private final Database db;
+    private final KeyFilter keys;
+
+    /**
+     * Constructs a new MySqlPatientDAO with the specified database connection.
+     *
+     * @param db the database connection to use
+     */
+    public MySqlPatientDAO(Database db) {
+        this(db, KeyFilter.DISABLED);
+    }
+
+    /**
+     * Constructs a new MySqlPatientDAO that skips {@link #existsBeforeCreate} queries for keys
+     * rejected by the given key filter.
+     *
+     * @param db   the database connection to use
+     * @param keys the filter over the primary keys of the table
+     */
+    MySqlPatientDAO(Database db, KeyFilter keys) {
+        this.db = db;
+        this.keys = keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(Patient patient) throws DatabaseException {
+        // Define the SQL insert statement for the patients table
+        String sql =
+            "INSERT INTO patients (" + COLUMNS + ") " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        // Prepare the prepared statement with the database connection
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                // Set the parameters for the prepared statement from the patient object
+                stmt.setInt(1, patient.getMrn());
+                stmt.setString(2, patient.getFname());
+                stmt.setString(3, patient.getLname());
+                stmt.setString(4, patient.getDob().format(DOB_FORMATTER));
+                stmt.setString(5, patient.getAddress());
+                stmt.setString(6, patient.getState());
+                stmt.setString(7, patient.getCity());
+                stmt.setInt(8, patient.getZip());
+                stmt.setString(9, patient.getInsurance());
+                stmt.setString(10, patient.getEmail());
+                stmt.setLong(11, patient.getVersion());
+
+                // Execute the insert and return true if at least one row was affected
+                boolean created = stmt.executeUpdate() > 0;
+                if (created) {
+                    keys.add(patient.getMrn());
+                    patient.clearDirtyFields();
+                }
+                return created;
+            });
+        } catch (SQLException e) {
+            // Handle SQL exceptions by throwing a custom database exception
+            throw db.failure("Failed to create patient", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Patient read(Integer mrn) throws DatabaseException {
+        // Define the SQL select statement to retrieve a patient by MRN
+        String sql = "SELECT " + COLUMNS + " FROM patients WHERE mrn = ?";
+
+        // Prepare the prepared statement with the database connection
+        try {
+            return db.execute(sql, QueryClass.POINT_READ, stmt -> {
+                // Set the MRN parameter in the prepared statement
+                stmt.setInt(1, mrn);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    // Check if a result was found
+                    if (resultSet.next()) {
+                        // Map the result set to a Patient object and return it
+                        return mapResultSetToPatient(resultSet);
+                    }
+                    // Return null if no patient was found
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            // Handle SQL exceptions by throwing a custom database exception
+            throw db.failure("Failed to read patient", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Patient> readAll() throws DatabaseException {
+        String sql = "SELECT " + COLUMNS + " FROM patients";
+
+        try {
+            return db.execute(sql, QueryClass.SCAN, stmt -> {
+                List<Patient> patients = new ArrayList<>();
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        patients.add(mapResultSetToPatient(resultSet));
+                    }
+                    return patients;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to read all patients", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The rows are streamed from the server one at a time, so memory use
+     * does not grow with the size of the table. The scan is not retried if
+     * the connection fails, since the rows already handed to the action
+     * would be handed over again.
+     * </p>
+     */
+    @Override
+    public void streamAll(Consumer<? super Patient> action) throws DatabaseException {
+        String sql = "SELECT " + COLUMNS + " FROM patients";
+
+        try {
+            db.executeOnce(sql, QueryClass.SCAN, stmt -> {
+                // Connector/J streams a forward-only result set at this fetch size
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        action.accept(mapResultSetToPatient(resultSet));
+                    }
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to stream patients", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the {@code mrn}, {@code fname} and {@code lname} columns are read.
+     * </p>
+     */
+    @Override
+    public List<PatientSummary> readAllSummaries() throws DatabaseException {
+        String sql = "SELECT mrn, fname, lname FROM patients";
+
+        try {
+            return db.execute(sql, QueryClass.SCAN, stmt -> {
+                List<PatientSummary> summaries = new ArrayList<>();
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        summaries.add(
+                            new PatientSummary(
+                                resultSet.getInt(1),
+                                resultSet.getString(2),
+                                resultSet.getString(3)
+                            )
+                        );
+                    }
+                    return summaries;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to read patient summaries", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The row is only updated if it still has the patient's version. Only
+     * the columns of the patient's {@linkplain Patient#getDirtyFields()
+     * dirty fields} are written, or every column if no field is dirty.
+     * Since the version guarantees that the row is unchanged since it was
+     * read, the result is the same as writing the whole row, with less
+     * data sent to the server and to its replicas.
+     * </p>
+     *
+     * @throws ConflictException if the patient was changed since it was read
+     */
+    @Override
+    public boolean update(Patient patient) throws DatabaseException {
+        int columns = 0;
+        for (Patient.Field field : FIELDS) {
+            if (patient.isDirty(field)) {
+                columns |= 1 << field.ordinal();
+            }
+        }
+        int changed = columns == 0 ? UPDATES.allColumns() : columns;
+        String sql = UPDATES.sql(changed);
+
+        int updated;
+        try {
+            updated = db.execute(sql, QueryClass.WRITE, stmt -> {
+                int index = 1;
+                for (Patient.Field field : FIELDS) {
+                    if ((changed & 1 << field.ordinal()) != 0) {
+                        bind(stmt, index++, patient, field);
+                    }
+                }
+                stmt.setInt(index++, patient.getMrn());
+                stmt.setLong(index, patient.getVersion());
+
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to update patient", e);
+        }
+        boolean applied = RowVersion.completeUpdate(
+            db, updated, patient, "patients", "mrn", patient.getMrn(), "Patient"
+        );
+        if (applied) {
+            patient.clearDirtyFields();
+        }
+        return applied;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(Patient patient) throws DatabaseException {
+        return upsertAll(Collections.singletonList(patient)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The patients are written with multi-row
+     * {@code INSERT ... ON DUPLICATE KEY UPDATE} statements of up to
+     * {@value UpsertStatements#ROWS_PER_STATEMENT} rows each.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends Patient> patients) throws DatabaseException {
+        int created = UPSERTS.write(db, new ArrayList<>(patients), "Failed to upsert patients");
+        for (Patient patient : patients) {
+            keys.add(patient.getMrn());
+            patient.clearDirtyFields();
+        }
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(Integer mrn) throws DatabaseException {
+        String sql = "DELETE FROM patients WHERE mrn = ?";
+
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setInt(1, mrn);
+                return stmt.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to delete patient", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Deletes up to {@value KeyBatches#KEYS_PER_STATEMENT} patients per
+     * statement, each with its cascade.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends Integer> mrns) throws DatabaseException {
+        return KeyBatches.delete(db, "patients", "mrn", mrns, "Failed to delete patients");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(Integer mrn) throws DatabaseException {
+        String sql = "SELECT COUNT(*) FROM patients WHERE mrn = ?";
+
+        try {
+            return db.execute(sql, QueryClass.POINT_READ, stmt -> {
+                stmt.setInt(1, mrn);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    if (resultSet.next()) {
+                        return resultSet.getInt(1) > 0;
+                    }
+                    return false;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to check patient existence", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int count() throws DatabaseException {
+        String sql = "SELECT COUNT(*) FROM patients";
+
+        try {
+            return db.execute(sql, QueryClass.SCAN, stmt -> {
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    return resultSet.next() ? resultSet.getInt(1) : 0;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to count patients", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Skips the query for a key rejected by the key filter.
+     * </p>
+     */
+    @Override
+    public boolean existsBeforeCreate(Integer mrn) throws DatabaseException {
+        if (!keys.mightContain(mrn)) {
+            return false;
+        }
+        boolean found = exists(mrn);
+        keys.recordQuery(found);
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Looks up to {@value KeyBatches#KEYS_PER_STATEMENT} keys per query.
+     * </p>
+     */
+    @Override
+    public List<Integer> readExistingIds(Collection<? extends Integer> mrns) throws DatabaseException {
+        return KeyBatches.existing(
+            db,
+            Collections.singletonList("patients"),
+            "mrn",
+            mrns,
+            "Failed to check patient existence"
+        );
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Binds the value of one field of a patient to a statement parameter.
+     *
+     * @param stmt    the statement
+     * @param index   the parameter index
+     * @param patient the patient
+     * @param field   the field to bind
+     * @throws SQLException if the parameter cannot be set
+     */
+    private static void bind(
+        PreparedStatement stmt,
+        int index,
+        Patient patient,
+        Patient.Field field
+    ) throws SQLException {
+        switch (field) {
+            case FNAME:
+                stmt.setString(index, patient.getFname());
+                break;
+            case LNAME:
+                stmt.setString(index, patient.getLname());
+                break;
+            case DOB:
+                stmt.setString(index, patient.getDob().format(DOB_FORMATTER));
+                break;
+            case ADDRESS:
+                stmt.setString(index, patient.getAddress());
+                break;
+            case STATE:
+                stmt.setString(index, patient.getState());
+                break;
+            case CITY:
+                stmt.setString(index, patient.getCity());
+                break;
+            case ZIP:
+                stmt.setInt(index, patient.getZip());
+                break;
+            case INSURANCE:
+                stmt.setString(index, patient.getInsurance());
+                break;
+            case EMAIL:
+                stmt.setString(index, patient.getEmail());
+                break;
+        }
+    }
+
+    /**
+     * Maps a ResultSet row to a Patient object.
+     *
+     * @param resultSet the ResultSet positioned at a valid row
+     * @return a Patient object populated with data from the ResultSet
+     * @throws SQLException if a database access error occurs
+     */
+    private Patient mapResultSetToPatient(ResultSet resultSet)
+        throws SQLException {
+        // Extract the date of birth string from the result set
+        String dobString = resultSet.getString(4);
+        // Parse the DOB string into a LocalDate object using the helper method
+        LocalDate dob = parseDob(dobString);
+
+        // Create a new Patient object populated with all fields from the result set
+        Patient patient = new Patient(
+            resultSet.getInt(1),
+            resultSet.getString(2),
+            resultSet.getString(3),
+            dob,
+            resultSet.getString(5),
+            Interners.STATES.intern(resultSet.getString(6)),
+            Interners.CITIES.intern(resultSet.getString(7)),
+            resultSet.getInt(8),
+            Interners.INSURERS.intern(resultSet.getString(9)),
+            resultSet.getString(10)
+        );
+        patient.setVersion(resultSet.getLong(11));
+        return patient;
+    }
+
+    /**
+     * Parses a date of birth string, supporting multiple formats.
+     * <p>
+     * This method attempts to parse using the following formats in order:
+     * 1. Standard yyyy-MM-dd format
+     * 2. US MM/dd/yyyy format
+     * 3. Legacy dd/MM/yyyy format
+     * </p>
+     *
+     * @param dobString the date string to parse
+     * @return the parsed LocalDate
+     * @throws DateTimeParseException if the date cannot be parsed with any format
+     */
+    private LocalDate parseDob(String dobString) {
+        try {
+            // Attempt to parse the DOB using the standard yyyy-MM-dd format
+            return LocalDate.parse(dobString, DOB_FORMATTER);
+        } catch (DateTimeParseException e1) {
+            // If standard format fails, try the US MM/dd/yyyy format
+            try {
+                return LocalDate.parse(dobString, US_DOB_FORMATTER);
+            } catch (DateTimeParseException e2) {
+                // If US format fails, try the legacy dd/MM/yyyy format
+                return LocalDate.parse(dobString, LEGACY_DOB_FORMATTER);
+            }
+        }
+    }
+
+    /**
+     * Binds the columns of a patient, in {@link #COLUMNS} order.
+     *
+     * @param stmt    the statement
+     * @param index   the index of the first parameter of the row
+     * @param patient the patient
+     * @return the index of the first parameter of the next row
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static int bindRow(PreparedStatement stmt, int index, Patient patient)
+        throws SQLException {
+        stmt.setInt(index++, patient.getMrn());
+        stmt.setString(index++, patient.getFname());
+        stmt.setString(index++, patient.getLname());
+        stmt.setString(index++, patient.getDob().format(DOB_FORMATTER));
+        stmt.setString(index++, patient.getAddress());
+        stmt.setString(index++, patient.getState());
+        stmt.setString(index++, patient.getCity());
+        stmt.setInt(index++, patient.getZip());
+        stmt.setString(index++, patient.getInsurance());
+        stmt.setString(index++, patient.getEmail());
+        stmt.setLong(index++, patient.getVersion());
+        return index;
+    }
+}
@@ -0,0 +1,701 @@
+package main.dao.mysql;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import main.dao.PatientHistoryDAO;
+import main.exception.ConflictException;
+import main.exception.DatabaseException;
+import main.model.PatientHistory;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * Data Access Object for PatientHistory entities.
+ * <p>
+ * This class provides CRUD operations for the patient_history table in the database.
+ * It manages records that track medical procedures performed on patients, including
+ * billing information and the doctor who performed the procedure.
+ * </p>
+ *
+ * <p>The patient_history table has foreign key relationships to:</p>
+ * <ul>
+ *   <li>patients table (via patientId)</li>
+ *   <li>procedures table (via procedureId)</li>
+ *   <li>doctors table (via doctorId)</li>
+ * </ul>
+ *
+ * <p>Records of closed years can be moved to per-year archive tables by the
+ * {@link HistoryArchiver}. Reads look in the archive tables as well, so
+ * archived records stay visible through this DAO; date range queries only
+ * touch the archive tables of the years in the range. Archived records
+ * can be deleted but not updated.</p>
+ *
+ * @see PatientHistory
+ * @see PatientHistoryDAO
+ */
+public class MySqlPatientHistoryDAO implements PatientHistoryDAO {
+
+    /**
+     * The columns read into an entity, in the order in which
+     * {@link #mapResultSetToPatientHistory(ResultSet)} reads them by position.
+     */
+    private static final String COLUMNS =
+        "id, patientId, procedureId, date, billing, doctorId, version";
+
+    /** The statements creating or replacing records in the main table. */
+    private static final UpsertStatements<PatientHistory> UPSERTS =
+        new UpsertStatements<>(
+            HistoryArchive.HOT_TABLE, COLUMNS, MySqlPatientHistoryDAO::bindRow
+        );
+
+    private final Database db;
+    private final HistoryArchive archive;
+
+    /**
+     * Binds the parameters of one {@code SELECT} of a {@code UNION ALL}.
+     */
+    @FunctionalInterface
+    private interface Binder {
+        /**
+         * Binds the parameters.
+         *
+         * @param stmt  the statement
+         * @param index the index of the first parameter of the branch
+         * @return the index of the first parameter of the next branch
+         * @throws SQLException if a parameter cannot be set
+         */
+        int bind(PreparedStatement stmt, int index) throws SQLException;
+    }
+
+    /**
+     * Constructs a new MySqlPatientHistoryDAO with the specified database connection.
+     *
+     * @param db the database connection to use for all operations
+     */
+    public MySqlPatientHistoryDAO(Database db) {
+        this(db, new HistoryArchive(db));
+    }
+
+    /**
+     * Constructs a new MySqlPatientHistoryDAO that shares a catalog of
+     * archived years.
+     *
+     * @param db      the database connection to use
+     * @param archive the catalog of archived years
+     */
+    MySqlPatientHistoryDAO(Database db, HistoryArchive archive) {
+        this.db = db;
+        this.archive = archive;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Creates a new patient history record in the database. The record includes
+     * references to the patient, procedure, and doctor involved.
+     * </p>
+     *
+     * @throws DatabaseException if the referenced patient, procedure, or doctor
+     *                           does not exist, or if a database error occurs
+     */
+    @Override
+    public boolean create(PatientHistory patientHistory)
+        throws DatabaseException {
+        // Define the SQL insert statement for the patient_history table
+        String sql =
+            "INSERT INTO patient_history (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        // Prepare the prepared statement with the database connection
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                // Set the parameters for the prepared statement from the patient history object
+                stmt.setString(1, patientHistory.getId());
+                stmt.setInt(2, patientHistory.getPatientId());
+                stmt.setString(3, patientHistory.getProcedureId());
+                stmt.setDate(4, Date.valueOf(patientHistory.getDate()));
+                stmt.setDouble(5, patientHistory.getBilling());
+                stmt.setString(6, patientHistory.getDoctorId());
+                stmt.setLong(7, patientHistory.getVersion());
+
+                // Execute the insert and return true if at least one row was affected
+                return stmt.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            // Handle SQL exceptions by throwing a custom database exception
+            throw db.failure("Failed to create patient history", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Looks in the archive tables if the record is not in the main table.
+     * </p>
+     */
+    @Override
+    public PatientHistory read(String id) throws DatabaseException {
+        PatientHistory history = readHot(id);
+        return history != null ? history : readArchived(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Retrieves all patient history records from the database, including
+     * archived ones.
+     * </p>
+     */
+    @Override
+    public List<PatientHistory> readAll() throws DatabaseException {
+        return select(
+            withHotTable(archive.allTables()),
+            null,
+            "",
+            QueryClass.SCAN,
+            (stmt, index) -> index,
+            "Failed to read all patient histories"
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The rows of the main table and then of every archive table are
+     * streamed from the server one at a time, so memory use does not grow
+     * with the size of the tables. The scan is not retried if the
+     * connection fails, since the rows already handed to the action would
+     * be handed over again.
+     * </p>
+     */
+    @Override
+    public void streamAll(Consumer<? super PatientHistory> action) throws DatabaseException {
+        scan(
+            withHotTable(archive.allTables()),
+            null,
+            "",
+            QueryClass.SCAN,
+            (stmt, index) -> index,
+            true,
+            action,
+            "Failed to stream patient histories"
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Updates an existing patient history record in the database.
+     * The record's ID is used to locate the record, and all other fields are
+     * updated, provided the record still has the given version.
+     * </p>
+     *
+     * @throws ConflictException if the record was changed since it was read
+     * @throws DatabaseException if the record is archived, or if a database
+     *                           error occurs
+     */
+    @Override
+    public boolean update(PatientHistory patientHistory)
+        throws DatabaseException {
+        String sql =
+            "UPDATE patient_history SET patientId = ?, procedureId = ?, date = ?, " +
+            "billing = ?, doctorId = ?, version = version + 1 WHERE id = ? AND version = ?";
+
+        int updated;
+        try {
+            updated = db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setInt(1, patientHistory.getPatientId());
+                stmt.setString(2, patientHistory.getProcedureId());
+                stmt.setDate(3, Date.valueOf(patientHistory.getDate()));
+                stmt.setDouble(4, patientHistory.getBilling());
+                stmt.setString(5, patientHistory.getDoctorId());
+                stmt.setString(6, patientHistory.getId());
+                stmt.setLong(7, patientHistory.getVersion());
+
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to update patient history", e);
+        }
+        String id = patientHistory.getId();
+        boolean changed = RowVersion.completeUpdate(
+            db, updated, patientHistory, "patient_history", "id", id, "Patient history"
+        );
+        if (changed) {
+            return true;
+        }
+        if (readArchived(id) != null) {
+            throw new DatabaseException(
+                "Patient history '" + id + "' is archived and cannot be changed"
+            );
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(PatientHistory patientHistory) throws DatabaseException {
+        return upsertAll(Collections.singletonList(patientHistory)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The records are written with multi-row
+     * {@code INSERT ... ON DUPLICATE KEY UPDATE} statements of up to
+     * {@value UpsertStatements#ROWS_PER_STATEMENT} rows each, to the main
+     * table. Since archived records cannot be changed, a batch with a
+     * record dated in an archived year is rejected before anything is
+     * written.
+     * </p>
+     *
+     * @throws DatabaseException if a record is dated in an archived year, or
+     *                           if a database error occurs
+     */
+    @Override
+    public int upsertAll(Collection<? extends PatientHistory> patientHistories)
+        throws DatabaseException {
+        for (PatientHistory patientHistory : patientHistories) {
+            LocalDate date = patientHistory.getDate();
+            if (!archive.tablesBetween(date, date).isEmpty()) {
+                throw new DatabaseException(
+                    "Patient history '" + patientHistory.getId() + "' is dated in archived year " +
+                        date.getYear() + " and cannot be changed"
+                );
+            }
+        }
+        return UPSERTS.write(
+            db, new ArrayList<>(patientHistories), "Failed to upsert patient histories"
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Deletes a patient history record from the database by its ID, from
+     * the archive table of its year if it was archived.
+     * </p>
+     */
+    @Override
+    public boolean delete(String id) throws DatabaseException {
+        if (deleteFrom(HistoryArchive.HOT_TABLE, id)) {
+            return true;
+        }
+        for (String table : archive.allTables()) {
+            if (deleteFrom(table, id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The version is checked by the {@code DELETE} statement itself.
+     * Archived records cannot be changed, so they are not deleted here.
+     * </p>
+     *
+     * @throws DatabaseException if the record is archived, or if a database
+     *                           error occurs
+     */
+    @Override
+    public boolean deleteIfVersion(String id, long version) throws DatabaseException {
+        String sql = "DELETE FROM " + HistoryArchive.HOT_TABLE + " WHERE id = ? AND version = ?";
+        boolean deleted;
+        try {
+            deleted = db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setString(1, id);
+                stmt.setLong(2, version);
+                return stmt.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to delete patient history", e);
+        }
+        if (!deleted && readArchived(id) != null) {
+            throw new DatabaseException(
+                "Patient history '" + id + "' is archived and cannot be changed"
+            );
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Deletes up to {@value KeyBatches#KEYS_PER_STATEMENT} records per
+     * statement from the main table, then from each archive table.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends String> ids) throws DatabaseException {
+        String failure = "Failed to delete patient histories";
+        int deleted = KeyBatches.delete(db, HistoryArchive.HOT_TABLE, "id", ids, failure);
+        if (deleted < ids.size()) {
+            for (String table : archive.allTables()) {
+                deleted += KeyBatches.delete(db, table, "id", ids, failure);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Checks if a patient history record with the given ID exists in the database.
+     * </p>
+     */
+    @Override
+    public boolean exists(String id) throws DatabaseException {
+        String sql = "SELECT COUNT(*) FROM patient_history WHERE id = ?";
+
+        try {
+            return db.execute(sql, QueryClass.POINT_READ, stmt -> {
+                stmt.setString(1, id);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    if (resultSet.next()) {
+                        return resultSet.getInt(1) > 0;
+                    }
+                    return false;
+                }
+            }) || readArchived(id) != null;
+        } catch (SQLException e) {
+            throw db.failure("Failed to check patient history existence", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Looks up to {@value KeyBatches#KEYS_PER_STATEMENT} keys per query in
+     * the main table and every archive table.
+     * </p>
+     */
+    @Override
+    public List<String> readExistingIds(Collection<? extends String> ids) throws DatabaseException {
+        return KeyBatches.existing(
+            db,
+            withHotTable(archive.allTables()),
+            "id",
+            ids,
+            "Failed to check patient history existence"
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Includes the patient's archived records.
+     * </p>
+     */
+    @Override
+    public List<PatientHistory> readByPatientId(int patientId)
+        throws DatabaseException {
+        return select(
+            withHotTable(archive.allTables()),
+            "patientId = ?",
+            "",
+            QueryClass.SCAN,
+            (stmt, index) -> {
+                stmt.setInt(index, patientId);
+                return index + 1;
+            },
+            "Failed to read patient histories by patient ID"
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Reads the main table, using its index on {@code date}, and only the
+     * archive tables of the years in the range.
+     * </p>
+     */
+    @Override
+    public List<PatientHistory> readByDateRange(LocalDate from, LocalDate to)
+        throws DatabaseException {
+        return select(
+            withHotTable(archive.tablesBetween(from, to)),
+            "date BETWEEN ? AND ?",
+            " ORDER BY date, id",
+            QueryClass.SCAN,
+            (stmt, index) -> {
+                stmt.setDate(index, Date.valueOf(from));
+                stmt.setDate(index + 1, Date.valueOf(to));
+                return index + 2;
+            },
+            "Failed to read patient histories by date"
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Includes archived records, which the schema's cascades reach as well,
+     * so that a purge deletes them a chunk at a time too. Each reference column
+     * is queried on its own, so that every query can use its index.
+     * </p>
+     */
+    @Override
+    public List<String> readIdsReferencing(
+        Collection<Integer> patientIds,
+        Collection<String> procedureIds,
+        Collection<String> doctorIds
+    ) throws DatabaseException {
+        List<String> tables = withHotTable(archive.allTables());
+        String failure = "Failed to read referencing patient histories";
+        Set<String> ids = new LinkedHashSet<>();
+        ids.addAll(KeyBatches.select(db, tables, "id", "patientId", patientIds, failure));
+        ids.addAll(KeyBatches.select(db, tables, "id", "procedureId", procedureIds, failure));
+        ids.addAll(KeyBatches.select(db, tables, "id", "doctorId", doctorIds, failure));
+        return new ArrayList<>(ids);
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Retrieves a patient history record from the main table.
+     *
+     * @param id the ID of the record
+     * @return the record, or null if it is not in the main table
+     * @throws DatabaseException if a database access error occurs
+     */
+    private PatientHistory readHot(String id) throws DatabaseException {
+        // Define the SQL select statement to retrieve a patient history by ID
+        String sql = "SELECT " + COLUMNS + " FROM patient_history WHERE id = ?";
+
+        // Prepare the prepared statement with the database connection
+        try {
+            return db.execute(sql, QueryClass.POINT_READ, stmt -> {
+                // Set the ID parameter in the prepared statement
+                stmt.setString(1, id);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    // Check if a result was found
+                    if (resultSet.next()) {
+                        // Map the result set to a PatientHistory object and return it
+                        return mapResultSetToPatientHistory(resultSet);
+                    }
+                    // Return null if no patient history was found
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            // Handle SQL exceptions by throwing a custom database exception
+            throw db.failure("Failed to read patient history", e);
+        }
+    }
+
+    /**
+     * Reads records from several tables with one {@code UNION ALL} query.
+     *
+     * @param tables     the tables to read
+     * @param where      the condition applied to every table, or null for all rows
+     * @param suffix     clauses appended to the whole query, such as {@code ORDER BY}
+     * @param queryClass the class of the query
+     * @param binder     binds the parameters of the condition for one table
+     * @param failure    the message of the exception thrown on failure
+     * @return the records read
+     * @throws DatabaseException if a database access error occurs
+     */
+    private List<PatientHistory> select(
+        List<String> tables,
+        String where,
+        String suffix,
+        QueryClass queryClass,
+        Binder binder,
+        String failure
+    ) throws DatabaseException {
+        List<PatientHistory> patientHistories = new ArrayList<>();
+        scan(tables, where, suffix, queryClass, binder, false, patientHistories::add, failure);
+        return patientHistories;
+    }
+
+    /**
+     * Passes the records of several tables, read with one
+     * {@code UNION ALL} query, to an action.
+     *
+     * @param tables     the tables to read
+     * @param where      the condition applied to every table, or null for all rows
+     * @param suffix     clauses appended to the whole query, such as {@code ORDER BY}
+     * @param queryClass the class of the query
+     * @param binder     binds the parameters of the condition for one table
+     * @param streamed   true to stream the rows from the server one at a time,
+     *                   without retrying the query after a connection failure
+     * @param action     the action to apply to each record
+     * @param failure    the message of the exception thrown on failure
+     * @throws DatabaseException if a database access error occurs
+     */
+    private void scan(
+        List<String> tables,
+        String where,
+        String suffix,
+        QueryClass queryClass,
+        Binder binder,
+        boolean streamed,
+        Consumer<? super PatientHistory> action,
+        String failure
+    ) throws DatabaseException {
+        StringBuilder sql = new StringBuilder();
+        for (String table : tables) {
+            if (sql.length() > 0) {
+                sql.append(" UNION ALL ");
+            }
+            sql.append("SELECT ").append(COLUMNS).append(" FROM ").append(table);
+            if (where != null) {
+                sql.append(" WHERE ").append(where);
+            }
+        }
+        sql.append(suffix);
+
+        Database.StatementCall<List<PatientHistory>> call = stmt -> {
+            int index = 1;
+            for (int i = 0; i < tables.size(); i++) {
+                index = binder.bind(stmt, index);
+            }
+            if (streamed) {
+                // Connector/J streams a forward-only result set at this fetch size
+                stmt.setFetchSize(Integer.MIN_VALUE);
+            }
+            // Unless streamed, the rows of each attempt are kept apart, so
+            // that a retry starts over
+            List<PatientHistory> rows = streamed ? null : new ArrayList<>();
+            try (ResultSet resultSet = stmt.executeQuery()) {
+                while (resultSet.next()) {
+                    PatientHistory patientHistory = mapResultSetToPatientHistory(resultSet);
+                    if (streamed) {
+                        action.accept(patientHistory);
+                    } else {
+                        rows.add(patientHistory);
+                    }
+                }
+                return rows;
+            }
+        };
+        try {
+            if (streamed) {
+                // A retry would hand the rows already streamed over again
+                db.executeOnce(sql.toString(), queryClass, call);
+            } else {
+                db.execute(sql.toString(), queryClass, call).forEach(action);
+            }
+        } catch (SQLException e) {
+            throw db.failure(failure, e);
+        }
+    }
+
+    /**
+     * Puts the main table in front of a list of archive tables.
+     *
+     * @param archiveTables the archive tables
+     * @return the main table followed by the archive tables
+     */
+    private static List<String> withHotTable(List<String> archiveTables) {
+        List<String> tables = new ArrayList<>(archiveTables.size() + 1);
+        tables.add(HistoryArchive.HOT_TABLE);
+        tables.addAll(archiveTables);
+        return tables;
+    }
+
+    /**
+     * Retrieves a patient history record from the archive tables.
+     *
+     * @param id the ID of the record
+     * @return the record, or null if it is not archived
+     * @throws DatabaseException if a database access error occurs
+     */
+    private PatientHistory readArchived(String id) throws DatabaseException {
+        if (archive.isEmpty()) {
+            return null;
+        }
+        List<PatientHistory> archived = select(
+            archive.allTables(),
+            "id = ?",
+            " LIMIT 1",
+            QueryClass.POINT_READ,
+            (stmt, index) -> {
+                stmt.setString(index, id);
+                return index + 1;
+            },
+            "Failed to read archived patient history"
+        );
+        return archived.isEmpty() ? null : archived.get(0);
+    }
+
+    /**
+     * Deletes a record from one table.
+     *
+     * @param table the table
+     * @param id    the ID of the record
+     * @return true if the record was in the table
+     * @throws DatabaseException if a database access error occurs
+     */
+    private boolean deleteFrom(String table, String id) throws DatabaseException {
+        String sql = "DELETE FROM " + table + " WHERE id = ?";
+
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setString(1, id);
+                return stmt.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to delete patient history", e);
+        }
+    }
+
+    /**
+     * Maps a ResultSet row to a PatientHistory object.
+     *
+     * @param resultSet the ResultSet positioned at a valid row
+     * @return a PatientHistory object populated with data from the ResultSet
+     * @throws SQLException if a database access error occurs
+     */
+    private PatientHistory mapResultSetToPatientHistory(ResultSet resultSet)
+        throws SQLException {
+        // Create a new PatientHistory object populated with all fields from the result set
+        PatientHistory history = new PatientHistory(
+            resultSet.getString(1),
+            resultSet.getInt(2),
+            resultSet.getString(3),
+            resultSet.getDate(4).toLocalDate(),
+            resultSet.getDouble(5),
+            resultSet.getString(6)
+        );
+        history.setVersion(resultSet.getLong(7));
+        return history;
+    }
+
+    /**
+     * Binds the columns of a patient history record, in {@link #COLUMNS} order.
+     *
+     * @param stmt           the statement
+     * @param index          the index of the first parameter of the row
+     * @param patientHistory the patient history record
+     * @return the index of the first parameter of the next row
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static int bindRow(
+        PreparedStatement stmt,
+        int index,
+        PatientHistory patientHistory
+    ) throws SQLException {
+        stmt.setString(index++, patientHistory.getId());
+        stmt.setInt(index++, patientHistory.getPatientId());
+        stmt.setString(index++, patientHistory.getProcedureId());
+        stmt.setDate(index++, Date.valueOf(patientHistory.getDate()));
+        stmt.setDouble(index++, patientHistory.getBilling());
+        stmt.setString(index++, patientHistory.getDoctorId());
+        stmt.setLong(index++, patientHistory.getVersion());
+        return index;
+    }
+}
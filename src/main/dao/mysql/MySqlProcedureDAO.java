@@ -0,0 +1,485 @@
+package main.dao.mysql;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import main.dao.ProcedureDAO;
+import main.exception.ConflictException;
+import main.exception.DatabaseException;
+import main.model.Procedure;
+import main.model.ProcedureRef;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * Data Access Object for Procedure entities.
+ * <p>
+ * This class provides CRUD operations for the procedures table in the database.
+ * It handles all database interactions related to medical procedures, including
+ * creation, retrieval, update, and deletion operations.
+ * </p>
+ *
+ * @see Procedure
+ * @see ProcedureDAO
+ */
+public class MySqlProcedureDAO implements ProcedureDAO {
+
+    /**
+     * The columns read into an entity, in the order in which
+     * {@link #mapResultSetToProcedure(ResultSet)} reads them by position.
+     */
+    private static final String COLUMNS =
+        "id, name, description, duration, doctorId, version";
+
+    private static final Procedure.Field[] FIELDS = Procedure.Field.values();
+
+    /** The update statements, with the columns in {@link Procedure.Field} order. */
+    private static final UpdateTemplates UPDATES = new UpdateTemplates(
+        "procedures",
+        "id",
+        "name", "description", "duration", "doctorId"
+    );
+
+    /** The statements creating or replacing procedures. */
+    private static final UpsertStatements<Procedure> UPSERTS =
+        new UpsertStatements<>("procedures", COLUMNS, MySqlProcedureDAO::bindRow);
+
+    private final Database db;
+    private final KeyFilter keys;
+
+    /**
+     * Constructs a new MySqlProcedureDAO with the specified database connection.
+     *
+     * @param db the database connection to use for all operations
+     */
+    public MySqlProcedureDAO(Database db) {
+        this(db, KeyFilter.DISABLED);
+    }
+
+    /**
+     * Constructs a new MySqlProcedureDAO that skips {@link #existsBeforeCreate} queries for keys
+     * rejected by the given key filter.
+     *
+     * @param db   the database connection to use
+     * @param keys the filter over the primary keys of the table
+     */
+    MySqlProcedureDAO(Database db, KeyFilter keys) {
+        this.db = db;
+        this.keys = keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Creates a new procedure record in the database with the given details.
+     * The procedure must have a unique ID that does not already exist in the database.
+     * </p>
+     */
+    @Override
+    public boolean create(Procedure procedure) throws DatabaseException {
+        // Define the SQL insert statement for the procedures table
+        String sql =
+            "INSERT INTO procedures (id, name, description, duration, doctorId, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+        // Prepare the prepared statement with the database connection
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                // Set the parameters for the prepared statement from the procedure object
+                stmt.setString(1, procedure.getId());
+                stmt.setString(2, procedure.getName());
+                stmt.setString(3, procedure.getDescription());
+                stmt.setInt(4, procedure.getDuration());
+                stmt.setString(5, procedure.getDoctorId());
+                stmt.setLong(6, procedure.getVersion());
+
+                // Execute the insert and return true if at least one row was affected
+                boolean created = stmt.executeUpdate() > 0;
+                if (created) {
+                    keys.add(procedure.getId());
+                    procedure.clearDirtyFields();
+                }
+                return created;
+            });
+        } catch (SQLException e) {
+            // Handle SQL exceptions by throwing a custom database exception
+            throw db.failure("Failed to create procedure", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Retrieves a procedure by its unique identifier.
+     * </p>
+     */
+    @Override
+    public Procedure read(String id) throws DatabaseException {
+        // Define the SQL select statement to retrieve a procedure by ID
+        String sql = "SELECT " + COLUMNS + " FROM procedures WHERE id = ?";
+
+        // Prepare the prepared statement with the database connection
+        try {
+            return db.execute(sql, QueryClass.POINT_READ, stmt -> {
+                // Set the ID parameter in the prepared statement
+                stmt.setString(1, id);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    // Check if a result was found
+                    if (resultSet.next()) {
+                        // Map the result set to a Procedure object and return it
+                        return mapResultSetToProcedure(resultSet);
+                    }
+                    // Return null if no procedure was found
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            // Handle SQL exceptions by throwing a custom database exception
+            throw db.failure("Failed to read procedure", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Retrieves all procedures from the database.
+     * </p>
+     */
+    @Override
+    public List<Procedure> readAll() throws DatabaseException {
+        String sql = "SELECT " + COLUMNS + " FROM procedures";
+
+        try {
+            return db.execute(sql, QueryClass.SCAN, stmt -> {
+                List<Procedure> procedures = new ArrayList<>();
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        procedures.add(mapResultSetToProcedure(resultSet));
+                    }
+                    return procedures;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to read all procedures", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The rows are streamed from the server one at a time, so memory use
+     * does not grow with the size of the table. The scan is not retried if
+     * the connection fails, since the rows already handed to the action
+     * would be handed over again.
+     * </p>
+     */
+    @Override
+    public void streamAll(Consumer<? super Procedure> action) throws DatabaseException {
+        String sql = "SELECT " + COLUMNS + " FROM procedures";
+
+        try {
+            db.executeOnce(sql, QueryClass.SCAN, stmt -> {
+                // Connector/J streams a forward-only result set at this fetch size
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        action.accept(mapResultSetToProcedure(resultSet));
+                    }
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to stream procedures", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the {@code id} and {@code name} columns are read.
+     * </p>
+     */
+    @Override
+    public List<ProcedureRef> readAllRefs() throws DatabaseException {
+        String sql = "SELECT id, name FROM procedures";
+
+        try {
+            return db.execute(sql, QueryClass.SCAN, stmt -> {
+                List<ProcedureRef> refs = new ArrayList<>();
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    while (resultSet.next()) {
+                        refs.add(
+                            new ProcedureRef(resultSet.getString(1), resultSet.getString(2))
+                        );
+                    }
+                    return refs;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to read procedure references", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Uses the index on {@code doctorId}.
+     * </p>
+     */
+    @Override
+    public List<String> readIdsByDoctors(Collection<String> doctorIds)
+        throws DatabaseException {
+        return KeyBatches.select(
+            db,
+            Collections.singletonList("procedures"),
+            "id",
+            "doctorId",
+            doctorIds,
+            "Failed to read procedures by doctor"
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Updates an existing procedure in the database. The procedure's ID is used
+     * to locate the record, provided the record still has the procedure's
+     * version. Only the columns of the procedure's
+     * {@linkplain Procedure#getDirtyFields() dirty fields} are written, or
+     * every column if no field is dirty.
+     * </p>
+     *
+     * @throws ConflictException if the procedure was changed since it was read
+     */
+    @Override
+    public boolean update(Procedure procedure) throws DatabaseException {
+        int columns = 0;
+        for (Procedure.Field field : FIELDS) {
+            if (procedure.isDirty(field)) {
+                columns |= 1 << field.ordinal();
+            }
+        }
+        int changed = columns == 0 ? UPDATES.allColumns() : columns;
+        String sql = UPDATES.sql(changed);
+
+        int updated;
+        try {
+            updated = db.execute(sql, QueryClass.WRITE, stmt -> {
+                int index = 1;
+                for (Procedure.Field field : FIELDS) {
+                    if ((changed & 1 << field.ordinal()) != 0) {
+                        bind(stmt, index++, procedure, field);
+                    }
+                }
+                stmt.setString(index++, procedure.getId());
+                stmt.setLong(index, procedure.getVersion());
+
+                return stmt.executeUpdate();
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to update procedure", e);
+        }
+        boolean applied = RowVersion.completeUpdate(
+            db, updated, procedure, "procedures", "id", procedure.getId(), "Procedure"
+        );
+        if (applied) {
+            procedure.clearDirtyFields();
+        }
+        return applied;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(Procedure procedure) throws DatabaseException {
+        return upsertAll(Collections.singletonList(procedure)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The procedures are written with multi-row
+     * {@code INSERT ... ON DUPLICATE KEY UPDATE} statements of up to
+     * {@value UpsertStatements#ROWS_PER_STATEMENT} rows each.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends Procedure> procedures) throws DatabaseException {
+        int created = UPSERTS.write(db, new ArrayList<>(procedures), "Failed to upsert procedures");
+        for (Procedure procedure : procedures) {
+            keys.add(procedure.getId());
+            procedure.clearDirtyFields();
+        }
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Deletes a procedure from the database by its ID. Note that this may fail
+     * if there are patient history records referencing this procedure, depending
+     * on the database's foreign key constraints.
+     * </p>
+     */
+    @Override
+    public boolean delete(String id) throws DatabaseException {
+        String sql = "DELETE FROM procedures WHERE id = ?";
+
+        try {
+            return db.execute(sql, QueryClass.WRITE, stmt -> {
+                stmt.setString(1, id);
+                return stmt.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to delete procedure", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Deletes up to {@value KeyBatches#KEYS_PER_STATEMENT} procedures per
+     * statement, each with its cascade.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends String> ids) throws DatabaseException {
+        return KeyBatches.delete(db, "procedures", "id", ids, "Failed to delete procedures");
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Checks if a procedure with the given ID exists in the database.
+     * </p>
+     */
+    @Override
+    public boolean exists(String id) throws DatabaseException {
+        String sql = "SELECT COUNT(*) FROM procedures WHERE id = ?";
+
+        try {
+            return db.execute(sql, QueryClass.POINT_READ, stmt -> {
+                stmt.setString(1, id);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    if (resultSet.next()) {
+                        return resultSet.getInt(1) > 0;
+                    }
+                    return false;
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to check procedure existence", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Skips the query for a key rejected by the key filter.
+     * </p>
+     */
+    @Override
+    public boolean existsBeforeCreate(String id) throws DatabaseException {
+        if (!keys.mightContain(id)) {
+            return false;
+        }
+        boolean found = exists(id);
+        keys.recordQuery(found);
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Looks up to {@value KeyBatches#KEYS_PER_STATEMENT} keys per query.
+     * </p>
+     */
+    @Override
+    public List<String> readExistingIds(Collection<? extends String> ids) throws DatabaseException {
+        return KeyBatches.existing(
+            db,
+            Collections.singletonList("procedures"),
+            "id",
+            ids,
+            "Failed to check procedure existence"
+        );
+    }
+
+    /**
+     * Maps a ResultSet row to a Procedure object.
+     *
+     * @param resultSet the ResultSet positioned at a valid row
+     * @return a Procedure object populated with data from the ResultSet
+     * @throws SQLException if a database access error occurs
+     */
+    private Procedure mapResultSetToProcedure(ResultSet resultSet)
+        throws SQLException {
+        // Create a new Procedure object populated with all fields from the result set
+        Procedure procedure = new Procedure(
+            resultSet.getString(1),
+            resultSet.getString(2),
+            resultSet.getString(3),
+            resultSet.getInt(4),
+            resultSet.getString(5)
+        );
+        procedure.setVersion(resultSet.getLong(6));
+        return procedure;
+    }
+
+    /**
+     * Binds the value of one field of a procedure to a statement parameter.
+     *
+     * @param stmt      the statement
+     * @param index     the parameter index
+     * @param procedure the procedure
+     * @param field     the field to bind
+     * @throws SQLException if the parameter cannot be set
+     */
+    private static void bind(
+        PreparedStatement stmt,
+        int index,
+        Procedure procedure,
+        Procedure.Field field
+    ) throws SQLException {
+        switch (field) {
+            case NAME:
+                stmt.setString(index, procedure.getName());
+                break;
+            case DESCRIPTION:
+                stmt.setString(index, procedure.getDescription());
+                break;
+            case DURATION:
+                stmt.setInt(index, procedure.getDuration());
+                break;
+            case DOCTOR_ID:
+                stmt.setString(index, procedure.getDoctorId());
+                break;
+        }
+    }
+
+    /**
+     * Binds the columns of a procedure, in {@link #COLUMNS} order.
+     *
+     * @param stmt      the statement
+     * @param index     the index of the first parameter of the row
+     * @param procedure the procedure
+     * @return the index of the first parameter of the next row
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static int bindRow(PreparedStatement stmt, int index, Procedure procedure)
+        throws SQLException {
+        stmt.setString(index++, procedure.getId());
+        stmt.setString(index++, procedure.getName());
+        stmt.setString(index++, procedure.getDescription());
+        stmt.setInt(index++, procedure.getDuration());
+        stmt.setString(index++, procedure.getDoctorId());
+        stmt.setLong(index++, procedure.getVersion());
+        return index;
+    }
+}
@@ -0,0 +1,305 @@
+package main.dao.mysql;
+
+import java.util.ArrayList;
+import java.util.List;
+import main.config.DatabaseConfig;
+import main.dao.AuditDAO;
+import main.dao.DoctorDAO;
+import main.dao.OutboxDAO;
+import main.dao.PatientDAO;
+import main.dao.PatientHistoryDAO;
+import main.dao.ProcedureDAO;
+import main.dao.StorageBackend;
+import main.exception.DatabaseException;
+import main.util.Database;
+
+/**
+ * Storage backend that persists entities in a MySQL database over JDBC.
+ * <p>
+ * The backend owns a {@link Database} connection pool which is shared by
+ * all of its DAOs; each thread uses its own connection from the pool. Foreign key checks and cascading deletes are enforced by
+ * the database schema.
+ * </p>
+ *
+ * <p>Unless disabled, a {@link KeyFilter} over the primary keys of the
+ * patients, doctors and procedures tables lets the duplicate check before
+ * a create skip the database for new keys.</p>
+ *
+ * <p>With {@link DatabaseConfig#isLazyConnect() lazy connect}, the backend
+ * opens without connecting or loading the key filters; {@link #warmUp()}
+ * does both, and the first operation connects and loads the filter it
+ * uses on its own if it comes first.</p>
+ *
+ * @see Database
+ */
+public class MySqlStorageBackend implements StorageBackend {
+
+    /** The name this backend is registered under. */
+    public static final String NAME = "mysql";
+
+    private final Database db;
+    private final PatientDAO patientDAO;
+    private final DoctorDAO doctorDAO;
+    private final ProcedureDAO procedureDAO;
+    private final PatientHistoryDAO patientHistoryDAO;
+    private final OutboxDAO outboxDAO;
+    private final AuditDAO auditDAO;
+    private final HistoryArchive historyArchive;
+    private final List<KeyFilter> keyFilters = new ArrayList<>();
+
+    /**
+     * Constructs a new MySqlStorageBackend and, unless lazy connect is
+     * configured, connects to the configured database.
+     *
+     * @param config the database configuration to use
+     * @throws RuntimeException if the database connection cannot be established
+     */
+    public MySqlStorageBackend(DatabaseConfig config) {
+        this(
+            new Database(config),
+            config.isBloomFiltersEnabled(),
+            config.isChangeEventsEnabled(),
+            config.isLazyConnect()
+        );
+    }
+
+    /**
+     * Constructs a new MySqlStorageBackend over an existing database connection.
+     *
+     * @param db the database connection to use for all DAOs
+     */
+    public MySqlStorageBackend(Database db) {
+        this(db, true);
+    }
+
+    /**
+     * Constructs a new MySqlStorageBackend over an existing database connection.
+     *
+     * @param db           the database connection to use for all DAOs
+     * @param bloomFilters true to load key filters for the {@code exists} checks
+     */
+    public MySqlStorageBackend(Database db, boolean bloomFilters) {
+        this(db, bloomFilters, false);
+    }
+
+    /**
+     * Constructs a new MySqlStorageBackend over an existing database connection.
+     *
+     * @param db           the database connection to use for all DAOs
+     * @param bloomFilters true to load key filters for the {@code exists} checks
+     * @param changeEvents true to record change events in the {@code outbox} table
+     */
+    public MySqlStorageBackend(Database db, boolean bloomFilters, boolean changeEvents) {
+        this(db, bloomFilters, changeEvents, false);
+    }
+
+    /**
+     * Constructs a new MySqlStorageBackend over an existing database connection.
+     *
+     * @param db           the database connection to use for all DAOs
+     * @param bloomFilters true to use key filters for the {@code exists} checks
+     * @param changeEvents true to record change events in the {@code outbox} table
+     * @param deferLoad    true to load the key filters in {@link #warmUp()}
+     *                     instead of now
+     */
+    public MySqlStorageBackend(
+        Database db,
+        boolean bloomFilters,
+        boolean changeEvents,
+        boolean deferLoad
+    ) {
+        this.db = db;
+        this.outboxDAO = changeEvents ? new MySqlOutboxDAO(db) : null;
+        this.auditDAO = new MySqlAuditDAO(db);
+        this.historyArchive = new HistoryArchive(db);
+        this.patientDAO = new MySqlPatientDAO(
+            db,
+            keyFilter(bloomFilters, deferLoad, "patients", "mrn", true)
+        );
+        this.doctorDAO = new MySqlDoctorDAO(
+            db,
+            keyFilter(bloomFilters, deferLoad, "doctors", "id", false)
+        );
+        this.procedureDAO = new MySqlProcedureDAO(
+            db,
+            keyFilter(bloomFilters, deferLoad, "procedures", "id", false)
+        );
+        this.patientHistoryDAO = new MySqlPatientHistoryDAO(db, historyArchive);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientDAO patients() {
+        return patientDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DoctorDAO doctors() {
+        return doctorDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProcedureDAO procedures() {
+        return procedureDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientHistoryDAO patientHistory() {
+        return patientHistoryDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OutboxDAO outbox() {
+        return outboxDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AuditDAO audit() {
+        return auditDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The work runs in a database transaction on the primary.
+     * </p>
+     */
+    @Override
+    public <T> T inTransaction(Transaction<T> work) throws DatabaseException {
+        return db.inTransaction(work::run);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * One connection of the pool is left for the thread that opened the
+     * backend, so worker threads never wait for a connection.
+     * </p>
+     */
+    @Override
+    public int getParallelism() {
+        return Math.max(1, db.getPoolSize() - 1);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This opens the first connection to the primary and then loads the key
+     * filters that were deferred, which are the slow parts of opening the
+     * backend. Nothing is loaded if the connection cannot be opened.
+     * </p>
+     */
+    @Override
+    public void warmUp() {
+        if (db.warmUp()) {
+            for (KeyFilter filter : keyFilters) {
+                filter.load();
+            }
+        }
+    }
+
+    /**
+     * Returns the connection leased to the calling thread to the pool.
+     */
+    @Override
+    public void releaseThreadResources() {
+        db.releaseConnection();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean cancelOperation(Thread thread) {
+        return db.cancel(thread);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int cancelRunningOperations() {
+        return db.cancelAll();
+    }
+
+    /**
+     * Gets the database connection used by this backend.
+     *
+     * @return the database connection
+     */
+    public Database getDatabase() {
+        return db;
+    }
+
+    /**
+     * Gets the catalog of archived patient history years.
+     *
+     * @return the history archive
+     */
+    HistoryArchive getHistoryArchive() {
+        return historyArchive;
+    }
+
+    /**
+     * Closes the underlying database connection.
+     */
+    @Override
+    public void close() {
+        db.close();
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Creates the key filter of a table.
+     *
+     * @param enabled   whether key filters are enabled
+     * @param deferLoad true to load the filter in {@link #warmUp()} or on
+     *                  its first use
+     * @param table     the table name
+     * @param column    the primary key column
+     * @param intKeys   true if the key column is an integer
+     * @return the filter, or {@link KeyFilter#DISABLED}
+     */
+    private KeyFilter keyFilter(
+        boolean enabled,
+        boolean deferLoad,
+        String table,
+        String column,
+        boolean intKeys
+    ) {
+        if (!enabled) {
+            return KeyFilter.DISABLED;
+        }
+        KeyFilter filter = new KeyFilter(db, table, column, intKeys, !deferLoad);
+        if (deferLoad) {
+            keyFilters.add(filter);
+        }
+        return filter;
+    }
+}
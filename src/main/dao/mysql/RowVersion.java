@@ -0,0 +1,72 @@
+package main.dao.mysql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import main.exception.ConflictException;
+import main.exception.DatabaseException;
+import main.model.Versioned;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * Completes the conditional updates of the MySQL DAOs.
+ * <p>
+ * Every update statement ends in {@code WHERE <key> = ? AND version = ?}
+ * and sets {@code version = version + 1}, so it only changes a row that
+ * still has the version the entity was read with. When no row was
+ * changed, the key is looked up on the primary to tell a row that was
+ * changed by someone else from one that does not exist.
+ * </p>
+ */
+final class RowVersion {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private RowVersion() {}
+
+    /**
+     * Interprets the update count of a conditional update.
+     *
+     * @param db         the database the update ran on
+     * @param updated    the number of rows the update changed
+     * @param entity     the updated entity; its version is incremented on success
+     * @param table      the table name
+     * @param keyColumn  the primary key column
+     * @param key        the primary key of the entity
+     * @param entityType the entity name used in the conflict message
+     * @return true if the row was updated, false if it does not exist
+     * @throws ConflictException if the row exists with another version
+     * @throws DatabaseException if the row cannot be looked up
+     */
+    static boolean completeUpdate(
+        Database db,
+        int updated,
+        Versioned entity,
+        String table,
+        String keyColumn,
+        Object key,
+        String entityType
+    ) throws DatabaseException {
+        if (updated > 0) {
+            entity.setVersion(entity.getVersion() + 1);
+            return true;
+        }
+        String sql = "SELECT 1 FROM " + table + " WHERE " + keyColumn + " = ?";
+        boolean exists;
+        try {
+            exists = db.executeOnPrimary(sql, QueryClass.POINT_READ, stmt -> {
+                stmt.setObject(1, key);
+                try (ResultSet resultSet = stmt.executeQuery()) {
+                    return resultSet.next();
+                }
+            });
+        } catch (SQLException e) {
+            throw db.failure("Failed to check " + table + " version", e);
+        }
+        if (exists) {
+            throw new ConflictException(entityType, String.valueOf(key));
+        }
+        return false;
+    }
+}
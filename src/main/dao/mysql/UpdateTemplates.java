@@ -0,0 +1,89 @@
+package main.dao.mysql;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Versioned {@code UPDATE} statements that set only some columns of a
+ * table, one statement per combination of columns.
+ * <p>
+ * A combination is a bit set over the updatable columns, in the order
+ * they were given. Its statement is built on first use and then reused,
+ * so each combination always produces the same SQL text and the driver
+ * can keep it prepared. Parameters are the chosen columns in order,
+ * followed by the primary key and the expected version.
+ * </p>
+ */
+final class UpdateTemplates {
+
+    private final String table;
+    private final String keyColumn;
+    private final String[] columns;
+    private final AtomicReferenceArray<String> templates;
+
+    /**
+     * Constructs new UpdateTemplates for a table.
+     *
+     * @param table     the table name
+     * @param keyColumn the primary key column
+     * @param columns   the updatable columns; bit {@code i} of a combination
+     *                  selects {@code columns[i]}
+     */
+    UpdateTemplates(String table, String keyColumn, String... columns) {
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.columns = columns.clone();
+        this.templates = new AtomicReferenceArray<>(1 << columns.length);
+    }
+
+    /**
+     * Gets the combination of all updatable columns.
+     *
+     * @return the bit set selecting every column
+     */
+    int allColumns() {
+        return (1 << columns.length) - 1;
+    }
+
+    /**
+     * Gets the statement that updates a combination of columns.
+     *
+     * @param combination the bit set of the columns to set; not empty
+     * @return the statement
+     * @throws IllegalArgumentException if the combination selects no
+     *                                  column or an unknown one
+     */
+    String sql(int combination) {
+        if (combination <= 0 || combination > allColumns()) {
+            throw new IllegalArgumentException("Invalid column combination: " + combination);
+        }
+        String sql = templates.get(combination);
+        if (sql == null) {
+            sql = build(combination);
+            // Racing threads build equal strings, so either one may win
+            templates.set(combination, sql);
+        }
+        return sql;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Builds the statement of a combination of columns.
+     *
+     * @param combination the bit set of the columns to set
+     * @return the statement
+     */
+    private String build(int combination) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            if ((combination & 1 << i) != 0) {
+                sql.append(columns[i]).append(" = ?, ");
+            }
+        }
+        return sql
+            .append("version = version + 1 WHERE ")
+            .append(keyColumn)
+            .append(" = ? AND version = ?")
+            .toString();
+    }
+}
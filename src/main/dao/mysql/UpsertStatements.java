@@ -0,0 +1,120 @@
+package main.dao.mysql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import main.exception.DatabaseException;
+import main.util.Database;
+import main.util.QueryClass;
+
+/**
+ * Multi-row {@code INSERT ... AS new ON DUPLICATE KEY UPDATE} statements
+ * that create rows or replace the stored rows with the same key. The new
+ * row is referred to through its alias rather than the deprecated
+ * {@code VALUES()} function, which needs MySQL 8.0.19 or later.
+ * <p>
+ * Rows are written up to {@value #ROWS_PER_STATEMENT} per statement, so a
+ * batch costs a few round trips instead of an existence check and a write
+ * per row. A replaced row takes every column of the new row except the
+ * version, which is incremented; a new row is stored with the version of
+ * the entity. Since the version of a replaced row always changes, MySQL
+ * counts one affected row per insert and two per replaced row, which
+ * gives the number of rows created.
+ * </p>
+ *
+ * @param <T> the entity type
+ */
+final class UpsertStatements<T> {
+
+    /** The maximum number of rows written by one statement. */
+    static final int ROWS_PER_STATEMENT = 500;
+
+    /**
+     * Binds the columns of one row.
+     *
+     * @param <T> the entity type
+     */
+    @FunctionalInterface
+    interface RowBinder<T> {
+        /**
+         * Binds the columns of a row in the order they were given.
+         *
+         * @param stmt  the statement
+         * @param index the index of the first parameter of the row
+         * @param row   the entity to bind
+         * @return the index of the first parameter of the next row
+         * @throws SQLException if a parameter cannot be set
+         */
+        int bind(PreparedStatement stmt, int index, T row) throws SQLException;
+    }
+
+    private final String prefix;
+    private final String placeholders;
+    private final String suffix;
+    private final RowBinder<T> binder;
+
+    /**
+     * Constructs new UpsertStatements for a table.
+     *
+     * @param table   the table name
+     * @param columns the comma-separated columns, the primary key first and
+     *                {@code version} last
+     * @param binder  binds the columns of one row
+     */
+    UpsertStatements(String table, String columns, RowBinder<T> binder) {
+        String[] names = columns.split(",\\s*");
+        this.prefix = "INSERT INTO " + table + " (" + columns + ") VALUES ";
+        this.placeholders = "(" + String.join(", ", Collections.nCopies(names.length, "?")) + ")";
+
+        StringBuilder updates = new StringBuilder(" AS new ON DUPLICATE KEY UPDATE ");
+        for (int i = 1; i < names.length - 1; i++) {
+            updates.append(names[i]).append(" = new.").append(names[i]).append(", ");
+        }
+        this.suffix = updates.append("version = version + 1").toString();
+        this.binder = binder;
+    }
+
+    /**
+     * Creates or replaces rows.
+     * <p>
+     * Each statement is atomic, but a batch of more than
+     * {@value #ROWS_PER_STATEMENT} rows is not: if a statement fails, the
+     * rows of the statements before it stay written unless the caller runs
+     * the batch in a transaction.
+     * </p>
+     *
+     * @param db      the database to write to
+     * @param rows    the entities to write
+     * @param failure the message of the exception thrown if a statement fails
+     * @return the number of rows created
+     * @throws DatabaseException if a statement fails
+     */
+    int write(Database db, List<? extends T> rows, String failure) throws DatabaseException {
+        int created = 0;
+        for (int from = 0; from < rows.size(); from += ROWS_PER_STATEMENT) {
+            List<? extends T> chunk = rows.subList(
+                from,
+                Math.min(rows.size(), from + ROWS_PER_STATEMENT)
+            );
+            String sql =
+                prefix + String.join(", ", Collections.nCopies(chunk.size(), placeholders)) + suffix;
+
+            int affected;
+            try {
+                affected = db.execute(sql, QueryClass.WRITE, stmt -> {
+                    int index = 1;
+                    for (T row : chunk) {
+                        index = binder.bind(stmt, index, row);
+                    }
+                    return stmt.executeUpdate();
+                });
+            } catch (SQLException e) {
+                throw db.failure(failure, e);
+            }
+            // An inserted row counts once and a replaced row twice
+            created += 2 * chunk.size() - affected;
+        }
+        return created;
+    }
+}
@@ -0,0 +1,121 @@
+package main.dao.shard;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Consistent hash ring that assigns patient MRNs to shards.
+ * <p>
+ * Every shard is placed on a 64-bit ring at {@code virtualNodes} pseudo-random
+ * points, and an MRN belongs to the shard owning the first point at or
+ * after the MRN's own hash. Because the points of a shard depend only on
+ * its index, adding a shard at the end takes over roughly
+ * {@code 1 / shardCount} of the MRNs, all of them from the existing shards,
+ * while every other MRN stays where it is.
+ * </p>
+ *
+ * <p>The ring is immutable. Lookups are a binary search over sorted
+ * primitive arrays, so they allocate nothing.</p>
+ */
+public final class HashRing {
+
+    private final int shardCount;
+    private final long[] points;
+    private final int[] owners;
+
+    /**
+     * Constructs a new HashRing.
+     *
+     * @param shardCount   the number of shards
+     * @param virtualNodes the number of points per shard
+     * @throws IllegalArgumentException if either argument is less than 1
+     */
+    public HashRing(int shardCount, int virtualNodes) {
+        if (shardCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException(
+                "A hash ring needs at least one shard and one virtual node"
+            );
+        }
+        this.shardCount = shardCount;
+
+        int size = shardCount * virtualNodes;
+        long[] hashes = new long[size];
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < virtualNodes; node++) {
+                hashes[shard * virtualNodes + node] = hash("shard" + shard + "#" + node);
+            }
+        }
+
+        // Sort the points, keeping track of the shard that owns each one
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        this.points = new long[size];
+        this.owners = new int[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = order[i] / virtualNodes;
+        }
+    }
+
+    /**
+     * Gets the shard that owns an MRN.
+     *
+     * @param mrn the patient MRN
+     * @return the shard index, from 0 to {@code getShardCount() - 1}
+     */
+    public int shardFor(int mrn) {
+        if (shardCount == 1) {
+            return 0;
+        }
+        int index = Arrays.binarySearch(points, mix(mrn));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // Past the last point the ring wraps around to the first
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * Gets the number of shards on this ring.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Hashes the name of a virtual node with 64-bit FNV-1a, finished with
+     * the mixing step below.
+     *
+     * @param name the node name
+     * @return the position of the node on the ring
+     */
+    private static long hash(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Spreads the bits of a value over 64 bits (the SplitMix64 finalizer),
+     * so that consecutive MRNs land far apart on the ring.
+     *
+     * @param value the value
+     * @return the mixed value
+     */
+    private static long mix(long value) {
+        long z = value + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
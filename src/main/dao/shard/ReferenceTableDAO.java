@@ -0,0 +1,301 @@
+package main.dao.shard;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import main.dao.BaseDAO;
+import main.dao.StorageBackend;
+import main.exception.ConflictException;
+import main.exception.DatabaseException;
+import main.model.Versioned;
+
+/**
+ * Base class of the DAOs for tables that are copied to every shard.
+ * <p>
+ * Writes are applied to the shards one after the other, in shard order,
+ * and reads are served by the home shard. A failed create or update is
+ * undone on the shards that had already applied it, so that the copies
+ * stay identical. The row version of an update is checked on the home
+ * shard only, which arbitrates between concurrent writers; the copies on
+ * the other shards are then overwritten whatever their own version. An
+ * upsert is not undone: it can simply be repeated until the copies agree.
+ * A delete cascades to the dependent rows of each shard
+ * and cannot be undone, so it is attempted on every shard even if one of
+ * them fails. {@link ShardRebalancer} copies rows that are missing on a
+ * shard from the home shard.
+ * </p>
+ *
+ * @param <T>  the entity type
+ * @param <ID> the primary key type
+ */
+abstract class ReferenceTableDAO<T extends Versioned, ID> implements BaseDAO<T, ID> {
+
+    /** The sharded backend providing the shards. */
+    final ShardedStorageBackend backend;
+
+    /**
+     * Constructs a new ReferenceTableDAO.
+     *
+     * @param backend the sharded backend providing the shards
+     */
+    ReferenceTableDAO(ShardedStorageBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Gets the DAO of this table on one shard.
+     *
+     * @param shard the shard backend
+     * @return the DAO of the shard
+     */
+    abstract BaseDAO<T, ID> dao(StorageBackend shard);
+
+    /**
+     * Gets the primary key of an entity.
+     *
+     * @param entity the entity
+     * @return its primary key
+     */
+    abstract ID idOf(T entity);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(T entity) throws DatabaseException {
+        List<StorageBackend> shards = backend.getShards();
+        for (int i = 0; i < shards.size(); i++) {
+            boolean created;
+            try {
+                created = dao(shards.get(i)).create(entity);
+            } catch (DatabaseException e) {
+                undoCreate(shards.subList(0, i), entity);
+                throw e;
+            }
+            if (!created) {
+                undoCreate(shards.subList(0, i), entity);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T read(ID id) throws DatabaseException {
+        return dao(backend.getHomeShard()).read(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<T> readAll() throws DatabaseException {
+        return dao(backend.getHomeShard()).readAll();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void streamAll(Consumer<? super T> action) throws DatabaseException {
+        dao(backend.getHomeShard()).streamAll(action);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws ConflictException if the row on the home shard has another
+     *                           version than the entity
+     */
+    @Override
+    public boolean update(T entity) throws DatabaseException {
+        T previous = read(idOf(entity));
+        if (previous == null) {
+            return false;
+        }
+        long expected = entity.getVersion();
+        List<StorageBackend> shards = backend.getShards();
+        // The first shard is the home shard
+        if (!dao(shards.get(0)).update(entity)) {
+            return false;
+        }
+        long updated = entity.getVersion();
+        for (int i = 1; i < shards.size(); i++) {
+            try {
+                overwrite(dao(shards.get(i)), entity);
+            } catch (DatabaseException e) {
+                entity.setVersion(expected);
+                undoUpdate(shards.subList(0, i), previous);
+                throw e;
+            }
+        }
+        entity.setVersion(updated);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(T entity) throws DatabaseException {
+        return upsertAll(Collections.singletonList(entity)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The entities are upserted on each shard in turn. The result is the
+     * number created on the home shard.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends T> entities) throws DatabaseException {
+        List<StorageBackend> shards = backend.getShards();
+        // The first shard is the home shard
+        int created = dao(shards.get(0)).upsertAll(entities);
+        for (int i = 1; i < shards.size(); i++) {
+            dao(shards.get(i)).upsertAll(entities);
+        }
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(ID id) throws DatabaseException {
+        boolean deleted = false;
+        DatabaseException failure = null;
+        for (StorageBackend shard : backend.getShards()) {
+            try {
+                deleted |= dao(shard).delete(id);
+            } catch (DatabaseException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * As with {@link #delete}, the rows are deleted on every shard even if
+     * one of them fails. The result is the number deleted on the home shard.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends ID> ids) throws DatabaseException {
+        List<StorageBackend> shards = backend.getShards();
+        int deleted = 0;
+        DatabaseException failure = null;
+        for (int i = 0; i < shards.size(); i++) {
+            try {
+                int count = dao(shards.get(i)).deleteAll(ids);
+                // The first shard is the home shard
+                if (i == 0) {
+                    deleted = count;
+                }
+            } catch (DatabaseException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(ID id) throws DatabaseException {
+        return dao(backend.getHomeShard()).exists(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean existsBeforeCreate(ID id) throws DatabaseException {
+        return dao(backend.getHomeShard()).existsBeforeCreate(id);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ID> readExistingIds(Collection<? extends ID> ids) throws DatabaseException {
+        return dao(backend.getHomeShard()).readExistingIds(ids);
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Deletes a newly created row from the shards that already had it
+     * created, reporting rows that could not be removed.
+     *
+     * @param shards the shards to undo the create on
+     * @param entity the created entity
+     */
+    private void undoCreate(List<StorageBackend> shards, T entity) {
+        for (StorageBackend shard : shards) {
+            try {
+                dao(shard).delete(idOf(entity));
+            } catch (DatabaseException e) {
+                System.out.println(
+                    "[WARN] Could not undo create of " + idOf(entity) +
+                        " on a shard: " + e.getMessage()
+                );
+            }
+        }
+    }
+
+    /**
+     * Updates the copy of a row on one shard to the values of an entity,
+     * whatever version the copy has.
+     *
+     * @param dao    the DAO of the table on the shard
+     * @param entity the entity to write; its version is changed
+     * @throws DatabaseException if the shard cannot be read or written
+     */
+    private void overwrite(BaseDAO<T, ID> dao, T entity) throws DatabaseException {
+        T copy = dao.read(idOf(entity));
+        if (copy != null) {
+            entity.setVersion(copy.getVersion());
+        }
+        dao.update(entity);
+    }
+
+    /**
+     * Restores the previous values of a row on the shards that already
+     * had it updated, reporting rows that could not be restored. The
+     * restore is itself an update, so the row versions keep increasing.
+     *
+     * @param shards   the shards to undo the update on
+     * @param previous the entity before the update
+     */
+    private void undoUpdate(List<StorageBackend> shards, T previous) {
+        for (StorageBackend shard : shards) {
+            try {
+                overwrite(dao(shard), previous);
+            } catch (DatabaseException e) {
+                System.out.println(
+                    "[WARN] Could not undo update of " + idOf(previous) +
+                        " on a shard: " + e.getMessage()
+                );
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package main.dao.shard;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import main.dao.BaseDAO;
+import main.dao.StorageBackend;
+import main.exception.DatabaseException;
+import main.model.Doctor;
+import main.model.Patient;
+import main.model.PatientHistory;
+import main.model.Procedure;
+import main.util.Metrics;
+
+/**
+ * Moves patients to the shard that owns them after the shard list changed.
+ * <p>
+ * A rebalance runs in two steps:
+ * </p>
+ * <ol>
+ *   <li>Doctors and procedures that are missing on a shard are copied from
+ *       the home shard, so that moved history records find the rows they
+ *       reference.</li>
+ *   <li>Every patient stored on a shard other than its owner is created on
+ *       the owner together with its history and then deleted from the old
+ *       shard, which also removes the old history rows.</li>
+ * </ol>
+ *
+ * <p>Each patient is moved on its own, and a patient or history record
+ * already present on the owner is not copied again, so an interrupted
+ * rebalance can simply be run again. The patients of a shard are streamed
+ * rather than read at once, and the report counts the rows of each shard
+ * without reading them. Reads of a patient that has not been
+ * moved yet find nothing, so the application should not be used while a
+ * rebalance runs. Moved rows are counted in the
+ * {@code shard.rebalance.*} {@link Metrics}.</p>
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * ShardRebalancer.Report report = new ShardRebalancer(sharded).rebalance(false);
+ * System.out.println(report);
+ * }</pre>
+ */
+public class ShardRebalancer {
+
+    private final ShardedStorageBackend backend;
+
+    /**
+     * The outcome of a rebalance.
+     */
+    public static final class Report {
+        private final boolean dryRun;
+        private int doctorsCopied;
+        private int proceduresCopied;
+        private int patientsMoved;
+        private int historiesMoved;
+        private final List<Integer> patientsPerShard = new ArrayList<>();
+
+        /**
+         * Constructs an empty report.
+         *
+         * @param dryRun whether the rebalance only counted the changes
+         */
+        private Report(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        /**
+         * Checks whether the rebalance only counted the changes.
+         *
+         * @return true for a dry run
+         */
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        /**
+         * Gets the number of doctors copied to shards that lacked them.
+         *
+         * @return the number of copied doctor rows
+         */
+        public int getDoctorsCopied() {
+            return doctorsCopied;
+        }
+
+        /**
+         * Gets the number of procedures copied to shards that lacked them.
+         *
+         * @return the number of copied procedure rows
+         */
+        public int getProceduresCopied() {
+            return proceduresCopied;
+        }
+
+        /**
+         * Gets the number of patients moved to another shard.
+         *
+         * @return the number of moved patients
+         */
+        public int getPatientsMoved() {
+            return patientsMoved;
+        }
+
+        /**
+         * Gets the number of patient history records moved with their patients.
+         *
+         * @return the number of moved history records
+         */
+        public int getHistoriesMoved() {
+            return historiesMoved;
+        }
+
+        /**
+         * Gets the number of patients on each shard after the rebalance.
+         *
+         * @return the patient counts, in shard order
+         */
+        public List<Integer> getPatientsPerShard() {
+            return patientsPerShard;
+        }
+
+        /**
+         * Returns a summary of the rebalance.
+         *
+         * @return a human-readable summary
+         */
+        @Override
+        public String toString() {
+            String verb = dryRun ? "to copy" : "copied";
+            String moved = dryRun ? "to move" : "moved";
+            return (
+                "Doctors " + verb + ": " + doctorsCopied +
+                ", procedures " + verb + ": " + proceduresCopied +
+                ", patients " + moved + ": " + patientsMoved +
+                ", history records " + moved + ": " + historiesMoved +
+                ", patients per shard: " + patientsPerShard
+            );
+        }
+    }
+
+    /**
+     * Constructs a new ShardRebalancer.
+     *
+     * @param backend the sharded backend to rebalance
+     */
+    public ShardRebalancer(ShardedStorageBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Copies missing reference rows and moves every misplaced patient to
+     * its owning shard.
+     *
+     * @param dryRun true to only count what would be copied and moved
+     * @return the outcome
+     * @throws DatabaseException if a shard cannot be read or written
+     */
+    public Report rebalance(boolean dryRun) throws DatabaseException {
+        Report report = new Report(dryRun);
+        StorageBackend home = backend.getHomeShard();
+        List<Doctor> doctors = home.doctors().readAll();
+        List<Procedure> procedures = home.procedures().readAll();
+        for (StorageBackend shard : backend.getShards()) {
+            if (shard == home) {
+                continue;
+            }
+            // Doctors first: procedures reference them
+            report.doctorsCopied += copyMissing(shard.doctors(), doctors, Doctor::getId, dryRun);
+            report.proceduresCopied += copyMissing(
+                shard.procedures(),
+                procedures,
+                Procedure::getId,
+                dryRun
+            );
+        }
+
+        List<StorageBackend> shards = backend.getShards();
+        for (int i = 0; i < shards.size(); i++) {
+            StorageBackend source = shards.get(i);
+            int index = i;
+            // The connection is busy while a stream is open, so the
+            // misplaced patients are only collected and moved afterwards
+            // A retried stream may deliver a patient twice
+            Set<Integer> misplaced = new LinkedHashSet<>();
+            source.patients().streamAll(patient -> {
+                if (backend.shardIndexFor(patient.getMrn()) != index) {
+                    misplaced.add(patient.getMrn());
+                }
+            });
+            for (int mrn : misplaced) {
+                Patient patient = source.patients().read(mrn);
+                if (patient == null) {
+                    continue;
+                }
+                report.patientsMoved++;
+                report.historiesMoved += dryRun
+                    ? source.patientHistory().readByPatientId(mrn).size()
+                    : move(patient, source, shards.get(backend.shardIndexFor(mrn)));
+            }
+        }
+
+        report.patientsPerShard.addAll(backend.gather(shard -> shard.patients().count()));
+        if (!dryRun) {
+            Metrics.counter("shard.rebalance.patients_moved").add(report.patientsMoved);
+            Metrics.counter("shard.rebalance.histories_moved").add(report.historiesMoved);
+        }
+        return report;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Creates the rows that are missing from a shard's table.
+     *
+     * @param <T>    the entity type
+     * @param <ID>   the primary key type
+     * @param dao    the DAO of the table on the shard
+     * @param rows   the rows every shard should have
+     * @param keyOf  the primary key of a row
+     * @param dryRun true to only count the missing rows
+     * @return the number of missing rows
+     * @throws DatabaseException if the shard cannot be read or written
+     */
+    private static <T, ID> int copyMissing(
+        BaseDAO<T, ID> dao,
+        List<T> rows,
+        Function<T, ID> keyOf,
+        boolean dryRun
+    ) throws DatabaseException {
+        int missing = 0;
+        for (T row : rows) {
+            if (!dao.exists(keyOf.apply(row))) {
+                missing++;
+                if (!dryRun) {
+                    dao.create(row);
+                }
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Moves a patient and its history from one shard to another.
+     *
+     * @param patient the patient to move
+     * @param source  the shard the patient is stored on
+     * @param target  the shard that owns the patient
+     * @return the number of history records moved
+     * @throws DatabaseException if a shard cannot be read or written
+     */
+    private static int move(Patient patient, StorageBackend source, StorageBackend target)
+        throws DatabaseException {
+        List<PatientHistory> histories = source
+            .patientHistory()
+            .readByPatientId(patient.getMrn());
+        if (!target.patients().exists(patient.getMrn())) {
+            target.patients().create(patient);
+        }
+        for (PatientHistory history : histories) {
+            if (!target.patientHistory().exists(history.getId())) {
+                target.patientHistory().create(history);
+            }
+        }
+        // Cascades to the history rows on the old shard
+        source.patients().delete(patient.getMrn());
+        return histories.size();
+    }
+}
@@ -0,0 +1,37 @@
+package main.dao.shard;
+
+import main.dao.BaseDAO;
+import main.dao.DoctorDAO;
+import main.dao.StorageBackend;
+import main.model.Doctor;
+
+/**
+ * Doctor DAO that keeps a copy of every doctor on each shard.
+ */
+class ShardedDoctorDAO extends ReferenceTableDAO<Doctor, String> implements DoctorDAO {
+
+    /**
+     * Constructs a new ShardedDoctorDAO.
+     *
+     * @param backend the sharded backend providing the shards
+     */
+    ShardedDoctorDAO(ShardedStorageBackend backend) {
+        super(backend);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    BaseDAO<Doctor, String> dao(StorageBackend shard) {
+        return shard.doctors();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    String idOf(Doctor doctor) {
+        return doctor.getId();
+    }
+}
@@ -0,0 +1,107 @@
+package main.dao.shard;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import main.dao.OutboxDAO;
+import main.dao.StorageBackend;
+import main.event.ChangeEvent;
+import main.exception.DatabaseException;
+
+/**
+ * Outbox that stores each change event on the shard of its change.
+ * <p>
+ * Patient events go to the outbox of the patient's shard, so that in a
+ * {@link ShardedStorageBackend#inTransaction sharded transaction} they
+ * commit together with the patient row. Every other event goes to the home
+ * shard: doctors and procedures are written to every shard, including the
+ * home shard, and a history record ID alone does not tell its shard. The
+ * events of one row therefore always land in the same outbox, in order.
+ * </p>
+ *
+ * <p>The events are delivered from the outboxes of the shards, which
+ * {@link ShardedStorageBackend#outboxes()} lists; reading or deleting
+ * through this outbox is not supported.</p>
+ */
+class ShardedOutboxDAO implements OutboxDAO {
+
+    private final ShardedStorageBackend backend;
+
+    /**
+     * Constructs a new ShardedOutboxDAO.
+     *
+     * @param backend the sharded backend providing the shards
+     */
+    ShardedOutboxDAO(ShardedStorageBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void append(ChangeEvent event) throws DatabaseException {
+        shardFor(event).outbox().append(event);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The events are grouped by shard and appended to each shard in order.
+     * </p>
+     */
+    @Override
+    public void appendAll(List<ChangeEvent> events) throws DatabaseException {
+        Map<StorageBackend, List<ChangeEvent>> groups = new LinkedHashMap<>();
+        for (ChangeEvent event : events) {
+            groups.computeIfAbsent(shardFor(event), shard -> new ArrayList<>()).add(event);
+        }
+        for (Map.Entry<StorageBackend, List<ChangeEvent>> group : groups.entrySet()) {
+            group.getKey().outbox().appendAll(group.getValue());
+        }
+    }
+
+    /**
+     * Not supported; read the outboxes of the shards instead.
+     *
+     * @param limit the maximum number of events to read
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public List<ChangeEvent> readOldest(int limit) {
+        throw new UnsupportedOperationException(
+            "Sharded change events are read from the outbox of each shard"
+        );
+    }
+
+    /**
+     * Not supported; delete from the outboxes of the shards instead.
+     *
+     * @param events the events to delete
+     * @return never
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public int delete(List<ChangeEvent> events) {
+        throw new UnsupportedOperationException(
+            "Sharded change events are deleted from the outbox of each shard"
+        );
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Chooses the shard whose outbox stores an event.
+     *
+     * @param event the event
+     * @return the patient's shard for patient events, else the home shard
+     */
+    private StorageBackend shardFor(ChangeEvent event) {
+        if (event.getEntityType() == ChangeEvent.EntityType.PATIENT) {
+            return backend.shardFor(Integer.parseInt(event.getKey()));
+        }
+        return backend.getHomeShard();
+    }
+}
@@ -0,0 +1,235 @@
+package main.dao.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import main.dao.PatientDAO;
+import main.dao.StorageBackend;
+import main.exception.DatabaseException;
+import main.model.Patient;
+import main.model.PatientSummary;
+
+/**
+ * Patient DAO that routes every operation to the shard owning the MRN.
+ */
+class ShardedPatientDAO implements PatientDAO {
+
+    private final ShardedStorageBackend backend;
+
+    /**
+     * Constructs a new ShardedPatientDAO.
+     *
+     * @param backend the sharded backend providing the shards
+     */
+    ShardedPatientDAO(ShardedStorageBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(Patient patient) throws DatabaseException {
+        return backend.shardFor(patient.getMrn()).patients().create(patient);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Patient read(Integer mrn) throws DatabaseException {
+        return backend.shardFor(mrn).patients().read(mrn);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The patients of all shards are read in parallel and returned in MRN
+     * order.
+     * </p>
+     */
+    @Override
+    public List<Patient> readAll() throws DatabaseException {
+        List<Patient> patients = new ArrayList<>();
+        for (List<Patient> shardPatients : backend.gather(shard -> shard.patients().readAll())) {
+            patients.addAll(shardPatients);
+        }
+        patients.sort(Comparator.comparingInt(Patient::getMrn));
+        return patients;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The summaries of all shards are read in parallel and returned in MRN
+     * order.
+     * </p>
+     */
+    @Override
+    public List<PatientSummary> readAllSummaries() throws DatabaseException {
+        List<PatientSummary> summaries = new ArrayList<>();
+        for (List<PatientSummary> shardSummaries : backend.gather(shard ->
+            shard.patients().readAllSummaries()
+        )) {
+            summaries.addAll(shardSummaries);
+        }
+        summaries.sort(Comparator.comparingInt(PatientSummary::getMrn));
+        return summaries;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The shards are streamed one after the other, so the patients are not
+     * in MRN order.
+     * </p>
+     */
+    @Override
+    public void streamAll(Consumer<? super Patient> action) throws DatabaseException {
+        for (StorageBackend shard : backend.getShards()) {
+            shard.patients().streamAll(action);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean update(Patient patient) throws DatabaseException {
+        return backend.shardFor(patient.getMrn()).patients().update(patient);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(Patient patient) throws DatabaseException {
+        return backend.shardFor(patient.getMrn()).patients().upsert(patient);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The patients are grouped by shard, and the groups are upserted on
+     * their shards in parallel.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends Patient> patients) throws DatabaseException {
+        Map<StorageBackend, List<Patient>> groups = new HashMap<>();
+        for (Patient patient : patients) {
+            groups
+                .computeIfAbsent(backend.shardFor(patient.getMrn()), shard -> new ArrayList<>())
+                .add(patient);
+        }
+        int created = 0;
+        for (int shardCreated : backend.gather(shard -> {
+            List<Patient> group = groups.get(shard);
+            return group == null ? 0 : shard.patients().upsertAll(group);
+        })) {
+            created += shardCreated;
+        }
+        return created;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(Integer mrn) throws DatabaseException {
+        return backend.shardFor(mrn).patients().delete(mrn);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The MRNs are grouped by shard, and the groups are deleted on their
+     * shards in parallel.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends Integer> mrns) throws DatabaseException {
+        Map<StorageBackend, List<Integer>> groups = new HashMap<>();
+        for (int mrn : mrns) {
+            groups.computeIfAbsent(backend.shardFor(mrn), shard -> new ArrayList<>()).add(mrn);
+        }
+        int deleted = 0;
+        for (int shardDeleted : backend.gather(shard -> {
+            List<Integer> group = groups.get(shard);
+            return group == null ? 0 : shard.patients().deleteAll(group);
+        })) {
+            deleted += shardDeleted;
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(Integer mrn) throws DatabaseException {
+        return backend.shardFor(mrn).patients().exists(mrn);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The shards count their patients in parallel.
+     * </p>
+     */
+    @Override
+    public int count() throws DatabaseException {
+        int count = 0;
+        for (int shardCount : backend.gather(shard -> shard.patients().count())) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean existsBeforeCreate(Integer mrn) throws DatabaseException {
+        return backend.shardFor(mrn).patients().existsBeforeCreate(mrn);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The MRNs are grouped by shard, and the groups are looked up on their
+     * shards in parallel.
+     * </p>
+     */
+    @Override
+    public List<Integer> readExistingIds(Collection<? extends Integer> mrns)
+        throws DatabaseException {
+        Map<StorageBackend, List<Integer>> groups = new HashMap<>();
+        for (int mrn : mrns) {
+            groups.computeIfAbsent(backend.shardFor(mrn), shard -> new ArrayList<>()).add(mrn);
+        }
+        Set<Integer> found = new HashSet<>();
+        for (List<Integer> shardFound : backend.gather(shard -> {
+            List<Integer> group = groups.get(shard);
+            return group == null
+                ? Collections.<Integer>emptyList()
+                : shard.patients().readExistingIds(group);
+        })) {
+            found.addAll(shardFound);
+        }
+        List<Integer> existing = new ArrayList<>();
+        for (int mrn : mrns) {
+            if (found.remove(mrn)) {
+                existing.add(mrn);
+            }
+        }
+        return existing;
+    }
+}
@@ -0,0 +1,354 @@
+package main.dao.shard;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import main.dao.PatientHistoryDAO;
+import main.dao.StorageBackend;
+import main.exception.ConflictException;
+import main.exception.DatabaseException;
+import main.model.PatientHistory;
+
+/**
+ * Patient history DAO that keeps every record on the shard of its patient.
+ * <p>
+ * Operations that carry the patient ID run on that patient's shard. A
+ * record ID alone does not tell the shard, so reads, existence checks and
+ * deletes by ID ask all shards in parallel.
+ * </p>
+ */
+class ShardedPatientHistoryDAO implements PatientHistoryDAO {
+
+    private final ShardedStorageBackend backend;
+
+    /**
+     * Constructs a new ShardedPatientHistoryDAO.
+     *
+     * @param backend the sharded backend providing the shards
+     */
+    ShardedPatientHistoryDAO(ShardedStorageBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean create(PatientHistory patientHistory) throws DatabaseException {
+        return backend
+            .shardFor(patientHistory.getPatientId())
+            .patientHistory()
+            .create(patientHistory);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientHistory read(String id) throws DatabaseException {
+        for (PatientHistory found : backend.gather(shard -> shard.patientHistory().read(id))) {
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The records of all shards are read in parallel and returned in ID
+     * order.
+     * </p>
+     */
+    @Override
+    public List<PatientHistory> readAll() throws DatabaseException {
+        List<PatientHistory> patientHistories = new ArrayList<>();
+        for (List<PatientHistory> shardHistories : backend.gather(shard ->
+            shard.patientHistory().readAll()
+        )) {
+            patientHistories.addAll(shardHistories);
+        }
+        patientHistories.sort(Comparator.comparing(PatientHistory::getId));
+        return patientHistories;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The shards are streamed one after the other, so the records are not
+     * in ID order.
+     * </p>
+     */
+    @Override
+    public void streamAll(Consumer<? super PatientHistory> action) throws DatabaseException {
+        for (StorageBackend shard : backend.getShards()) {
+            shard.patientHistory().streamAll(action);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the record is moved to a patient on another shard, its version is
+     * checked on its old shard, and it is created on the new shard with
+     * the next version and then deleted from its old shard if it still has
+     * the version that was checked. If it was changed meanwhile, the new
+     * copy is deleted again and the move fails with a conflict. The steps
+     * are not atomic; if the last ones fail, the record exists on both
+     * shards until it is deleted again.
+     * </p>
+     *
+     * @throws ConflictException if the stored record has another version
+     */
+    @Override
+    public boolean update(PatientHistory patientHistory) throws DatabaseException {
+        StorageBackend target = backend.shardFor(patientHistory.getPatientId());
+        if (target.patientHistory().update(patientHistory)) {
+            return true;
+        }
+        String id = patientHistory.getId();
+        for (StorageBackend shard : backend.getShards()) {
+            PatientHistory stored = shard == target ? null : shard.patientHistory().read(id);
+            if (stored != null) {
+                long version = patientHistory.getVersion();
+                if (stored.getVersion() != version) {
+                    throw new ConflictException("Patient history", id);
+                }
+                patientHistory.setVersion(version + 1);
+                boolean created = false;
+                try {
+                    created = target.patientHistory().create(patientHistory);
+                } finally {
+                    if (!created) {
+                        patientHistory.setVersion(version);
+                    }
+                }
+                if (!created) {
+                    return false;
+                }
+                boolean moved = false;
+                try {
+                    moved = shard.patientHistory().deleteIfVersion(id, version);
+                } finally {
+                    if (!moved) {
+                        target.patientHistory().delete(id);
+                        patientHistory.setVersion(version);
+                    }
+                }
+                if (!moved) {
+                    throw new ConflictException("Patient history", id);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean upsert(PatientHistory patientHistory) throws DatabaseException {
+        return upsertAll(Collections.singletonList(patientHistory)) == 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The records are grouped by the shard of their patient, and the groups
+     * are upserted on their shards in parallel. A record that is new on its
+     * shard may still be stored on another shard, under a patient it was
+     * moved away from; such copies are then deleted, and the record counts
+     * as replaced rather than created. Whether a record is new on its shard
+     * is checked per record before the upsert; new keys are usually
+     * rejected by the key filters without a query. As with
+     * {@link #update}, the steps are not atomic.
+     * </p>
+     */
+    @Override
+    public int upsertAll(Collection<? extends PatientHistory> patientHistories)
+        throws DatabaseException {
+        Map<StorageBackend, List<PatientHistory>> groups = new HashMap<>();
+        for (PatientHistory patientHistory : patientHistories) {
+            groups
+                .computeIfAbsent(
+                    backend.shardFor(patientHistory.getPatientId()),
+                    shard -> new ArrayList<>()
+                )
+                .add(patientHistory);
+        }
+        List<List<String>> createdByShard = backend.gather(shard -> {
+            List<PatientHistory> group = groups.get(shard);
+            if (group == null) {
+                return Collections.<String>emptyList();
+            }
+            List<String> fresh = new ArrayList<>();
+            for (PatientHistory patientHistory : group) {
+                if (!shard.patientHistory().exists(patientHistory.getId())) {
+                    fresh.add(patientHistory.getId());
+                }
+            }
+            shard.patientHistory().upsertAll(group);
+            return fresh;
+        });
+
+        List<StorageBackend> shards = backend.getShards();
+        Map<String, StorageBackend> createdOn = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            for (String id : createdByShard.get(i)) {
+                createdOn.put(id, shards.get(i));
+            }
+        }
+        Set<String> moved = ConcurrentHashMap.newKeySet();
+        if (!createdOn.isEmpty() && shards.size() > 1) {
+            backend.gather(shard -> {
+                for (Map.Entry<String, StorageBackend> entry : createdOn.entrySet()) {
+                    String id = entry.getKey();
+                    if (
+                        entry.getValue() != shard &&
+                        shard.patientHistory().exists(id) &&
+                        shard.patientHistory().delete(id)
+                    ) {
+                        moved.add(id);
+                    }
+                }
+                return null;
+            });
+        }
+        return createdOn.size() - moved.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean delete(String id) throws DatabaseException {
+        boolean deleted = false;
+        for (boolean shardDeleted : backend.gather(shard -> shard.patientHistory().delete(id))) {
+            deleted |= shardDeleted;
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each shard checks the version of its copy, if it has one.
+     * </p>
+     */
+    @Override
+    public boolean deleteIfVersion(String id, long version) throws DatabaseException {
+        return backend
+            .gather(shard -> shard.patientHistory().deleteIfVersion(id, version))
+            .contains(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The records are deleted on all shards in parallel.
+     * </p>
+     */
+    @Override
+    public int deleteAll(Collection<? extends String> ids) throws DatabaseException {
+        int deleted = 0;
+        for (int shardDeleted : backend.gather(shard -> shard.patientHistory().deleteAll(ids))) {
+            deleted += shardDeleted;
+        }
+        return deleted;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean exists(String id) throws DatabaseException {
+        return backend.gather(shard -> shard.patientHistory().exists(id)).contains(true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All shards look up all IDs in parallel.
+     * </p>
+     */
+    @Override
+    public List<String> readExistingIds(Collection<? extends String> ids)
+        throws DatabaseException {
+        Set<String> found = new HashSet<>();
+        for (List<String> shardFound : backend.gather(shard ->
+            shard.patientHistory().readExistingIds(ids)
+        )) {
+            found.addAll(shardFound);
+        }
+        List<String> existing = new ArrayList<>();
+        for (String id : ids) {
+            if (found.remove(id)) {
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PatientHistory> readByPatientId(int patientId)
+        throws DatabaseException {
+        return backend.shardFor(patientId).patientHistory().readByPatientId(patientId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The records of all shards are read in parallel and merged in date
+     * order.
+     * </p>
+     */
+    @Override
+    public List<PatientHistory> readByDateRange(LocalDate from, LocalDate to)
+        throws DatabaseException {
+        List<PatientHistory> patientHistories = new ArrayList<>();
+        for (List<PatientHistory> shardHistories : backend.gather(shard ->
+            shard.patientHistory().readByDateRange(from, to)
+        )) {
+            patientHistories.addAll(shardHistories);
+        }
+        patientHistories.sort(
+            Comparator.comparing(PatientHistory::getDate).thenComparing(PatientHistory::getId)
+        );
+        return patientHistories;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The records of all shards are looked up in parallel.
+     * </p>
+     */
+    @Override
+    public List<String> readIdsReferencing(
+        Collection<Integer> patientIds,
+        Collection<String> procedureIds,
+        Collection<String> doctorIds
+    ) throws DatabaseException {
+        List<String> ids = new ArrayList<>();
+        for (List<String> shardIds : backend.gather(shard ->
+            shard.patientHistory().readIdsReferencing(patientIds, procedureIds, doctorIds)
+        )) {
+            ids.addAll(shardIds);
+        }
+        return ids;
+    }
+}
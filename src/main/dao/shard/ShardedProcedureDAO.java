@@ -0,0 +1,60 @@
+package main.dao.shard;
+
+import java.util.Collection;
+import java.util.List;
+import main.dao.BaseDAO;
+import main.dao.ProcedureDAO;
+import main.dao.StorageBackend;
+import main.exception.DatabaseException;
+import main.model.Procedure;
+import main.model.ProcedureRef;
+
+/**
+ * Procedure DAO that keeps a copy of every procedure on each shard.
+ */
+class ShardedProcedureDAO
+    extends ReferenceTableDAO<Procedure, String>
+    implements ProcedureDAO {
+
+    /**
+     * Constructs a new ShardedProcedureDAO.
+     *
+     * @param backend the sharded backend providing the shards
+     */
+    ShardedProcedureDAO(ShardedStorageBackend backend) {
+        super(backend);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProcedureRef> readAllRefs() throws DatabaseException {
+        return backend.getHomeShard().procedures().readAllRefs();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<String> readIdsByDoctors(Collection<String> doctorIds)
+        throws DatabaseException {
+        return backend.getHomeShard().procedures().readIdsByDoctors(doctorIds);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    BaseDAO<Procedure, String> dao(StorageBackend shard) {
+        return shard.procedures();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    String idOf(Procedure procedure) {
+        return procedure.getId();
+    }
+}
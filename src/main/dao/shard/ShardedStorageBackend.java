@@ -0,0 +1,567 @@
+package main.dao.shard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import main.config.DatabaseConfig;
+import main.dao.AuditDAO;
+import main.dao.DoctorDAO;
+import main.dao.OutboxDAO;
+import main.dao.PatientDAO;
+import main.dao.PatientHistoryDAO;
+import main.dao.ProcedureDAO;
+import main.dao.StorageBackend;
+import main.dao.mysql.MySqlStorageBackend;
+import main.exception.DatabaseException;
+
+/**
+ * Storage backend that spreads patients over several databases (shards).
+ * <p>
+ * Each patient lives on the shard that owns its MRN on a consistent
+ * {@link HashRing}, together with its patient history, so that all
+ * foreign keys stay within one database. Doctors and procedures are
+ * reference tables: every write is applied to all shards, and reads are
+ * served by the first shard (the <em>home</em> shard).
+ * </p>
+ *
+ * <ul>
+ *   <li>Patient operations and history operations that know the patient
+ *       run on a single shard.</li>
+ *   <li>Listings, and history lookups by record ID alone, are sent to all
+ *       shards in parallel and the results merged (scatter-gather). Other
+ *       cross-shard aggregations can use {@link #gather(ShardCall)}.</li>
+ *   <li>After shards are added, {@link ShardRebalancer} moves patients to
+ *       the shard that now owns them. Until it has run, moved patients are
+ *       not found.</li>
+ * </ul>
+ *
+ * <p>A {@linkplain #inTransaction transaction} joins the transaction of
+ * each shard it touches, so the changes on each shard commit together.
+ * Shard transactions begin with their first statement, so a write of one
+ * patient only uses the patient's shard. Change events are kept in an
+ * outbox per shard (see {@link ShardedOutboxDAO}), so a patient change
+ * and its event commit together as well.</p>
+ *
+ * <p>Every shard needs the schema from the README. The shards are
+ * configured with {@code EMR_SHARD_URLS}, in a fixed order: new shards
+ * are appended at the end.</p>
+ *
+ * @see HashRing
+ * @see ShardRebalancer
+ */
+public class ShardedStorageBackend implements StorageBackend {
+
+    /** The name this backend is registered under. */
+    public static final String NAME = "sharded";
+
+    private final List<StorageBackend> shards;
+    private final HashRing ring;
+    private final ExecutorService scatterPool;
+    private final PatientDAO patientDAO;
+    private final DoctorDAO doctorDAO;
+    private final ProcedureDAO procedureDAO;
+    private final PatientHistoryDAO patientHistoryDAO;
+    private final OutboxDAO outboxDAO;
+
+    /** Set while the thread runs a transaction on all shards. */
+    private final ThreadLocal<Boolean> inTransaction = new ThreadLocal<>();
+
+    /** The scatter-gather call each thread is waiting for. */
+    private final Map<Thread, Scatter> scatters = new ConcurrentHashMap<>();
+
+    /**
+     * The per-shard calls of one scatter-gather call and the pool threads
+     * running them, so that cancelling the calling thread reaches them.
+     * A call runs only if it claims its flag first; cancelling claims the
+     * flags of the calls that have not started.
+     */
+    private static final class Scatter {
+        final List<AtomicBoolean> claims = new CopyOnWriteArrayList<>();
+        final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Work done on one shard as part of a scatter-gather operation.
+     *
+     * @param <R> the type of the per-shard result
+     */
+    @FunctionalInterface
+    public interface ShardCall<R> {
+        /**
+         * Runs the work on a shard.
+         *
+         * @param shard the shard backend
+         * @return the result for this shard
+         * @throws DatabaseException if a database error occurs
+         */
+        R call(StorageBackend shard) throws DatabaseException;
+    }
+
+    /**
+     * Constructs a new ShardedStorageBackend with a MySQL database per
+     * configured shard URL.
+     *
+     * @param config the configuration listing the shard URLs
+     * @throws IllegalArgumentException if no shard URLs are configured
+     * @throws RuntimeException         if a shard cannot be opened
+     */
+    public ShardedStorageBackend(DatabaseConfig config) {
+        this(openShards(config), config.getShardVirtualNodes());
+        System.out.println(
+            "[INFO] Sharding patients over " + shards.size() + " databases\n"
+        );
+    }
+
+    /**
+     * Constructs a new ShardedStorageBackend over already opened shards.
+     * <p>
+     * The shards may use any backend, e.g. several in-memory backends for
+     * experiments. The sharded backend takes ownership of them and closes
+     * them when it is closed.
+     * </p>
+     *
+     * @param shards       the shard backends, in ring order
+     * @param virtualNodes the number of points per shard on the hash ring
+     * @throws IllegalArgumentException if no shards are given
+     */
+    public ShardedStorageBackend(List<StorageBackend> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("The sharded backend needs at least one shard");
+        }
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.ring = new HashRing(shards.size(), virtualNodes);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.scatterPool = Executors.newFixedThreadPool(shards.size(), runnable -> {
+            Thread thread = new Thread(
+                runnable,
+                "emr-shard-" + threadNumber.incrementAndGet()
+            );
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.patientDAO = new ShardedPatientDAO(this);
+        this.doctorDAO = new ShardedDoctorDAO(this);
+        this.procedureDAO = new ShardedProcedureDAO(this);
+        this.patientHistoryDAO = new ShardedPatientHistoryDAO(this);
+        this.outboxDAO = getHomeShard().outbox() == null ? null : new ShardedOutboxDAO(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientDAO patients() {
+        return patientDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DoctorDAO doctors() {
+        return doctorDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProcedureDAO procedures() {
+        return procedureDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PatientHistoryDAO patientHistory() {
+        return patientHistoryDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The outbox stores each event on the shard of its change, as described
+     * in {@link ShardedOutboxDAO}.
+     * </p>
+     */
+    @Override
+    public OutboxDAO outbox() {
+        return outboxDAO;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * These are the outboxes of the shards, in shard order.
+     * </p>
+     */
+    @Override
+    public List<OutboxDAO> outboxes() {
+        if (outboxDAO == null) {
+            return Collections.emptyList();
+        }
+        List<OutboxDAO> outboxes = new ArrayList<>(shards.size());
+        for (StorageBackend shard : shards) {
+            outboxes.add(shard.outbox());
+        }
+        return outboxes;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Audit records are kept on the home shard.
+     * </p>
+     */
+    @Override
+    public AuditDAO audit() {
+        return getHomeShard().audit();
+    }
+
+    /**
+     * Gets the shard that owns a patient.
+     *
+     * @param mrn the patient MRN
+     * @return the shard backend
+     */
+    public StorageBackend shardFor(int mrn) {
+        return shards.get(ring.shardFor(mrn));
+    }
+
+    /**
+     * Gets the index of the shard that owns a patient.
+     *
+     * @param mrn the patient MRN
+     * @return the shard index
+     */
+    public int shardIndexFor(int mrn) {
+        return ring.shardFor(mrn);
+    }
+
+    /**
+     * Gets all shards, in ring order.
+     *
+     * @return the shard backends
+     */
+    public List<StorageBackend> getShards() {
+        return shards;
+    }
+
+    /**
+     * Gets the home shard, which serves reads of the reference tables.
+     *
+     * @return the first shard
+     */
+    public StorageBackend getHomeShard() {
+        return shards.get(0);
+    }
+
+    /**
+     * Runs a call on every shard in parallel and collects the results.
+     * <p>
+     * Within a {@linkplain #inTransaction transaction}, the calls run on
+     * the calling thread one after the other instead. If any shard fails,
+     * the first failure in shard order is thrown after all calls have
+     * finished. Cancelling the calling thread cancels the
+     * calls of every shard, including those still waiting for a pool
+     * thread.
+     * </p>
+     *
+     * @param <R>  the type of the per-shard result
+     * @param call the work to run on each shard
+     * @return the results, in shard order
+     * @throws DatabaseException if the call fails on any shard
+     */
+    public <R> List<R> gather(ShardCall<R> call) throws DatabaseException {
+        if (shards.size() == 1) {
+            return Collections.singletonList(call.call(shards.get(0)));
+        }
+        if (inTransaction.get() != null) {
+            // The transactions of the shards belong to the calling thread
+            List<R> results = new ArrayList<>(shards.size());
+            for (StorageBackend shard : shards) {
+                results.add(call.call(shard));
+            }
+            return results;
+        }
+        Thread caller = Thread.currentThread();
+        Scatter scatter = new Scatter();
+        scatters.put(caller, scatter);
+        try {
+            return gather(call, scatter);
+        } finally {
+            scatters.remove(caller);
+        }
+    }
+
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The work is wrapped in the transactions of the shards, nested in
+     * shard order. A shard transaction begins with the first statement the
+     * work runs on that shard, so only the shards the work touches lease a
+     * connection and commit; for a keyed write that is the owning shard
+     * alone. The changes on each shard, including the events in its outbox,
+     * commit together, the home shard last. The shards do not commit
+     * atomically with each other: if a commit fails, the shards after it in
+     * shard order have already committed. Scatter-gather calls of the work,
+     * such as the bulk writes of a chunk, run on the calling thread, one
+     * shard after the other, to stay in the transactions. A nested call
+     * joins the enclosing transaction.
+     * </p>
+     */
+    @Override
+    public <T> T inTransaction(Transaction<T> work) throws DatabaseException {
+        if (inTransaction.get() != null) {
+            return work.run();
+        }
+        inTransaction.set(Boolean.TRUE);
+        try {
+            return inTransaction(work, 0);
+        } finally {
+            inTransaction.remove();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A thread may use a connection on every shard, so this is the lowest
+     * parallelism of any shard.
+     * </p>
+     */
+    @Override
+    public int getParallelism() {
+        int parallelism = Integer.MAX_VALUE;
+        for (StorageBackend shard : shards) {
+            parallelism = Math.min(parallelism, shard.getParallelism());
+        }
+        return parallelism;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The shards are warmed up one after the other.
+     * </p>
+     */
+    @Override
+    public void warmUp() {
+        for (StorageBackend shard : shards) {
+            shard.warmUp();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void releaseThreadResources() {
+        for (StorageBackend shard : shards) {
+            shard.releaseThreadResources();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the thread is waiting for a scatter-gather call, the per-shard
+     * statements run for it by the pool threads are cancelled too, and its
+     * per-shard calls that have not started yet never will.
+     * </p>
+     */
+    @Override
+    public boolean cancelOperation(Thread thread) {
+        boolean cancelled = false;
+        for (StorageBackend shard : shards) {
+            cancelled |= shard.cancelOperation(thread);
+        }
+        Scatter scatter = scatters.get(thread);
+        if (scatter != null) {
+            for (Thread worker : scatter.workers) {
+                for (StorageBackend shard : shards) {
+                    cancelled |= shard.cancelOperation(worker);
+                }
+            }
+            cancelled |= cancelPending(scatter) > 0;
+        }
+        return cancelled;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * This includes the per-shard statements of running scatter-gather
+     * calls, which run on the pool threads, and their per-shard calls that
+     * have not started yet.
+     * </p>
+     */
+    @Override
+    public int cancelRunningOperations() {
+        int cancelled = 0;
+        for (StorageBackend shard : shards) {
+            cancelled += shard.cancelRunningOperations();
+        }
+        for (Scatter scatter : scatters.values()) {
+            cancelled += cancelPending(scatter);
+        }
+        return cancelled;
+    }
+
+    /**
+     * Closes all shards.
+     */
+    @Override
+    public void close() {
+        scatterPool.shutdownNow();
+        try {
+            scatterPool.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (StorageBackend shard : shards) {
+            shard.close();
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Cancels the per-shard calls of a scatter-gather call that are still
+     * waiting for a pool thread. Running calls are left to finish or fail.
+     *
+     * @param scatter the scatter-gather call
+     * @return the number of calls cancelled
+     */
+    private static int cancelPending(Scatter scatter) {
+        int cancelled = 0;
+        for (AtomicBoolean claim : scatter.claims) {
+            if (claim.compareAndSet(false, true)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Runs work in the transactions of the shards from an index on. Entering
+     * a shard transaction only marks the calling thread; the shard begins
+     * it when the work first uses the shard.
+     *
+     * @param <T>   the type of the result
+     * @param work  the work to run
+     * @param index the index of the next shard to start a transaction on
+     * @return the result of the work
+     * @throws DatabaseException if the work fails or a shard cannot commit
+     */
+    private <T> T inTransaction(Transaction<T> work, int index) throws DatabaseException {
+        if (index == shards.size()) {
+            return work.run();
+        }
+        return shards.get(index).inTransaction(() -> inTransaction(work, index + 1));
+    }
+
+    /**
+     * Runs the per-shard calls of a scatter-gather call on the pool.
+     *
+     * @param <R>     the type of the per-shard result
+     * @param call    the work to run on each shard
+     * @param scatter collects the tasks and the threads running them
+     * @return the results, in shard order
+     * @throws DatabaseException if the call fails on any shard
+     */
+    private <R> List<R> gather(ShardCall<R> call, Scatter scatter) throws DatabaseException {
+        List<Future<R>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            StorageBackend shard = shards.get(i);
+            String cancelled = "Failed to query shard " + i + ": query cancelled";
+            AtomicBoolean claim = new AtomicBoolean();
+            scatter.claims.add(claim);
+            futures.add(scatterPool.submit(() -> {
+                if (!claim.compareAndSet(false, true)) {
+                    throw new DatabaseException(cancelled);
+                }
+                Thread worker = Thread.currentThread();
+                scatter.workers.add(worker);
+                try {
+                    return call.call(shard);
+                } finally {
+                    scatter.workers.remove(worker);
+                    shard.releaseThreadResources();
+                }
+            }));
+        }
+
+        List<R> results = new ArrayList<>(shards.size());
+        DatabaseException failure = null;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof DatabaseException
+                        ? (DatabaseException) e.getCause()
+                        : new DatabaseException(
+                            "Failed to query shard " + i + ": " + e.getCause().getMessage(),
+                            e.getCause()
+                        );
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(future -> future.cancel(true));
+                throw new DatabaseException("Interrupted while querying shards", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Opens a MySQL backend for every configured shard URL, closing the
+     * already opened ones if a later shard fails.
+     *
+     * @param config the configuration listing the shard URLs
+     * @return the opened shards
+     * @throws IllegalArgumentException if no shard URLs are configured
+     */
+    private static List<StorageBackend> openShards(DatabaseConfig config) {
+        if (config.getShardUrls().isEmpty()) {
+            throw new IllegalArgumentException(
+                "The sharded backend needs the shard URLs in EMR_SHARD_URLS"
+            );
+        }
+        List<StorageBackend> opened = new ArrayList<>();
+        try {
+            for (String url : config.getShardUrls()) {
+                opened.add(new MySqlStorageBackend(config.forUrl(url)));
+            }
+        } catch (RuntimeException e) {
+            opened.forEach(StorageBackend::close);
+            throw e;
+        }
+        return opened;
+    }
+}
@@ -0,0 +1,247 @@
+package main.event;
+
+import main.model.Doctor;
+import main.model.Patient;
+import main.model.PatientHistory;
+import main.model.Procedure;
+
+/**
+ * A committed change to one row, as published through the outbox.
+ * <p>
+ * An event names the entity type, the operation and the primary key of
+ * the row, and carries the row as it was after the change, encoded as a
+ * flat JSON object (see {@link RowJson}); delete events carry no row.
+ * Deleting a doctor, procedure or patient also deletes the rows that
+ * depend on it, as in the database schema; those cascaded deletes are not
+ * published as separate events, so consumers apply the same cascade.
+ * </p>
+ *
+ * <p>The sequence number is assigned by the outbox and increases with the
+ * order in which the events of a row were written. Events for the same row
+ * are always delivered in that order, while events of different rows may
+ * arrive out of sequence order. Delivery is at least once, so consumers
+ * should ignore an event whose sequence number is not higher than the last
+ * one they applied to the same row.</p>
+ */
+public final class ChangeEvent {
+
+    /**
+     * The entity types whose changes are published.
+     */
+    public enum EntityType {
+        PATIENT,
+        DOCTOR,
+        PROCEDURE,
+        PATIENT_HISTORY
+    }
+
+    /**
+     * The kinds of change.
+     */
+    public enum Operation {
+        CREATE,
+        UPDATE,
+        DELETE,
+        UPSERT
+    }
+
+    private final long sequence;
+    private final EntityType entityType;
+    private final Operation operation;
+    private final String key;
+    private final String payload;
+    private final long timestamp;
+
+    /**
+     * Constructs a new ChangeEvent.
+     *
+     * @param sequence   the sequence number, or 0 if not yet assigned
+     * @param entityType the type of the changed row
+     * @param operation  the kind of change
+     * @param key        the primary key of the row
+     * @param payload    the row after the change as JSON, or null for deletes
+     * @param timestamp  the time of the change in milliseconds since the epoch
+     */
+    public ChangeEvent(
+        long sequence,
+        EntityType entityType,
+        Operation operation,
+        String key,
+        String payload,
+        long timestamp
+    ) {
+        this.sequence = sequence;
+        this.entityType = entityType;
+        this.operation = operation;
+        this.key = key;
+        this.payload = payload;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Creates the event for a created, updated or upserted row.
+     *
+     * @param operation {@link Operation#CREATE}, {@link Operation#UPDATE} or
+     *                  {@link Operation#UPSERT}
+     * @param row       the row after the change
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent of(Operation operation, Object row) {
+        return new ChangeEvent(
+            0,
+            typeOf(row),
+            operation,
+            keyOf(row),
+            RowJson.write(row),
+            System.currentTimeMillis()
+        );
+    }
+
+    /**
+     * Creates the event for a deleted row.
+     *
+     * @param entityType the type of the deleted row
+     * @param key        the primary key of the deleted row
+     * @return the event, without a sequence number
+     */
+    public static ChangeEvent deleted(EntityType entityType, Object key) {
+        return new ChangeEvent(
+            0,
+            entityType,
+            Operation.DELETE,
+            String.valueOf(key),
+            null,
+            System.currentTimeMillis()
+        );
+    }
+
+    /**
+     * Gets the sequence number assigned by the outbox.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the type of the changed row.
+     *
+     * @return the entity type
+     */
+    public EntityType getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Gets the kind of change.
+     *
+     * @return the operation
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Gets the primary key of the changed row.
+     *
+     * @return the key, as text
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the row after the change as JSON.
+     *
+     * @return the JSON object, or null for deletes
+     */
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * Gets the time of the change.
+     *
+     * @return milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Decodes the row after the change.
+     *
+     * @return a {@link Patient}, {@link Doctor}, {@link Procedure} or
+     *         {@link PatientHistory}, or null for deletes
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public Object getRow() {
+        return payload == null ? null : RowJson.read(entityType, payload);
+    }
+
+    /**
+     * Encodes the event as one line of JSON, as written by the file and
+     * socket sinks.
+     *
+     * @return the JSON object, without a line terminator
+     */
+    public String toJson() {
+        return "{\"sequence\":" + sequence +
+            ",\"entity\":\"" + entityType +
+            "\",\"operation\":\"" + operation +
+            "\",\"key\":" + RowJson.quote(key) +
+            ",\"timestamp\":" + timestamp +
+            ",\"row\":" + (payload == null ? "null" : payload) +
+            "}";
+    }
+
+    /**
+     * Returns a string representation of this event.
+     *
+     * @return a string containing the sequence, type, operation and key
+     */
+    @Override
+    public String toString() {
+        return "ChangeEvent #" + sequence + ": " + operation + " " + entityType + " " + key;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Gets the entity type of a row.
+     *
+     * @param row the row
+     * @return its entity type
+     * @throws IllegalArgumentException if the row is not an entity
+     */
+    private static EntityType typeOf(Object row) {
+        if (row instanceof Patient) {
+            return EntityType.PATIENT;
+        } else if (row instanceof Doctor) {
+            return EntityType.DOCTOR;
+        } else if (row instanceof Procedure) {
+            return EntityType.PROCEDURE;
+        } else if (row instanceof PatientHistory) {
+            return EntityType.PATIENT_HISTORY;
+        }
+        throw new IllegalArgumentException("Unknown row type: " + row);
+    }
+
+    /**
+     * Gets the primary key of a row as text.
+     *
+     * @param row the row
+     * @return its key
+     */
+    private static String keyOf(Object row) {
+        if (row instanceof Patient) {
+            return String.valueOf(((Patient) row).getMrn());
+        } else if (row instanceof Doctor) {
+            return ((Doctor) row).getId();
+        } else if (row instanceof Procedure) {
+            return ((Procedure) row).getId();
+        }
+        return ((PatientHistory) row).getId();
+    }
+}
@@ -0,0 +1,14 @@
+package main.event;
+
+/**
+ * Receives change events in process through a {@link SubscriberSink}.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+    /**
+     * Called once for each delivered event, on the relay thread.
+     *
+     * @param event the event
+     */
+    void onChange(ChangeEvent event);
+}
@@ -0,0 +1,94 @@
+package main.event;
+
+import java.util.List;
+import java.util.function.Supplier;
+import main.dao.OutboxDAO;
+import main.dao.StorageBackend;
+import main.exception.DatabaseException;
+
+/**
+ * Runs service writes together with the change events that describe them.
+ * <p>
+ * When the storage backend has an outbox, each write and the append of
+ * its event run in one {@link StorageBackend#inTransaction transaction},
+ * so an event is stored exactly when its change commits. When change
+ * events are disabled the write simply runs on its own and no event is
+ * built.
+ * </p>
+ */
+public class ChangeRecorder {
+
+    private final StorageBackend storage;
+
+    /** The outbox of the backend, or null if change events are disabled. */
+    private final OutboxDAO outbox;
+
+    /**
+     * Constructs a new ChangeRecorder for the specified storage backend.
+     *
+     * @param storage the storage backend the writes go to
+     */
+    public ChangeRecorder(StorageBackend storage) {
+        this.storage = storage;
+        this.outbox = storage.outbox();
+    }
+
+    /**
+     * Checks whether writes are recorded as change events.
+     *
+     * @return true if the backend has an outbox
+     */
+    public boolean isEnabled() {
+        return outbox != null;
+    }
+
+    /**
+     * Runs a write and, if it succeeds, records its change event.
+     *
+     * @param write the DAO write; returns true if a row was changed
+     * @param event builds the event, called only after a successful write
+     * @return the result of the write
+     * @throws DatabaseException if the write or the append fails, in which
+     *                           case neither is committed
+     */
+    public boolean record(
+        StorageBackend.Transaction<Boolean> write,
+        Supplier<ChangeEvent> event
+    ) throws DatabaseException {
+        if (outbox == null) {
+            return write.run();
+        }
+        return storage.inTransaction(() -> {
+            boolean changed = write.run();
+            if (changed) {
+                outbox.append(event.get());
+            }
+            return changed;
+        });
+    }
+
+    /**
+     * Runs a write of several rows and, if it succeeds, records the change
+     * events of all of them.
+     *
+     * @param <T>    the result type of the write
+     * @param write  the DAO write
+     * @param events builds the events, called only after the write succeeded
+     * @return the result of the write
+     * @throws DatabaseException if the write or the append fails, in which
+     *                           case neither is committed
+     */
+    public <T> T recordAll(
+        StorageBackend.Transaction<T> write,
+        Supplier<List<ChangeEvent>> events
+    ) throws DatabaseException {
+        if (outbox == null) {
+            return write.run();
+        }
+        return storage.inTransaction(() -> {
+            T result = write.run();
+            outbox.appendAll(events.get());
+            return result;
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package main.event;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A destination the {@link OutboxRelay} delivers change events to.
+ * <p>
+ * Batches arrive in sequence order. If {@link #deliver(List)} throws, the
+ * relay delivers the same batch again later, so a sink may see an event
+ * more than once.
+ * </p>
+ */
+public interface ChangeSink extends AutoCloseable {
+    /**
+     * Delivers a batch of events.
+     *
+     * @param events the events, in sequence order; never empty
+     * @throws IOException if the batch could not be delivered
+     */
+    void deliver(List<ChangeEvent> events) throws IOException;
+
+    /**
+     * Releases the resources of the sink.
+     */
+    @Override
+    void close();
+}
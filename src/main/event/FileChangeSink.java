@@ -0,0 +1,83 @@
+package main.event;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Appends change events to a file, one JSON object per line.
+ * <p>
+ * Each batch is written with a single call and forced to disk before
+ * {@link #deliver(List)} returns, so a batch the relay has removed from
+ * the outbox is never lost from the file.
+ * </p>
+ */
+public class FileChangeSink implements ChangeSink {
+
+    private final Path file;
+    private final FileChannel channel;
+
+    /**
+     * Opens the file for appending, creating it and its parent directories
+     * if needed.
+     *
+     * @param file the event log file
+     * @throws IOException if the file cannot be opened
+     */
+    public FileChangeSink(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(
+            file,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void deliver(List<ChangeEvent> events) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (ChangeEvent event : events) {
+            lines.append(event.toJson()).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Closes the file.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("[WARN] Failed to close event log '" + file + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a string representation of this sink.
+     *
+     * @return the sink type and file
+     */
+    @Override
+    public String toString() {
+        return "file " + file;
+    }
+}
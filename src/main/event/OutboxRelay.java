@@ -0,0 +1,161 @@
+package main.event;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import main.dao.OutboxDAO;
+import main.dao.StorageBackend;
+import main.exception.DatabaseException;
+import main.util.Metrics;
+
+/**
+ * Delivers the events in the outbox to the configured sinks.
+ * <p>
+ * A background thread repeatedly reads the oldest events, hands the batch
+ * to every sink in turn and only then deletes it from the outbox. If a
+ * sink fails, the batch stays in the outbox and the whole batch is
+ * delivered again on the next attempt, so delivery is at least once.
+ * Events are read in sequence order, but that is not the order in which
+ * they committed: MySQL assigns the sequence number when the event is
+ * inserted, so an event with a lower number can commit after a higher one
+ * was delivered and is then delivered later. The events of one row are
+ * still delivered in order, since their transactions hold the row's lock
+ * until they commit. A backend with
+ * {@linkplain StorageBackend#outboxes() several outboxes} has them drained
+ * one after the other.
+ * </p>
+ *
+ * <p>The relay publishes the counters {@code events.delivered} and
+ * {@code events.delivery_failures} and the gauge {@code events.pending},
+ * which is the number of events in the last batches read.</p>
+ */
+public class OutboxRelay implements AutoCloseable {
+
+    /** Delay between polls of the outbox, in milliseconds. */
+    private static final long POLL_INTERVAL_MS = 200;
+
+    /** How long {@link #close()} waits for the final drain, in milliseconds. */
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private final StorageBackend storage;
+    private final List<OutboxDAO> outboxes;
+    private final List<ChangeSink> sinks;
+    private final int batchSize;
+    private final ScheduledExecutorService poller;
+    private final LongAdder delivered = Metrics.counter("events.delivered");
+    private final LongAdder failures = Metrics.counter("events.delivery_failures");
+    private volatile int pending;
+
+    /** Whether the last attempt failed; used to report each outage once. */
+    private boolean failing;
+
+    /**
+     * Starts a relay that delivers the outbox of a storage backend.
+     *
+     * @param storage   the backend whose outbox to deliver
+     * @param sinks     the destinations, delivered to in list order
+     * @param batchSize the maximum number of events per batch
+     * @throws IllegalArgumentException if the backend has no outbox
+     */
+    public OutboxRelay(StorageBackend storage, List<ChangeSink> sinks, int batchSize) {
+        if (storage.outbox() == null) {
+            throw new IllegalArgumentException("Change events are not enabled on this backend");
+        }
+        this.storage = storage;
+        this.outboxes = storage.outboxes();
+        this.sinks = List.copyOf(sinks);
+        this.batchSize = batchSize;
+        Metrics.gauge("events.pending", () -> pending);
+        this.poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "emr-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(
+            this::drain,
+            POLL_INTERVAL_MS,
+            POLL_INTERVAL_MS,
+            TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Delivers the events still in the outbox, stops the relay and closes
+     * the sinks. Events that cannot be delivered stay in the outbox.
+     */
+    @Override
+    public void close() {
+        poller.execute(() -> {
+            drain();
+            storage.releaseThreadResources();
+        });
+        poller.shutdown();
+        try {
+            if (!poller.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                System.out.println("[WARN] Change event relay did not finish delivering\n");
+                poller.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            poller.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        for (ChangeSink sink : sinks) {
+            sink.close();
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Delivers batches until the outboxes are empty or a delivery fails.
+     * Runs on the relay thread only.
+     */
+    private void drain() {
+        try {
+            int read = 0;
+            for (OutboxDAO outbox : outboxes) {
+                read += drain(outbox);
+            }
+            pending = read;
+            if (failing) {
+                System.out.println("[INFO] Change event delivery resumed\n");
+                failing = false;
+            }
+        } catch (DatabaseException | IOException | RuntimeException e) {
+            failures.increment();
+            if (!failing) {
+                System.out.println(
+                    "[WARN] Change event delivery failed, will retry: " + e.getMessage() + "\n"
+                );
+                failing = true;
+            }
+        }
+    }
+
+    /**
+     * Delivers batches of one outbox until it is empty.
+     *
+     * @param outbox the outbox
+     * @return the size of the last batch read
+     * @throws DatabaseException if the outbox cannot be read or emptied
+     * @throws IOException       if a sink fails
+     */
+    private int drain(OutboxDAO outbox) throws DatabaseException, IOException {
+        List<ChangeEvent> batch;
+        do {
+            batch = outbox.readOldest(batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            for (ChangeSink sink : sinks) {
+                sink.deliver(batch);
+            }
+            outbox.delete(batch);
+            delivered.add(batch.size());
+        } while (batch.size() == batchSize);
+        return batch.size();
+    }
+}
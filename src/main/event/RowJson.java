@@ -0,0 +1,348 @@
+package main.event;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import main.event.ChangeEvent.EntityType;
+import main.model.Doctor;
+import main.model.Patient;
+import main.model.PatientHistory;
+import main.model.Procedure;
+import main.model.Versioned;
+
+/**
+ * Encodes entities as flat JSON objects and decodes them again.
+ * <p>
+ * Field names match the model getters; dates are ISO-8601 strings. The
+ * row version is written last; objects without it decode with version 0.
+ * The decoder only accepts the flat objects written by the encoder, which
+ * is all the outbox needs, so no JSON library is required.
+ * </p>
+ */
+public final class RowJson {
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private RowJson() {}
+
+    /**
+     * Encodes an entity.
+     *
+     * @param row a {@link Patient}, {@link Doctor}, {@link Procedure} or {@link PatientHistory}
+     * @return the JSON object
+     * @throws IllegalArgumentException if the row is not an entity
+     */
+    public static String write(Object row) {
+        StringBuilder json = new StringBuilder("{");
+        if (row instanceof Patient) {
+            Patient p = (Patient) row;
+            field(json, "mrn", p.getMrn());
+            field(json, "fname", p.getFname());
+            field(json, "lname", p.getLname());
+            field(json, "dob", p.getDob());
+            field(json, "address", p.getAddress());
+            field(json, "state", p.getState());
+            field(json, "city", p.getCity());
+            field(json, "zip", p.getZip());
+            field(json, "insurance", p.getInsurance());
+            field(json, "email", p.getEmail());
+        } else if (row instanceof Doctor) {
+            Doctor d = (Doctor) row;
+            field(json, "id", d.getId());
+            field(json, "name", d.getName());
+        } else if (row instanceof Procedure) {
+            Procedure p = (Procedure) row;
+            field(json, "id", p.getId());
+            field(json, "name", p.getName());
+            field(json, "description", p.getDescription());
+            field(json, "duration", p.getDuration());
+            field(json, "doctorId", p.getDoctorId());
+        } else if (row instanceof PatientHistory) {
+            PatientHistory h = (PatientHistory) row;
+            field(json, "id", h.getId());
+            field(json, "patientId", h.getPatientId());
+            field(json, "procedureId", h.getProcedureId());
+            field(json, "date", h.getDate());
+            field(json, "billing", h.getBilling());
+            field(json, "doctorId", h.getDoctorId());
+        } else {
+            throw new IllegalArgumentException("Unknown row type: " + row);
+        }
+        field(json, "version", ((Versioned) row).getVersion());
+        return json.append('}').toString();
+    }
+
+    /**
+     * Decodes an entity.
+     *
+     * @param entityType the type of the entity
+     * @param json       the JSON object written by {@link #write(Object)}
+     * @return the entity
+     * @throws IllegalArgumentException if the JSON is malformed
+     */
+    public static Object read(EntityType entityType, String json) {
+        Map<String, String> f = parse(json);
+        try {
+            Versioned row;
+            switch (entityType) {
+                case PATIENT:
+                    row = new Patient(
+                        Integer.parseInt(f.get("mrn")),
+                        f.get("fname"),
+                        f.get("lname"),
+                        date(f.get("dob")),
+                        f.get("address"),
+                        f.get("state"),
+                        f.get("city"),
+                        Integer.parseInt(f.get("zip")),
+                        f.get("insurance"),
+                        f.get("email")
+                    );
+                    break;
+                case DOCTOR:
+                    row = new Doctor(f.get("id"), f.get("name"));
+                    break;
+                case PROCEDURE:
+                    row = new Procedure(
+                        f.get("id"),
+                        f.get("name"),
+                        f.get("description"),
+                        Integer.parseInt(f.get("duration")),
+                        f.get("doctorId")
+                    );
+                    break;
+                default:
+                    row = new PatientHistory(
+                        f.get("id"),
+                        Integer.parseInt(f.get("patientId")),
+                        f.get("procedureId"),
+                        date(f.get("date")),
+                        Double.parseDouble(f.get("billing")),
+                        f.get("doctorId")
+                    );
+                    break;
+            }
+            String version = f.get("version");
+            row.setVersion(version == null ? 0 : Long.parseLong(version));
+            return row;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed " + entityType + " row: " + json, e);
+        }
+    }
+
+    /**
+     * Quotes a string as a JSON string literal.
+     *
+     * @param value the string, or null
+     * @return the literal, or {@code null}
+     */
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Appends one field to an object under construction.
+     *
+     * @param json  the object so far, starting with '{'
+     * @param name  the field name
+     * @param value the value: a number, a date, a string or null
+     */
+    private static void field(StringBuilder json, String name, Object value) {
+        if (json.length() > 1) {
+            json.append(',');
+        }
+        json.append('"').append(name).append("\":");
+        if (value instanceof Number) {
+            json.append(value);
+        } else {
+            json.append(quote(value == null ? null : value.toString()));
+        }
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings, numbers or null.
+     *
+     * @param json the JSON object
+     * @return the raw values by field name; strings are unescaped
+     * @throws IllegalArgumentException if the text is not such an object
+     */
+    private static Map<String, String> parse(String json) {
+        Map<String, String> fields = new HashMap<>();
+        int[] at = {skipSpace(json, 0)};
+        expect(json, at, '{');
+        if (peek(json, at) == '}') {
+            return fields;
+        }
+        while (true) {
+            String name = readString(json, at);
+            expect(json, at, ':');
+            fields.put(name, readValue(json, at));
+            char next = peek(json, at);
+            at[0]++;
+            if (next == '}') {
+                return fields;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("Expected ',' or '}' at " + (at[0] - 1));
+            }
+        }
+    }
+
+    /**
+     * Reads a string, number or null value.
+     *
+     * @param json the text
+     * @param at   the position, advanced past the value
+     * @return the value, or null
+     */
+    private static String readValue(String json, int[] at) {
+        char c = peek(json, at);
+        if (c == '"') {
+            return readString(json, at);
+        }
+        int start = at[0];
+        while (at[0] < json.length() && ",} \t\r\n".indexOf(json.charAt(at[0])) < 0) {
+            at[0]++;
+        }
+        String token = json.substring(start, at[0]);
+        if (token.isEmpty()) {
+            throw new IllegalArgumentException("Expected a value at " + start);
+        }
+        return token.equals("null") ? null : token;
+    }
+
+    /**
+     * Reads a string literal.
+     *
+     * @param json the text
+     * @param at   the position, advanced past the literal
+     * @return the unescaped string
+     */
+    private static String readString(String json, int[] at) {
+        expect(json, at, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (at[0] >= json.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char c = json.charAt(at[0]++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            char escaped = json.charAt(at[0]++);
+            switch (escaped) {
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'u':
+                    value.append((char) Integer.parseInt(json.substring(at[0], at[0] + 4), 16));
+                    at[0] += 4;
+                    break;
+                default:
+                    value.append(escaped);
+            }
+        }
+    }
+
+    /**
+     * Skips whitespace and checks for an expected character.
+     *
+     * @param json     the text
+     * @param at       the position, advanced past the character
+     * @param expected the expected character
+     */
+    private static void expect(String json, int[] at, char expected) {
+        if (peek(json, at) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at " + at[0]);
+        }
+        at[0]++;
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     *
+     * @param json the text
+     * @param at   the position, advanced past any whitespace
+     * @return the next character
+     */
+    private static char peek(String json, int[] at) {
+        at[0] = skipSpace(json, at[0]);
+        if (at[0] >= json.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON");
+        }
+        return json.charAt(at[0]);
+    }
+
+    /**
+     * Finds the next character that is not whitespace.
+     *
+     * @param json the text
+     * @param at   the start position
+     * @return the position of the next non-whitespace character
+     */
+    private static int skipSpace(String json, int at) {
+        while (at < json.length() && Character.isWhitespace(json.charAt(at))) {
+            at++;
+        }
+        return at;
+    }
+
+    /**
+     * Parses an ISO-8601 date.
+     *
+     * @param value the date text, or null
+     * @return the date, or null
+     */
+    private static LocalDate date(String value) {
+        return value == null ? null : LocalDate.parse(value);
+    }
+}
@@ -0,0 +1,137 @@
+package main.event;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Sends change events over a TCP connection, one JSON object per line.
+ * <p>
+ * Meant for a consumer on the same host. The connection is opened on the
+ * first delivery and reopened after a failure, so the consumer may start
+ * after the application and may be restarted; undelivered events wait in
+ * the outbox in the meantime.
+ * </p>
+ */
+public class SocketChangeSink implements ChangeSink {
+
+    /** Timeout for connecting to the consumer, in milliseconds. */
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+
+    private final String host;
+    private final int port;
+    private Socket socket;
+    private OutputStream out;
+
+    /**
+     * Constructs a new SocketChangeSink; no connection is made yet.
+     *
+     * @param host the consumer host
+     * @param port the consumer port
+     */
+    public SocketChangeSink(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Creates a sink from a {@code host:port} address.
+     *
+     * @param address the address, such as {@code localhost:7070}
+     * @return the sink
+     * @throws IllegalArgumentException if the address is malformed
+     */
+    public static SocketChangeSink parse(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0 || colon == address.length() - 1) {
+            throw new IllegalArgumentException(
+                "Event socket must be host:port, got '" + address + "'"
+            );
+        }
+        try {
+            return new SocketChangeSink(
+                address.substring(0, colon).trim(),
+                Integer.parseInt(address.substring(colon + 1).trim())
+            );
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid event socket port in '" + address + "'", e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void deliver(List<ChangeEvent> events) throws IOException {
+        try {
+            if (out == null) {
+                connect();
+            }
+            for (ChangeEvent event : events) {
+                out.write(event.toJson().getBytes(StandardCharsets.UTF_8));
+                out.write('\n');
+            }
+            out.flush();
+        } catch (IOException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the connection, if open.
+     */
+    @Override
+    public synchronized void close() {
+        disconnect();
+    }
+
+    /**
+     * Returns a string representation of this sink.
+     *
+     * @return the sink type and address
+     */
+    @Override
+    public String toString() {
+        return "socket " + host + ":" + port;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Opens the connection to the consumer.
+     *
+     * @throws IOException if the consumer cannot be reached
+     */
+    private void connect() throws IOException {
+        Socket opened = new Socket();
+        try {
+            opened.setTcpNoDelay(true);
+            opened.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            out = new BufferedOutputStream(opened.getOutputStream());
+            socket = opened;
+        } catch (IOException e) {
+            opened.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the connection, ignoring errors.
+     */
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The connection is being discarded anyway
+            }
+        }
+        socket = null;
+        out = null;
+    }
+}
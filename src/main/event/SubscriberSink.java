@@ -0,0 +1,62 @@
+package main.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers change events to listeners in the same process.
+ * <p>
+ * Listeners are called on the relay thread and should return quickly. A
+ * listener that throws is reported and skipped for that event; it does
+ * not hold up the other listeners or cause the batch to be redelivered.
+ * </p>
+ */
+public class SubscriberSink implements ChangeSink {
+
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Registers a listener for all future events.
+     *
+     * @param listener the listener
+     */
+    public void subscribe(ChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     * @return true if the listener was registered
+     */
+    public boolean unsubscribe(ChangeListener listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deliver(List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            for (ChangeListener listener : listeners) {
+                try {
+                    listener.onChange(event);
+                } catch (RuntimeException e) {
+                    System.out.println(
+                        "[WARN] Change listener failed on " + event + ": " + e.getMessage()
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all listeners.
+     */
+    @Override
+    public void close() {
+        listeners.clear();
+    }
+}
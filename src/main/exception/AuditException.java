@@ -0,0 +1,35 @@
+package main.exception;
+
+/**
+ * Exception thrown when an access to patient data could not be audited
+ * as configured.
+ * <p>
+ * The audit log is part of the application's storage, so this is a
+ * {@link DatabaseException} and fails the operation that made the access.
+ * An access that is audited after it happened, such as a create, has
+ * already been made when this is thrown.
+ * </p>
+ */
+public class AuditException extends DatabaseException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new AuditException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public AuditException(String message) {
+        super(message);
+    }
+
+    /**
+     * Constructs a new AuditException with the specified detail message and cause.
+     *
+     * @param message the detail message
+     * @param cause the cause of this exception
+     */
+    public AuditException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,60 @@
+package main.exception;
+
+/**
+ * Exception thrown when an update is rejected because the row was changed
+ * by someone else after it was read.
+ * <p>
+ * The stored row is left as it is. Read the entity again, reapply the
+ * changes and retry the update.
+ * </p>
+ */
+public class ConflictException extends DatabaseException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String entityType;
+    private final String entityId;
+
+    /**
+     * Constructs a new ConflictException with the specified entity type and ID.
+     *
+     * @param entityType the type of entity that was changed (e.g., "Patient", "Doctor")
+     * @param entityId   the ID of the entity that was changed
+     */
+    public ConflictException(String entityType, String entityId) {
+        super(
+            entityType + " with ID '" + entityId +
+                "' was changed by someone else since it was read; reload it and try again"
+        );
+        this.entityType = entityType;
+        this.entityId = entityId;
+    }
+
+    /**
+     * Constructs a new ConflictException with the specified entity type and numeric ID.
+     *
+     * @param entityType the type of entity that was changed (e.g., "Patient", "Doctor")
+     * @param entityId   the numeric ID of the entity that was changed
+     */
+    public ConflictException(String entityType, int entityId) {
+        this(entityType, String.valueOf(entityId));
+    }
+
+    /**
+     * Gets the type of entity that was changed.
+     *
+     * @return the entity type
+     */
+    public String getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Gets the ID of the entity that was changed.
+     *
+     * @return the entity ID as a string
+     */
+    public String getEntityId() {
+        return entityId;
+    }
+}
@@ -0,0 +1,89 @@
+package main.linkage;
+
+import java.time.LocalDate;
+
+/**
+ * The keys that group patients into blocks of possible duplicates.
+ * <p>
+ * Only patients that share at least one key are compared. Each key
+ * tolerates different errors: a misspelled last name still sounds alike,
+ * a changed name keeps the ZIP code, and an email survives both. A key
+ * value fits in {@value #KEY_BITS} bits, so that it can be packed with a
+ * row number into one {@code long} and blocks can be formed by sorting.
+ * </p>
+ */
+public enum BlockingKey {
+
+    /** Soundex code of the last name and the year of birth. */
+    LAST_NAME_SOUND_AND_BIRTH_YEAR,
+
+    /** ZIP code and the first letter of the first name. */
+    ZIP_AND_FIRST_INITIAL,
+
+    /** The email address, ignoring case. */
+    EMAIL;
+
+    /** Returned for a patient that lacks the fields of a key. */
+    static final long NO_KEY = -1;
+
+    /** The number of bits of a key value. */
+    static final int KEY_BITS = 40;
+
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+    private static final int FIRST_YEAR = 1800;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Computes the key value of a row.
+     *
+     * @param rows the patients
+     * @param row  the row number
+     * @return the key value, below 2<sup>{@value #KEY_BITS}</sup>, or
+     *         {@link #NO_KEY}
+     */
+    long of(PatientRows rows, int row) {
+        switch (this) {
+            case LAST_NAME_SOUND_AND_BIRTH_YEAR: {
+                int sound = Soundex.encode(rows.lastName(row));
+                int day = rows.birthDay(row);
+                if (sound == Soundex.NO_CODE || day == PatientRows.NO_DATE) {
+                    return NO_KEY;
+                }
+                int year = LocalDate.ofEpochDay(day).getYear() - FIRST_YEAR;
+                return (long) sound << 12 | (year & 0xfff);
+            }
+            case ZIP_AND_FIRST_INITIAL: {
+                String first = rows.firstName(row);
+                int zip = rows.zip(row);
+                if (first.isEmpty() || zip <= 0) {
+                    return NO_KEY;
+                }
+                return (long) zip << 16 | first.charAt(0);
+            }
+            default: {
+                String email = rows.email(row);
+                return email.isEmpty() ? NO_KEY : hash(email);
+            }
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Hashes a string to {@value #KEY_BITS} bits. Two different emails
+     * rarely get the same hash; when they do, their patients are only
+     * compared without reason.
+     *
+     * @param value the string
+     * @return the hash
+     */
+    private static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        hash ^= hash >>> 29;
+        return hash & KEY_MASK;
+    }
+}
@@ -0,0 +1,447 @@
+package main.linkage;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import main.dao.PatientDAO;
+import main.exception.DatabaseException;
+import main.model.Patient;
+
+/**
+ * Finds patients that are probably recorded twice under different MRNs.
+ * <p>
+ * Comparing every pair of patients takes time quadratic in their number.
+ * Instead, patients are grouped into blocks by each {@link BlockingKey},
+ * and only patients in the same block are scored with {@link PairScorer}.
+ * For every key, each patient's key value is packed with its row number
+ * into one {@code long}; sorting these with {@link Arrays#parallelSort}
+ * puts each block in a contiguous run. The blocks are then scored in
+ * parallel on a {@link ForkJoinPool}, split so that every task compares
+ * about the same number of pairs. Two patients sharing several keys are
+ * compared only under the first of them.
+ * </p>
+ *
+ * <p>Blocks larger than the maximum block size, such as those of a
+ * placeholder email used by many patients, are skipped and counted in the
+ * report, since they would dominate the run time while rarely holding real
+ * duplicates.</p>
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * DuplicateDetector.Report report = new DuplicateDetector().detect(storage.patients());
+ * report.writeCsv(Paths.get("duplicates.csv"));
+ * }</pre>
+ */
+public class DuplicateDetector {
+
+    /** Default score from which two patients are reported. */
+    public static final double DEFAULT_THRESHOLD = 0.8;
+
+    /** Default size above which a block is skipped. */
+    public static final int DEFAULT_MAX_BLOCK_SIZE = 1000;
+
+    /** The number of low bits of a blocking entry that hold the row number. */
+    private static final int ROW_BITS = 24;
+    private static final long ROW_MASK = (1L << ROW_BITS) - 1;
+
+    /** Tasks comparing fewer pairs than this are not split. */
+    private static final long PAIRS_PER_TASK = 20_000;
+
+    private static final BlockingKey[] KEYS = BlockingKey.values();
+
+    private final double threshold;
+    private final int maxBlockSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * The outcome of a duplicate search.
+     */
+    public static final class Report {
+        private final int patients;
+        private final long comparisons;
+        private final int oversizedBlocks;
+        private final long elapsedMillis;
+        private final List<DuplicatePair> pairs;
+
+        /**
+         * Constructs a new Report.
+         *
+         * @param patients        the number of patients searched
+         * @param comparisons     the number of pairs scored
+         * @param oversizedBlocks the number of blocks skipped for their size
+         * @param elapsedMillis   the duration of the search
+         * @param pairs           the probable duplicates, best first
+         */
+        private Report(
+            int patients,
+            long comparisons,
+            int oversizedBlocks,
+            long elapsedMillis,
+            List<DuplicatePair> pairs
+        ) {
+            this.patients = patients;
+            this.comparisons = comparisons;
+            this.oversizedBlocks = oversizedBlocks;
+            this.elapsedMillis = elapsedMillis;
+            this.pairs = pairs;
+        }
+
+        /**
+         * Gets the number of patients searched.
+         *
+         * @return the patient count
+         */
+        public int getPatientCount() {
+            return patients;
+        }
+
+        /**
+         * Gets the number of patient pairs that were scored.
+         *
+         * @return the comparison count
+         */
+        public long getComparisonCount() {
+            return comparisons;
+        }
+
+        /**
+         * Gets the number of blocks skipped because they were too large.
+         *
+         * @return the skipped block count
+         */
+        public int getOversizedBlockCount() {
+            return oversizedBlocks;
+        }
+
+        /**
+         * Gets the probable duplicates.
+         *
+         * @return the pairs, by descending score and then by MRN
+         */
+        public List<DuplicatePair> getPairs() {
+            return Collections.unmodifiableList(pairs);
+        }
+
+        /**
+         * Writes the probable duplicates to a CSV file, replacing it.
+         *
+         * @param file the file to write
+         * @throws IOException if the file cannot be written
+         */
+        public void writeCsv(Path file) throws IOException {
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                writer.write(DuplicatePair.CSV_HEADER);
+                writer.newLine();
+                for (DuplicatePair pair : pairs) {
+                    writer.write(pair.toCsv());
+                    writer.newLine();
+                }
+            }
+        }
+
+        /**
+         * Returns a string representation of this report.
+         *
+         * @return a summary of the search
+         */
+        @Override
+        public String toString() {
+            return "Found " + pairs.size() + " probable duplicate pair(s) among " + patients +
+                " patient(s) with " + comparisons + " comparison(s) in " + elapsedMillis + " ms" +
+                (oversizedBlocks > 0 ? "; skipped " + oversizedBlocks + " oversized block(s)" : "");
+        }
+    }
+
+    /**
+     * Constructs a new DuplicateDetector with the default threshold and
+     * maximum block size that runs on the common fork-join pool.
+     */
+    public DuplicateDetector() {
+        this(DEFAULT_THRESHOLD, DEFAULT_MAX_BLOCK_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new DuplicateDetector.
+     *
+     * @param threshold    the score from which two patients are reported
+     * @param maxBlockSize the size above which a block is skipped
+     * @param pool         the pool the blocks are scored on
+     */
+    public DuplicateDetector(double threshold, int maxBlockSize, ForkJoinPool pool) {
+        this.threshold = threshold;
+        this.maxBlockSize = maxBlockSize;
+        this.pool = pool;
+    }
+
+    /**
+     * Searches all patients of a DAO for duplicates.
+     *
+     * @param patients the patient DAO
+     * @return the probable duplicates
+     * @throws DatabaseException if the patients cannot be read
+     */
+    public Report detect(PatientDAO patients) throws DatabaseException {
+        PatientRows rows = new PatientRows();
+        patients.streamAll(rows::add);
+        return detect(rows);
+    }
+
+    /**
+     * Searches patients for duplicates.
+     *
+     * @param patients the patients
+     * @return the probable duplicates
+     */
+    public Report detect(Iterable<Patient> patients) {
+        PatientRows rows = new PatientRows();
+        for (Patient patient : patients) {
+            rows.add(patient);
+        }
+        return detect(rows);
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Searches loaded patients for duplicates.
+     *
+     * @param rows the patients
+     * @return the probable duplicates
+     */
+    private Report detect(PatientRows rows) {
+        long start = System.currentTimeMillis();
+        long[][] keyValues = new long[KEYS.length][];
+        for (int key = 0; key < KEYS.length; key++) {
+            BlockingKey blockingKey = KEYS[key];
+            keyValues[key] = new long[rows.size()];
+            Arrays.parallelSetAll(keyValues[key], row -> blockingKey.of(rows, row));
+        }
+
+        List<DuplicatePair> pairs = new ArrayList<>();
+        long comparisons = 0;
+        int oversized = 0;
+        for (int key = 0; key < KEYS.length; key++) {
+            Blocks blocks = new Blocks(sortedEntries(keyValues[key]));
+            oversized += blocks.oversized;
+            Found found = pool.invoke(
+                new ScoreBlocks(rows, keyValues, key, blocks, 0, blocks.count)
+            );
+            pairs.addAll(found.pairs);
+            comparisons += found.comparisons;
+        }
+
+        pairs.sort(
+            Comparator.comparingDouble(DuplicatePair::getScore).reversed()
+                .thenComparingInt(DuplicatePair::getMrnA)
+                .thenComparingInt(DuplicatePair::getMrnB)
+        );
+        return new Report(
+            rows.size(),
+            comparisons,
+            oversized,
+            System.currentTimeMillis() - start,
+            pairs
+        );
+    }
+
+    /**
+     * Packs the key value and row number of every row that has a key into
+     * one sorted array, so that the rows of each block are adjacent.
+     *
+     * @param keyValues the key value of each row
+     * @return the entries, sorted
+     */
+    private static long[] sortedEntries(long[] keyValues) {
+        int count = 0;
+        for (long value : keyValues) {
+            if (value != BlockingKey.NO_KEY) {
+                count++;
+            }
+        }
+        long[] entries = new long[count];
+        int next = 0;
+        for (int row = 0; row < keyValues.length; row++) {
+            if (keyValues[row] != BlockingKey.NO_KEY) {
+                entries[next++] = keyValues[row] << ROW_BITS | row;
+            }
+        }
+        Arrays.parallelSort(entries);
+        return entries;
+    }
+
+    /**
+     * The blocks of one key: runs of sorted entries with the same key value
+     * and at least two rows.
+     */
+    private final class Blocks {
+        private final long[] entries;
+        private final int[] starts;
+        private final int[] ends;
+
+        /** The number of pairs in all blocks before each block. */
+        private final long[] pairsBefore;
+
+        private int count;
+        private int oversized;
+
+        /**
+         * Finds the blocks in sorted entries.
+         *
+         * @param entries the entries, sorted
+         */
+        Blocks(long[] entries) {
+            this.entries = entries;
+            this.starts = new int[entries.length / 2 + 1];
+            this.ends = new int[entries.length / 2 + 1];
+            this.pairsBefore = new long[entries.length / 2 + 2];
+            int start = 0;
+            while (start < entries.length) {
+                long key = entries[start] >>> ROW_BITS;
+                int end = start + 1;
+                while (end < entries.length && entries[end] >>> ROW_BITS == key) {
+                    end++;
+                }
+                int size = end - start;
+                if (size > maxBlockSize) {
+                    oversized++;
+                } else if (size > 1) {
+                    starts[count] = start;
+                    ends[count] = end;
+                    pairsBefore[count + 1] = pairsBefore[count] + (long) size * (size - 1) / 2;
+                    count++;
+                }
+                start = end;
+            }
+        }
+    }
+
+    /**
+     * The pairs found and comparisons made by a task.
+     */
+    private static final class Found {
+        private final List<DuplicatePair> pairs = new ArrayList<>();
+        private long comparisons;
+    }
+
+    /**
+     * Scores the pairs of a range of blocks, splitting the range while it
+     * holds too many pairs for one task.
+     */
+    private final class ScoreBlocks extends RecursiveTask<Found> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient PatientRows rows;
+        private final transient long[][] keyValues;
+        private final int key;
+        private final transient Blocks blocks;
+        private final int from;
+        private final int to;
+
+        /**
+         * Constructs a new ScoreBlocks task.
+         *
+         * @param rows      the patients
+         * @param keyValues the key values of every key and row
+         * @param key       the index of the key the blocks belong to
+         * @param blocks    the blocks of the key
+         * @param from      the first block to score
+         * @param to        the block after the last one to score
+         */
+        ScoreBlocks(
+            PatientRows rows,
+            long[][] keyValues,
+            int key,
+            Blocks blocks,
+            int from,
+            int to
+        ) {
+            this.rows = rows;
+            this.keyValues = keyValues;
+            this.key = key;
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Scores the blocks, or splits them in two halves of about the same
+         * number of pairs.
+         *
+         * @return the pairs found
+         */
+        @Override
+        protected Found compute() {
+            long pairs = blocks.pairsBefore[to] - blocks.pairsBefore[from];
+            if (pairs > PAIRS_PER_TASK && to - from > 1) {
+                long half = blocks.pairsBefore[from] + pairs / 2;
+                int middle = Arrays.binarySearch(blocks.pairsBefore, from + 1, to, half);
+                middle = Math.min(to - 1, Math.max(from + 1, middle < 0 ? -middle - 1 : middle));
+                ScoreBlocks left = new ScoreBlocks(rows, keyValues, key, blocks, from, middle);
+                left.fork();
+                Found found = new ScoreBlocks(rows, keyValues, key, blocks, middle, to).compute();
+                Found leftFound = left.join();
+                leftFound.pairs.addAll(found.pairs);
+                leftFound.comparisons += found.comparisons;
+                return leftFound;
+            }
+
+            Found found = new Found();
+            for (int block = from; block < to; block++) {
+                scoreBlock(blocks.starts[block], blocks.ends[block], found);
+            }
+            return found;
+        }
+
+        /**
+         * Scores every pair of one block that was not compared under an
+         * earlier key.
+         *
+         * @param start the first entry of the block
+         * @param end   the entry after the block
+         * @param found where the pairs above the threshold are added
+         */
+        private void scoreBlock(int start, int end, Found found) {
+            for (int i = start; i < end; i++) {
+                int a = (int) (blocks.entries[i] & ROW_MASK);
+                for (int j = i + 1; j < end; j++) {
+                    int b = (int) (blocks.entries[j] & ROW_MASK);
+                    if (sharesEarlierKey(a, b)) {
+                        continue;
+                    }
+                    found.comparisons++;
+                    double score = PairScorer.score(rows, a, b);
+                    if (score >= threshold) {
+                        found.pairs.add(new DuplicatePair(rows.mrn(a), rows.mrn(b), score, KEYS[key]));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Checks whether two rows are in the same block of an earlier key,
+         * where they have been compared already.
+         *
+         * @param a the first row
+         * @param b the second row
+         * @return true if an earlier key has the same value for both
+         */
+        private boolean sharesEarlierKey(int a, int b) {
+            for (int earlier = 0; earlier < key; earlier++) {
+                long value = keyValues[earlier][a];
+                if (value != BlockingKey.NO_KEY && value == keyValues[earlier][b]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
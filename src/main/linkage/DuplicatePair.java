@@ -0,0 +1,91 @@
+package main.linkage;
+
+import java.util.Locale;
+
+/**
+ * Two patients that are probably the same person.
+ * <p>
+ * The pair is ordered by MRN and carries the similarity score and the
+ * blocking key under which the two were first compared.
+ * </p>
+ */
+public final class DuplicatePair {
+
+    /** The header of the CSV lines written by {@link #toCsv()}. */
+    public static final String CSV_HEADER = "mrn_a,mrn_b,score,blocking_key";
+
+    private final int mrnA;
+    private final int mrnB;
+    private final double score;
+    private final BlockingKey blockingKey;
+
+    /**
+     * Constructs a new DuplicatePair.
+     *
+     * @param mrn1        the MRN of one patient
+     * @param mrn2        the MRN of the other patient
+     * @param score       the similarity, from 0 to 1
+     * @param blockingKey the key the two patients share
+     */
+    public DuplicatePair(int mrn1, int mrn2, double score, BlockingKey blockingKey) {
+        this.mrnA = Math.min(mrn1, mrn2);
+        this.mrnB = Math.max(mrn1, mrn2);
+        this.score = score;
+        this.blockingKey = blockingKey;
+    }
+
+    /**
+     * Gets the lower MRN of the pair.
+     *
+     * @return the first MRN
+     */
+    public int getMrnA() {
+        return mrnA;
+    }
+
+    /**
+     * Gets the higher MRN of the pair.
+     *
+     * @return the second MRN
+     */
+    public int getMrnB() {
+        return mrnB;
+    }
+
+    /**
+     * Gets the similarity of the two patients.
+     *
+     * @return the score, from 0 to 1
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Gets the blocking key the two patients were compared under.
+     *
+     * @return the blocking key
+     */
+    public BlockingKey getBlockingKey() {
+        return blockingKey;
+    }
+
+    /**
+     * Formats the pair as a CSV line matching {@link #CSV_HEADER}.
+     *
+     * @return the line, without a line break
+     */
+    public String toCsv() {
+        return mrnA + "," + mrnB + "," + String.format(Locale.ROOT, "%.4f", score) + "," + blockingKey;
+    }
+
+    /**
+     * Returns a string representation of this pair.
+     *
+     * @return the MRNs and the score
+     */
+    @Override
+    public String toString() {
+        return mrnA + " ~ " + mrnB + " (" + String.format(Locale.ROOT, "%.2f", score) + ")";
+    }
+}
@@ -0,0 +1,83 @@
+package main.linkage;
+
+/**
+ * Jaro-Winkler similarity of two strings.
+ * <p>
+ * The similarity is 1 for equal strings and 0 for strings without common
+ * characters; typing errors and transposed letters lower it only a little,
+ * and a shared prefix raises it. Only the first {@value #MAX_LENGTH}
+ * characters are compared, so that matched characters fit in a bit mask
+ * and a comparison allocates nothing.
+ * </p>
+ */
+final class JaroWinkler {
+
+    private static final int MAX_LENGTH = 64;
+    private static final int MAX_PREFIX = 4;
+    private static final double PREFIX_SCALE = 0.1;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private JaroWinkler() {}
+
+    /**
+     * Computes the similarity of two strings.
+     *
+     * @param a the first string
+     * @param b the second string
+     * @return the similarity, from 0 to 1
+     */
+    static double similarity(String a, String b) {
+        int lengthA = Math.min(a.length(), MAX_LENGTH);
+        int lengthB = Math.min(b.length(), MAX_LENGTH);
+        if (lengthA == 0 || lengthB == 0) {
+            return lengthA == lengthB ? 1 : 0;
+        }
+
+        int window = Math.max(0, Math.max(lengthA, lengthB) / 2 - 1);
+        long matchedA = 0;
+        long matchedB = 0;
+        int matches = 0;
+        for (int i = 0; i < lengthA; i++) {
+            char c = a.charAt(i);
+            int end = Math.min(lengthB, i + window + 1);
+            for (int j = Math.max(0, i - window); j < end; j++) {
+                if ((matchedB & 1L << j) == 0 && b.charAt(j) == c) {
+                    matchedA |= 1L << i;
+                    matchedB |= 1L << j;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0;
+        }
+
+        // Count matched characters that appear in a different order
+        int transpositions = 0;
+        long restB = matchedB;
+        for (int i = 0; i < lengthA; i++) {
+            if ((matchedA & 1L << i) != 0) {
+                int j = Long.numberOfTrailingZeros(restB);
+                restB &= restB - 1;
+                if (a.charAt(i) != b.charAt(j)) {
+                    transpositions++;
+                }
+            }
+        }
+        double jaro = (
+            (double) matches / lengthA +
+            (double) matches / lengthB +
+            (matches - transpositions / 2.0) / matches
+        ) / 3;
+
+        int prefix = 0;
+        int maxPrefix = Math.min(MAX_PREFIX, Math.min(lengthA, lengthB));
+        while (prefix < maxPrefix && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * PREFIX_SCALE * (1 - jaro);
+    }
+}
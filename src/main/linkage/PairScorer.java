@@ -0,0 +1,95 @@
+package main.linkage;
+
+/**
+ * Scores how likely two patients are the same person.
+ * <p>
+ * Each field compared contributes its similarity, weighted by how much it
+ * identifies a person. Fields missing on either side are left out and
+ * the remaining weights are scaled up, so that a patient without an email
+ * is not penalized for it. Names and addresses are compared with
+ * {@link JaroWinkler}, so typing errors only lower the score a little; a
+ * date of birth at most a month off counts half.
+ * </p>
+ */
+final class PairScorer {
+
+    private static final double LAST_NAME_WEIGHT = 0.25;
+    private static final double FIRST_NAME_WEIGHT = 0.20;
+    private static final double BIRTH_DATE_WEIGHT = 0.20;
+    private static final double EMAIL_WEIGHT = 0.15;
+    private static final double ZIP_WEIGHT = 0.10;
+    private static final double ADDRESS_WEIGHT = 0.10;
+
+    /** Birth dates at most this many days apart are probably a typing error. */
+    private static final int NEAR_BIRTH_DAYS = 31;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PairScorer() {}
+
+    /**
+     * Scores two rows.
+     *
+     * @param rows the patients
+     * @param a    the first row
+     * @param b    the second row
+     * @return the similarity, from 0 to 1
+     */
+    static double score(PatientRows rows, int a, int b) {
+        double total = 0;
+        double weights = 0;
+
+        String lastA = rows.lastName(a);
+        String lastB = rows.lastName(b);
+        if (!lastA.isEmpty() && !lastB.isEmpty()) {
+            total += LAST_NAME_WEIGHT * JaroWinkler.similarity(lastA, lastB);
+            weights += LAST_NAME_WEIGHT;
+        }
+        String firstA = rows.firstName(a);
+        String firstB = rows.firstName(b);
+        if (!firstA.isEmpty() && !firstB.isEmpty()) {
+            total += FIRST_NAME_WEIGHT * JaroWinkler.similarity(firstA, firstB);
+            weights += FIRST_NAME_WEIGHT;
+        }
+        int dayA = rows.birthDay(a);
+        int dayB = rows.birthDay(b);
+        if (dayA != PatientRows.NO_DATE && dayB != PatientRows.NO_DATE) {
+            total += BIRTH_DATE_WEIGHT * birthDateSimilarity(dayA, dayB);
+            weights += BIRTH_DATE_WEIGHT;
+        }
+        String emailA = rows.email(a);
+        String emailB = rows.email(b);
+        if (!emailA.isEmpty() && !emailB.isEmpty()) {
+            total += emailA.equals(emailB) ? EMAIL_WEIGHT : 0;
+            weights += EMAIL_WEIGHT;
+        }
+        if (rows.zip(a) > 0 && rows.zip(b) > 0) {
+            total += rows.zip(a) == rows.zip(b) ? ZIP_WEIGHT : 0;
+            weights += ZIP_WEIGHT;
+        }
+        String addressA = rows.address(a);
+        String addressB = rows.address(b);
+        if (!addressA.isEmpty() && !addressB.isEmpty()) {
+            total += ADDRESS_WEIGHT * JaroWinkler.similarity(addressA, addressB);
+            weights += ADDRESS_WEIGHT;
+        }
+        return weights == 0 ? 0 : total / weights;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Compares two dates of birth.
+     *
+     * @param dayA the first date, as an epoch day
+     * @param dayB the second date, as an epoch day
+     * @return 1 if equal, 0.5 if close, 0 otherwise
+     */
+    private static double birthDateSimilarity(int dayA, int dayB) {
+        if (dayA == dayB) {
+            return 1;
+        }
+        return Math.abs(dayA - dayB) <= NEAR_BIRTH_DAYS ? 0.5 : 0;
+    }
+}
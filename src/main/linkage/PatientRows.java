@@ -0,0 +1,185 @@
+package main.linkage;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Locale;
+import main.model.Patient;
+
+/**
+ * The fields of patients used for record linkage, normalized and stored
+ * column by column.
+ * <p>
+ * Names and addresses are upper-cased and stripped of everything but
+ * letters, digits and single spaces; emails are lower-cased. Only these
+ * columns are kept, so millions of patients fit in memory while they are
+ * compared.
+ * </p>
+ */
+final class PatientRows {
+
+    /** The largest number of rows, limited by the row bits of a blocking entry. */
+    static final int MAX_ROWS = 1 << 24;
+
+    /** Stored for a missing date of birth. */
+    static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] mrns = new int[INITIAL_CAPACITY];
+    private String[] firstNames = new String[INITIAL_CAPACITY];
+    private String[] lastNames = new String[INITIAL_CAPACITY];
+    private int[] birthDays = new int[INITIAL_CAPACITY];
+    private int[] zips = new int[INITIAL_CAPACITY];
+    private String[] emails = new String[INITIAL_CAPACITY];
+    private String[] addresses = new String[INITIAL_CAPACITY];
+
+    /**
+     * Adds a patient.
+     *
+     * @param patient the patient
+     * @throws IllegalStateException if {@link #MAX_ROWS} patients were added
+     */
+    void add(Patient patient) {
+        if (size == MAX_ROWS) {
+            throw new IllegalStateException("Cannot link more than " + MAX_ROWS + " patients");
+        }
+        if (size == mrns.length) {
+            grow();
+        }
+        LocalDate dob = patient.getDob();
+        mrns[size] = patient.getMrn();
+        firstNames[size] = normalize(patient.getFname());
+        lastNames[size] = normalize(patient.getLname());
+        birthDays[size] = dob == null ? NO_DATE : (int) dob.toEpochDay();
+        zips[size] = patient.getZip();
+        emails[size] = patient.getEmail() == null
+            ? ""
+            : patient.getEmail().trim().toLowerCase(Locale.ROOT);
+        addresses[size] = normalize(patient.getAddress());
+        size++;
+    }
+
+    /**
+     * Gets the number of rows.
+     *
+     * @return the number of patients added
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Gets the MRN of a row.
+     *
+     * @param row the row number
+     * @return the MRN
+     */
+    int mrn(int row) {
+        return mrns[row];
+    }
+
+    /**
+     * Gets the normalized first name of a row.
+     *
+     * @param row the row number
+     * @return the first name, empty if missing
+     */
+    String firstName(int row) {
+        return firstNames[row];
+    }
+
+    /**
+     * Gets the normalized last name of a row.
+     *
+     * @param row the row number
+     * @return the last name, empty if missing
+     */
+    String lastName(int row) {
+        return lastNames[row];
+    }
+
+    /**
+     * Gets the date of birth of a row.
+     *
+     * @param row the row number
+     * @return the epoch day, or {@link #NO_DATE}
+     */
+    int birthDay(int row) {
+        return birthDays[row];
+    }
+
+    /**
+     * Gets the ZIP code of a row.
+     *
+     * @param row the row number
+     * @return the ZIP code
+     */
+    int zip(int row) {
+        return zips[row];
+    }
+
+    /**
+     * Gets the normalized email of a row.
+     *
+     * @param row the row number
+     * @return the email, empty if missing
+     */
+    String email(int row) {
+        return emails[row];
+    }
+
+    /**
+     * Gets the normalized address of a row.
+     *
+     * @param row the row number
+     * @return the address, empty if missing
+     */
+    String address(int row) {
+        return addresses[row];
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Upper-cases a value and reduces it to letters, digits and single
+     * spaces.
+     *
+     * @param value the value, may be null
+     * @return the normalized value, empty if null
+     */
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder normalized = new StringBuilder(value.length());
+        boolean space = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalized.length() > 0) {
+                    normalized.append(' ');
+                }
+                normalized.append(Character.toUpperCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Doubles the capacity of every column.
+     */
+    private void grow() {
+        int capacity = Math.min(MAX_ROWS, mrns.length * 2);
+        mrns = Arrays.copyOf(mrns, capacity);
+        firstNames = Arrays.copyOf(firstNames, capacity);
+        lastNames = Arrays.copyOf(lastNames, capacity);
+        birthDays = Arrays.copyOf(birthDays, capacity);
+        zips = Arrays.copyOf(zips, capacity);
+        emails = Arrays.copyOf(emails, capacity);
+        addresses = Arrays.copyOf(addresses, capacity);
+    }
+}
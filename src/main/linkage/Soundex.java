@@ -0,0 +1,57 @@
+package main.linkage;
+
+/**
+ * American Soundex code of a name, packed into an int.
+ * <p>
+ * Names that sound alike, such as {@code Smith} and {@code Smyth}, get the
+ * same code: the first letter followed by three digits for the following
+ * consonant sounds. Letters other than A to Z are ignored.
+ * </p>
+ */
+final class Soundex {
+
+    /** Returned for a name without any letter. */
+    static final int NO_CODE = -1;
+
+    /** The digit of each letter A to Z; 0 for vowels, 7 for H and W. */
+    private static final byte[] DIGITS = {
+        0, 1, 2, 3, 0, 1, 2, 7, 0, 2, 2, 4, 5, 5, 0, 1, 2, 6, 2, 3, 0, 1, 7, 2, 0, 2
+    };
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Soundex() {}
+
+    /**
+     * Encodes a name.
+     *
+     * @param name the name, in any case
+     * @return the letter index times 1000 plus the three digits, or
+     *         {@link #NO_CODE} if the name has no letter
+     */
+    static int encode(CharSequence name) {
+        int code = NO_CODE;
+        int digits = 0;
+        int last = 0;
+        for (int i = 0; i < name.length() && digits < 3; i++) {
+            int letter = Character.toUpperCase(name.charAt(i)) - 'A';
+            if (letter < 0 || letter >= 26) {
+                continue;
+            }
+            int digit = DIGITS[letter];
+            if (code == NO_CODE) {
+                code = letter * 1000;
+                last = digit;
+            } else if (digit == 0) {
+                // A vowel separates two consonants with the same digit
+                last = 0;
+            } else if (digit != 7 && digit != last) {
+                code += digit * (digits == 0 ? 100 : digits == 1 ? 10 : 1);
+                digits++;
+                last = digit;
+            }
+        }
+        return code;
+    }
+}
@@ -9,7 +9,7 @@ import java.util.Objects;
  * and be associated with patient history records.
  * </p>
  */
-public class Doctor {
+public class Doctor implements Versioned {
 
     /**
      * The unique identifier for the doctor.
@@ -23,6 +23,11 @@ public class Doctor {
      */
     private String name;
 
+    /**
+     * The version of the stored row, incremented by every update.
+     */
+    private long version;
+
     /**
      * Constructs a new Doctor with the specified ID and name.
      *
@@ -76,6 +81,22 @@ public class Doctor {
         this.name = name;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /**
      * Returns a string representation of the Doctor.
      *
@@ -1,7 +1,9 @@
 package main.model;
 
 import java.time.LocalDate;
+import java.util.EnumSet;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Represents a patient in the EMR system.
@@ -10,7 +12,23 @@ import java.util.Objects;
  * including identification, contact details, and insurance information.
  * </p>
  */
-public class Patient {
+public class Patient implements Versioned {
+
+    /**
+     * The fields whose changes are tracked, so that an update can write
+     * only the columns that changed.
+     */
+    public enum Field {
+        FNAME,
+        LNAME,
+        DOB,
+        ADDRESS,
+        STATE,
+        CITY,
+        ZIP,
+        INSURANCE,
+        EMAIL
+    }
 
     /** The Medical Record Number - unique identifier for the patient */
     private int mrn;
@@ -42,6 +60,12 @@ public class Patient {
     /** Patient's email address */
     private String email;
 
+    /** Version of the stored row, incremented by every update */
+    private long version;
+
+    /** Bit set of the {@link Field}s changed through setters since construction */
+    private int dirtyFields;
+
     /**
      * Constructs a new Patient with all required fields.
      *
@@ -119,7 +143,10 @@ public class Patient {
      * @param fname the first name to set
      */
     public void setFname(String fname) {
-        this.fname = fname;
+        if (!Objects.equals(this.fname, fname)) {
+            this.fname = fname;
+            dirtyFields |= 1 << Field.FNAME.ordinal();
+        }
     }
 
     /**
@@ -137,7 +164,10 @@ public class Patient {
      * @param lname the last name to set
      */
     public void setLname(String lname) {
-        this.lname = lname;
+        if (!Objects.equals(this.lname, lname)) {
+            this.lname = lname;
+            dirtyFields |= 1 << Field.LNAME.ordinal();
+        }
     }
 
     /**
@@ -155,7 +185,10 @@ public class Patient {
      * @param dob the date of birth to set
      */
     public void setDob(LocalDate dob) {
-        this.dob = dob;
+        if (!Objects.equals(this.dob, dob)) {
+            this.dob = dob;
+            dirtyFields |= 1 << Field.DOB.ordinal();
+        }
     }
 
     /**
@@ -173,7 +206,10 @@ public class Patient {
      * @param address the address to set
      */
     public void setAddress(String address) {
-        this.address = address;
+        if (!Objects.equals(this.address, address)) {
+            this.address = address;
+            dirtyFields |= 1 << Field.ADDRESS.ordinal();
+        }
     }
 
     /**
@@ -191,7 +227,10 @@ public class Patient {
      * @param state the state to set
      */
     public void setState(String state) {
-        this.state = state;
+        if (!Objects.equals(this.state, state)) {
+            this.state = state;
+            dirtyFields |= 1 << Field.STATE.ordinal();
+        }
     }
 
     /**
@@ -209,7 +248,10 @@ public class Patient {
      * @param city the city to set
      */
     public void setCity(String city) {
-        this.city = city;
+        if (!Objects.equals(this.city, city)) {
+            this.city = city;
+            dirtyFields |= 1 << Field.CITY.ordinal();
+        }
     }
 
     /**
@@ -227,7 +269,10 @@ public class Patient {
      * @param zip the ZIP code to set
      */
     public void setZip(int zip) {
-        this.zip = zip;
+        if (this.zip != zip) {
+            this.zip = zip;
+            dirtyFields |= 1 << Field.ZIP.ordinal();
+        }
     }
 
     /**
@@ -245,7 +290,10 @@ public class Patient {
      * @param insurance the insurance provider to set
      */
     public void setInsurance(String insurance) {
-        this.insurance = insurance;
+        if (!Objects.equals(this.insurance, insurance)) {
+            this.insurance = insurance;
+            dirtyFields |= 1 << Field.INSURANCE.ordinal();
+        }
     }
 
     /**
@@ -263,7 +311,63 @@ public class Patient {
      * @param email the email address to set
      */
     public void setEmail(String email) {
-        this.email = email;
+        if (!Objects.equals(this.email, email)) {
+            this.email = email;
+            dirtyFields |= 1 << Field.EMAIL.ordinal();
+        }
+    }
+
+    /**
+     * Checks whether a field was changed through its setter since this
+     * patient was constructed or {@link #clearDirtyFields()} was called.
+     *
+     * @param field the field to check
+     * @return true if the field was changed
+     */
+    public boolean isDirty(Field field) {
+        return (dirtyFields & 1 << field.ordinal()) != 0;
+    }
+
+    /**
+     * Gets the fields changed through their setters since this patient was
+     * constructed or {@link #clearDirtyFields()} was called. Setting a
+     * field to the value it already has does not change it.
+     *
+     * @return the changed fields, empty if none
+     */
+    public Set<Field> getDirtyFields() {
+        Set<Field> dirty = EnumSet.noneOf(Field.class);
+        for (Field field : Field.values()) {
+            if (isDirty(field)) {
+                dirty.add(field);
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Forgets which fields were changed. The MySQL DAOs call this once the
+     * patient was written, so that a later update only writes the fields
+     * changed since.
+     */
+    public void clearDirtyFields() {
+        dirtyFields = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     /**
@@ -22,7 +22,7 @@ import java.util.Objects;
  * </ul>
  *
  */
-public class PatientHistory {
+public class PatientHistory implements Versioned {
 
     /** Unique identifier for the patient history record (max 25 characters). */
     private String id;
@@ -42,6 +42,9 @@ public class PatientHistory {
     /** The ID of the doctor who performed the procedure. */
     private String doctorId;
 
+    /** The version of the stored row, incremented by every update. */
+    private long version;
+
     /**
      * Constructs a new PatientHistory with all required fields.
      *
@@ -182,6 +185,22 @@ public class PatientHistory {
         this.doctorId = doctorId;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /**
      * Returns a string representation of the PatientHistory.
      *
@@ -0,0 +1,110 @@
+package main.model;
+
+/**
+ * Lightweight, read-only view of a patient for listings.
+ * <p>
+ * A summary carries only the MRN and the name, so listing all patients
+ * does not transfer addresses and other details that the listing does not
+ * show. Use {@link Patient} to read or change the full record.
+ * </p>
+ */
+public final class PatientSummary {
+
+    /** The Medical Record Number. */
+    private final int mrn;
+
+    /** The first name. */
+    private final String fname;
+
+    /** The last name. */
+    private final String lname;
+
+    /**
+     * Constructs a new PatientSummary.
+     *
+     * @param mrn   the Medical Record Number
+     * @param fname the first name
+     * @param lname the last name
+     */
+    public PatientSummary(int mrn, String fname, String lname) {
+        this.mrn = mrn;
+        this.fname = fname;
+        this.lname = lname;
+    }
+
+    /**
+     * Creates the summary of a full patient record.
+     *
+     * @param patient the patient
+     * @return the summary of the patient
+     */
+    public static PatientSummary of(Patient patient) {
+        return new PatientSummary(
+            patient.getMrn(),
+            patient.getFname(),
+            patient.getLname()
+        );
+    }
+
+    /**
+     * Gets the Medical Record Number.
+     *
+     * @return the MRN
+     */
+    public int getMrn() {
+        return mrn;
+    }
+
+    /**
+     * Gets the first name.
+     *
+     * @return the first name
+     */
+    public String getFname() {
+        return fname;
+    }
+
+    /**
+     * Gets the last name.
+     *
+     * @return the last name
+     */
+    public String getLname() {
+        return lname;
+    }
+
+    /**
+     * Returns a string representation of this summary.
+     *
+     * @return a string containing the MRN and name
+     */
+    @Override
+    public String toString() {
+        return "Patient MRN: " + mrn + ", Name: " + fname + " " + lname;
+    }
+
+    /**
+     * Compares this summary to another object for equality.
+     * Two summaries are equal if they have the same MRN.
+     *
+     * @param o the object to compare with
+     * @return true if the objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PatientSummary)) return false;
+        PatientSummary summary = (PatientSummary) o;
+        return mrn == summary.mrn;
+    }
+
+    /**
+     * Returns a hash code value for this summary.
+     *
+     * @return the hash code based on the MRN
+     */
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(mrn);
+    }
+}
@@ -1,6 +1,8 @@
 package main.model;
 
+import java.util.EnumSet;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Represents a medical procedure in the EMR system.
@@ -19,7 +21,18 @@ import java.util.Objects;
  * </ul>
  *
  */
-public class Procedure {
+public class Procedure implements Versioned {
+
+    /**
+     * The fields whose changes are tracked, so that an update can write
+     * only the columns that changed.
+     */
+    public enum Field {
+        NAME,
+        DESCRIPTION,
+        DURATION,
+        DOCTOR_ID
+    }
 
     /** Unique identifier for the procedure (max 25 characters). */
     private String id;
@@ -36,6 +49,12 @@ public class Procedure {
     /** ID of the doctor who performs this procedure. */
     private String doctorId;
 
+    /** Version of the stored row, incremented by every update. */
+    private long version;
+
+    /** Bit set of the {@link Field}s changed through setters since construction. */
+    private int dirtyFields;
+
     /**
      * Constructs a new Procedure with all fields.
      *
@@ -98,7 +117,10 @@ public class Procedure {
      * @param name the procedure name to set
      */
     public void setName(String name) {
-        this.name = name;
+        if (!Objects.equals(this.name, name)) {
+            this.name = name;
+            dirtyFields |= 1 << Field.NAME.ordinal();
+        }
     }
 
     /**
@@ -116,7 +138,10 @@ public class Procedure {
      * @param description the procedure description to set
      */
     public void setDescription(String description) {
-        this.description = description;
+        if (!Objects.equals(this.description, description)) {
+            this.description = description;
+            dirtyFields |= 1 << Field.DESCRIPTION.ordinal();
+        }
     }
 
     /**
@@ -134,7 +159,10 @@ public class Procedure {
      * @param duration the procedure duration to set (must be positive)
      */
     public void setDuration(int duration) {
-        this.duration = duration;
+        if (this.duration != duration) {
+            this.duration = duration;
+            dirtyFields |= 1 << Field.DURATION.ordinal();
+        }
     }
 
     /**
@@ -152,7 +180,63 @@ public class Procedure {
      * @param doctorId the doctor ID to set
      */
     public void setDoctorId(String doctorId) {
-        this.doctorId = doctorId;
+        if (!Objects.equals(this.doctorId, doctorId)) {
+            this.doctorId = doctorId;
+            dirtyFields |= 1 << Field.DOCTOR_ID.ordinal();
+        }
+    }
+
+    /**
+     * Checks whether a field was changed through its setter since this
+     * procedure was constructed or {@link #clearDirtyFields()} was called.
+     *
+     * @param field the field to check
+     * @return true if the field was changed
+     */
+    public boolean isDirty(Field field) {
+        return (dirtyFields & 1 << field.ordinal()) != 0;
+    }
+
+    /**
+     * Gets the fields changed through their setters since this procedure was
+     * constructed or {@link #clearDirtyFields()} was called. Setting a
+     * field to the value it already has does not change it.
+     *
+     * @return the changed fields, empty if none
+     */
+    public Set<Field> getDirtyFields() {
+        Set<Field> dirty = EnumSet.noneOf(Field.class);
+        for (Field field : Field.values()) {
+            if (isDirty(field)) {
+                dirty.add(field);
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Forgets which fields were changed. The MySQL DAOs call this once the
+     * procedure was written, so that a later update only writes the fields
+     * changed since.
+     */
+    public void clearDirtyFields() {
+        dirtyFields = 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     /**
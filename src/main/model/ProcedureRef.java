@@ -0,0 +1,94 @@
+package main.model;
+
+import java.util.Objects;
+
+/**
+ * Lightweight, read-only reference to a procedure for pickers.
+ * <p>
+ * A reference carries only the ID and the name, leaving out the
+ * description, which can be long. Use {@link Procedure} to read or change
+ * the full record.
+ * </p>
+ */
+public final class ProcedureRef {
+
+    /** The unique identifier of the procedure. */
+    private final String id;
+
+    /** The name of the procedure. */
+    private final String name;
+
+    /**
+     * Constructs a new ProcedureRef.
+     *
+     * @param id   the unique identifier of the procedure
+     * @param name the name of the procedure
+     */
+    public ProcedureRef(String id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * Creates the reference to a full procedure record.
+     *
+     * @param procedure the procedure
+     * @return the reference to the procedure
+     */
+    public static ProcedureRef of(Procedure procedure) {
+        return new ProcedureRef(procedure.getId(), procedure.getName());
+    }
+
+    /**
+     * Gets the procedure ID.
+     *
+     * @return the ID
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the procedure name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns a string representation of this reference.
+     *
+     * @return a string containing the procedure ID and name
+     */
+    @Override
+    public String toString() {
+        return "Procedure ID: " + id + ", Name: " + name;
+    }
+
+    /**
+     * Compares this reference to another object for equality.
+     * Two references are equal if they have the same ID.
+     *
+     * @param o the object to compare with
+     * @return true if the objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProcedureRef)) return false;
+        ProcedureRef ref = (ProcedureRef) o;
+        return Objects.equals(id, ref.id);
+    }
+
+    /**
+     * Returns a hash code value for this reference.
+     *
+     * @return a hash code based on the procedure ID
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+}
@@ -0,0 +1,27 @@
+package main.model;
+
+/**
+ * An entity whose rows carry a version number for optimistic concurrency.
+ * <p>
+ * The version is 0 for a new row and is incremented by every update. An
+ * update only succeeds if the entity still carries the version that was
+ * read, so a change made by someone else in the meantime is detected
+ * instead of being overwritten. After a successful update the DAO sets
+ * the new version on the entity.
+ * </p>
+ */
+public interface Versioned {
+    /**
+     * Gets the version of the row this entity was read from.
+     *
+     * @return the row version
+     */
+    long getVersion();
+
+    /**
+     * Sets the row version.
+     *
+     * @param version the row version to set
+     */
+    void setVersion(long version);
+}
@@ -0,0 +1,140 @@
+package main.service;
+
+import main.cache.PatientSnapshotStore;
+import main.dao.StorageBackend;
+
+/**
+ * The services of one running application, built once and shared.
+ * <p>
+ * Each service is built on first use and the same instance is returned
+ * from then on, so the CLI menus, {@link AsyncServices} and maintenance
+ * commands share one object graph over the storage backend instead of
+ * building their own every time they are opened. The patient service is
+ * the one that keeps the {@link PatientSnapshotStore} current, so every
+ * patient write made through the context reaches the snapshot.
+ * </p>
+ *
+ * <p>The context does not own the backend or the snapshot: whoever opened
+ * them closes them, after the last service call. The getters are
+ * thread-safe.</p>
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * AppContext context = new AppContext(storage, snapshot);
+ * Patient patient = context.getPatientService().getPatient(1001);
+ * }</pre>
+ */
+public class AppContext {
+
+    private final StorageBackend storage;
+
+    /** The off-heap patient snapshot, or null if disabled. */
+    private final PatientSnapshotStore snapshot;
+
+    private PatientService patientService;
+    private DoctorService doctorService;
+    private ProcedureService procedureService;
+    private PatientHistoryService patientHistoryService;
+    private PurgeService purgeService;
+
+    /**
+     * Constructs a new AppContext over the specified storage backend.
+     *
+     * @param storage the storage backend providing the DAOs
+     */
+    public AppContext(StorageBackend storage) {
+        this(storage, null);
+    }
+
+    /**
+     * Constructs a new AppContext over the specified storage backend whose
+     * patient service serves lookups from, and applies writes to, a
+     * patient snapshot.
+     *
+     * @param storage  the storage backend providing the DAOs
+     * @param snapshot the patient snapshot, or null to read the backend only
+     */
+    public AppContext(StorageBackend storage, PatientSnapshotStore snapshot) {
+        this.storage = storage;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Gets the storage backend the services use.
+     *
+     * @return the storage backend
+     */
+    public StorageBackend getStorage() {
+        return storage;
+    }
+
+    /**
+     * Gets the patient snapshot the services keep current.
+     *
+     * @return the snapshot, or null if disabled
+     */
+    public PatientSnapshotStore getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Gets the patient service, building it on first use.
+     *
+     * @return the shared patient service
+     */
+    public synchronized PatientService getPatientService() {
+        if (patientService == null) {
+            patientService = new PatientService(storage, snapshot);
+        }
+        return patientService;
+    }
+
+    /**
+     * Gets the doctor service, building it on first use.
+     *
+     * @return the shared doctor service
+     */
+    public synchronized DoctorService getDoctorService() {
+        if (doctorService == null) {
+            doctorService = new DoctorService(storage);
+        }
+        return doctorService;
+    }
+
+    /**
+     * Gets the procedure service, building it on first use.
+     *
+     * @return the shared procedure service
+     */
+    public synchronized ProcedureService getProcedureService() {
+        if (procedureService == null) {
+            procedureService = new ProcedureService(storage);
+        }
+        return procedureService;
+    }
+
+    /**
+     * Gets the patient history service, building it on first use.
+     *
+     * @return the shared patient history service
+     */
+    public synchronized PatientHistoryService getPatientHistoryService() {
+        if (patientHistoryService == null) {
+            patientHistoryService = new PatientHistoryService(storage);
+        }
+        return patientHistoryService;
+    }
+
+    /**
+     * Gets the purge service, building it on first use. It deletes
+     * {@value PurgeService#DEFAULT_CHUNK_SIZE} rows at a time.
+     *
+     * @return the shared purge service
+     */
+    public synchronized PurgeService getPurgeService() {
+        if (purgeService == null) {
+            purgeService = new PurgeService(storage, snapshot, PurgeService.DEFAULT_CHUNK_SIZE);
+        }
+        return purgeService;
+    }
+}
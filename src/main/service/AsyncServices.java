@@ -0,0 +1,726 @@
+package main.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import main.dao.StorageBackend;
+import main.exception.EMRException;
+import main.model.Doctor;
+import main.model.Patient;
+import main.model.PatientHistory;
+import main.model.PatientSummary;
+import main.model.Procedure;
+import main.model.ProcedureRef;
+
+/**
+ * Asynchronous facade over the patient, doctor, procedure and patient
+ * history services.
+ * <p>
+ * Every operation runs on a dedicated, bounded thread pool sized to the
+ * parallelism of the storage backend (for MySQL, the connection pool size
+ * minus the connection left for the calling thread), and returns a
+ * {@link CompletableFuture} immediately, so independent operations can
+ * overlap their I/O and be composed with the usual {@code thenCombine},
+ * {@code thenCompose} and {@link #allOf(List)} combinators. Service
+ * exceptions such as {@link main.exception.ValidationException} complete
+ * the future exceptionally.
+ * </p>
+ *
+ * <p>Cancelling a future before its operation starts removes the operation
+ * from the pool's queue, freeing its place; cancelling it while the
+ * operation runs aborts the running query through
+ * {@link StorageBackend#cancelOperation(Thread)} and interrupts the worker
+ * thread. When a timeout is configured, an operation that has not
+ * completed in time fails with a {@link TimeoutException} and is cancelled
+ * the same way.</p>
+ *
+ * <p>With MySQL read replicas, read-your-writes holds per worker thread: a
+ * read that follows a write on another worker may be served by a replica
+ * that has not applied it yet. Run such a read after the write completes
+ * with a synchronous service call, or compose both into one operation.</p>
+ *
+ * <p>Usage example, loading a patient and their history concurrently:</p>
+ * <pre>{@code
+ * try (AsyncServices services = new AsyncServices(context, Duration.ofSeconds(5))) {
+ *     PatientChart chart = services.getPatientChart(1001).join();
+ * }
+ * }</pre>
+ */
+public class AsyncServices implements AutoCloseable {
+
+    /** Queued operations allowed per worker thread before new ones are rejected. */
+    private static final int QUEUE_PER_THREAD = 64;
+
+    private final PatientService patientService;
+    private final DoctorService doctorService;
+    private final ProcedureService procedureService;
+    private final PatientHistoryService patientHistoryService;
+    private final StorageBackend storage;
+    private final ThreadPoolExecutor executor;
+    private final Duration timeout;
+
+    /**
+     * A service operation that may throw a checked EMR exception.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface ServiceCall<T> {
+        /**
+         * Runs the operation.
+         *
+         * @return the result
+         * @throws EMRException if the operation fails
+         */
+        T call() throws EMRException;
+    }
+
+    /**
+     * A patient together with their history records.
+     */
+    public static final class PatientChart {
+
+        private final Patient patient;
+        private final List<PatientHistory> history;
+
+        /**
+         * Constructs a new PatientChart.
+         *
+         * @param patient the patient
+         * @param history the history records of the patient
+         */
+        public PatientChart(Patient patient, List<PatientHistory> history) {
+            this.patient = patient;
+            this.history = history;
+        }
+
+        /**
+         * Gets the patient.
+         *
+         * @return the patient
+         */
+        public Patient getPatient() {
+            return patient;
+        }
+
+        /**
+         * Gets the history records of the patient.
+         *
+         * @return the history records
+         */
+        public List<PatientHistory> getHistory() {
+            return history;
+        }
+    }
+
+    /**
+     * Constructs a new AsyncServices that runs the shared services of an
+     * application context, without an operation timeout.
+     *
+     * @param context the context providing the services
+     */
+    public AsyncServices(AppContext context) {
+        this(context, null);
+    }
+
+    /**
+     * Constructs a new AsyncServices that runs the shared services of an
+     * application context.
+     *
+     * @param context the context providing the services
+     * @param timeout the time after which an operation fails, or null for none
+     */
+    public AsyncServices(AppContext context, Duration timeout) {
+        StorageBackend storage = context.getStorage();
+        this.patientService = context.getPatientService();
+        this.doctorService = context.getDoctorService();
+        this.procedureService = context.getProcedureService();
+        this.patientHistoryService = context.getPatientHistoryService();
+        this.storage = storage;
+        this.timeout = timeout;
+
+        int threads = Math.max(1, storage.getParallelism());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD),
+            task -> {
+                Thread thread = new Thread(
+                    () -> {
+                        try {
+                            task.run();
+                        } finally {
+                            // Return the thread's connection before it exits
+                            storage.releaseThreadResources();
+                        }
+                    },
+                    "emr-async-" + threadNumber.incrementAndGet()
+                );
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+    }
+
+    /**
+     * Runs an operation on the worker pool.
+     * <p>
+     * If the pool's queue is full, the returned future fails immediately
+     * with a {@link RejectedExecutionException}.
+     * </p>
+     *
+     * @param <T>  the type of the result
+     * @param call the operation to run
+     * @return a future completing with the result of the operation
+     */
+    public <T> CompletableFuture<T> submit(ServiceCall<T> call) {
+        return submit(call, timeout);
+    }
+
+    /**
+     * Runs an operation on the worker pool with the given timeout.
+     *
+     * @param <T>     the type of the result
+     * @param call    the operation to run
+     * @param timeout the time after which the operation fails, or null for none
+     * @return a future completing with the result of the operation
+     */
+    public <T> CompletableFuture<T> submit(ServiceCall<T> call, Duration timeout) {
+        Task<T> task = new Task<>(call, storage, executor);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.completeExceptionally(e);
+            return task;
+        }
+        if (timeout != null && !timeout.isZero() && !timeout.isNegative()) {
+            CompletableFuture.delayedExecutor(
+                timeout.toNanos(),
+                TimeUnit.NANOSECONDS
+            ).execute(() -> task.timeOut(timeout));
+        }
+        return task;
+    }
+
+    /**
+     * Loads a patient and their history records concurrently.
+     * <p>
+     * Cancelling the returned future cancels both lookups.
+     * </p>
+     *
+     * @param mrn the patient MRN
+     * @return a future completing with the patient and their history, or
+     *         failing with {@link main.exception.EntityNotFoundException}
+     *         if the patient does not exist
+     */
+    public CompletableFuture<PatientChart> getPatientChart(int mrn) {
+        CompletableFuture<Patient> patient = getPatient(mrn);
+        CompletableFuture<List<PatientHistory>> history =
+            getPatientHistoriesByPatientId(mrn);
+        CompletableFuture<PatientChart> chart = patient.thenCombine(
+            history,
+            PatientChart::new
+        );
+        chart.whenComplete((result, error) -> {
+            if (chart.isCancelled()) {
+                patient.cancel(true);
+                history.cancel(true);
+            }
+        });
+        return chart;
+    }
+
+    /**
+     * Combines several futures into one that completes with all their
+     * results, in order, once every future has completed.
+     * <p>
+     * The combined future fails as soon as any of the futures fails; the
+     * remaining futures are then cancelled.
+     * </p>
+     *
+     * @param <T>     the type of the results
+     * @param futures the futures to combine
+     * @return a future completing with the list of results
+     */
+    public static <T> CompletableFuture<List<T>> allOf(
+        List<? extends CompletableFuture<? extends T>> futures
+    ) {
+        CompletableFuture<List<T>> all = new CompletableFuture<>();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+            .whenComplete((ignored, error) -> {
+                if (error != null) {
+                    all.completeExceptionally(error);
+                    return;
+                }
+                List<T> results = new ArrayList<>(futures.size());
+                for (CompletableFuture<? extends T> future : futures) {
+                    results.add(future.join());
+                }
+                all.complete(results);
+            });
+        for (CompletableFuture<? extends T> future : futures) {
+            future.whenComplete((ignored, error) -> {
+                if (error != null && all.completeExceptionally(error)) {
+                    futures.forEach(other -> other.cancel(true));
+                }
+            });
+        }
+        return all;
+    }
+
+    // ========== Patient Operations ==========
+
+    /**
+     * Creates a new patient.
+     *
+     * @param patient the patient
+     * @return a future completing with the result of
+     *         {@link PatientService#createPatient(Patient)}
+     */
+    public CompletableFuture<Boolean> createPatient(Patient patient) {
+        return submit(() -> patientService.createPatient(patient));
+    }
+
+    /**
+     * Retrieves a patient by MRN.
+     *
+     * @param mrn the patient MRN
+     * @return a future completing with the result of
+     *         {@link PatientService#getPatient(int)}
+     */
+    public CompletableFuture<Patient> getPatient(int mrn) {
+        return submit(() -> patientService.getPatient(mrn));
+    }
+
+    /**
+     * Finds a patient by MRN, completing with null if it does not exist.
+     *
+     * @param mrn the patient MRN
+     * @return a future completing with the result of
+     *         {@link PatientService#findPatient(int)}
+     */
+    public CompletableFuture<Patient> findPatient(int mrn) {
+        return submit(() -> patientService.findPatient(mrn));
+    }
+
+    /**
+     * Retrieves all patients.
+     *
+     * @return a future completing with the result of
+     *         {@link PatientService#getAllPatients()}
+     */
+    public CompletableFuture<List<Patient>> getAllPatients() {
+        return submit(() -> patientService.getAllPatients());
+    }
+
+    /**
+     * Retrieves the MRN and name of all patients.
+     *
+     * @return a future completing with the result of
+     *         {@link PatientService#getAllPatientSummaries()}
+     */
+    public CompletableFuture<List<PatientSummary>> getAllPatientSummaries() {
+        return submit(() -> patientService.getAllPatientSummaries());
+    }
+
+    /**
+     * Updates an existing patient.
+     *
+     * @param patient the patient
+     * @return a future completing with the result of
+     *         {@link PatientService#updatePatient(Patient)}
+     */
+    public CompletableFuture<Boolean> updatePatient(Patient patient) {
+        return submit(() -> patientService.updatePatient(patient));
+    }
+
+    /**
+     * Deletes a patient.
+     *
+     * @param mrn the patient MRN
+     * @return a future completing with the result of
+     *         {@link PatientService#deletePatient(int)}
+     */
+    public CompletableFuture<Boolean> deletePatient(int mrn) {
+        return submit(() -> patientService.deletePatient(mrn));
+    }
+
+    /**
+     * Checks whether a patient exists.
+     *
+     * @param mrn the patient MRN
+     * @return a future completing with the result of
+     *         {@link PatientService#patientExists(int)}
+     */
+    public CompletableFuture<Boolean> patientExists(int mrn) {
+        return submit(() -> patientService.patientExists(mrn));
+    }
+
+    // ========== Doctor Operations ==========
+
+    /**
+     * Creates a new doctor.
+     *
+     * @param doctor the doctor
+     * @return a future completing with the result of
+     *         {@link DoctorService#createDoctor(Doctor)}
+     */
+    public CompletableFuture<Boolean> createDoctor(Doctor doctor) {
+        return submit(() -> doctorService.createDoctor(doctor));
+    }
+
+    /**
+     * Retrieves a doctor by ID.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link DoctorService#getDoctorById(String)}
+     */
+    public CompletableFuture<Doctor> getDoctorById(String id) {
+        return submit(() -> doctorService.getDoctorById(id));
+    }
+
+    /**
+     * Retrieves all doctors.
+     *
+     * @return a future completing with the result of
+     *         {@link DoctorService#getAllDoctors()}
+     */
+    public CompletableFuture<List<Doctor>> getAllDoctors() {
+        return submit(() -> doctorService.getAllDoctors());
+    }
+
+    /**
+     * Updates an existing doctor.
+     *
+     * @param doctor the doctor
+     * @return a future completing with the result of
+     *         {@link DoctorService#updateDoctor(Doctor)}
+     */
+    public CompletableFuture<Boolean> updateDoctor(Doctor doctor) {
+        return submit(() -> doctorService.updateDoctor(doctor));
+    }
+
+    /**
+     * Deletes a doctor.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link DoctorService#deleteDoctor(String)}
+     */
+    public CompletableFuture<Boolean> deleteDoctor(String id) {
+        return submit(() -> doctorService.deleteDoctor(id));
+    }
+
+    /**
+     * Checks whether a doctor exists.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link DoctorService#doctorExists(String)}
+     */
+    public CompletableFuture<Boolean> doctorExists(String id) {
+        return submit(() -> doctorService.doctorExists(id));
+    }
+
+    // ========== Procedure Operations ==========
+
+    /**
+     * Creates a new procedure.
+     *
+     * @param procedure the procedure
+     * @return a future completing with the result of
+     *         {@link ProcedureService#createProcedure(Procedure)}
+     */
+    public CompletableFuture<Boolean> createProcedure(Procedure procedure) {
+        return submit(() -> procedureService.createProcedure(procedure));
+    }
+
+    /**
+     * Retrieves a procedure by ID.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link ProcedureService#getProcedure(String)}
+     */
+    public CompletableFuture<Procedure> getProcedure(String id) {
+        return submit(() -> procedureService.getProcedure(id));
+    }
+
+    /**
+     * Retrieves all procedures.
+     *
+     * @return a future completing with the result of
+     *         {@link ProcedureService#getAllProcedures()}
+     */
+    public CompletableFuture<List<Procedure>> getAllProcedures() {
+        return submit(() -> procedureService.getAllProcedures());
+    }
+
+    /**
+     * Retrieves the ID and name of all procedures.
+     *
+     * @return a future completing with the result of
+     *         {@link ProcedureService#getAllProcedureRefs()}
+     */
+    public CompletableFuture<List<ProcedureRef>> getAllProcedureRefs() {
+        return submit(() -> procedureService.getAllProcedureRefs());
+    }
+
+    /**
+     * Updates an existing procedure.
+     *
+     * @param procedure the procedure
+     * @return a future completing with the result of
+     *         {@link ProcedureService#updateProcedure(Procedure)}
+     */
+    public CompletableFuture<Boolean> updateProcedure(Procedure procedure) {
+        return submit(() -> procedureService.updateProcedure(procedure));
+    }
+
+    /**
+     * Deletes a procedure.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link ProcedureService#deleteProcedure(String)}
+     */
+    public CompletableFuture<Boolean> deleteProcedure(String id) {
+        return submit(() -> procedureService.deleteProcedure(id));
+    }
+
+    /**
+     * Checks whether a procedure exists.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link ProcedureService#exists(String)}
+     */
+    public CompletableFuture<Boolean> procedureExists(String id) {
+        return submit(() -> procedureService.exists(id));
+    }
+
+    // ========== Patient History Operations ==========
+
+    /**
+     * Creates a new patient history record.
+     *
+     * @param patientHistory the patient history record
+     * @return a future completing with the result of
+     *         {@link PatientHistoryService#createPatientHistory(PatientHistory)}
+     */
+    public CompletableFuture<Boolean> createPatientHistory(PatientHistory patientHistory) {
+        return submit(() -> patientHistoryService.createPatientHistory(patientHistory));
+    }
+
+    /**
+     * Retrieves a patient history record by ID.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link PatientHistoryService#getPatientHistory(String)}
+     */
+    public CompletableFuture<PatientHistory> getPatientHistory(String id) {
+        return submit(() -> patientHistoryService.getPatientHistory(id));
+    }
+
+    /**
+     * Retrieves all patient history records.
+     *
+     * @return a future completing with the result of
+     *         {@link PatientHistoryService#getAllPatientHistories()}
+     */
+    public CompletableFuture<List<PatientHistory>> getAllPatientHistories() {
+        return submit(() -> patientHistoryService.getAllPatientHistories());
+    }
+
+    /**
+     * Retrieves the history records of a patient.
+     *
+     * @param patientId the patient MRN
+     * @return a future completing with the result of
+     *         {@link PatientHistoryService#getPatientHistoriesByPatientId(int)}
+     */
+    public CompletableFuture<List<PatientHistory>> getPatientHistoriesByPatientId(int patientId) {
+        return submit(() -> patientHistoryService.getPatientHistoriesByPatientId(patientId));
+    }
+
+    /**
+     * Updates an existing patient history record.
+     *
+     * @param patientHistory the patient history record
+     * @return a future completing with the result of
+     *         {@link PatientHistoryService#updatePatientHistory(PatientHistory)}
+     */
+    public CompletableFuture<Boolean> updatePatientHistory(PatientHistory patientHistory) {
+        return submit(() -> patientHistoryService.updatePatientHistory(patientHistory));
+    }
+
+    /**
+     * Deletes a patient history record.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link PatientHistoryService#deletePatientHistory(String)}
+     */
+    public CompletableFuture<Boolean> deletePatientHistory(String id) {
+        return submit(() -> patientHistoryService.deletePatientHistory(id));
+    }
+
+    /**
+     * Checks whether a patient history record exists.
+     *
+     * @param id the ID
+     * @return a future completing with the result of
+     *         {@link PatientHistoryService#exists(String)}
+     */
+    public CompletableFuture<Boolean> patientHistoryExists(String id) {
+        return submit(() -> patientHistoryService.exists(id));
+    }
+
+    /**
+     * Stops accepting operations, waits up to the given time for running
+     * and queued operations to finish, and cancels the rest.
+     *
+     * @param wait how long to wait for pending operations
+     */
+    public void shutdown(Duration wait) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(wait.toNanos(), TimeUnit.NANOSECONDS)) {
+                for (Runnable pending : executor.shutdownNow()) {
+                    ((Task<?>) pending).cancel(true);
+                }
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Shuts down the worker pool, waiting up to 30 seconds for pending
+     * operations.
+     */
+    @Override
+    public void close() {
+        shutdown(Duration.ofSeconds(30));
+    }
+
+    // ========== Helper Classes ==========
+
+    /**
+     * Future of one operation, which is also the unit of work run by the
+     * pool.
+     *
+     * @param <T> the type of the result
+     */
+    private static final class Task<T> extends CompletableFuture<T>
+        implements Runnable {
+
+        private final ServiceCall<T> call;
+        private final StorageBackend storage;
+        private final ThreadPoolExecutor executor;
+        private Thread runner;
+
+        /**
+         * Constructs a new Task.
+         *
+         * @param call     the operation to run
+         * @param storage  the backend the operation runs on
+         * @param executor the pool the task is queued on
+         */
+        Task(ServiceCall<T> call, StorageBackend storage, ThreadPoolExecutor executor) {
+            this.call = call;
+            this.storage = storage;
+            this.executor = executor;
+        }
+
+        /**
+         * Runs the operation unless the future is already completed
+         * (cancelled or timed out while queued).
+         */
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                complete(call.call());
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                // Do not let a late interrupt leak into the next operation
+                Thread.interrupted();
+            }
+        }
+
+        /**
+         * Cancels the future and aborts the operation if it is running, or
+         * removes it from the queue if it has not started.
+         *
+         * @param mayInterruptIfRunning ignored; a running operation is always interrupted
+         * @return true if the future was cancelled by this call
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                abort();
+            }
+            return cancelled;
+        }
+
+        /**
+         * Fails the future with a {@link TimeoutException} if it has not
+         * completed yet.
+         *
+         * @param timeout the timeout that elapsed
+         */
+        void timeOut(Duration timeout) {
+            if (
+                completeExceptionally(
+                    new TimeoutException(
+                        "Operation did not complete within " +
+                            timeout.toMillis() + " ms"
+                    )
+                )
+            ) {
+                abort();
+            }
+        }
+
+        /**
+         * Aborts the query of the running operation and interrupts its
+         * thread, or removes the operation from the queue if it has not
+         * started.
+         */
+        private void abort() {
+            synchronized (this) {
+                if (runner != null) {
+                    storage.cancelOperation(runner);
+                    runner.interrupt();
+                    return;
+                }
+            }
+            // A task that starts in the meantime sees it is done and returns
+            executor.remove(this);
+        }
+    }
+}
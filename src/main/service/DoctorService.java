@@ -2,11 +2,14 @@ package main.service;
 
 import java.util.List;
 import main.dao.DoctorDAO;
+import main.dao.StorageBackend;
+import main.event.ChangeEvent;
+import main.event.ChangeRecorder;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 import main.exception.EntityNotFoundException;
 import main.exception.ValidationException;
 import main.model.Doctor;
-import main.util.Database;
 import main.validation.DoctorValidator;
 
 /**
@@ -21,13 +24,17 @@ public class DoctorService {
 
     private final DoctorDAO doctorDAO;
 
+    /** Records each successful write as a change event. */
+    private final ChangeRecorder changes;
+
     /**
-     * Constructs a new DoctorService with the specified database connection.
+     * Constructs a new DoctorService over the specified storage backend.
      *
-     * @param db the database connection to use
+     * @param storage the storage backend providing the DAOs
      */
-    public DoctorService(Database db) {
-        this.doctorDAO = new DoctorDAO(db);
+    public DoctorService(StorageBackend storage) {
+        this.doctorDAO = storage.doctors();
+        this.changes = new ChangeRecorder(storage);
     }
 
     /**
@@ -45,14 +52,17 @@ public class DoctorService {
 
         try {
             // Check if doctor with same ID already exists
-            if (doctorDAO.exists(doctor.getId())) {
+            if (doctorDAO.existsBeforeCreate(doctor.getId())) {
                 throw new ValidationException(
                     "id",
                     "A doctor with ID '" + doctor.getId() + "' already exists"
                 );
             }
             // Attempt to create the doctor in the database
-            return doctorDAO.create(doctor);
+            return changes.record(
+                () -> doctorDAO.create(doctor),
+                () -> ChangeEvent.of(ChangeEvent.Operation.CREATE, doctor)
+            );
         } catch (DatabaseException e) {
             throw e;
         }
@@ -87,15 +97,21 @@ public class DoctorService {
 
     /**
      * Updates an existing doctor after validation.
+     * <p>
+     * The doctor must carry the version it was read with. If it was
+     * changed by someone else since then, the update is rejected and the
+     * stored values are kept.
+     * </p>
      *
      * @param doctor the doctor with updated information
      * @return true if the doctor was updated successfully
      * @throws ValidationException     if the doctor data is invalid
      * @throws EntityNotFoundException if the doctor does not exist
+     * @throws ConflictException       if the doctor was changed since it was read
      * @throws DatabaseException       if a database error occurs
      */
     public boolean updateDoctor(Doctor doctor)
-        throws ValidationException, EntityNotFoundException, DatabaseException {
+        throws ValidationException, EntityNotFoundException, DatabaseException, ConflictException {
         // Validate the updated doctor data to ensure it meets all requirements
         DoctorValidator.validate(doctor.getId(), doctor.getName());
 
@@ -105,7 +121,52 @@ public class DoctorService {
         }
 
         // Perform the update operation in the database
-        return doctorDAO.update(doctor);
+        return changes.record(
+            () -> doctorDAO.update(doctor),
+            () -> ChangeEvent.of(ChangeEvent.Operation.UPDATE, doctor)
+        );
+    }
+
+    /**
+     * Creates a doctor, or replaces the stored doctor with the same ID.
+     * <p>
+     * Unlike {@link #updateDoctor}, the stored version is not checked,
+     * so this suits feeds from a system that owns the doctor records. The
+     * doctor is validated once and written without a separate existence
+     * check. The change event has the {@code UPSERT} operation.
+     * </p>
+     *
+     * @param doctor the doctor to create or replace
+     * @return true if the doctor was created, false if it replaced a stored one
+     * @throws ValidationException if the doctor data is invalid
+     * @throws DatabaseException   if a database error occurs
+     */
+    public boolean upsertDoctor(Doctor doctor)
+        throws ValidationException, DatabaseException {
+        return Upserts.upsert(doctor, DoctorService::validate, doctorDAO, changes, written -> {});
+    }
+
+    /**
+     * Creates or replaces the doctors of a feed, as by {@link #upsertDoctor}.
+     * <p>
+     * The feed is read once, validated in parallel batches and written in
+     * chunks of 500 doctors, so it may be of any size. Invalid doctors are
+     * skipped and the rest of the feed is still written; since upserts are
+     * idempotent, the corrected feed can be sent again.
+     * </p>
+     *
+     * @param doctors the doctors to write, in order
+     * @return the number of doctors that were created
+     * @throws ValidationException if doctors are invalid, after the valid
+     *                             ones were written; the message lists every
+     *                             violation by position in the feed, from 0
+     * @throws DatabaseException   if a database error occurs
+     */
+    public int upsertDoctors(Iterable<Doctor> doctors)
+        throws ValidationException, DatabaseException {
+        return Upserts.upsertAll(
+            doctors, () -> DoctorValidator::violations, doctorDAO, changes, written -> {}
+        );
     }
 
     /**
@@ -124,7 +185,10 @@ public class DoctorService {
         }
 
         // Perform the delete operation in the database
-        return doctorDAO.delete(id);
+        return changes.record(
+            () -> doctorDAO.delete(id),
+            () -> ChangeEvent.deleted(ChangeEvent.EntityType.DOCTOR, id)
+        );
     }
 
     /**
@@ -137,4 +201,16 @@ public class DoctorService {
     public boolean doctorExists(String id) throws DatabaseException {
         return doctorDAO.exists(id);
     }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Validates all fields of a doctor.
+     *
+     * @param doctor the doctor to check
+     * @throws ValidationException if the doctor data is invalid
+     */
+    private static void validate(Doctor doctor) throws ValidationException {
+        DoctorValidator.validate(doctor.getId(), doctor.getName());
+    }
 }
@@ -1,16 +1,25 @@
 package main.service;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Function;
+import main.audit.Audit;
+import main.audit.AuditAction;
 import main.dao.DoctorDAO;
 import main.dao.PatientDAO;
 import main.dao.PatientHistoryDAO;
 import main.dao.ProcedureDAO;
+import main.dao.StorageBackend;
+import main.event.ChangeEvent;
+import main.event.ChangeRecorder;
+import main.exception.AuditException;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 import main.exception.EntityNotFoundException;
 import main.exception.ValidationException;
 import main.model.PatientHistory;
-import main.util.Database;
 import main.validation.PatientHistoryValidator;
+import main.validation.Violation;
 
 /**
  * Service layer for PatientHistory operations.
@@ -20,6 +29,9 @@ import main.validation.PatientHistoryValidator;
  * It acts as an intermediary between the CLI layer and the DAO layer.
  * </p>
  *
+ * <p>Every lookup and listing, and every successful change, is recorded
+ * in the {@link Audit audit log}.</p>
+ *
  */
 public class PatientHistoryService {
 
@@ -28,16 +40,20 @@ public class PatientHistoryService {
     private final ProcedureDAO procedureDAO;
     private final DoctorDAO doctorDAO;
 
+    /** Records each successful write as a change event. */
+    private final ChangeRecorder changes;
+
     /**
-     * Constructs a new PatientHistoryService with the specified database connection.
+     * Constructs a new PatientHistoryService over the specified storage backend.
      *
-     * @param db the database connection to use
+     * @param storage the storage backend providing the DAOs
      */
-    public PatientHistoryService(Database db) {
-        this.patientHistoryDAO = new PatientHistoryDAO(db);
-        this.patientDAO = new PatientDAO(db);
-        this.procedureDAO = new ProcedureDAO(db);
-        this.doctorDAO = new DoctorDAO(db);
+    public PatientHistoryService(StorageBackend storage) {
+        this.patientHistoryDAO = storage.patientHistory();
+        this.patientDAO = storage.patients();
+        this.procedureDAO = storage.procedures();
+        this.doctorDAO = storage.doctors();
+        this.changes = new ChangeRecorder(storage);
     }
 
     /**
@@ -72,7 +88,18 @@ public class PatientHistoryService {
         verifyDoctorExists(patientHistory.getDoctorId());
 
         // Attempt to create the patient history record in the database
-        return patientHistoryDAO.create(patientHistory);
+        boolean created = changes.record(
+            () -> patientHistoryDAO.create(patientHistory),
+            () -> ChangeEvent.of(ChangeEvent.Operation.CREATE, patientHistory)
+        );
+        if (created) {
+            Audit.record(
+                AuditAction.CREATE,
+                ChangeEvent.EntityType.PATIENT_HISTORY,
+                patientHistory.getId()
+            );
+        }
+        return created;
     }
 
     /**
@@ -85,6 +112,7 @@ public class PatientHistoryService {
      */
     public PatientHistory getPatientHistory(String id)
         throws EntityNotFoundException, DatabaseException {
+        Audit.record(AuditAction.READ, ChangeEvent.EntityType.PATIENT_HISTORY, id);
         PatientHistory history = patientHistoryDAO.read(id);
         if (history == null) {
             throw new EntityNotFoundException("PatientHistory", id);
@@ -100,6 +128,7 @@ public class PatientHistoryService {
      */
     public List<PatientHistory> getAllPatientHistories()
         throws DatabaseException {
+        Audit.recordList(ChangeEvent.EntityType.PATIENT_HISTORY);
         return patientHistoryDAO.readAll();
     }
 
@@ -113,6 +142,12 @@ public class PatientHistoryService {
      */
     public List<PatientHistory> getPatientHistoriesByPatientId(int patientId)
         throws EntityNotFoundException, DatabaseException {
+        Audit.record(
+            AuditAction.LIST,
+            ChangeEvent.EntityType.PATIENT_HISTORY,
+            patientId
+        );
+
         // Verify the patient exists
         verifyPatientExists(patientId);
 
@@ -120,21 +155,55 @@ public class PatientHistoryService {
         return patientHistoryDAO.readByPatientId(patientId);
     }
 
+    /**
+     * Retrieves all patient history records dated within a range.
+     * <p>
+     * On MySQL, archive tables of years outside the range are not read.
+     * </p>
+     *
+     * @param from the first date, inclusive
+     * @param to   the last date, inclusive
+     * @return the records, ordered by date and then by ID
+     * @throws ValidationException if the range ends before it starts
+     * @throws DatabaseException   if a database error occurs
+     */
+    public List<PatientHistory> getPatientHistoriesByDateRange(LocalDate from, LocalDate to)
+        throws ValidationException, DatabaseException {
+        if (from.isAfter(to)) {
+            throw new ValidationException(
+                "date",
+                "The start date must not be after the end date"
+            );
+        }
+        Audit.record(
+            AuditAction.LIST,
+            ChangeEvent.EntityType.PATIENT_HISTORY,
+            from + ".." + to
+        );
+        return patientHistoryDAO.readByDateRange(from, to);
+    }
+
     /**
      * Updates an existing patient history record.
      * <p>
      * This method validates the updated data and verifies that all
      * referenced entities still exist before performing the update.
      * </p>
+     * <p>
+     * The record must carry the version it was read with. If it was
+     * changed by someone else since then, the update is rejected and the
+     * stored values are kept.
+     * </p>
      *
      * @param patientHistory the patient history record with updated values
      * @return true if the record was updated successfully
      * @throws ValidationException     if the patient history data is invalid
+     * @throws ConflictException       if the record was changed since it was read
      * @throws DatabaseException       if a database error occurs
      * @throws EntityNotFoundException if the record or a referenced entity does not exist
      */
     public boolean updatePatientHistory(PatientHistory patientHistory)
-        throws ValidationException, DatabaseException, EntityNotFoundException {
+        throws ValidationException, DatabaseException, EntityNotFoundException, ConflictException {
         // Validate the patient history data
         PatientHistoryValidator.validateForCreate(
             patientHistory.getId(),
@@ -159,7 +228,75 @@ public class PatientHistoryService {
         verifyDoctorExists(patientHistory.getDoctorId());
 
         // Attempt to update the patient history record in the database
-        return patientHistoryDAO.update(patientHistory);
+        boolean updated = changes.record(
+            () -> patientHistoryDAO.update(patientHistory),
+            () -> ChangeEvent.of(ChangeEvent.Operation.UPDATE, patientHistory)
+        );
+        if (updated) {
+            Audit.record(
+                AuditAction.UPDATE,
+                ChangeEvent.EntityType.PATIENT_HISTORY,
+                patientHistory.getId()
+            );
+        }
+        return updated;
+    }
+
+    /**
+     * Creates a patient history record, or replaces the stored record with
+     * the same ID.
+     * <p>
+     * Unlike {@link #updatePatientHistory}, the stored version is not
+     * checked, so this suits feeds from a system that owns the records.
+     * The record is validated once and written without separate existence
+     * checks; a missing patient, procedure or doctor is reported by the
+     * backend. The change event has the {@code UPSERT} operation.
+     * </p>
+     *
+     * @param patientHistory the record to create or replace
+     * @return true if the record was created, false if it replaced a stored one
+     * @throws ValidationException if the patient history data is invalid
+     * @throws DatabaseException   if a referenced entity does not exist, or
+     *                             if a database error occurs
+     */
+    public boolean upsertPatientHistory(PatientHistory patientHistory)
+        throws ValidationException, DatabaseException {
+        return Upserts.upsert(
+            patientHistory,
+            PatientHistoryService::validate,
+            patientHistoryDAO,
+            changes,
+            PatientHistoryService::upserted
+        );
+    }
+
+    /**
+     * Creates or replaces the patient history records of a feed, as by
+     * {@link #upsertPatientHistory}.
+     * <p>
+     * The feed is read once, validated in parallel batches and written in
+     * chunks of 500 records, so it may be of any size. Invalid records are
+     * skipped and the rest of the feed is still written; since upserts are
+     * idempotent, the corrected feed can be sent again.
+     * </p>
+     *
+     * @param patientHistories the records to write, in order
+     * @return the number of records that were created
+     * @throws ValidationException if records are invalid, after the valid
+     *                             ones were written; the message lists every
+     *                             violation by position in the feed, from 0
+     * @throws DatabaseException   if a referenced entity does not exist, or
+     *                             if a database error occurs
+     */
+    public int upsertPatientHistories(Iterable<PatientHistory> patientHistories)
+        throws ValidationException, DatabaseException {
+        return Upserts.upsertAll(
+            patientHistories,
+            PatientHistoryService::rules,
+            patientHistoryDAO,
+            changes,
+            PatientHistoryService::upserted
+        );
     }
 
     /**
@@ -178,7 +315,18 @@ public class PatientHistoryService {
         }
 
         // Perform the delete operation in the database
-        return patientHistoryDAO.delete(id);
+        boolean deleted = changes.record(
+            () -> patientHistoryDAO.delete(id),
+            () -> ChangeEvent.deleted(ChangeEvent.EntityType.PATIENT_HISTORY, id)
+        );
+        if (deleted) {
+            Audit.record(
+                AuditAction.DELETE,
+                ChangeEvent.EntityType.PATIENT_HISTORY,
+                id
+            );
+        }
+        return deleted;
     }
 
     /**
@@ -233,4 +381,45 @@ public class PatientHistoryService {
             throw new EntityNotFoundException("Doctor", doctorId);
         }
     }
+
+    /**
+     * Validates all fields of a patient history record.
+     *
+     * @param patientHistory the record to check
+     * @throws ValidationException if the patient history data is invalid
+     */
+    private static void validate(PatientHistory patientHistory) throws ValidationException {
+        PatientHistoryValidator.validateForCreate(
+            patientHistory.getId(),
+            patientHistory.getPatientId(),
+            patientHistory.getProcedureId(),
+            patientHistory.getDate(),
+            patientHistory.getBilling(),
+            patientHistory.getDoctorId()
+        );
+    }
+
+    /**
+     * Gets the checks of one batch of a feed, against today's date.
+     *
+     * @return the non-throwing check of one patient history record
+     */
+    private static Function<PatientHistory, List<Violation>> rules() {
+        LocalDate today = LocalDate.now();
+        return patientHistory -> PatientHistoryValidator.violations(patientHistory, today);
+    }
+
+    /**
+     * Audits an upserted patient history record.
+     *
+     * @param patientHistory the record that was written
+     * @throws AuditException if the upsert cannot be audited
+     */
+    private static void upserted(PatientHistory patientHistory) throws AuditException {
+        Audit.record(
+            AuditAction.UPSERT,
+            ChangeEvent.EntityType.PATIENT_HISTORY,
+            patientHistory.getId()
+        );
+    }
 }
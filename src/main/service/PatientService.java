@@ -1,13 +1,24 @@
 package main.service;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Function;
+import main.audit.Audit;
+import main.audit.AuditAction;
+import main.cache.PatientSnapshotStore;
 import main.dao.PatientDAO;
+import main.dao.StorageBackend;
+import main.event.ChangeEvent;
+import main.event.ChangeRecorder;
+import main.exception.AuditException;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 import main.exception.EntityNotFoundException;
 import main.exception.ValidationException;
 import main.model.Patient;
-import main.util.Database;
+import main.model.PatientSummary;
 import main.validation.PatientValidator;
+import main.validation.Violation;
 
 /**
  * Service layer for Patient entity operations.
@@ -16,18 +27,48 @@ import main.validation.PatientValidator;
  * acting as an intermediary between the CLI layer and the DAO layer.
  * </p>
  *
+ * <p>When a {@link PatientSnapshotStore} is supplied, single-patient
+ * lookups are answered from the snapshot first, and every successful
+ * create, update and delete is applied to it, so it stays current with
+ * the writes made through this service; the snapshot keeps the newest
+ * version when concurrent updates finish out of order. A patient that
+ * turns out to have been changed or deleted elsewhere, because an update
+ * conflicts or finds it gone, is dropped from the snapshot so that the
+ * next lookup reads the backend.</p>
+ *
+ * <p>Every lookup and listing, and every successful change, is recorded
+ * in the {@link Audit audit log}.</p>
  */
 public class PatientService {
 
     private final PatientDAO patientDAO;
 
+    /** The off-heap patient snapshot, or null if disabled. */
+    private final PatientSnapshotStore snapshot;
+
+    /** Records each successful write as a change event. */
+    private final ChangeRecorder changes;
+
     /**
-     * Constructs a new PatientService with the specified database connection.
+     * Constructs a new PatientService over the specified storage backend.
      *
-     * @param db the database connection to use
+     * @param storage the storage backend providing the DAOs
      */
-    public PatientService(Database db) {
-        this.patientDAO = new PatientDAO(db);
+    public PatientService(StorageBackend storage) {
+        this(storage, null);
+    }
+
+    /**
+     * Constructs a new PatientService over the specified storage backend
+     * that serves lookups from, and applies writes to, a patient snapshot.
+     *
+     * @param storage  the storage backend providing the DAOs
+     * @param snapshot the patient snapshot, or null to read the backend only
+     */
+    public PatientService(StorageBackend storage, PatientSnapshotStore snapshot) {
+        this.patientDAO = storage.patients();
+        this.snapshot = snapshot;
+        this.changes = new ChangeRecorder(storage);
     }
 
     /**
@@ -40,27 +81,30 @@ public class PatientService {
      */
     public boolean createPatient(Patient patient)
         throws ValidationException, DatabaseException {
-        PatientValidator.validate(
-            patient.getMrn(),
-            patient.getFname(),
-            patient.getLname(),
-            patient.getDob(),
-            patient.getAddress(),
-            patient.getState(),
-            patient.getCity(),
-            patient.getZip(),
-            patient.getInsurance(),
-            patient.getEmail()
-        );
+        validate(patient);
 
         // Check if MRN already exists
-        if (patientDAO.exists(patient.getMrn())) {
+        if (patientDAO.existsBeforeCreate(patient.getMrn())) {
             throw new ValidationException(
                 "MRN",
                 "A patient with this MRN already exists"
             );
         }
-        return patientDAO.create(patient);
+        boolean created = changes.record(
+            () -> patientDAO.create(patient),
+            () -> ChangeEvent.of(ChangeEvent.Operation.CREATE, patient)
+        );
+        if (created) {
+            if (snapshot != null) {
+                snapshot.put(patient);
+            }
+            Audit.record(
+                AuditAction.CREATE,
+                ChangeEvent.EntityType.PATIENT,
+                patient.getMrn()
+            );
+        }
+        return created;
     }
 
     /**
@@ -73,7 +117,7 @@ public class PatientService {
      */
     public Patient getPatient(int mrn)
         throws EntityNotFoundException, DatabaseException {
-        Patient patient = patientDAO.read(mrn);
+        Patient patient = findPatient(mrn);
         if (patient == null) {
             throw new EntityNotFoundException("Patient", mrn);
         }
@@ -88,6 +132,13 @@ public class PatientService {
      * @throws DatabaseException if a database error occurs
      */
     public Patient findPatient(int mrn) throws DatabaseException {
+        Audit.record(AuditAction.READ, ChangeEvent.EntityType.PATIENT, mrn);
+        if (snapshot != null) {
+            Patient patient = snapshot.get(mrn);
+            if (patient != null) {
+                return patient;
+            }
+        }
         return patientDAO.read(mrn);
     }
 
@@ -98,40 +149,118 @@ public class PatientService {
      * @throws DatabaseException if a database error occurs
      */
     public List<Patient> getAllPatients() throws DatabaseException {
+        Audit.recordList(ChangeEvent.EntityType.PATIENT);
         return patientDAO.readAll();
     }
 
+    /**
+     * Retrieves the MRN and name of all patients in the system.
+     * <p>
+     * Use this for listings; it reads far less data than
+     * {@link #getAllPatients()}.
+     * </p>
+     *
+     * @return a list of summaries of all patients
+     * @throws DatabaseException if a database error occurs
+     */
+    public List<PatientSummary> getAllPatientSummaries() throws DatabaseException {
+        Audit.recordList(ChangeEvent.EntityType.PATIENT);
+        return patientDAO.readAllSummaries();
+    }
+
     /**
      * Updates an existing patient's information.
+     * <p>
+     * The patient must carry the version it was read with. If it was
+     * changed by someone else since then, the update is rejected and the
+     * stored values are kept.
+     * </p>
      *
      * @param patient the patient with updated information
      * @return true if the update was successful
      * @throws ValidationException     if the patient data is invalid
      * @throws EntityNotFoundException if the patient does not exist
+     * @throws ConflictException       if the patient was changed since it was read
      * @throws DatabaseException       if a database error occurs
      */
     public boolean updatePatient(Patient patient)
         throws ValidationException, EntityNotFoundException, DatabaseException {
         // Validate the updated patient data to ensure it meets all requirements
-        PatientValidator.validate(
-            patient.getMrn(),
-            patient.getFname(),
-            patient.getLname(),
-            patient.getDob(),
-            patient.getAddress(),
-            patient.getState(),
-            patient.getCity(),
-            patient.getZip(),
-            patient.getInsurance(),
-            patient.getEmail()
-        );
+        validate(patient);
 
         // Verify patient exists
         if (!patientDAO.exists(patient.getMrn())) {
+            evict(patient.getMrn());
             throw new EntityNotFoundException("Patient", patient.getMrn());
         }
         // Perform the update operation in the database
-        return patientDAO.update(patient);
+        boolean updated;
+        try {
+            updated = changes.record(
+                () -> patientDAO.update(patient),
+                () -> ChangeEvent.of(ChangeEvent.Operation.UPDATE, patient)
+            );
+        } catch (ConflictException e) {
+            // The snapshot holds the version that lost; the next lookup
+            // reads the winning one from the backend
+            evict(patient.getMrn());
+            throw e;
+        }
+        if (updated) {
+            if (snapshot != null) {
+                snapshot.put(patient);
+            }
+            Audit.record(
+                AuditAction.UPDATE,
+                ChangeEvent.EntityType.PATIENT,
+                patient.getMrn()
+            );
+        }
+        return updated;
+    }
+
+    /**
+     * Creates a patient, or replaces the stored patient with the same MRN.
+     * <p>
+     * Unlike {@link #updatePatient}, the stored version is not checked,
+     * so this suits feeds from a system that owns the patient records. The
+     * patient is validated once and written without a separate existence
+     * check. The change event has the {@code UPSERT} operation.
+     * </p>
+     *
+     * @param patient the patient to create or replace
+     * @return true if the patient was created, false if it replaced a stored one
+     * @throws ValidationException if the patient data is invalid
+     * @throws DatabaseException   if a database error occurs
+     */
+    public boolean upsertPatient(Patient patient)
+        throws ValidationException, DatabaseException {
+        return Upserts.upsert(
+            patient, PatientService::validate, patientDAO, changes, this::upserted
+        );
+    }
+
+    /**
+     * Creates or replaces the patients of a feed, as by {@link #upsertPatient}.
+     * <p>
+     * The feed is read once, validated in parallel batches and written in
+     * chunks of 500 patients, so it may be of any size. Invalid patients
+     * are skipped and the rest of the feed is still written; since upserts
+     * are idempotent, the corrected feed can be sent again.
+     * </p>
+     *
+     * @param patients the patients to write, in order
+     * @return the number of patients that were created
+     * @throws ValidationException if patients are invalid, after the valid
+     *                             ones were written; the message lists every
+     *                             violation by position in the feed, from 0
+     * @throws DatabaseException   if a database error occurs
+     */
+    public int upsertPatients(Iterable<Patient> patients)
+        throws ValidationException, DatabaseException {
+        return Upserts.upsertAll(
+            patients, PatientService::rules, patientDAO, changes, this::upserted
+        );
     }
 
     /**
@@ -146,9 +275,18 @@ public class PatientService {
         throws EntityNotFoundException, DatabaseException {
         // Verify patient exists
         if (!patientDAO.exists(mrn)) {
+            evict(mrn);
             throw new EntityNotFoundException("Patient", mrn);
         }
-        return patientDAO.delete(mrn);
+        boolean deleted = changes.record(
+            () -> patientDAO.delete(mrn),
+            () -> ChangeEvent.deleted(ChangeEvent.EntityType.PATIENT, mrn)
+        );
+        if (deleted) {
+            evict(mrn);
+            Audit.record(AuditAction.DELETE, ChangeEvent.EntityType.PATIENT, mrn);
+        }
+        return deleted;
     }
 
     /**
@@ -161,4 +299,61 @@ public class PatientService {
     public boolean patientExists(int mrn) throws DatabaseException {
         return patientDAO.exists(mrn);
     }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Validates all fields of a patient.
+     *
+     * @param patient the patient to check
+     * @throws ValidationException if the patient data is invalid
+     */
+    private static void validate(Patient patient) throws ValidationException {
+        PatientValidator.validate(
+            patient.getMrn(),
+            patient.getFname(),
+            patient.getLname(),
+            patient.getDob(),
+            patient.getAddress(),
+            patient.getState(),
+            patient.getCity(),
+            patient.getZip(),
+            patient.getInsurance(),
+            patient.getEmail()
+        );
+    }
+
+    /**
+     * Gets the checks of one batch of a feed, against today's date.
+     *
+     * @return the non-throwing check of one patient
+     */
+    private static Function<Patient, List<Violation>> rules() {
+        LocalDate today = LocalDate.now();
+        return patient -> PatientValidator.violations(patient, today);
+    }
+
+    /**
+     * Drops a patient from the snapshot, if there is one.
+     *
+     * @param mrn the MRN of the patient
+     */
+    private void evict(int mrn) {
+        if (snapshot != null) {
+            snapshot.remove(mrn);
+        }
+    }
+
+    /**
+     * Drops an upserted patient from the snapshot and audits it.
+     *
+     * @param patient the patient that was written
+     * @throws AuditException if the upsert cannot be audited
+     */
+    private void upserted(Patient patient) throws AuditException {
+        // The patient does not carry the stored version, so the next
+        // lookup reads it from the backend instead
+        evict(patient.getMrn());
+        Audit.record(AuditAction.UPSERT, ChangeEvent.EntityType.PATIENT, patient.getMrn());
+    }
 }
@@ -3,11 +3,15 @@ package main.service;
 import java.util.List;
 import main.dao.DoctorDAO;
 import main.dao.ProcedureDAO;
+import main.dao.StorageBackend;
+import main.event.ChangeEvent;
+import main.event.ChangeRecorder;
+import main.exception.ConflictException;
 import main.exception.DatabaseException;
 import main.exception.EntityNotFoundException;
 import main.exception.ValidationException;
 import main.model.Procedure;
-import main.util.Database;
+import main.model.ProcedureRef;
 import main.validation.ProcedureValidator;
 
 /**
@@ -24,14 +28,18 @@ public class ProcedureService {
     private final ProcedureDAO procedureDAO;
     private final DoctorDAO doctorDAO;
 
+    /** Records each successful write as a change event. */
+    private final ChangeRecorder changes;
+
     /**
-     * Constructs a new ProcedureService with the specified database connection.
+     * Constructs a new ProcedureService over the specified storage backend.
      *
-     * @param db the database connection to use
+     * @param storage the storage backend providing the DAOs
      */
-    public ProcedureService(Database db) {
-        this.procedureDAO = new ProcedureDAO(db);
-        this.doctorDAO = new DoctorDAO(db);
+    public ProcedureService(StorageBackend storage) {
+        this.procedureDAO = storage.procedures();
+        this.doctorDAO = storage.doctors();
+        this.changes = new ChangeRecorder(storage);
     }
 
     /**
@@ -64,7 +72,7 @@ public class ProcedureService {
         }
 
         // Check if procedure ID already exists
-        if (procedureDAO.exists(procedure.getId())) {
+        if (procedureDAO.existsBeforeCreate(procedure.getId())) {
             throw new ValidationException(
                 "id",
                 "Procedure with ID '" + procedure.getId() + "' already exists"
@@ -72,7 +80,10 @@ public class ProcedureService {
         }
 
         // Attempt to create the procedure in the database
-        return procedureDAO.create(procedure);
+        return changes.record(
+            () -> procedureDAO.create(procedure),
+            () -> ChangeEvent.of(ChangeEvent.Operation.CREATE, procedure)
+        );
     }
 
     /**
@@ -102,17 +113,37 @@ public class ProcedureService {
         return procedureDAO.readAll();
     }
 
+    /**
+     * Retrieves the ID and name of all procedures.
+     * <p>
+     * Use this for choosing a procedure; it does not read the
+     * descriptions.
+     * </p>
+     *
+     * @return a list of references to all procedures
+     * @throws DatabaseException if a database error occurs
+     */
+    public List<ProcedureRef> getAllProcedureRefs() throws DatabaseException {
+        return procedureDAO.readAllRefs();
+    }
+
     /**
      * Updates an existing procedure.
+     * <p>
+     * The procedure must carry the version it was read with. If it was
+     * changed by someone else since then, the update is rejected and the
+     * stored values are kept.
+     * </p>
      *
      * @param procedure the procedure with updated values
      * @return true if the procedure was updated successfully
      * @throws ValidationException     if the procedure data is invalid
      * @throws EntityNotFoundException if the procedure does not exist
+     * @throws ConflictException       if the procedure was changed since it was read
      * @throws DatabaseException       if a database error occurs
      */
     public boolean updateProcedure(Procedure procedure)
-        throws ValidationException, EntityNotFoundException, DatabaseException {
+        throws ValidationException, EntityNotFoundException, DatabaseException, ConflictException {
         // Validate the updated procedure data to ensure it meets all requirements
         ProcedureValidator.validateForCreate(
             procedure.getId(),
@@ -140,7 +171,62 @@ public class ProcedureService {
         }
 
         // Perform the update operation in the database
-        return procedureDAO.update(procedure);
+        return changes.record(
+            () -> procedureDAO.update(procedure),
+            () -> ChangeEvent.of(ChangeEvent.Operation.UPDATE, procedure)
+        );
+    }
+
+    /**
+     * Creates a procedure, or replaces the stored procedure with the same ID.
+     * <p>
+     * Unlike {@link #updateProcedure}, the stored version is not checked,
+     * so this suits feeds from a system that owns the procedure records.
+     * The procedure is validated once and written without separate
+     * existence checks; a missing doctor is reported by the backend. The
+     * change event has the {@code UPSERT} operation.
+     * </p>
+     *
+     * @param procedure the procedure to create or replace
+     * @return true if the procedure was created, false if it replaced a stored one
+     * @throws ValidationException if the procedure data is invalid
+     * @throws DatabaseException   if the doctor does not exist, or if a
+     *                             database error occurs
+     */
+    public boolean upsertProcedure(Procedure procedure)
+        throws ValidationException, DatabaseException {
+        return Upserts.upsert(
+            procedure, ProcedureService::validate, procedureDAO, changes, written -> {}
+        );
+    }
+
+    /**
+     * Creates or replaces the procedures of a feed, as by
+     * {@link #upsertProcedure}.
+     * <p>
+     * The feed is read once, validated in parallel batches and written in
+     * chunks of 500 procedures, so it may be of any size. Invalid
+     * procedures are skipped and the rest of the feed is still written;
+     * since upserts are idempotent, the corrected feed can be sent again.
+     * </p>
+     *
+     * @param procedures the procedures to write, in order
+     * @return the number of procedures that were created
+     * @throws ValidationException if procedures are invalid, after the valid
+     *                             ones were written; the message lists every
+     *                             violation by position in the feed, from 0
+     * @throws DatabaseException   if a doctor does not exist, or if a
+     *                             database error occurs
+     */
+    public int upsertProcedures(Iterable<Procedure> procedures)
+        throws ValidationException, DatabaseException {
+        return Upserts.upsertAll(
+            procedures,
+            () -> ProcedureValidator::violations,
+            procedureDAO,
+            changes,
+            written -> {}
+        );
     }
 
     /**
@@ -159,7 +245,10 @@ public class ProcedureService {
         }
 
         // Perform the delete operation in the database
-        return procedureDAO.delete(id);
+        return changes.record(
+            () -> procedureDAO.delete(id),
+            () -> ChangeEvent.deleted(ChangeEvent.EntityType.PROCEDURE, id)
+        );
     }
 
     /**
@@ -172,4 +261,22 @@ public class ProcedureService {
     public boolean exists(String id) throws DatabaseException {
         return procedureDAO.exists(id);
     }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Validates all fields of a procedure.
+     *
+     * @param procedure the procedure to check
+     * @throws ValidationException if the procedure data is invalid
+     */
+    private static void validate(Procedure procedure) throws ValidationException {
+        ProcedureValidator.validateForCreate(
+            procedure.getId(),
+            procedure.getName(),
+            procedure.getDescription(),
+            procedure.getDuration(),
+            procedure.getDoctorId()
+        );
+    }
 }
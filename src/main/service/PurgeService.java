@@ -0,0 +1,497 @@
+package main.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import main.audit.Audit;
+import main.audit.AuditAction;
+import main.cache.PatientSnapshotStore;
+import main.dao.BaseDAO;
+import main.dao.DoctorDAO;
+import main.dao.PatientDAO;
+import main.dao.PatientHistoryDAO;
+import main.dao.ProcedureDAO;
+import main.dao.StorageBackend;
+import main.event.ChangeEvent;
+import main.event.ChangeEvent.EntityType;
+import main.event.ChangeRecorder;
+import main.exception.AuditException;
+import main.exception.DatabaseException;
+import main.model.Doctor;
+import main.model.Patient;
+import main.model.PatientHistory;
+import main.model.Procedure;
+
+/**
+ * Deletes many rows at once, together with the rows their deletes cascade to.
+ * <p>
+ * Deleting a doctor, procedure or patient cascades to the procedures and
+ * history records that reference it. Left to the schema, the cascade of
+ * one delete removes any number of rows in a single statement, holding
+ * their locks and undo log until it commits. A purge instead looks up the
+ * dependent rows first and deletes everything bottom-up, history records,
+ * then procedures, then the purged rows themselves, {@code chunkSize} rows
+ * per {@link BaseDAO#deleteAll} call, so that no statement or lock covers
+ * more than one chunk. By the time a purged row is deleted, its cascade
+ * has nothing left to remove. The purged rows that exist are resolved
+ * with {@link BaseDAO#readExistingIds}, many keys per query.
+ * </p>
+ *
+ * <p>A dry run only resolves the rows and reports how many of each type
+ * would be deleted. Otherwise a {@link Progress} is told after every chunk.
+ * Every deleted row, including the dependent ones, is recorded as a
+ * {@code DELETE} change event with its chunk, and deleted patients and
+ * history records are audited and dropped from the patient snapshot.</p>
+ *
+ * <p>A purge is not atomic: if a chunk fails, the chunks before it stay
+ * deleted. Running the same purge again finishes it, since rows that are
+ * already gone are skipped.</p>
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * PurgeService purge = new PurgeService(backend);
+ * System.out.println(purge.purgeDoctors(ids, true, PurgeService.Progress.NONE));
+ * PurgeService.Report report = purge.purgeDoctors(ids, false, (type, done, total) ->
+ *     System.out.println(type + ": " + done + "/" + total));
+ * }</pre>
+ */
+public class PurgeService {
+
+    /** The number of rows deleted together by default. */
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /**
+     * Receives the progress of a purge.
+     */
+    @FunctionalInterface
+    public interface Progress {
+        /** Progress that is not reported anywhere. */
+        Progress NONE = (entityType, done, total) -> {};
+
+        /**
+         * Called after each chunk has been deleted.
+         *
+         * @param entityType the type of the rows of the chunk
+         * @param done       the number of rows of that type processed so far
+         * @param total      the number of rows of that type to process
+         */
+        void deleted(EntityType entityType, int done, int total);
+    }
+
+    /**
+     * The outcome of a purge.
+     */
+    public static final class Report {
+        private final boolean dryRun;
+        private final Map<EntityType, Integer> rowsByType = new EnumMap<>(EntityType.class);
+
+        /**
+         * Constructs an empty report.
+         *
+         * @param dryRun whether the purge only counted the rows
+         */
+        private Report(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        /**
+         * Checks whether the purge only counted the rows.
+         *
+         * @return true for a dry run
+         */
+        public boolean isDryRun() {
+            return dryRun;
+        }
+
+        /**
+         * Gets the number of rows deleted per type, or that would be
+         * deleted for a dry run.
+         *
+         * @return the row counts by type; types without rows are left out
+         */
+        public Map<EntityType, Integer> getRowsByType() {
+            return Collections.unmodifiableMap(rowsByType);
+        }
+
+        /**
+         * Gets the total number of rows deleted, or that would be deleted
+         * for a dry run.
+         *
+         * @return the row count
+         */
+        public int getTotalRows() {
+            int total = 0;
+            for (int rows : rowsByType.values()) {
+                total += rows;
+            }
+            return total;
+        }
+
+        /**
+         * Returns a string representation of this report.
+         *
+         * @return a summary of the deleted rows
+         */
+        @Override
+        public String toString() {
+            if (rowsByType.isEmpty()) {
+                return "Nothing to purge";
+            }
+            return (dryRun ? "Would delete " : "Deleted ") + getTotalRows() +
+                " row(s) by type: " + rowsByType;
+        }
+
+        /**
+         * Adds rows of one type to the report.
+         *
+         * @param entityType the type of the rows
+         * @param rows       the number of rows
+         */
+        private void add(EntityType entityType, int rows) {
+            if (rows > 0) {
+                rowsByType.merge(entityType, rows, Integer::sum);
+            }
+        }
+    }
+
+    private final PatientDAO patientDAO;
+    private final DoctorDAO doctorDAO;
+    private final ProcedureDAO procedureDAO;
+    private final PatientHistoryDAO patientHistoryDAO;
+
+    /** The off-heap patient snapshot, or null if disabled. */
+    private final PatientSnapshotStore snapshot;
+
+    /** Records the deleted rows as change events. */
+    private final ChangeRecorder changes;
+
+    /** The number of rows deleted together. */
+    private final int chunkSize;
+
+    /**
+     * Constructs a new PurgeService over the specified storage backend,
+     * deleting {@value #DEFAULT_CHUNK_SIZE} rows at a time.
+     *
+     * @param storage the storage backend providing the DAOs
+     */
+    public PurgeService(StorageBackend storage) {
+        this(storage, null, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Constructs a new PurgeService over the specified storage backend.
+     *
+     * @param storage   the storage backend providing the DAOs
+     * @param snapshot  the patient snapshot to drop purged patients from, or null
+     * @param chunkSize the number of rows deleted together
+     * @throws IllegalArgumentException if the chunk size is not positive
+     */
+    public PurgeService(StorageBackend storage, PatientSnapshotStore snapshot, int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.patientDAO = storage.patients();
+        this.doctorDAO = storage.doctors();
+        this.procedureDAO = storage.procedures();
+        this.patientHistoryDAO = storage.patientHistory();
+        this.snapshot = snapshot;
+        this.changes = new ChangeRecorder(storage);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Deletes doctors with their procedures and every history record
+     * referencing the doctors or those procedures.
+     *
+     * @param ids      the IDs of the doctors; unknown IDs are skipped
+     * @param dryRun   true to only count the rows that would be deleted
+     * @param progress receives the progress of the deletes
+     * @return what was deleted
+     * @throws DatabaseException if a database error occurs; chunks deleted
+     *                           before the error stay deleted
+     */
+    public Report purgeDoctors(Collection<String> ids, boolean dryRun, Progress progress)
+        throws DatabaseException {
+        List<String> doctors = existing(ids, doctorDAO);
+        List<String> procedures = procedureDAO.readIdsByDoctors(doctors);
+        List<String> histories = patientHistoryDAO.readIdsReferencing(
+            Collections.emptyList(), procedures, doctors
+        );
+
+        Report report = new Report(dryRun);
+        delete(EntityType.PATIENT_HISTORY, patientHistoryDAO, histories, report, progress);
+        delete(EntityType.PROCEDURE, procedureDAO, procedures, report, progress);
+        delete(EntityType.DOCTOR, doctorDAO, doctors, report, progress);
+        return report;
+    }
+
+    /**
+     * Deletes the doctors matching a condition, as by
+     * {@link #purgeDoctors(Collection, boolean, Progress)}. The doctors
+     * are streamed, so the whole table is never held in memory.
+     *
+     * @param condition selects the doctors to delete
+     * @param dryRun    true to only count the rows that would be deleted
+     * @param progress  receives the progress of the deletes
+     * @return what was deleted
+     * @throws DatabaseException if a database error occurs; chunks deleted
+     *                           before the error stay deleted
+     */
+    public Report purgeDoctorsWhere(
+        Predicate<? super Doctor> condition,
+        boolean dryRun,
+        Progress progress
+    ) throws DatabaseException {
+        // A retried stream may deliver a row twice
+        Collection<String> ids = new LinkedHashSet<>();
+        doctorDAO.streamAll(doctor -> {
+            if (condition.test(doctor)) {
+                ids.add(doctor.getId());
+            }
+        });
+        return purgeDoctors(ids, dryRun, progress);
+    }
+
+    /**
+     * Deletes procedures with every history record referencing them.
+     *
+     * @param ids      the IDs of the procedures; unknown IDs are skipped
+     * @param dryRun   true to only count the rows that would be deleted
+     * @param progress receives the progress of the deletes
+     * @return what was deleted
+     * @throws DatabaseException if a database error occurs; chunks deleted
+     *                           before the error stay deleted
+     */
+    public Report purgeProcedures(Collection<String> ids, boolean dryRun, Progress progress)
+        throws DatabaseException {
+        List<String> procedures = existing(ids, procedureDAO);
+        List<String> histories = patientHistoryDAO.readIdsReferencing(
+            Collections.emptyList(), procedures, Collections.emptyList()
+        );
+
+        Report report = new Report(dryRun);
+        delete(EntityType.PATIENT_HISTORY, patientHistoryDAO, histories, report, progress);
+        delete(EntityType.PROCEDURE, procedureDAO, procedures, report, progress);
+        return report;
+    }
+
+    /**
+     * Deletes the procedures matching a condition, as by
+     * {@link #purgeProcedures(Collection, boolean, Progress)}. The
+     * procedures are streamed, so the whole table is never held in memory.
+     *
+     * @param condition selects the procedures to delete
+     * @param dryRun    true to only count the rows that would be deleted
+     * @param progress  receives the progress of the deletes
+     * @return what was deleted
+     * @throws DatabaseException if a database error occurs; chunks deleted
+     *                           before the error stay deleted
+     */
+    public Report purgeProceduresWhere(
+        Predicate<? super Procedure> condition,
+        boolean dryRun,
+        Progress progress
+    ) throws DatabaseException {
+        // A retried stream may deliver a row twice
+        Collection<String> ids = new LinkedHashSet<>();
+        procedureDAO.streamAll(procedure -> {
+            if (condition.test(procedure)) {
+                ids.add(procedure.getId());
+            }
+        });
+        return purgeProcedures(ids, dryRun, progress);
+    }
+
+    /**
+     * Deletes patients with all of their history records.
+     *
+     * @param mrns     the MRNs of the patients; unknown MRNs are skipped
+     * @param dryRun   true to only count the rows that would be deleted
+     * @param progress receives the progress of the deletes
+     * @return what was deleted
+     * @throws DatabaseException if a database error occurs; chunks deleted
+     *                           before the error stay deleted
+     */
+    public Report purgePatients(Collection<Integer> mrns, boolean dryRun, Progress progress)
+        throws DatabaseException {
+        List<Integer> patients = existing(mrns, patientDAO);
+        List<String> histories = patientHistoryDAO.readIdsReferencing(
+            patients, Collections.emptyList(), Collections.emptyList()
+        );
+
+        Report report = new Report(dryRun);
+        delete(EntityType.PATIENT_HISTORY, patientHistoryDAO, histories, report, progress);
+        delete(EntityType.PATIENT, patientDAO, patients, report, progress);
+        return report;
+    }
+
+    /**
+     * Deletes the patients matching a condition, as by
+     * {@link #purgePatients(Collection, boolean, Progress)}. The patients
+     * are streamed, so the whole table is never held in memory.
+     *
+     * @param condition selects the patients to delete
+     * @param dryRun    true to only count the rows that would be deleted
+     * @param progress  receives the progress of the deletes
+     * @return what was deleted
+     * @throws DatabaseException if a database error occurs; chunks deleted
+     *                           before the error stay deleted
+     */
+    public Report purgePatientsWhere(
+        Predicate<? super Patient> condition,
+        boolean dryRun,
+        Progress progress
+    ) throws DatabaseException {
+        // A retried stream may deliver a patient twice
+        Collection<Integer> mrns = new LinkedHashSet<>();
+        patientDAO.streamAll(patient -> {
+            if (condition.test(patient)) {
+                mrns.add(patient.getMrn());
+            }
+        });
+        return purgePatients(mrns, dryRun, progress);
+    }
+
+    /**
+     * Deletes patient history records.
+     *
+     * @param ids      the IDs of the records; unknown IDs are skipped
+     * @param dryRun   true to only count the rows that would be deleted
+     * @param progress receives the progress of the deletes
+     * @return what was deleted
+     * @throws DatabaseException if a database error occurs; chunks deleted
+     *                           before the error stay deleted
+     */
+    public Report purgePatientHistories(
+        Collection<String> ids,
+        boolean dryRun,
+        Progress progress
+    ) throws DatabaseException {
+        List<String> histories = existing(ids, patientHistoryDAO);
+
+        Report report = new Report(dryRun);
+        delete(EntityType.PATIENT_HISTORY, patientHistoryDAO, histories, report, progress);
+        return report;
+    }
+
+    /**
+     * Deletes the patient history records matching a condition, as by
+     * {@link #purgePatientHistories(Collection, boolean, Progress)}. The
+     * records are streamed, so the whole table is never held in memory.
+     *
+     * @param condition selects the records to delete
+     * @param dryRun    true to only count the rows that would be deleted
+     * @param progress  receives the progress of the deletes
+     * @return what was deleted
+     * @throws DatabaseException if a database error occurs; chunks deleted
+     *                           before the error stay deleted
+     */
+    public Report purgePatientHistoriesWhere(
+        Predicate<? super PatientHistory> condition,
+        boolean dryRun,
+        Progress progress
+    ) throws DatabaseException {
+        // A retried stream may deliver a row twice
+        Collection<String> ids = new LinkedHashSet<>();
+        patientHistoryDAO.streamAll(history -> {
+            if (condition.test(history)) {
+                ids.add(history.getId());
+            }
+        });
+        return purgePatientHistories(ids, dryRun, progress);
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Keeps the keys of the rows that exist, each once.
+     *
+     * @param <K>  the key type
+     * @param keys the keys to check
+     * @param dao  the DAO of the rows
+     * @return the keys of the existing rows, in the order given
+     * @throws DatabaseException if a database error occurs
+     */
+    private static <K> List<K> existing(Collection<K> keys, BaseDAO<?, K> dao)
+        throws DatabaseException {
+        return dao.readExistingIds(new LinkedHashSet<>(keys));
+    }
+
+    /**
+     * Deletes rows of one type a chunk at a time, each chunk together with
+     * its change events, or only counts them for a dry run.
+     *
+     * @param <K>        the key type
+     * @param entityType the type of the rows
+     * @param dao        the DAO of the rows
+     * @param keys       the keys of the rows
+     * @param report     the report to add the rows to
+     * @param progress   told after each chunk
+     * @throws DatabaseException if a chunk cannot be deleted
+     */
+    private <K> void delete(
+        EntityType entityType,
+        BaseDAO<?, K> dao,
+        List<K> keys,
+        Report report,
+        Progress progress
+    ) throws DatabaseException {
+        if (report.isDryRun()) {
+            report.add(entityType, keys.size());
+            return;
+        }
+        for (int from = 0; from < keys.size(); from += chunkSize) {
+            List<K> chunk = keys.subList(from, Math.min(keys.size(), from + chunkSize));
+            int deleted = changes.recordAll(
+                () -> dao.deleteAll(chunk),
+                () -> {
+                    List<ChangeEvent> events = new ArrayList<>(chunk.size());
+                    for (K key : chunk) {
+                        events.add(ChangeEvent.deleted(entityType, key));
+                    }
+                    return events;
+                }
+            );
+            report.add(entityType, deleted);
+            deleted(entityType, chunk);
+            progress.deleted(entityType, from + chunk.size(), keys.size());
+        }
+    }
+
+    /**
+     * Audits the deleted patients and history records and drops deleted
+     * patients from the snapshot.
+     *
+     * @param <K>        the key type
+     * @param entityType the type of the deleted rows
+     * @param keys       the keys of the deleted rows
+     * @throws AuditException if a deletion cannot be audited; the rest are
+     *                        still audited and dropped from the snapshot
+     */
+    private <K> void deleted(EntityType entityType, List<K> keys) throws AuditException {
+        if (entityType != EntityType.PATIENT && entityType != EntityType.PATIENT_HISTORY) {
+            return;
+        }
+        AuditException failure = null;
+        for (K key : keys) {
+            if (snapshot != null && entityType == EntityType.PATIENT) {
+                snapshot.remove((Integer) key);
+            }
+            try {
+                Audit.record(AuditAction.DELETE, entityType, key);
+            } catch (AuditException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package main.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import main.dao.BaseDAO;
+import main.event.ChangeEvent;
+import main.event.ChangeRecorder;
+import main.exception.DatabaseException;
+import main.exception.ValidationException;
+import main.validation.BatchValidator;
+import main.validation.Violation;
+
+/**
+ * Writes records with upserts for the services, a chunk at a time.
+ * <p>
+ * A stream is read in batches of {@value #BATCH_SIZE} records, which a
+ * {@link BatchValidator} checks on all cores with the non-throwing rules
+ * of the validators. The valid records of a batch are then written
+ * {@value #CHUNK_SIZE} at a time with one {@link BaseDAO#upsertAll} call,
+ * together with their change events. A feed of any size is thus written
+ * in a single pass while holding one batch in memory. Invalid records are
+ * skipped and the rest of the feed is still written; once it has been
+ * read, every violation found is reported in one exception. Since upserts
+ * are idempotent, the corrected feed can simply be sent again.
+ * </p>
+ */
+final class Upserts {
+
+    /** The number of records written together. */
+    static final int CHUNK_SIZE = 500;
+
+    /** The number of records validated together, enough to check them in parallel. */
+    static final int BATCH_SIZE = 16 * CHUNK_SIZE;
+
+    /** The number of invalid records whose violations are listed in the exception. */
+    private static final int MAX_REPORTED = 100;
+
+    /**
+     * Validates one record.
+     *
+     * @param <T> the type of the records
+     */
+    @FunctionalInterface
+    interface Check<T> {
+        /**
+         * Validates a record.
+         *
+         * @param record the record to check
+         * @throws ValidationException if the record is invalid
+         */
+        void validate(T record) throws ValidationException;
+    }
+
+    /**
+     * Told about each record once it has been written.
+     *
+     * @param <T> the type of the records
+     */
+    @FunctionalInterface
+    interface Written<T> {
+        /**
+         * Handles a written record.
+         *
+         * @param record the record that was written
+         * @throws DatabaseException if the record cannot be handled, for
+         *                           example audited
+         */
+        void accept(T record) throws DatabaseException;
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Upserts() {}
+
+    /**
+     * Validates and upserts one record.
+     *
+     * @param <T>     the type of the record
+     * @param record  the record to write
+     * @param check   validates the record
+     * @param dao     the DAO to write to
+     * @param changes records the change event
+     * @param written called with the record once it has been written
+     * @return true if the record was created, false if it replaced a stored one
+     * @throws ValidationException if the record is invalid
+     * @throws DatabaseException   if the record cannot be written
+     */
+    static <T> boolean upsert(
+        T record,
+        Check<? super T> check,
+        BaseDAO<T, ?> dao,
+        ChangeRecorder changes,
+        Written<? super T> written
+    ) throws ValidationException, DatabaseException {
+        check.validate(record);
+        return write(Collections.singletonList(record), dao, changes, written) == 1;
+    }
+
+    /**
+     * Validates and upserts the records of a stream, a chunk at a time.
+     *
+     * @param <T>     the type of the records
+     * @param records the records, in the order they are written
+     * @param rules   supplies the non-throwing check of one record for each
+     *                batch, so that rules depending on the current date can
+     *                take it once per batch
+     * @param dao     the DAO to write to
+     * @param changes records the change events of each chunk
+     * @param written called with each record once its chunk has been written
+     * @return the number of records that were created
+     * @throws ValidationException if records are invalid, after the valid
+     *                             ones were written; the message lists the
+     *                             violations by position in the stream,
+     *                             from 0
+     * @throws DatabaseException   if a chunk cannot be written
+     */
+    static <T> int upsertAll(
+        Iterable<? extends T> records,
+        Supplier<? extends Function<? super T, List<Violation>>> rules,
+        BaseDAO<T, ?> dao,
+        ChangeRecorder changes,
+        Written<? super T> written
+    ) throws ValidationException, DatabaseException {
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        Rejections rejections = new Rejections();
+        int position = 0;
+        int created = 0;
+        for (T record : records) {
+            batch.add(record);
+            if (batch.size() == BATCH_SIZE) {
+                created += writeBatch(batch, position, rules, rejections, dao, changes, written);
+                position += batch.size();
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            created += writeBatch(batch, position, rules, rejections, dao, changes, written);
+            position += batch.size();
+        }
+        if (rejections.count > 0) {
+            throw rejections.toException(position);
+        }
+        return created;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Validates one batch of a stream and upserts its valid records.
+     *
+     * @param <T>        the type of the records
+     * @param batch      the records of the batch
+     * @param offset     the position of the first record in the stream
+     * @param rules      supplies the check of one record
+     * @param rejections collects the violations of the invalid records
+     * @param dao        the DAO to write to
+     * @param changes    records the change events of each chunk
+     * @param written    called with each record once its chunk has been written
+     * @return the number of records that were created
+     * @throws DatabaseException if a chunk cannot be written
+     */
+    private static <T> int writeBatch(
+        List<T> batch,
+        int offset,
+        Supplier<? extends Function<? super T, List<Violation>>> rules,
+        Rejections rejections,
+        BaseDAO<T, ?> dao,
+        ChangeRecorder changes,
+        Written<? super T> written
+    ) throws DatabaseException {
+        BatchValidator.Report<T> report = new BatchValidator<T>(rules.get()).validate(batch);
+        for (Map.Entry<Integer, List<Violation>> entry : report.getViolations().entrySet()) {
+            rejections.add(offset + entry.getKey(), entry.getValue());
+        }
+        List<T> valid = report.getValidRecords();
+        int created = 0;
+        for (int start = 0; start < valid.size(); start += CHUNK_SIZE) {
+            List<T> chunk = valid.subList(start, Math.min(start + CHUNK_SIZE, valid.size()));
+            created += write(chunk, dao, changes, written);
+        }
+        return created;
+    }
+
+    /**
+     * Upserts validated records together with their change events.
+     *
+     * @param <T>     the type of the records
+     * @param chunk   the records to write
+     * @param dao     the DAO to write to
+     * @param changes records the change events
+     * @param written called with each record once the chunk has been written;
+     *                every record is handed over even if one of them fails
+     * @return the number of records that were created
+     * @throws DatabaseException if the records cannot be written, or the
+     *                           first failure of {@code written}
+     */
+    private static <T> int write(
+        List<T> chunk,
+        BaseDAO<T, ?> dao,
+        ChangeRecorder changes,
+        Written<? super T> written
+    ) throws DatabaseException {
+        int created = changes.recordAll(
+            () -> dao.upsertAll(chunk),
+            () -> {
+                List<ChangeEvent> events = new ArrayList<>(chunk.size());
+                for (T record : chunk) {
+                    events.add(ChangeEvent.of(ChangeEvent.Operation.UPSERT, record));
+                }
+                return events;
+            }
+        );
+        DatabaseException failure = null;
+        for (T record : chunk) {
+            try {
+                written.accept(record);
+            } catch (DatabaseException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return created;
+    }
+
+    /**
+     * The violations of the invalid records of a stream, of which the
+     * first {@value #MAX_REPORTED} records are kept for the report.
+     */
+    private static final class Rejections {
+        private final StringBuilder listed = new StringBuilder();
+        private String fieldName;
+        private int count;
+
+        /**
+         * Adds the violations of an invalid record.
+         *
+         * @param position   the position of the record in the stream
+         * @param violations the violations of the record
+         */
+        void add(int position, List<Violation> violations) {
+            if (count == 0) {
+                fieldName = violations.get(0).getFieldName();
+            }
+            if (count < MAX_REPORTED) {
+                listed.append("; Record ").append(position).append(": ").append(violations);
+            }
+            count++;
+        }
+
+        /**
+         * Creates the exception that reports the invalid records.
+         *
+         * @param total the number of records in the stream
+         * @return the exception, named after the first invalid field
+         */
+        ValidationException toException(int total) {
+            String more = count > MAX_REPORTED
+                ? "; and " + (count - MAX_REPORTED) + " more"
+                : "";
+            return new ValidationException(
+                fieldName,
+                count + " of " + total + " record(s) invalid and not written" + listed + more
+            );
+        }
+    }
+}
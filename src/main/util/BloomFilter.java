@@ -0,0 +1,178 @@
+package main.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Probabilistic set of keys that answers "definitely absent" or "maybe present".
+ * <p>
+ * A key that was added is always reported as possibly present; a key that
+ * was never added is reported as possibly present only with the false
+ * positive probability the filter was sized for. Keys cannot be removed.
+ * </p>
+ *
+ * <p>Each key is hashed once to 64 bits and the bit positions are derived
+ * by double hashing, so a lookup costs one hash computation regardless of
+ * the number of hash functions. The bits are kept in an
+ * {@link AtomicLongArray}, which makes the filter safe for concurrent
+ * additions and lookups without locking.</p>
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+
+    /**
+     * Constructs a new, empty BloomFilter.
+     *
+     * @param expectedKeys      the number of keys the filter is sized for
+     * @param falsePositiveRate the desired false positive probability at that size,
+     *                          between 0 and 1 exclusive
+     * @throws IllegalArgumentException if the false positive rate is out of range
+     */
+    public BloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException(
+                "False positive rate must be between 0 and 1: " + falsePositiveRate
+            );
+        }
+        long n = Math.max(expectedKeys, 1);
+        // Optimal size m = -n ln p / (ln 2)^2 and hash count k = m/n ln 2
+        long bits = (long) Math.ceil(
+            -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))
+        );
+        int wordCount = (int) Math.min((bits + 63) / 64, Integer.MAX_VALUE - 8);
+        this.words = new AtomicLongArray(Math.max(wordCount, 1));
+        this.bitCount = (long) words.length() * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.capacity = n;
+    }
+
+    /**
+     * Adds an integer key.
+     *
+     * @param key the key to add
+     */
+    public void add(int key) {
+        addHash(mix(key));
+    }
+
+    /**
+     * Adds a string key.
+     *
+     * @param key the key to add; null is ignored
+     */
+    public void add(String key) {
+        if (key != null) {
+            addHash(hash(key));
+        }
+    }
+
+    /**
+     * Checks whether an integer key may have been added.
+     *
+     * @param key the key to check
+     * @return false if the key was definitely never added, true otherwise
+     */
+    public boolean mightContain(int key) {
+        return containsHash(mix(key));
+    }
+
+    /**
+     * Checks whether a string key may have been added.
+     *
+     * @param key the key to check
+     * @return false if the key was definitely never added, true otherwise
+     */
+    public boolean mightContain(String key) {
+        return key != null && containsHash(hash(key));
+    }
+
+    /**
+     * Gets the number of keys this filter was sized for.
+     * <p>
+     * Adding more keys than this raises the false positive rate above the
+     * rate the filter was constructed with.
+     * </p>
+     *
+     * @return the expected number of keys
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Sets the bits of a hashed key.
+     *
+     * @param hash the 64-bit hash of the key
+     */
+    private void addHash(long hash) {
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0) {
+                if (words.compareAndSet(word, current, current | mask)) {
+                    break;
+                }
+                current = words.get(word);
+            }
+            h1 += h2;
+        }
+    }
+
+    /**
+     * Checks the bits of a hashed key.
+     *
+     * @param hash the 64-bit hash of the key
+     * @return true if all bits of the key are set
+     */
+    private boolean containsHash(long hash) {
+        long h1 = hash;
+        long h2 = (hash >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(h1, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            h1 += h2;
+        }
+        return true;
+    }
+
+    /**
+     * Hashes a string to 64 bits without allocating.
+     *
+     * @param key the string to hash
+     * @return the 64-bit hash
+     */
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Spreads the bits of a value (the 64-bit finalizer of MurmurHash3).
+     *
+     * @param value the value to mix
+     * @return the mixed value
+     */
+    private static long mix(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
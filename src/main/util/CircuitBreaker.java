@@ -0,0 +1,133 @@
+package main.util;
+
+/**
+ * Circuit breaker that stops calls to a failing dependency for a while.
+ * <p>
+ * The breaker starts <em>closed</em> and lets every call through. After
+ * {@code failureThreshold} consecutive failures it <em>opens</em> and
+ * rejects calls immediately, so that callers fail fast instead of each
+ * waiting for its own timeout. Once {@code openMillis} have passed it is
+ * <em>half-open</em>: a single trial call is let through, and its outcome
+ * closes the breaker again or re-opens it for another period.
+ * </p>
+ *
+ * <p>The current state is reported as the {@code <name>.circuit_open}
+ * gauge (1 while open) and rejected calls as the
+ * {@code <name>.circuit_rejected} counter in {@link Metrics}.</p>
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states of a circuit breaker.
+     */
+    public enum State {
+        /** Calls pass through. */
+        CLOSED,
+        /** Calls are rejected. */
+        OPEN,
+        /** One trial call is allowed. */
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    /**
+     * Constructs a new, closed CircuitBreaker.
+     *
+     * @param name             the name used in messages and metric names
+     * @param failureThreshold the number of consecutive failures that opens the breaker
+     * @param openMillis       how long the breaker stays open before a trial call
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        Metrics.gauge(name + ".circuit_open", () -> getState() == State.OPEN ? 1 : 0);
+    }
+
+    /**
+     * Checks whether a call may proceed.
+     * <p>
+     * A call that is allowed must be followed by {@link #recordSuccess()}
+     * or {@link #recordFailure()}.
+     * </p>
+     *
+     * @return true if the call may proceed, false if it must fail fast
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.CLOSED) {
+            return true;
+        }
+        if (state == State.HALF_OPEN && !trialInFlight) {
+            trialInFlight = true;
+            return true;
+        }
+        Metrics.counter(name + ".circuit_rejected").increment();
+        return false;
+    }
+
+    /**
+     * Records a successful call, closing the breaker.
+     */
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println("[INFO] " + name + " is available again");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    /**
+     * Records a failed call, opening the breaker when the threshold is
+     * reached or when the trial call of a half-open breaker failed.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (
+            state == State.HALF_OPEN ||
+            (state == State.CLOSED && consecutiveFailures >= failureThreshold)
+        ) {
+            if (state == State.CLOSED) {
+                System.out.println(
+                    "[WARN] " + name + " is unavailable; failing fast for " +
+                        openMillis / 1000 + " s"
+                );
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * Gets the time until the next trial call is allowed.
+     *
+     * @return the remaining open time in milliseconds, or 0 if not open
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openMillis - (System.currentTimeMillis() - openedAt));
+    }
+
+    /**
+     * Gets the current state.
+     *
+     * @return the state
+     */
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,76 @@
+package main.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Compares string keys the way the case- and accent-insensitive collation
+ * of the MySQL key columns does.
+ * <p>
+ * Two keys are equal when they are equal without trailing spaces, accents
+ * and case, so {@code "D1"}, {@code "d1"} and {@code "d1 "} name the same
+ * row. Folding slightly more keys together than the collation does, as
+ * for a few ligatures, is accepted. Keys made of ASCII characters only,
+ * the common case, skip the Unicode decomposition.
+ * </p>
+ */
+public final class Collation {
+
+    /** Accents and other marks left separate by canonical decomposition. */
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Collation() {}
+
+    /**
+     * Brings a key to the form under which the collation considers it
+     * equal to others: without trailing spaces, accents and case.
+     *
+     * @param key the key as given or stored
+     * @return the normalized key; the key itself if it already is
+     */
+    public static String key(String key) {
+        int end = trimmedLength(key);
+        if (isAscii(key, end)) {
+            String trimmed = end == key.length() ? key : key.substring(0, end);
+            return trimmed.toLowerCase(Locale.ROOT);
+        }
+        String folded = Normalizer.normalize(key.substring(0, end), Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(folded).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Measures a key without its trailing spaces.
+     *
+     * @param key the key
+     * @return the length up to the last character that is not a space
+     */
+    private static int trimmedLength(String key) {
+        int end = key.length();
+        while (end > 0 && key.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Checks whether the start of a key is plain ASCII.
+     *
+     * @param key the key
+     * @param end the length to check
+     * @return true if the first {@code end} characters are all ASCII
+     */
+    private static boolean isAscii(String key, int end) {
+        for (int i = 0; i < end; i++) {
+            if (key.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,285 @@
+package main.util;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import main.config.DatabaseConfig;
+
+/**
+ * Pool of connections to one MySQL server.
+ * <p>
+ * Each thread leases at most one connection from the pool and keeps it
+ * until {@link #release()} is called. Connections are opened on demand,
+ * validated before use when they have been idle for a while, and reopened
+ * after they were discarded because of a connection failure. The pool has
+ * its own {@link CircuitBreaker}, so one unreachable server does not
+ * affect the others.
+ * </p>
+ *
+ * @see Database
+ */
+final class ConnectionPool {
+
+    /** Idle time after which a connection is validated before use. */
+    private static final long VALIDATION_IDLE_MS = 5_000;
+
+    /** Time the server has to answer a validation request. */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /** Consecutive connection failures that open the circuit breaker. */
+    private static final int BREAKER_FAILURE_THRESHOLD = 3;
+
+    /** Time the circuit breaker stays open before a trial statement. */
+    private static final long BREAKER_OPEN_MS = 5_000;
+
+    private final String name;
+    private final String url;
+    private final DatabaseConfig config;
+    private final Semaphore available;
+    private final Queue<PooledConnection> idle = new ConcurrentLinkedQueue<>();
+    private final Set<Connection> opened = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<PooledConnection> leased = new ThreadLocal<>();
+    private final CircuitBreaker breaker;
+
+    /**
+     * A pooled connection and the time it was last used. The connection is
+     * null after it has been discarded, until it is reopened.
+     */
+    private static final class PooledConnection {
+        private Connection connection;
+        private long lastUsed;
+
+        /**
+         * Constructs a new PooledConnection.
+         *
+         * @param connection the open connection, or null to open one on first use
+         */
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Constructs a new, empty ConnectionPool.
+     *
+     * @param name   the name used in messages and metric names, e.g. {@code db}
+     * @param url    the JDBC URL of the server
+     * @param config the configuration providing credentials, timeouts and the pool size
+     */
+    ConnectionPool(String name, String url, DatabaseConfig config) {
+        this.name = name;
+        this.url = url;
+        this.config = config;
+        this.available = new Semaphore(config.getPoolSize(), true);
+        this.breaker = new CircuitBreaker(
+            name,
+            BREAKER_FAILURE_THRESHOLD,
+            BREAKER_OPEN_MS
+        );
+    }
+
+    /**
+     * Opens the first connection, so that a wrong URL or credentials are
+     * reported at start-up.
+     *
+     * @throws SQLException if the connection cannot be established
+     */
+    void open() throws SQLException {
+        idle.add(new PooledConnection(connect()));
+    }
+
+    /**
+     * Gets the connection of the calling thread, leasing one from the pool
+     * if needed, and (re)opening or validating it.
+     * <p>
+     * If every connection is leased, this method waits until one is
+     * released.
+     * </p>
+     *
+     * @return the open connection of the calling thread
+     * @throws SQLException if a connection cannot be established
+     */
+    Connection lease() throws SQLException {
+        PooledConnection pooled = leased.get();
+        if (pooled == null) {
+            available.acquireUninterruptibly();
+            pooled = idle.poll();
+            if (pooled == null) {
+                pooled = new PooledConnection(null);
+            }
+            leased.set(pooled);
+        }
+
+        long now = System.currentTimeMillis();
+        if (
+            pooled.connection != null &&
+            now - pooled.lastUsed > VALIDATION_IDLE_MS &&
+            !isValid(pooled.connection)
+        ) {
+            Metrics.counter(name + ".stale_connections").increment();
+            discard(pooled);
+        }
+        if (pooled.connection == null) {
+            pooled.connection = connect();
+            Metrics.counter(name + ".connects").increment();
+        }
+        pooled.lastUsed = now;
+        return pooled.connection;
+    }
+
+    /**
+     * Returns the connection leased to the calling thread to the pool. It
+     * does nothing if the thread holds no connection.
+     */
+    void release() {
+        PooledConnection pooled = leased.get();
+        if (pooled == null) {
+            return;
+        }
+        leased.remove();
+        idle.add(pooled);
+        available.release();
+    }
+
+    /**
+     * Discards the calling thread's connection after a connection failure,
+     * so that its next statement opens a new one.
+     */
+    void discardLeased() {
+        PooledConnection pooled = leased.get();
+        if (pooled != null) {
+            discard(pooled);
+        }
+    }
+
+    /**
+     * Opens a connection to the server that is not part of the pool.
+     * <p>
+     * The caller owns the connection and must close it.
+     * </p>
+     *
+     * @return the new connection
+     * @throws SQLException if the connection cannot be established
+     */
+    Connection connectUnpooled() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", config.getUser());
+        properties.setProperty("password", config.getPassword());
+        properties.setProperty(
+            "connectTimeout",
+            String.valueOf(config.getConnectTimeoutMs())
+        );
+        properties.setProperty(
+            "socketTimeout",
+            String.valueOf(config.getSocketTimeoutMs())
+        );
+        return DriverManager.getConnection(url, properties);
+    }
+
+    /**
+     * Closes all connections of the pool.
+     */
+    void close() {
+        for (Connection connection : opened) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                System.out.println(
+                    "\n[WARN] Error closing database connection: " +
+                        e.getMessage()
+                );
+            }
+        }
+        opened.clear();
+    }
+
+    /**
+     * Checks whether the pool holds an open connection, without leasing
+     * one.
+     *
+     * @return true if at least one connection of the pool is open
+     */
+    boolean hasOpenConnection() {
+        for (Connection connection : opened) {
+            try {
+                if (!connection.isClosed()) {
+                    return true;
+                }
+            } catch (SQLException e) {
+                // Treated as closed
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the name of this pool.
+     *
+     * @return the name used in messages and metric names
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the circuit breaker guarding this pool's server.
+     *
+     * @return the circuit breaker
+     */
+    CircuitBreaker getBreaker() {
+        return breaker;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Opens a new pooled connection.
+     *
+     * @return the new connection
+     * @throws SQLException if the connection cannot be established
+     */
+    private Connection connect() throws SQLException {
+        Connection connection = connectUnpooled();
+        opened.add(connection);
+        return connection;
+    }
+
+    /**
+     * Checks whether a connection still reaches the server.
+     *
+     * @param connection the connection to check
+     * @return true if the connection is usable
+     */
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes a pooled connection quietly and marks it for reopening.
+     *
+     * @param pooled the pooled connection
+     */
+    private void discard(PooledConnection pooled) {
+        Connection connection = pooled.connection;
+        pooled.connection = null;
+        if (connection != null) {
+            opened.remove(connection);
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // The connection is already broken
+            }
+        }
+    }
+}
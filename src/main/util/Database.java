@@ -1,9 +1,24 @@
 package main.util;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import main.config.DatabaseConfig;
+import main.exception.DatabaseException;
 
 /**
  * Database utility class for managing MySQL database connections.
@@ -13,11 +28,69 @@ import main.config.DatabaseConfig;
  * {@link DatabaseConfig} to obtain connection parameters.
  * </p>
  *
+ * <p>JDBC connections must not be used by two threads at once, so each
+ * thread gets its own connection from a small pool per server. A thread leases a
+ * connection on its first call to {@link #getConnection()} and keeps it
+ * until it calls {@link #releaseConnection()}; when all
+ * {@link DatabaseConfig#getPoolSize() pool size} connections are leased,
+ * further threads wait for one to be released. Connections are opened
+ * lazily, except for the first one, which is opened by the constructor so
+ * that configuration errors surface immediately. With
+ * {@link DatabaseConfig#isLazyConnect() lazy connect}, the constructor does
+ * not connect either, and {@link #warmUp()} can open the first connection
+ * in the background.</p>
+ *
+ * <p>DAOs run statements through
+ * {@link #execute(String, QueryClass, StatementCall)}, which applies the
+ * query timeout of the operation class and remembers the statement as
+ * running on the calling thread, so that it can be aborted with
+ * {@link #cancel(Thread)} or {@link #cancelAll()}. Connections are opened
+ * with connect and socket timeouts, so an unreachable server fails instead
+ * of blocking forever. Timed-out and cancelled statements are counted in
+ * the {@code db.timeouts.<class>} and {@code db.cancelled}
+ * {@link Metrics}.</p>
+ *
+ * <p>When {@link DatabaseConfig#getReplicaUrls() replicas} are configured,
+ * reads are spread over them round-robin and only inserts, updates and
+ * deletes go to the primary. A replica is only used while its measured
+ * replication lag is within
+ * {@link DatabaseConfig#getMaxReplicaLagSeconds() the tolerance} and it has
+ * already applied the last write committed by the reading thread, so a
+ * record that was just saved is always read back by the thread that saved
+ * it (read-your-writes). Writes of other threads do not hold back its
+ * reads. Until then, and whenever no replica qualifies, reads go to the
+ * primary. Reads served by each side are counted in
+ * {@code db.reads.replica} and {@code db.reads.primary}.</p>
+ *
+ * <p>Lost connections are recovered automatically:</p>
+ * <ul>
+ *   <li>A connection that has been idle for a while is validated before
+ *       use and silently replaced if the server dropped it.</li>
+ *   <li>A connection that fails during a statement is discarded, and the
+ *       next statement of the thread opens a new one.</li>
+ *   <li>Idempotent statements (every class except
+ *       {@link QueryClass#WRITE}) are retried after a connection failure,
+ *       with exponential backoff and full jitter, unless they were run
+ *       with {@link #executeOnce}.</li>
+ *   <li>After repeated connection failures a {@link CircuitBreaker} fails
+ *       the statements for that server fast for a few seconds, then lets
+ *       a single trial statement through to detect that the server is
+ *       back.</li>
+ * </ul>
+ *
  * <p>Usage example:</p>
  * <pre>{@code
  * Database db = new Database();
- * Connection conn = db.getConnection();
- * // Use connection for database operations
+ * boolean found = db.execute(
+ *     "SELECT COUNT(*) FROM doctors WHERE id = ?",
+ *     QueryClass.POINT_READ,
+ *     stmt -> {
+ *         stmt.setString(1, "D1");
+ *         try (ResultSet resultSet = stmt.executeQuery()) {
+ *             return resultSet.next() && resultSet.getInt(1) > 0;
+ *         }
+ *     }
+ * );
  * db.close();
  * }</pre>
  *
@@ -25,8 +98,73 @@ import main.config.DatabaseConfig;
  */
 public class Database {
 
+    /** Retries of an idempotent statement after a connection failure. */
+    private static final int MAX_RETRIES = 4;
+
+    /** Upper bound of the first retry delay; doubles with every retry. */
+    private static final long BACKOFF_BASE_MS = 100;
+
+    /** Upper bound of any retry delay. */
+    private static final long BACKOFF_MAX_MS = 2_000;
+
+    /** Interval between replication lag measurements. */
+    private static final long LAG_CHECK_INTERVAL_MS = 1_000;
+
+    /** Age after which a lag measurement is no longer trusted. */
+    private static final long LAG_MAX_AGE_MS = 5 * LAG_CHECK_INTERVAL_MS;
+
     private final DatabaseConfig config;
-    private Connection connection;
+    private final ConnectionPool primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ThreadLocal<Long> lastWriteAt = ThreadLocal.withInitial(() -> 0L);
+    private final ScheduledExecutorService lagMonitor;
+    private final ThreadLocal<QueryClass> lastQueryClass = new ThreadLocal<>();
+    private final Map<Thread, PreparedStatement> running = new ConcurrentHashMap<>();
+    private final Set<Thread> cancelRequested = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Boolean> inTransaction = new ThreadLocal<>();
+    private final ThreadLocal<Boolean> transactionWrote = new ThreadLocal<>();
+    private final ThreadLocal<Connection> transactionConnection = new ThreadLocal<>();
+    private final ThreadLocal<ConnectionPool> admitted = new ThreadLocal<>();
+    private volatile boolean closed;
+
+    /**
+     * Work done with a prepared statement.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface StatementCall<T> {
+        /**
+         * Binds the parameters, executes the statement and reads its result.
+         * <p>
+         * The call may run more than once if the statement is retried, so
+         * it must not have side effects outside the statement, unless it is
+         * run with {@link Database#executeOnce}.
+         * </p>
+         *
+         * @param stmt the prepared statement
+         * @return the result
+         * @throws SQLException if a database access error occurs
+         */
+        T call(PreparedStatement stmt) throws SQLException;
+    }
+
+    /**
+     * Work run inside a transaction.
+     *
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    public interface TransactionCall<T> {
+        /**
+         * Runs the statements of the transaction.
+         *
+         * @return the result
+         * @throws DatabaseException if a statement fails
+         */
+        T run() throws DatabaseException;
+    }
 
     /**
      * Constructs a new Database instance with default configuration.
@@ -44,86 +182,655 @@ public class Database {
 
     /**
      * Constructs a new Database instance with the specified configuration.
+     * <p>
+     * Only the connection to the primary is opened here, and not even that
+     * one with {@link DatabaseConfig#isLazyConnect() lazy connect}; replicas
+     * are connected in the background and used once their lag is known.
+     * </p>
      *
      * @param config the database configuration to use for the connection
      * @throws RuntimeException if the database connection cannot be established
      */
     public Database(DatabaseConfig config) {
         this.config = config;
-        connect();
-    }
+        this.primary = new ConnectionPool("db", config.getUrl(), config);
+        if (!config.isLazyConnect()) {
+            try {
+                primary.open();
+            } catch (SQLException e) {
+                System.out.println(
+                    "[ERROR] Database connection failed: " + e.getMessage() + "\n"
+                );
+                throw new RuntimeException("Failed to connect to database", e);
+            }
+            System.out.println("[INFO] Connected to database\n");
+        }
 
-    /**
-     * Establishes a connection to the MySQL database.
-     * <p>
-     * This method uses JDBC to connect to the database using the URL,
-     * username, and password from the configuration. If the connection
-     * fails, a {@link RuntimeException} is thrown.
-     * </p>
-     *
-     * @throws RuntimeException if the connection cannot be established
-     */
-    private void connect() {
-        try {
-            connection = DriverManager.getConnection(
-                config.getUrl(),
-                config.getUser(),
-                config.getPassword()
+        List<String> replicaUrls = config.getReplicaUrls();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            ConnectionPool pool = new ConnectionPool(
+                "db.replica" + (i + 1),
+                replicaUrls.get(i),
+                config
+            );
+            replicas.add(new Replica(pool));
+        }
+        if (replicas.isEmpty()) {
+            this.lagMonitor = null;
+        } else {
+            this.lagMonitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "emr-replica-monitor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            lagMonitor.scheduleWithFixedDelay(
+                this::refreshReplicaLag,
+                0,
+                LAG_CHECK_INTERVAL_MS,
+                TimeUnit.MILLISECONDS
             );
-            System.out.println("[INFO] Connected to database\n");
-        } catch (SQLException e) {
             System.out.println(
-                "[ERROR] Database connection failed: " + e.getMessage() + "\n"
+                "[INFO] Routing reads to " + replicas.size() + " replica(s)\n"
             );
-            throw new RuntimeException("Failed to connect to database", e);
         }
     }
 
     /**
-     * Closes the database connection.
+     * Closes all database connections.
      * <p>
      * This method should be called when the database connection is no longer
      * needed to release database resources. It is safe to call this method
-     * even if the connection is already closed or was never established.
+     * more than once.
      * </p>
      */
     public void close() {
-        if (connection != null) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (lagMonitor != null) {
+            lagMonitor.shutdownNow();
             try {
-                connection.close();
-                System.out.println("[INFO] Database connection closed");
-            } catch (SQLException e) {
-                System.out.println(
-                    "\n[WARN] Error closing database connection: " +
-                        e.getMessage()
-                );
+                lagMonitor.awaitTermination(LAG_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
             }
         }
+        primary.close();
+        for (Replica replica : replicas) {
+            replica.closeMonitorConnection();
+            replica.getPool().close();
+        }
+        System.out.println("[INFO] Database connection closed");
     }
 
     /**
-     * Gets the active database connection.
+     * Opens a connection to the primary on the calling thread and returns
+     * it to the pool, so that the next statement of any thread finds it
+     * open.
      * <p>
-     * Returns the current JDBC connection that can be used for executing
-     * SQL statements. The connection is established during construction
-     * of this object.
+     * This loads the JDBC driver and does the network and authentication
+     * round trips that otherwise delay the first statement. A statement
+     * that starts meanwhile opens another connection, or waits for this one
+     * if the pool has no other. A failure is
+     * counted in the {@code db.warmup_failures} {@link Metrics} and not
+     * reported otherwise, since the first statement reports it anyway.
      * </p>
      *
-     * @return the active {@link Connection} to the database
+     * @return true if the connection was opened
+     */
+    public boolean warmUp() {
+        if (closed) {
+            return false;
+        }
+        try {
+            primary.lease();
+            return true;
+        } catch (SQLException e) {
+            Metrics.counter("db.warmup_failures").increment();
+            return false;
+        } finally {
+            primary.release();
+        }
+    }
+
+    /**
+     * Gets the connection of the calling thread to the primary.
+     * <p>
+     * On the first call from a thread, a connection is leased from the pool
+     * and kept for that thread until {@link #releaseConnection()} is called.
+     * If every connection is leased, this method waits until one is
+     * released. A connection that has been idle for a while is validated
+     * and replaced if it is no longer usable.
+     * </p>
+     *
+     * @return the {@link Connection} of the calling thread
+     * @throws RuntimeException if a new connection cannot be established
      */
     public Connection getConnection() {
-        return connection;
+        try {
+            return primary.lease();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to connect to database", e);
+        }
+    }
+
+    /**
+     * Returns the connections leased to the calling thread to their pools.
+     * <p>
+     * Threads other than the main thread should call this method before
+     * they terminate. It does nothing if the thread holds no connection.
+     * </p>
+     */
+    public void releaseConnection() {
+        running.remove(Thread.currentThread());
+        primary.release();
+        for (Replica replica : replicas) {
+            replica.getPool().release();
+        }
     }
 
     /**
-     * Checks if the database connection is valid and open.
+     * Prepares and runs a statement on the calling thread's connection with
+     * the query timeout of the given operation class.
+     * <p>
+     * Writes run on the primary; reads run on a replica when one is
+     * configured and recent enough, and on the primary otherwise. While the
+     * call runs, the statement can be cancelled from another thread. If the
+     * connection fails, it is discarded and, for idempotent operation
+     * classes, the call is retried on a new connection after a randomized,
+     * exponentially growing delay. While the circuit breaker of the primary
+     * is open, statements that need the primary fail immediately.
+     * </p>
      *
-     * @return true if the connection is valid and open, false otherwise
+     * @param <T>        the type of the result
+     * @param sql        the SQL statement
+     * @param queryClass the operation class that determines the timeout and
+     *                   whether the statement may be retried
+     * @param call       the work to do with the prepared statement
+     * @return the result of the call
+     * @throws SQLException if the statement fails, or the database is unavailable
      */
-    public boolean isConnected() {
+    public <T> T execute(String sql, QueryClass queryClass, StatementCall<T> call)
+        throws SQLException {
+        return execute(sql, queryClass, false, true, call);
+    }
+
+    /**
+     * Prepares and runs a statement like
+     * {@link #execute(String, QueryClass, StatementCall)}, but never retries
+     * it.
+     * <p>
+     * Use this for calls that hand rows to the caller while they are read,
+     * such as streamed scans: a retry would hand the rows read before the
+     * connection failed over a second time. The call thus runs at most once
+     * and may have side effects outside the statement.
+     * </p>
+     *
+     * @param <T>        the type of the result
+     * @param sql        the SQL statement
+     * @param queryClass the operation class that determines the timeout
+     * @param call       the work to do with the prepared statement
+     * @return the result of the call
+     * @throws SQLException if the statement fails, or the database is unavailable
+     */
+    public <T> T executeOnce(String sql, QueryClass queryClass, StatementCall<T> call)
+        throws SQLException {
+        return execute(sql, queryClass, false, false, call);
+    }
+
+    /**
+     * Prepares and runs a statement on the primary, regardless of replicas.
+     * <p>
+     * Use this for reads that must see every committed write, such as
+     * loading state that later writes are checked against.
+     * </p>
+     *
+     * @param <T>        the type of the result
+     * @param sql        the SQL statement
+     * @param queryClass the operation class that determines the timeout and
+     *                   whether the statement may be retried
+     * @param call       the work to do with the prepared statement
+     * @return the result of the call
+     * @throws SQLException if the statement fails, or the database is unavailable
+     * @see #execute(String, QueryClass, StatementCall)
+     */
+    public <T> T executeOnPrimary(
+        String sql,
+        QueryClass queryClass,
+        StatementCall<T> call
+    ) throws SQLException {
+        return execute(sql, queryClass, true, true, call);
+    }
+
+    /**
+     * Runs work as one transaction on the primary.
+     * <p>
+     * Every statement the calling thread runs during the call uses its
+     * primary connection with auto-commit turned off, including reads, so
+     * the work sees its own changes. The transaction begins with the first
+     * statement, so work that runs no statement neither leases a connection
+     * nor sends anything to the server. The transaction is committed if the
+     * work returns and rolled back if it throws. Statements in a
+     * transaction are never retried, since a new connection would not be
+     * part of it. A nested call joins the enclosing transaction.
+     * </p>
+     *
+     * @param <T>  the type of the result
+     * @param call the work to run
+     * @return the result of the work
+     * @throws DatabaseException if the work fails, or the transaction
+     *                           cannot be started or committed
+     */
+    public <T> T inTransaction(TransactionCall<T> call) throws DatabaseException {
+        if (inTransaction.get() != null) {
+            return call.run();
+        }
+        inTransaction.set(Boolean.TRUE);
+        boolean commitStarted = false;
+        boolean committed = false;
         try {
-            return connection != null && !connection.isClosed();
+            T result = call.run();
+            Connection connection = transactionConnection.get();
+            if (connection != null) {
+                commitStarted = true;
+                connection.commit();
+            }
+            committed = true;
+            return result;
         } catch (SQLException e) {
+            throw failure("Failed to commit transaction", e);
+        } finally {
+            inTransaction.remove();
+            Connection connection = transactionConnection.get();
+            transactionConnection.remove();
+            if (transactionWrote.get() != null) {
+                transactionWrote.remove();
+                if (commitStarted) {
+                    // A failed commit may still have been applied
+                    markWritten();
+                }
+            }
+            if (connection != null) {
+                try {
+                    if (!committed) {
+                        connection.rollback();
+                    }
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    // The server ends the transaction when the connection closes
+                    primary.discardLeased();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancels the statement running on the given thread, if any.
+     *
+     * @param thread the thread whose statement to cancel
+     * @return true if a running statement was cancelled
+     */
+    public boolean cancel(Thread thread) {
+        PreparedStatement stmt = running.get(thread);
+        try {
+            if (stmt == null || stmt.isClosed()) {
+                return false;
+            }
+            cancelRequested.add(thread);
+            stmt.cancel();
+            return true;
+        } catch (SQLException e) {
+            System.out.println("[WARN] Could not cancel query: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Cancels the statements running on all threads.
+     *
+     * @return the number of statements cancelled
+     */
+    public int cancelAll() {
+        int cancelled = 0;
+        for (Thread thread : running.keySet()) {
+            if (cancel(thread)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Converts a failed statement of the calling thread into a
+     * {@link DatabaseException}, counting timeouts and cancellations.
+     *
+     * @param message the description of the failed operation, e.g. {@code Failed to read patient}
+     * @param e       the SQL exception
+     * @return the exception to throw
+     */
+    public DatabaseException failure(String message, SQLException e) {
+        Thread thread = Thread.currentThread();
+        if (cancelRequested.remove(thread)) {
+            Metrics.counter("db.cancelled").increment();
+            return new DatabaseException(message + ": query cancelled", e);
+        }
+        if (e instanceof SQLTimeoutException) {
+            QueryClass queryClass = lastQueryClass.get();
+            Metrics.counter(
+                "db.timeouts." + (queryClass != null ? queryClass.metricName() : "unknown")
+            ).increment();
+            return new DatabaseException(
+                message + ": query timed out" +
+                    (queryClass != null
+                        ? " after " + config.getQueryTimeoutSeconds(queryClass) + " s"
+                        : ""),
+                e
+            );
+        }
+        return new DatabaseException(message + ": " + e.getMessage(), e);
+    }
+
+    /**
+     * Gets the maximum number of connections in the pool.
+     *
+     * @return the pool size
+     */
+    public int getPoolSize() {
+        return config.getPoolSize();
+    }
+
+    /**
+     * Checks if a connection to the primary is open and its circuit
+     * breaker lets statements through.
+     * <p>
+     * The check neither leases nor opens a connection, so it is false
+     * before the first statement with {@link DatabaseConfig#isLazyConnect()
+     * lazy connect}.
+     * </p>
+     *
+     * @return true if the primary is connected, false otherwise
+     */
+    public boolean isConnected() {
+        return (
+            !closed &&
+            primary.getBreaker().getState() != CircuitBreaker.State.OPEN &&
+            primary.hasOpenConnection()
+        );
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Runs a statement with routing, retries and write tracking.
+     *
+     * @param <T>         the type of the result
+     * @param sql         the SQL statement
+     * @param queryClass  the operation class
+     * @param primaryOnly true to run a read on the primary
+     * @param retryable   false to never retry the statement, even if its
+     *                    class is idempotent
+     * @param call        the work to do with the prepared statement
+     * @return the result of the call
+     * @throws SQLException if the statement fails, or the database is unavailable
+     */
+    private <T> T execute(
+        String sql,
+        QueryClass queryClass,
+        boolean primaryOnly,
+        boolean retryable,
+        StatementCall<T> call
+    ) throws SQLException {
+        Thread thread = Thread.currentThread();
+        boolean write = queryClass == QueryClass.WRITE;
+        boolean transaction = inTransaction.get() != null;
+        try {
+            for (int attempt = 0; ; attempt++) {
+                // A statement issued from within another statement's call
+                // shares the admission of the outer statement
+                ConnectionPool outer = admitted.get();
+                ConnectionPool pool = route(write || primaryOnly || transaction, outer);
+                boolean nested = pool == outer;
+                boolean recorded = nested;
+                if (!nested) {
+                    admitted.set(pool);
+                }
+                try {
+                    if (transaction) {
+                        begin(pool.lease());
+                    }
+                    try (PreparedStatement stmt = prepare(pool, sql, queryClass)) {
+                        T result = call.call(stmt);
+                        if (!nested) {
+                            pool.getBreaker().recordSuccess();
+                            recorded = true;
+                        }
+                        return result;
+                    }
+                } catch (SQLException e) {
+                    if (!nested) {
+                        recordOutcome(pool, e);
+                        recorded = true;
+                    }
+                    if (!isConnectionFailure(e)) {
+                        throw e;
+                    }
+                    pool.discardLeased();
+                    if (
+                        transaction ||
+                        !retryable ||
+                        !queryClass.isIdempotent() ||
+                        attempt >= MAX_RETRIES ||
+                        cancelRequested.contains(thread) ||
+                        !backOff(attempt)
+                    ) {
+                        throw e;
+                    }
+                    Metrics.counter("db.retries").increment();
+                } finally {
+                    if (!nested) {
+                        if (!recorded) {
+                            // A runtime exception of the call; the server was reached
+                            pool.getBreaker().recordSuccess();
+                        }
+                        if (outer != null) {
+                            admitted.set(outer);
+                        } else {
+                            admitted.remove();
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (write) {
+                if (transaction) {
+                    // Visible to replicas only once the transaction commits
+                    transactionWrote.set(Boolean.TRUE);
+                } else {
+                    markWritten();
+                }
+            }
+        }
+    }
+
+    /**
+     * Begins the transaction of the calling thread on its first statement,
+     * and checks on later statements that it still has the connection the
+     * transaction began on.
+     *
+     * @param connection the primary connection leased to the calling thread
+     * @throws SQLException if auto-commit cannot be turned off, or the
+     *                      connection of the transaction was lost and replaced
+     */
+    private void begin(Connection connection) throws SQLException {
+        Connection begun = transactionConnection.get();
+        if (begun == null) {
+            connection.setAutoCommit(false);
+            transactionConnection.set(connection);
+        } else if (begun != connection || connection.getAutoCommit()) {
+            throw new SQLNonTransientConnectionException(
+                "Connection lost during transaction",
+                "08003"
+            );
+        }
+    }
+
+    /**
+     * Records that a write of the calling thread was committed now, so
+     * that its reads wait for the replicas to apply it.
+     */
+    private void markWritten() {
+        lastWriteAt.set(System.currentTimeMillis());
+    }
+
+    /**
+     * Records the outcome of a failed statement in the circuit breaker of
+     * its server. Only connection failures count against the server; any
+     * other error means that the server answered.
+     *
+     * @param pool the pool of the server
+     * @param e    the SQL exception
+     */
+    private static void recordOutcome(ConnectionPool pool, SQLException e) {
+        if (isConnectionFailure(e)) {
+            pool.getBreaker().recordFailure();
+        } else {
+            pool.getBreaker().recordSuccess();
+        }
+    }
+
+    /**
+     * Chooses the server for the next statement.
+     * <p>
+     * Every server returned, except the outer one, was admitted by its
+     * circuit breaker, and the caller must record the outcome of the
+     * statement. A nested statement reuses the server of the outer
+     * statement when that one is suitable, since its breaker would reject a
+     * second call during a half-open trial.
+     * </p>
+     *
+     * @param primaryOnly true if the statement must run on the primary
+     * @param outer       the server of the calling thread's running statement, or null
+     * @return the pool of the chosen server
+     * @throws SQLException if the statement needs the primary and it is unavailable
+     */
+    private ConnectionPool route(boolean primaryOnly, ConnectionPool outer)
+        throws SQLException {
+        if (outer != null && (outer == primary || !primaryOnly)) {
+            return outer;
+        }
+        if (!primaryOnly) {
+            Replica replica = chooseReplica();
+            if (replica != null) {
+                Metrics.counter("db.reads.replica").increment();
+                return replica.getPool();
+            }
+            Metrics.counter("db.reads.primary").increment();
+        }
+        CircuitBreaker breaker = primary.getBreaker();
+        if (!breaker.allowRequest()) {
+            throw new SQLTransientConnectionException(
+                "Database is unavailable; next attempt in " +
+                    (breaker.getRemainingOpenMillis() + 999) / 1000 + " s",
+                "08001"
+            );
+        }
+        return primary;
+    }
+
+    /**
+     * Picks the next usable replica in round-robin order for a read of the
+     * calling thread.
+     *
+     * @return the replica, or null if none is recent enough and reachable
+     */
+    private Replica chooseReplica() {
+        int count = replicas.size();
+        if (count == 0) {
+            return null;
+        }
+        long writtenAt = lastWriteAt.get();
+        int maxLag = config.getMaxReplicaLagSeconds();
+        int first = Math.floorMod(nextReplica.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((first + i) % count);
+            if (
+                replica.isUsable(maxLag, LAG_MAX_AGE_MS, writtenAt) &&
+                replica.getPool().getBreaker().allowRequest()
+            ) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Measures the replication lag of every replica. Runs on the monitor
+     * thread.
+     */
+    private void refreshReplicaLag() {
+        for (Replica replica : replicas) {
+            if (closed) {
+                return;
+            }
+            replica.refreshLag();
+        }
+    }
+
+    /**
+     * Prepares a statement on the calling thread's connection to a server
+     * and tracks it as the thread's running statement.
+     *
+     * @param pool       the pool of the server
+     * @param sql        the SQL statement
+     * @param queryClass the operation class that determines the timeout
+     * @return the prepared statement; the caller must close it
+     * @throws SQLException if the statement cannot be prepared
+     */
+    private PreparedStatement prepare(
+        ConnectionPool pool,
+        String sql,
+        QueryClass queryClass
+    ) throws SQLException {
+        Thread thread = Thread.currentThread();
+        PreparedStatement stmt = pool.lease().prepareStatement(sql);
+        stmt.setQueryTimeout(config.getQueryTimeoutSeconds(queryClass));
+        lastQueryClass.set(queryClass);
+        cancelRequested.remove(thread);
+        running.put(thread, stmt);
+        return stmt;
+    }
+
+    /**
+     * Checks whether an exception means that the connection to the server
+     * was lost or could not be established.
+     *
+     * @param e the exception
+     * @return true for connection failures
+     */
+    private static boolean isConnectionFailure(SQLException e) {
+        String state = e.getSQLState();
+        return (
+            e instanceof SQLRecoverableException ||
+            e instanceof SQLTransientConnectionException ||
+            e instanceof SQLNonTransientConnectionException ||
+            (state != null && state.startsWith("08"))
+        );
+    }
+
+    /**
+     * Waits before a retry, using exponential backoff with full jitter.
+     *
+     * @param attempt the number of the failed attempt, starting at 0
+     * @return true to retry, false if the thread was interrupted
+     */
+    private static boolean backOff(int attempt) {
+        long ceiling = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << attempt);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
         }
     }
@@ -0,0 +1,275 @@
+package main.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash map keyed by primitive {@code int} values.
+ * <p>
+ * This map uses open addressing with linear probing and stores its keys in
+ * a plain {@code int[]}, so lookups never box the key and each entry costs
+ * two array slots instead of a {@code HashMap.Node} plus an {@code Integer}.
+ * Removal uses backward-shift deletion, so no tombstones accumulate.
+ * </p>
+ *
+ * <p>This class is not thread-safe; callers must synchronize access
+ * externally.</p>
+ *
+ * @param <V> the type of mapped values
+ */
+public class IntHashMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private int[] keys;
+    private Object[] values;
+    private boolean[] used;
+    private int size;
+    private int resizeThreshold;
+
+    /**
+     * Constructs a new, empty IntHashMap with the default capacity.
+     */
+    public IntHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new, empty IntHashMap sized for the expected number of entries.
+     *
+     * @param expectedSize the number of entries the map should hold without resizing
+     */
+    public IntHashMap(int expectedSize) {
+        allocate(tableSizeFor((int) (Math.max(expectedSize, 1) / LOAD_FACTOR) + 1));
+    }
+
+    /**
+     * Gets the value mapped to the given key.
+     *
+     * @param key the key to look up
+     * @return the mapped value, or null if the key is not present
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int slot = find(key);
+        return slot < 0 ? null : (V) values[slot];
+    }
+
+    /**
+     * Checks whether the given key is present.
+     *
+     * @param key the key to check
+     * @return true if the key is present, false otherwise
+     */
+    public boolean containsKey(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any previous mapping.
+     *
+     * @param key   the key
+     * @param value the value to associate with the key
+     * @return the previous value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the given key.
+     *
+     * @param key the key to remove
+     * @return the removed value, or null if the key was not present
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        V previous = (V) values[slot];
+        shiftBack(slot);
+        size--;
+        return previous;
+    }
+
+    /**
+     * Gets the number of mappings in this map.
+     *
+     * @return the number of mappings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether this map is empty.
+     *
+     * @return true if the map holds no mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all mappings from this map.
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Gets all keys in ascending order.
+     *
+     * @return a new array holding every key, sorted
+     */
+    public int[] sortedKeys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                result[n++] = keys[i];
+            }
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Gets all values ordered by ascending key.
+     *
+     * @return a new list holding every value, ordered by key
+     */
+    public List<V> valuesByKey() {
+        int[] sorted = sortedKeys();
+        List<V> result = new ArrayList<>(sorted.length);
+        for (int key : sorted) {
+            result.add(get(key));
+        }
+        return result;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Finds the slot holding the given key.
+     *
+     * @param key the key to find
+     * @return the slot index, or -1 if the key is not present
+     */
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Closes the gap left by a removed entry by moving later entries of the
+     * same probe chain back into it.
+     *
+     * @param gap the slot being vacated
+     */
+    private void shiftBack(int gap) {
+        int mask = keys.length - 1;
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            if (!used[slot]) {
+                break;
+            }
+            int home = mix(keys[slot]) & mask;
+            // Move the entry only if its home slot does not lie in (gap, slot]
+            boolean movable = gap <= slot
+                ? home <= gap || home > slot
+                : home <= gap && home > slot;
+            if (movable) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        used[gap] = false;
+        values[gap] = null;
+    }
+
+    /**
+     * Rebuilds the table with the given capacity.
+     *
+     * @param capacity the new table size, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Allocates empty backing arrays of the given capacity.
+     *
+     * @param capacity the table size, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        used = new boolean[capacity];
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Spreads the bits of a key so that sequential keys do not cluster.
+     *
+     * @param key the key to hash
+     * @return the mixed hash
+     */
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Rounds the given size up to the next power of two.
+     *
+     * @param size the requested size
+     * @return the smallest power of two that is at least {@code size}
+     */
+    private static int tableSizeFor(int size) {
+        int n = Integer.highestOneBit(Math.max(size, 2) - 1) << 1;
+        return Math.max(n, 2);
+    }
+}
@@ -0,0 +1,130 @@
+package main.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe, bounded pool of canonical strings with small integer codes.
+ * <p>
+ * Low-cardinality fields such as a patient's state, city and insurer are
+ * repeated across many rows. Passing each value read from storage through
+ * {@link #intern(String)} makes all equal values share one instance, so
+ * large result lists and caches hold each distinct value once. Each
+ * distinct value also gets a dense code from 0, which lets callers group
+ * rows by that field in an array instead of a hash map.
+ * </p>
+ *
+ * <p>The pool never holds more than its capacity. Once it is full, new
+ * values are returned as they are and get no code, so a field with more
+ * distinct values than expected costs no more memory than without the
+ * pool. Unlike {@link StringDictionary}, which is owned by one structure
+ * and unbounded, an interner is shared by every thread that maps rows;
+ * the pools shared by the application are in {@link Interners}.</p>
+ */
+public final class Interner {
+
+    /** Code of null and of values that did not fit in the pool. */
+    public static final int NO_CODE = -1;
+
+    private final String name;
+    private final int capacity;
+    private final ConcurrentHashMap<String, Integer> codes;
+    private final AtomicReferenceArray<String> values;
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Constructs a new, empty Interner.
+     *
+     * @param name     the name of the pool, used in metric names
+     * @param capacity the maximum number of distinct values
+     */
+    public Interner(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+        this.codes = new ConcurrentHashMap<>();
+        this.values = new AtomicReferenceArray<>(capacity);
+        Metrics.gauge("intern." + name + ".size", this::size);
+    }
+
+    /**
+     * Gets the canonical instance of a value, adding the value to the pool
+     * if it is new and the pool is not full.
+     *
+     * @param value the value, or null
+     * @return the canonical instance, or the value itself if it has no code
+     */
+    public String intern(String value) {
+        int code = code(value);
+        return code == NO_CODE ? value : values.get(code);
+    }
+
+    /**
+     * Gets the code of a value, adding the value to the pool if it is new
+     * and the pool is not full.
+     *
+     * @param value the value, or null
+     * @return the code, or {@link #NO_CODE} for null or if the pool is full
+     */
+    public int code(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = codes.computeIfAbsent(value, this::assign);
+            if (code == null) {
+                Metrics.counter("intern." + name + ".overflow").increment();
+                return NO_CODE;
+            }
+        }
+        return code;
+    }
+
+    /**
+     * Gets the canonical value of a code.
+     *
+     * @param code the code
+     * @return the value, or null for {@link #NO_CODE}
+     */
+    public String decode(int code) {
+        return code == NO_CODE ? null : values.get(code);
+    }
+
+    /**
+     * Gets the number of distinct values in the pool, which is also the
+     * upper bound of the codes handed out.
+     *
+     * @return the number of values
+     */
+    public int size() {
+        return Math.min(next.get(), capacity);
+    }
+
+    /**
+     * Gets the maximum number of distinct values.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Assigns the next free code to a new value. Runs inside
+     * {@link ConcurrentHashMap#computeIfAbsent}, once per value.
+     *
+     * @param value the new value
+     * @return the code, or null if the pool is full
+     */
+    private Integer assign(String value) {
+        int code = next.getAndUpdate(n -> n < capacity ? n + 1 : n);
+        if (code >= capacity) {
+            return null;
+        }
+        values.set(code, value);
+        return code;
+    }
+}
@@ -0,0 +1,26 @@
+package main.util;
+
+/**
+ * The {@link Interner} pools shared by the mapping code of every storage
+ * backend and by the caches.
+ * <p>
+ * Capacities are generous for the data they hold; values beyond them are
+ * simply not interned.
+ * </p>
+ */
+public final class Interners {
+
+    /** Patient states of residence. */
+    public static final Interner STATES = new Interner("state", 1 << 10);
+
+    /** Patient cities of residence. */
+    public static final Interner CITIES = new Interner("city", 1 << 16);
+
+    /** Patient insurance providers. */
+    public static final Interner INSURERS = new Interner("insurance", 1 << 12);
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Interners() {}
+}
@@ -0,0 +1,67 @@
+package main.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Process-wide registry of named counters and gauges.
+ * <p>
+ * Counters are {@link LongAdder}s, so hot paths can increment them from
+ * many threads without contention. Gauges are computed on demand when the
+ * metrics are read, which suits derived values such as ratios.
+ * </p>
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * LongAdder skipped = Metrics.counter("bloom.patients.skipped");
+ * skipped.increment();
+ * Metrics.snapshot().forEach((name, value) -> System.out.println(name + " = " + value));
+ * }</pre>
+ */
+public final class Metrics {
+
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Metrics() {}
+
+    /**
+     * Gets the counter with the given name, creating it on first use.
+     *
+     * @param name the metric name
+     * @return the counter
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Registers a gauge computed whenever the metrics are read, replacing
+     * any gauge of the same name.
+     *
+     * @param name  the metric name
+     * @param gauge the function computing the current value
+     */
+    public static void gauge(String name, DoubleSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Gets the current value of every counter and gauge.
+     *
+     * @return the metric values by name, sorted by name
+     */
+    public static Map<String, Number> snapshot() {
+        Map<String, Number> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsDouble()));
+        return Collections.unmodifiableMap(values);
+    }
+}
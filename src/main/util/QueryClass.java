@@ -0,0 +1,82 @@
+package main.util;
+
+/**
+ * Classes of database operations that share a query timeout.
+ * <p>
+ * Every statement run through
+ * {@link Database#execute(String, QueryClass, Database.StatementCall)} is
+ * tagged with one of these classes, and its timeout is taken from
+ * {@link main.config.DatabaseConfig#getQueryTimeoutSeconds(QueryClass)}.
+ * </p>
+ */
+public enum QueryClass {
+    /** Lookup of a single row by primary key. */
+    POINT_READ("EMR_QUERY_TIMEOUT_POINT_READ", 5, true),
+
+    /** Read of many rows, such as a full listing. */
+    SCAN("EMR_QUERY_TIMEOUT_SCAN", 30, true),
+
+    /** Insert, update or delete. */
+    WRITE("EMR_QUERY_TIMEOUT_WRITE", 10, false),
+
+    /** Long-running bulk read used for reports and maintenance. */
+    REPORT("EMR_QUERY_TIMEOUT_REPORT", 120, true);
+
+    private final String envVariable;
+    private final int defaultTimeoutSeconds;
+    private final boolean idempotent;
+
+    /**
+     * Constructs a query class.
+     *
+     * @param envVariable           the environment variable overriding the timeout
+     * @param defaultTimeoutSeconds the default timeout in seconds
+     * @param idempotent            whether statements of this class may be retried
+     */
+    QueryClass(String envVariable, int defaultTimeoutSeconds, boolean idempotent) {
+        this.envVariable = envVariable;
+        this.defaultTimeoutSeconds = defaultTimeoutSeconds;
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * Gets the environment variable that overrides the timeout of this class.
+     *
+     * @return the environment variable name
+     */
+    public String getEnvVariable() {
+        return envVariable;
+    }
+
+    /**
+     * Gets the default timeout of this class.
+     *
+     * @return the timeout in seconds
+     */
+    public int getDefaultTimeoutSeconds() {
+        return defaultTimeoutSeconds;
+    }
+
+    /**
+     * Checks whether statements of this class can safely run twice.
+     * <p>
+     * Reads are idempotent and are retried after a lost connection. Writes
+     * are not retried: the server may have applied a write whose response
+     * was lost, and repeating it could fail or apply it twice.
+     * </p>
+     *
+     * @return true if statements of this class may be retried
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+
+    /**
+     * Gets the name used for this class in metric names.
+     *
+     * @return the lower-case name, e.g. {@code point_read}
+     */
+    public String metricName() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,173 @@
+package main.util;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+
+/**
+ * A read replica and its last measured replication lag.
+ * <p>
+ * The lag is read from {@code SHOW REPLICA STATUS} (or
+ * {@code SHOW SLAVE STATUS} on servers older than MySQL 8.0.22) over a
+ * connection of its own, which needs the {@code REPLICATION CLIENT}
+ * privilege. A server that is not replicating from anywhere reports no
+ * status row and is treated as having no lag, so a second standalone
+ * MySQL can stand in for a replica in development. A replica whose
+ * replication is stopped or whose lag cannot be read is not used.
+ * </p>
+ *
+ * <p>The lag is reported as the {@code <name>.lag_seconds} gauge in
+ * {@link Metrics} (-1 while unknown).</p>
+ */
+final class Replica {
+
+    /** Lag value while the lag is unknown. */
+    private static final long UNKNOWN_LAG = -1;
+
+    /**
+     * Granularity of {@code Seconds_Behind_Source}; a replica reporting a
+     * lag of N seconds may be up to N + 1 seconds behind.
+     */
+    private static final long LAG_RESOLUTION_MS = 1_000;
+
+    private final ConnectionPool pool;
+    private Connection monitorConnection;
+    private boolean legacyStatusCommand;
+    private volatile long lagSeconds = UNKNOWN_LAG;
+    private volatile long measuredAt;
+
+    /**
+     * Constructs a new Replica whose lag is not yet known.
+     *
+     * @param pool the connection pool of the replica
+     */
+    Replica(ConnectionPool pool) {
+        this.pool = pool;
+        Metrics.gauge(pool.getName() + ".lag_seconds", () -> lagSeconds);
+    }
+
+    /**
+     * Gets the connection pool of this replica.
+     *
+     * @return the connection pool
+     */
+    ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Checks whether this replica may serve a read.
+     *
+     * @param maxLagSeconds the largest acceptable replication lag
+     * @param maxAgeMs      the age after which a lag measurement is too old to trust
+     * @param lastWriteAt   the commit time of the last write of the reading
+     *                      thread; the replica must already have applied it
+     * @return true if the replica is known to be recent enough
+     */
+    boolean isUsable(long maxLagSeconds, long maxAgeMs, long lastWriteAt) {
+        long lag = lagSeconds;
+        long at = measuredAt;
+        if (lag == UNKNOWN_LAG || lag > maxLagSeconds) {
+            return false;
+        }
+        if (System.currentTimeMillis() - at > maxAgeMs) {
+            return false;
+        }
+        // Everything committed before this point had reached the replica
+        long appliedUpTo = at - lag * 1000 - LAG_RESOLUTION_MS;
+        return appliedUpTo >= lastWriteAt;
+    }
+
+    /**
+     * Measures the replication lag. Failures mark the lag as unknown.
+     * <p>
+     * Only the monitor thread of {@link Database} calls this method.
+     * </p>
+     */
+    void refreshLag() {
+        try {
+            if (monitorConnection == null || monitorConnection.isClosed()) {
+                monitorConnection = pool.connectUnpooled();
+            }
+            long startedAt = System.currentTimeMillis();
+            lagSeconds = readLag();
+            measuredAt = startedAt;
+        } catch (SQLException e) {
+            if (lagSeconds != UNKNOWN_LAG) {
+                System.out.println(
+                    "[WARN] Cannot read the lag of " + pool.getName() +
+                        ", not using it: " + e.getMessage()
+                );
+            }
+            lagSeconds = UNKNOWN_LAG;
+            closeMonitorConnection();
+        }
+    }
+
+    /**
+     * Closes the connection used to measure the lag.
+     */
+    void closeMonitorConnection() {
+        if (monitorConnection != null) {
+            try {
+                monitorConnection.close();
+            } catch (SQLException e) {
+                // Nothing left to release
+            }
+            monitorConnection = null;
+        }
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Reads the replication lag from the replica status.
+     *
+     * @return the lag in seconds, 0 if the server is not a replica, or
+     *         {@link #UNKNOWN_LAG} if replication is not running
+     * @throws SQLException if the status cannot be read
+     */
+    private long readLag() throws SQLException {
+        try (Statement stmt = monitorConnection.createStatement()) {
+            if (!legacyStatusCommand) {
+                try (ResultSet resultSet = stmt.executeQuery("SHOW REPLICA STATUS")) {
+                    return lagFrom(resultSet);
+                } catch (SQLSyntaxErrorException e) {
+                    legacyStatusCommand = true;
+                }
+            }
+            try (ResultSet resultSet = stmt.executeQuery("SHOW SLAVE STATUS")) {
+                return lagFrom(resultSet);
+            }
+        }
+    }
+
+    /**
+     * Extracts the lag from a replica status result.
+     *
+     * @param resultSet the result of the status command
+     * @return the lag in seconds, 0 if there is no status row, or
+     *         {@link #UNKNOWN_LAG} if replication is not running
+     * @throws SQLException if the result cannot be read
+     */
+    private static long lagFrom(ResultSet resultSet) throws SQLException {
+        if (!resultSet.next()) {
+            return 0;
+        }
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String column = metaData.getColumnLabel(i);
+            if (
+                column.equalsIgnoreCase("Seconds_Behind_Source") ||
+                column.equalsIgnoreCase("Seconds_Behind_Master")
+            ) {
+                long lag = resultSet.getLong(i);
+                return resultSet.wasNull() ? UNKNOWN_LAG : lag;
+            }
+        }
+        return UNKNOWN_LAG;
+    }
+}
@@ -0,0 +1,80 @@
+package main.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary that encodes strings as small, dense {@code int} codes.
+ * <p>
+ * Each distinct string is stored once and assigned the next free code,
+ * starting at 0, so columns of repeated values such as foreign keys can be
+ * kept in an {@code int[]} and aggregated into arrays indexed by code.
+ * Codes are never reused; a dictionary grows with the number of distinct
+ * values it has seen, not with the number of rows referring to them.
+ * </p>
+ *
+ * <p>This class is not thread-safe; callers must synchronize access
+ * externally.</p>
+ */
+public class StringDictionary {
+
+    /** Code returned for values that are not in the dictionary. */
+    public static final int NO_CODE = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private String[] values = new String[16];
+
+    /**
+     * Gets the code of a value, adding the value if it is new.
+     *
+     * @param value the value to encode, or null
+     * @return the code of the value, or {@link #NO_CODE} for null
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        int next = codes.size();
+        if (next == values.length) {
+            values = Arrays.copyOf(values, next * 2);
+        }
+        values[next] = value;
+        codes.put(value, next);
+        return next;
+    }
+
+    /**
+     * Gets the code of a value without adding it.
+     *
+     * @param value the value to look up, or null
+     * @return the code of the value, or {@link #NO_CODE} if it is not present
+     */
+    public int code(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NO_CODE : code;
+    }
+
+    /**
+     * Gets the value of a code.
+     *
+     * @param code the code to decode
+     * @return the value, or null for {@link #NO_CODE}
+     */
+    public String decode(int code) {
+        return code == NO_CODE ? null : values[code];
+    }
+
+    /**
+     * Gets the number of distinct values, which is also the next free code.
+     *
+     * @return the number of values in the dictionary
+     */
+    public int size() {
+        return codes.size();
+    }
+}
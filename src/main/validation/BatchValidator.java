@@ -0,0 +1,267 @@
+package main.validation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.Spliterator;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import main.util.Metrics;
+
+/**
+ * Checks large batches of records against the validation rules on all
+ * cores before they are written.
+ * <p>
+ * The records are split with their {@link Spliterator} into chunks that
+ * are checked in parallel on a {@link ForkJoinPool}. Each record is checked
+ * with a non-throwing {@code violations} method of a validator, so every
+ * invalid field of every record is reported and no exception is created
+ * for bad rows. The result lists the violations by the position of the
+ * record in the batch and the valid records in their original order.
+ * Checked and rejected records are counted in the
+ * {@code validation.checked} and {@code validation.rejected} metrics.
+ * </p>
+ *
+ * <p>Usage example:</p>
+ * <pre>{@code
+ * BatchValidator<Patient> validator = new BatchValidator<>(PatientValidator::violations);
+ * BatchValidator.Report<Patient> report = validator.validate(patients);
+ * report.getViolations().forEach((row, problems) -> System.out.println(row + ": " + problems));
+ * }</pre>
+ *
+ * @param <T> the type of the records
+ */
+public final class BatchValidator<T> {
+
+    /** Batches smaller than this are checked on the calling thread. */
+    private static final int MIN_PARALLEL_SIZE = 4096;
+
+    /** The smallest chunk a task checks without splitting further. */
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    /** Chunks per worker thread, so that fast workers can take more. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final Function<? super T, List<Violation>> rules;
+    private final ForkJoinPool pool;
+
+    /**
+     * The outcome of checking a batch.
+     *
+     * @param <T> the type of the records
+     */
+    public static final class Report<T> {
+        private final int checked;
+        private final List<T> valid;
+        private final SortedMap<Integer, List<Violation>> violations;
+
+        /**
+         * Constructs a new Report.
+         *
+         * @param checked    the number of records checked
+         * @param valid      the valid records in batch order
+         * @param violations the violations by the position of the record
+         */
+        private Report(int checked, List<T> valid, SortedMap<Integer, List<Violation>> violations) {
+            this.checked = checked;
+            this.valid = valid;
+            this.violations = violations;
+        }
+
+        /**
+         * Checks whether every record of the batch is valid.
+         *
+         * @return true if no rule was broken
+         */
+        public boolean isValid() {
+            return violations.isEmpty();
+        }
+
+        /**
+         * Gets the number of records checked.
+         *
+         * @return the batch size
+         */
+        public int getCheckedCount() {
+            return checked;
+        }
+
+        /**
+         * Gets the number of invalid records.
+         *
+         * @return the number of records with at least one violation
+         */
+        public int getInvalidCount() {
+            return violations.size();
+        }
+
+        /**
+         * Gets the records that broke no rule.
+         *
+         * @return the valid records, in batch order
+         */
+        public List<T> getValidRecords() {
+            return Collections.unmodifiableList(valid);
+        }
+
+        /**
+         * Gets the violations of the invalid records.
+         *
+         * @return the violations keyed by the zero-based position of the
+         *         record in the batch, in position order
+         */
+        public SortedMap<Integer, List<Violation>> getViolations() {
+            return Collections.unmodifiableSortedMap(violations);
+        }
+
+        /**
+         * Returns a string representation of this report.
+         *
+         * @return the number of checked and invalid records
+         */
+        @Override
+        public String toString() {
+            return "Checked " + checked + " record(s), " + violations.size() + " invalid";
+        }
+    }
+
+    /**
+     * Constructs a new BatchValidator that runs on the common fork-join pool.
+     *
+     * @param rules the non-throwing check of one record, such as
+     *              {@link PatientValidator#violations}
+     */
+    public BatchValidator(Function<? super T, List<Violation>> rules) {
+        this(rules, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new BatchValidator that runs on the given pool.
+     *
+     * @param rules the non-throwing check of one record
+     * @param pool  the pool the chunks are checked on
+     */
+    public BatchValidator(Function<? super T, List<Violation>> rules, ForkJoinPool pool) {
+        this.rules = rules;
+        this.pool = pool;
+    }
+
+    /**
+     * Checks every record of a batch.
+     *
+     * @param records the records to check
+     * @return the valid records and the violations of the others
+     * @throws RuntimeException if a check fails for a reason other than
+     *                          invalid data, such as a null record
+     */
+    public Report<T> validate(Collection<? extends T> records) {
+        Spliterator<? extends T> spliterator = records.spliterator();
+        if (!spliterator.hasCharacteristics(Spliterator.SUBSIZED)) {
+            // Chunk positions are only known if every split reports its exact size
+            spliterator = new ArrayList<T>(records).spliterator();
+        }
+        int size = (int) spliterator.getExactSizeIfKnown();
+        List<?>[] found = new List<?>[size];
+        Chunk chunk = new Chunk(spliterator, 0, found, chunkSize(size));
+        if (size < MIN_PARALLEL_SIZE) {
+            chunk.compute();
+        } else {
+            pool.invoke(chunk);
+        }
+        return report(records, found);
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Chooses how many records a task checks without splitting further.
+     *
+     * @param size the batch size
+     * @return the chunk size
+     */
+    private int chunkSize(int size) {
+        return Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * CHUNKS_PER_THREAD));
+    }
+
+    /**
+     * Builds the report from the violations found at each position.
+     *
+     * @param records the checked records
+     * @param found   the violations of each record, empty for valid ones
+     * @return the report
+     */
+    private Report<T> report(Collection<? extends T> records, List<?>[] found) {
+        List<T> valid = new ArrayList<>(found.length);
+        SortedMap<Integer, List<Violation>> violations = new TreeMap<>();
+        int position = 0;
+        for (T record : records) {
+            if (found[position].isEmpty()) {
+                valid.add(record);
+            } else {
+                @SuppressWarnings("unchecked")
+                List<Violation> recordViolations = (List<Violation>) found[position];
+                violations.put(position, recordViolations);
+            }
+            position++;
+        }
+        Metrics.counter("validation.checked").add(found.length);
+        Metrics.counter("validation.rejected").add(violations.size());
+        return new Report<>(found.length, valid, violations);
+    }
+
+    /**
+     * Checks one part of a batch, splitting off halves for other workers
+     * while the part is larger than the chunk size.
+     */
+    private final class Chunk extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Spliterator<? extends T> records;
+        private final int offset;
+        private final transient List<?>[] found;
+        private final int chunkSize;
+
+        /**
+         * Constructs a new Chunk.
+         *
+         * @param records   the records of this part
+         * @param offset    the position of the first record in the batch
+         * @param found     where the violations of each position are stored
+         * @param chunkSize the size below which the part is not split
+         */
+        Chunk(Spliterator<? extends T> records, int offset, List<?>[] found, int chunkSize) {
+            this.records = records;
+            this.offset = offset;
+            this.found = found;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * Splits off the front of the part for other workers until the
+         * rest is small, checks the rest and waits for the split parts.
+         */
+        @Override
+        protected void compute() {
+            List<Chunk> forked = new ArrayList<>();
+            int start = offset;
+            Spliterator<? extends T> front;
+            while (records.estimateSize() > chunkSize && (front = records.trySplit()) != null) {
+                Chunk chunk = new Chunk(front, start, found, chunkSize);
+                // Sized before forking, since a worker may consume it at once
+                start += (int) front.getExactSizeIfKnown();
+                chunk.fork();
+                forked.add(chunk);
+            }
+            int[] position = {start};
+            records.forEachRemaining(record -> found[position[0]++] = rules.apply(record));
+            for (Chunk chunk : forked) {
+                chunk.join();
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package main.validation;
 
+import java.util.List;
 import main.exception.ValidationException;
+import main.model.Doctor;
 
 /**
  * Validator class for Doctor entities.
@@ -33,6 +35,20 @@ public class DoctorValidator {
         validateName(name);
     }
 
+    /**
+     * Checks all fields of a doctor without throwing.
+     *
+     * @param doctor the doctor to check
+     * @return the violations in field order, empty if the doctor is valid
+     * @see #validate
+     */
+    public static List<Violation> violations(Doctor doctor) {
+        List<Violation> violations = null;
+        violations = Violation.add(violations, checkId(doctor.getId()));
+        violations = Violation.add(violations, checkName(doctor.getName()));
+        return Violation.collected(violations);
+    }
+
     /**
      * Validates a doctor ID.
      *
@@ -40,34 +56,58 @@ public class DoctorValidator {
      * @throws ValidationException if the ID is invalid
      */
     public static void validateId(String id) throws ValidationException {
+        Violation.raise(checkId(id));
+    }
+
+    /**
+     * Validates a doctor name.
+     *
+     * @param name the doctor name to validate
+     * @throws ValidationException if the name is invalid
+     */
+    public static void validateName(String name) throws ValidationException {
+        Violation.raise(checkName(name));
+    }
+
+    // ========== Rules ==========
+
+    /**
+     * Checks a doctor ID.
+     *
+     * @param id the doctor ID to check
+     * @return the violation, or null if the ID is valid
+     */
+    private static Violation checkId(String id) {
         if (id == null || id.trim().isEmpty()) {
-            throw new ValidationException("id", "Doctor ID is required");
+            return new Violation("id", "Doctor ID is required");
         }
 
         if (id.length() > MAX_ID_LENGTH) {
-            throw new ValidationException(
+            return new Violation(
                 "id",
                 "Doctor ID must not exceed " + MAX_ID_LENGTH + " characters"
             );
         }
+        return null;
     }
 
     /**
-     * Validates a doctor name.
+     * Checks a doctor name.
      *
-     * @param name the doctor name to validate
-     * @throws ValidationException if the name is invalid
+     * @param name the doctor name to check
+     * @return the violation, or null if the name is valid
      */
-    public static void validateName(String name) throws ValidationException {
+    private static Violation checkName(String name) {
         if (name == null || name.trim().isEmpty()) {
-            throw new ValidationException("name", "Doctor name is required");
+            return new Violation("name", "Doctor name is required");
         }
 
         if (name.length() > MAX_NAME_LENGTH) {
-            throw new ValidationException(
+            return new Violation(
                 "name",
                 "Doctor name must not exceed " + MAX_NAME_LENGTH + " characters"
             );
         }
+        return null;
     }
 }
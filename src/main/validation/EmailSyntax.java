@@ -0,0 +1,110 @@
+package main.validation;
+
+/**
+ * Checks the syntax of email addresses with a hand-written state machine.
+ * <p>
+ * Accepts exactly the strings matched in full by the regular expression
+ * {@code ^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$}: one or more local part
+ * characters, a single {@code @}, and one or more domain characters. Each
+ * character is looked at once and classified with a bit mask, so a check
+ * takes linear time, never backtracks and allocates nothing; it is several
+ * times faster than the equivalent {@link java.util.regex.Pattern}.
+ * </p>
+ */
+final class EmailSyntax {
+
+    /** Characters allowed in the domain, as bits of the ASCII code. */
+    private static final long DOMAIN_LOW;
+    private static final long DOMAIN_HIGH;
+
+    /** Characters allowed in the local part, as bits of the ASCII code. */
+    private static final long LOCAL_LOW;
+    private static final long LOCAL_HIGH;
+
+    static {
+        long low = 0;
+        long high = 0;
+        String domain =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789.-";
+        for (int i = 0; i < domain.length(); i++) {
+            char c = domain.charAt(i);
+            if (c < 64) {
+                low |= 1L << c;
+            } else {
+                high |= 1L << (c - 64);
+            }
+        }
+        DOMAIN_LOW = low;
+        DOMAIN_HIGH = high;
+        LOCAL_LOW = low | 1L << '+';
+        LOCAL_HIGH = high | 1L << ('_' - 64);
+    }
+
+    /** Before the first character of the local part. */
+    private static final int LOCAL_START = 0;
+
+    /** In the local part, after at least one character. */
+    private static final int LOCAL = 1;
+
+    /** Right after the {@code @}. */
+    private static final int DOMAIN_START = 2;
+
+    /** In the domain, after at least one character. */
+    private static final int DOMAIN = 3;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private EmailSyntax() {}
+
+    /**
+     * Checks whether a string is a syntactically valid email address.
+     *
+     * @param email the string to check
+     * @return true if the whole string is a valid address
+     */
+    static boolean isValid(CharSequence email) {
+        int state = LOCAL_START;
+        for (int i = 0, length = email.length(); i < length; i++) {
+            char c = email.charAt(i);
+            switch (state) {
+                case LOCAL_START:
+                    if (!isIn(c, LOCAL_LOW, LOCAL_HIGH)) {
+                        return false;
+                    }
+                    state = LOCAL;
+                    break;
+                case LOCAL:
+                    if (c == '@') {
+                        state = DOMAIN_START;
+                    } else if (!isIn(c, LOCAL_LOW, LOCAL_HIGH)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (!isIn(c, DOMAIN_LOW, DOMAIN_HIGH)) {
+                        return false;
+                    }
+                    state = DOMAIN;
+            }
+        }
+        return state == DOMAIN;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Checks whether a character belongs to a set of ASCII characters.
+     *
+     * @param c    the character
+     * @param low  the set's characters 0 to 63, as bits
+     * @param high the set's characters 64 to 127, as bits
+     * @return true if the character is in the set
+     */
+    private static boolean isIn(char c, long low, long high) {
+        if (c < 64) {
+            return (low & 1L << c) != 0;
+        }
+        return c < 128 && (high & 1L << (c - 64)) != 0;
+    }
+}
@@ -1,7 +1,9 @@
 package main.validation;
 
 import java.time.LocalDate;
+import java.util.List;
 import main.exception.ValidationException;
+import main.model.PatientHistory;
 
 /**
  * Validator for PatientHistory entities.
@@ -47,6 +49,43 @@ public class PatientHistoryValidator {
         validateDoctorId(doctorId);
     }
 
+    /**
+     * Checks all fields of a patient history record without throwing.
+     * <p>
+     * Applies the same rules as {@link #validateForCreate}, but reports
+     * every invalid field instead of only the first one.
+     * </p>
+     *
+     * @param patientHistory the record to check
+     * @return the violations in field order, empty if the record is valid
+     */
+    public static List<Violation> violations(PatientHistory patientHistory) {
+        return violations(patientHistory, LocalDate.now());
+    }
+
+    /**
+     * Checks all fields of a patient history record without throwing,
+     * against a given current date.
+     * <p>
+     * Batches take the date once and check every record against it, so
+     * that a valid record is checked without allocating.
+     * </p>
+     *
+     * @param patientHistory the record to check
+     * @param today          the current date, which the date must not follow
+     * @return the violations in field order, empty if the record is valid
+     */
+    public static List<Violation> violations(PatientHistory patientHistory, LocalDate today) {
+        List<Violation> violations = null;
+        violations = Violation.add(violations, checkId(patientHistory.getId()));
+        violations = Violation.add(violations, checkPatientId(patientHistory.getPatientId()));
+        violations = Violation.add(violations, checkProcedureId(patientHistory.getProcedureId()));
+        violations = Violation.add(violations, checkDate(patientHistory.getDate(), today));
+        violations = Violation.add(violations, checkBilling(patientHistory.getBilling()));
+        violations = Violation.add(violations, checkDoctorId(patientHistory.getDoctorId()));
+        return Violation.collected(violations);
+    }
+
     /**
      * Validates the patient history ID.
      *
@@ -54,110 +93,167 @@ public class PatientHistoryValidator {
      * @throws ValidationException if the ID is invalid
      */
     public static void validateId(String id) throws ValidationException {
+        Violation.raise(checkId(id));
+    }
+
+    /**
+     * Validates the patient ID.
+     *
+     * @param patientId the patient ID to validate
+     * @throws ValidationException if the patient ID is invalid
+     */
+    public static void validatePatientId(int patientId)
+        throws ValidationException {
+        Violation.raise(checkPatientId(patientId));
+    }
+
+    /**
+     * Validates the procedure ID.
+     *
+     * @param procedureId the procedure ID to validate
+     * @throws ValidationException if the procedure ID is invalid
+     */
+    public static void validateProcedureId(String procedureId)
+        throws ValidationException {
+        Violation.raise(checkProcedureId(procedureId));
+    }
+
+    /**
+     * Validates the date.
+     *
+     * @param date the date to validate
+     * @throws ValidationException if the date is invalid
+     */
+    public static void validateDate(LocalDate date) throws ValidationException {
+        Violation.raise(checkDate(date, LocalDate.now()));
+    }
+
+    /**
+     * Validates the billing amount.
+     *
+     * @param billing the billing amount to validate
+     * @throws ValidationException if the billing amount is invalid
+     */
+    public static void validateBilling(double billing)
+        throws ValidationException {
+        Violation.raise(checkBilling(billing));
+    }
+
+    /**
+     * Validates the doctor ID.
+     *
+     * @param doctorId the doctor ID to validate
+     * @throws ValidationException if the doctor ID is invalid
+     */
+    public static void validateDoctorId(String doctorId)
+        throws ValidationException {
+        Violation.raise(checkDoctorId(doctorId));
+    }
+
+    // ========== Rules ==========
+
+    /**
+     * Checks the patient history ID.
+     *
+     * @param id the ID to check
+     * @return the violation, or null if the ID is valid
+     */
+    private static Violation checkId(String id) {
         if (id == null || id.trim().isEmpty()) {
-            throw new ValidationException(
-                "id",
-                "Patient history ID is required"
-            );
+            return new Violation("id", "Patient history ID is required");
         }
         if (id.length() > MAX_ID_LENGTH) {
-            throw new ValidationException(
+            return new Violation(
                 "id",
                 "Patient history ID cannot exceed " +
                     MAX_ID_LENGTH +
                     " characters"
             );
         }
+        return null;
     }
 
     /**
-     * Validates the patient ID.
+     * Checks the patient ID.
      *
-     * @param patientId the patient ID to validate
-     * @throws ValidationException if the patient ID is invalid
+     * @param patientId the patient ID to check
+     * @return the violation, or null if the patient ID is valid
      */
-    public static void validatePatientId(int patientId)
-        throws ValidationException {
+    private static Violation checkPatientId(int patientId) {
         if (patientId <= 0) {
-            throw new ValidationException(
+            return new Violation(
                 "patientId",
                 "Patient ID must be a positive number"
             );
         }
+        return null;
     }
 
     /**
-     * Validates the procedure ID.
+     * Checks the procedure ID.
      *
-     * @param procedureId the procedure ID to validate
-     * @throws ValidationException if the procedure ID is invalid
+     * @param procedureId the procedure ID to check
+     * @return the violation, or null if the procedure ID is valid
      */
-    public static void validateProcedureId(String procedureId)
-        throws ValidationException {
+    private static Violation checkProcedureId(String procedureId) {
         if (procedureId == null || procedureId.trim().isEmpty()) {
-            throw new ValidationException(
-                "procedureId",
-                "Procedure ID is required"
-            );
+            return new Violation("procedureId", "Procedure ID is required");
         }
         if (procedureId.length() > MAX_ID_LENGTH) {
-            throw new ValidationException(
+            return new Violation(
                 "procedureId",
                 "Procedure ID cannot exceed " + MAX_ID_LENGTH + " characters"
             );
         }
+        return null;
     }
 
     /**
-     * Validates the date.
+     * Checks the date.
      *
-     * @param date the date to validate
-     * @throws ValidationException if the date is invalid
+     * @param date  the date to check
+     * @param today the current date
+     * @return the violation, or null if the date is valid
      */
-    public static void validateDate(LocalDate date) throws ValidationException {
+    private static Violation checkDate(LocalDate date, LocalDate today) {
         if (date == null) {
-            throw new ValidationException("date", "Date is required");
+            return new Violation("date", "Date is required");
         }
-        if (date.isAfter(LocalDate.now())) {
-            throw new ValidationException(
-                "date",
-                "Date cannot be in the future"
-            );
+        if (date.isAfter(today)) {
+            return new Violation("date", "Date cannot be in the future");
         }
+        return null;
     }
 
     /**
-     * Validates the billing amount.
+     * Checks the billing amount.
      *
-     * @param billing the billing amount to validate
-     * @throws ValidationException if the billing amount is invalid
+     * @param billing the billing amount to check
+     * @return the violation, or null if the billing amount is valid
      */
-    public static void validateBilling(double billing)
-        throws ValidationException {
+    private static Violation checkBilling(double billing) {
         if (billing < 0) {
-            throw new ValidationException(
-                "billing",
-                "Billing amount cannot be negative"
-            );
+            return new Violation("billing", "Billing amount cannot be negative");
         }
+        return null;
     }
 
     /**
-     * Validates the doctor ID.
+     * Checks the doctor ID.
      *
-     * @param doctorId the doctor ID to validate
-     * @throws ValidationException if the doctor ID is invalid
+     * @param doctorId the doctor ID to check
+     * @return the violation, or null if the doctor ID is valid
      */
-    public static void validateDoctorId(String doctorId)
-        throws ValidationException {
+    private static Violation checkDoctorId(String doctorId) {
         if (doctorId == null || doctorId.trim().isEmpty()) {
-            throw new ValidationException("doctorId", "Doctor ID is required");
+            return new Violation("doctorId", "Doctor ID is required");
         }
         if (doctorId.length() > MAX_ID_LENGTH) {
-            throw new ValidationException(
+            return new Violation(
                 "doctorId",
                 "Doctor ID cannot exceed " + MAX_ID_LENGTH + " characters"
             );
         }
+        return null;
     }
 }
@@ -1,8 +1,9 @@
 package main.validation;
 
 import java.time.LocalDate;
-import java.util.regex.Pattern;
+import java.util.List;
 import main.exception.ValidationException;
+import main.model.Patient;
 
 /**
  * Validator for Patient entity data.
@@ -14,9 +15,8 @@ import main.exception.ValidationException;
  */
 public class PatientValidator {
 
-    private static final Pattern EMAIL_PATTERN = Pattern.compile(
-        "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+$"
-    );
+    /** The earliest accepted date of birth. */
+    private static final LocalDate MIN_DOB = LocalDate.of(1900, 1, 1);
 
     /**
      * Private constructor to prevent instantiation.
@@ -62,6 +62,47 @@ public class PatientValidator {
         validateEmail(email);
     }
 
+    /**
+     * Checks all fields of a patient without throwing.
+     * <p>
+     * Applies the same rules as {@link #validate}, but reports every
+     * invalid field instead of only the first one.
+     * </p>
+     *
+     * @param patient the patient to check
+     * @return the violations in field order, empty if the patient is valid
+     */
+    public static List<Violation> violations(Patient patient) {
+        return violations(patient, LocalDate.now());
+    }
+
+    /**
+     * Checks all fields of a patient without throwing, against a given
+     * current date.
+     * <p>
+     * Batches take the date once and check every patient against it, so
+     * that a valid patient is checked without allocating.
+     * </p>
+     *
+     * @param patient the patient to check
+     * @param today   the current date, which the date of birth must not follow
+     * @return the violations in field order, empty if the patient is valid
+     */
+    public static List<Violation> violations(Patient patient, LocalDate today) {
+        List<Violation> violations = null;
+        violations = Violation.add(violations, checkMrn(patient.getMrn()));
+        violations = Violation.add(violations, checkName(patient.getFname(), "First name"));
+        violations = Violation.add(violations, checkName(patient.getLname(), "Last name"));
+        violations = Violation.add(violations, checkDob(patient.getDob(), today));
+        violations = Violation.add(violations, checkRequired(patient.getAddress(), "Address"));
+        violations = Violation.add(violations, checkRequired(patient.getCity(), "City"));
+        violations = Violation.add(violations, checkState(patient.getState()));
+        violations = Violation.add(violations, checkZip(patient.getZip()));
+        violations = Violation.add(violations, checkRequired(patient.getInsurance(), "Insurance"));
+        violations = Violation.add(violations, checkEmail(patient.getEmail()));
+        return Violation.collected(violations);
+    }
+
     /**
      * Validates the Medical Record Number (MRN).
      *
@@ -69,12 +110,7 @@ public class PatientValidator {
      * @throws ValidationException if the MRN is invalid
      */
     public static void validateMrn(int mrn) throws ValidationException {
-        if (mrn <= 0) {
-            throw new ValidationException(
-                "MRN",
-                "MRN must be a positive number"
-            );
-        }
+        Violation.raise(checkMrn(mrn));
     }
 
     /**
@@ -86,18 +122,7 @@ public class PatientValidator {
      */
     public static void validateName(String name, String fieldName)
         throws ValidationException {
-        if (name == null || name.trim().isEmpty()) {
-            throw new ValidationException(
-                fieldName,
-                fieldName + " is required"
-            );
-        }
-        if (name.length() > 100) {
-            throw new ValidationException(
-                fieldName,
-                fieldName + " must be 100 characters or less"
-            );
-        }
+        Violation.raise(checkName(name, fieldName));
     }
 
     /**
@@ -107,21 +132,7 @@ public class PatientValidator {
      * @throws ValidationException if the date of birth is invalid
      */
     public static void validateDob(LocalDate dob) throws ValidationException {
-        if (dob == null) {
-            throw new ValidationException("DOB", "Date of birth is required");
-        }
-        if (dob.isAfter(LocalDate.now())) {
-            throw new ValidationException(
-                "DOB",
-                "Date of birth cannot be in the future"
-            );
-        }
-        if (dob.isBefore(LocalDate.of(1900, 1, 1))) {
-            throw new ValidationException(
-                "DOB",
-                "Date of birth must be after 1900"
-            );
-        }
+        Violation.raise(checkDob(dob, LocalDate.now()));
     }
 
     /**
@@ -133,12 +144,7 @@ public class PatientValidator {
      */
     public static void validateRequired(String value, String fieldName)
         throws ValidationException {
-        if (value == null || value.trim().isEmpty()) {
-            throw new ValidationException(
-                fieldName,
-                fieldName + " is required"
-            );
-        }
+        Violation.raise(checkRequired(value, fieldName));
     }
 
     /**
@@ -148,15 +154,7 @@ public class PatientValidator {
      * @throws ValidationException if the state is invalid
      */
     public static void validateState(String state) throws ValidationException {
-        if (state == null || state.trim().isEmpty()) {
-            throw new ValidationException("State", "State is required");
-        }
-        if (state.length() > 50) {
-            throw new ValidationException(
-                "State",
-                "State must be 50 characters or less"
-            );
-        }
+        Violation.raise(checkState(state));
     }
 
     /**
@@ -166,12 +164,7 @@ public class PatientValidator {
      * @throws ValidationException if the ZIP code is invalid
      */
     public static void validateZip(int zip) throws ValidationException {
-        if (zip <= 0 || zip > 99999) {
-            throw new ValidationException(
-                "ZIP",
-                "ZIP code must be a valid 5-digit number"
-            );
-        }
+        Violation.raise(checkZip(zip));
     }
 
     /**
@@ -181,11 +174,120 @@ public class PatientValidator {
      * @throws ValidationException if the email is invalid
      */
     public static void validateEmail(String email) throws ValidationException {
+        Violation.raise(checkEmail(email));
+    }
+
+    // ========== Rules ==========
+
+    /**
+     * Checks the Medical Record Number (MRN).
+     *
+     * @param mrn the MRN to check
+     * @return the violation, or null if the MRN is valid
+     */
+    private static Violation checkMrn(int mrn) {
+        if (mrn <= 0) {
+            return new Violation("MRN", "MRN must be a positive number");
+        }
+        return null;
+    }
+
+    /**
+     * Checks a name field (first name or last name).
+     *
+     * @param name      the name to check
+     * @param fieldName the name of the field for error messages
+     * @return the violation, or null if the name is valid
+     */
+    private static Violation checkName(String name, String fieldName) {
+        if (name == null || name.trim().isEmpty()) {
+            return new Violation(fieldName, fieldName + " is required");
+        }
+        if (name.length() > 100) {
+            return new Violation(
+                fieldName,
+                fieldName + " must be 100 characters or less"
+            );
+        }
+        return null;
+    }
+
+    /**
+     * Checks the date of birth.
+     *
+     * @param dob   the date of birth to check
+     * @param today the current date
+     * @return the violation, or null if the date of birth is valid
+     */
+    private static Violation checkDob(LocalDate dob, LocalDate today) {
+        if (dob == null) {
+            return new Violation("DOB", "Date of birth is required");
+        }
+        if (dob.isAfter(today)) {
+            return new Violation("DOB", "Date of birth cannot be in the future");
+        }
+        if (dob.isBefore(MIN_DOB)) {
+            return new Violation("DOB", "Date of birth must be after 1900");
+        }
+        return null;
+    }
+
+    /**
+     * Checks a required string field.
+     *
+     * @param value     the value to check
+     * @param fieldName the name of the field for error messages
+     * @return the violation, or null if the value is present
+     */
+    private static Violation checkRequired(String value, String fieldName) {
+        if (value == null || value.trim().isEmpty()) {
+            return new Violation(fieldName, fieldName + " is required");
+        }
+        return null;
+    }
+
+    /**
+     * Checks the state field.
+     *
+     * @param state the state to check
+     * @return the violation, or null if the state is valid
+     */
+    private static Violation checkState(String state) {
+        if (state == null || state.trim().isEmpty()) {
+            return new Violation("State", "State is required");
+        }
+        if (state.length() > 50) {
+            return new Violation("State", "State must be 50 characters or less");
+        }
+        return null;
+    }
+
+    /**
+     * Checks the ZIP code.
+     *
+     * @param zip the ZIP code to check
+     * @return the violation, or null if the ZIP code is valid
+     */
+    private static Violation checkZip(int zip) {
+        if (zip <= 0 || zip > 99999) {
+            return new Violation("ZIP", "ZIP code must be a valid 5-digit number");
+        }
+        return null;
+    }
+
+    /**
+     * Checks an email address.
+     *
+     * @param email the email to check
+     * @return the violation, or null if the email is valid
+     */
+    private static Violation checkEmail(String email) {
         if (email == null || email.trim().isEmpty()) {
-            throw new ValidationException("Email", "Email is required");
+            return new Violation("Email", "Email is required");
         }
-        if (!EMAIL_PATTERN.matcher(email).matches()) {
-            throw new ValidationException("Email", "Email format is invalid");
+        if (!EmailSyntax.isValid(email)) {
+            return new Violation("Email", "Email format is invalid");
         }
+        return null;
     }
 }
@@ -1,6 +1,8 @@
 package main.validation;
 
+import java.util.List;
 import main.exception.ValidationException;
+import main.model.Procedure;
 
 /**
  * Validator class for Procedure entities.
@@ -45,6 +47,26 @@ public class ProcedureValidator {
         validateDoctorId(doctorId);
     }
 
+    /**
+     * Checks all fields of a procedure without throwing.
+     * <p>
+     * Applies the same rules as {@link #validateForCreate}, but reports
+     * every invalid field instead of only the first one.
+     * </p>
+     *
+     * @param procedure the procedure to check
+     * @return the violations in field order, empty if the procedure is valid
+     */
+    public static List<Violation> violations(Procedure procedure) {
+        List<Violation> violations = null;
+        violations = Violation.add(violations, checkId(procedure.getId()));
+        violations = Violation.add(violations, checkName(procedure.getName()));
+        violations = Violation.add(violations, checkDescription(procedure.getDescription()));
+        violations = Violation.add(violations, checkDuration(procedure.getDuration()));
+        violations = Violation.add(violations, checkDoctorId(procedure.getDoctorId()));
+        return Violation.collected(violations);
+    }
+
     /**
      * Validates the procedure ID.
      *
@@ -52,15 +74,7 @@ public class ProcedureValidator {
      * @throws ValidationException if the ID is invalid
      */
     public static void validateId(String id) throws ValidationException {
-        if (id == null || id.trim().isEmpty()) {
-            throw new ValidationException("id", "Procedure ID is required");
-        }
-        if (id.length() > MAX_ID_LENGTH) {
-            throw new ValidationException(
-                "id",
-                "Procedure ID must not exceed " + MAX_ID_LENGTH + " characters"
-            );
-        }
+        Violation.raise(checkId(id));
     }
 
     /**
@@ -70,9 +84,7 @@ public class ProcedureValidator {
      * @throws ValidationException if the name is invalid
      */
     public static void validateName(String name) throws ValidationException {
-        if (name == null || name.trim().isEmpty()) {
-            throw new ValidationException("name", "Procedure name is required");
-        }
+        Violation.raise(checkName(name));
     }
 
     /**
@@ -83,12 +95,7 @@ public class ProcedureValidator {
      */
     public static void validateDescription(String description)
         throws ValidationException {
-        if (description == null || description.trim().isEmpty()) {
-            throw new ValidationException(
-                "description",
-                "Procedure description is required"
-            );
-        }
+        Violation.raise(checkDescription(description));
     }
 
     /**
@@ -99,8 +106,79 @@ public class ProcedureValidator {
      */
     public static void validateDuration(int duration)
         throws ValidationException {
+        Violation.raise(checkDuration(duration));
+    }
+
+    /**
+     * Validates the doctor ID associated with the procedure.
+     *
+     * @param doctorId the doctor ID to validate
+     * @throws ValidationException if the doctor ID is invalid
+     */
+    public static void validateDoctorId(String doctorId)
+        throws ValidationException {
+        Violation.raise(checkDoctorId(doctorId));
+    }
+
+    // ========== Rules ==========
+
+    /**
+     * Checks the procedure ID.
+     *
+     * @param id the procedure ID to check
+     * @return the violation, or null if the ID is valid
+     */
+    private static Violation checkId(String id) {
+        if (id == null || id.trim().isEmpty()) {
+            return new Violation("id", "Procedure ID is required");
+        }
+        if (id.length() > MAX_ID_LENGTH) {
+            return new Violation(
+                "id",
+                "Procedure ID must not exceed " + MAX_ID_LENGTH + " characters"
+            );
+        }
+        return null;
+    }
+
+    /**
+     * Checks the procedure name.
+     *
+     * @param name the procedure name to check
+     * @return the violation, or null if the name is valid
+     */
+    private static Violation checkName(String name) {
+        if (name == null || name.trim().isEmpty()) {
+            return new Violation("name", "Procedure name is required");
+        }
+        return null;
+    }
+
+    /**
+     * Checks the procedure description.
+     *
+     * @param description the procedure description to check
+     * @return the violation, or null if the description is valid
+     */
+    private static Violation checkDescription(String description) {
+        if (description == null || description.trim().isEmpty()) {
+            return new Violation(
+                "description",
+                "Procedure description is required"
+            );
+        }
+        return null;
+    }
+
+    /**
+     * Checks the procedure duration.
+     *
+     * @param duration the duration in minutes to check
+     * @return the violation, or null if the duration is valid
+     */
+    private static Violation checkDuration(int duration) {
         if (duration < MIN_DURATION) {
-            throw new ValidationException(
+            return new Violation(
                 "duration",
                 "Procedure duration must be at least " +
                     MIN_DURATION +
@@ -108,34 +186,35 @@ public class ProcedureValidator {
             );
         }
         if (duration > MAX_DURATION) {
-            throw new ValidationException(
+            return new Violation(
                 "duration",
                 "Procedure duration must not exceed " +
                     MAX_DURATION +
                     " minutes (24 hours)"
             );
         }
+        return null;
     }
 
     /**
-     * Validates the doctor ID associated with the procedure.
+     * Checks the doctor ID associated with the procedure.
      *
-     * @param doctorId the doctor ID to validate
-     * @throws ValidationException if the doctor ID is invalid
+     * @param doctorId the doctor ID to check
+     * @return the violation, or null if the doctor ID is valid
      */
-    public static void validateDoctorId(String doctorId)
-        throws ValidationException {
+    private static Violation checkDoctorId(String doctorId) {
         if (doctorId == null || doctorId.trim().isEmpty()) {
-            throw new ValidationException(
+            return new Violation(
                 "doctorId",
                 "Doctor ID is required for procedure"
             );
         }
         if (doctorId.length() > MAX_ID_LENGTH) {
-            throw new ValidationException(
+            return new Violation(
                 "doctorId",
                 "Doctor ID must not exceed " + MAX_ID_LENGTH + " characters"
             );
         }
+        return null;
     }
 }
@@ -0,0 +1,119 @@
+package main.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import main.exception.ValidationException;
+
+/**
+ * A broken validation rule: the field and what is wrong with it.
+ * <p>
+ * The {@code violations} methods of the validators return every violation
+ * of a record instead of throwing on the first one, which is what bulk
+ * loads need to report all problems at once. Violations are only created
+ * for invalid fields, so checking a valid record allocates nothing.
+ * </p>
+ *
+ * @see BatchValidator
+ */
+public final class Violation {
+
+    private final String fieldName;
+    private final String message;
+
+    /**
+     * Constructs a new Violation.
+     *
+     * @param fieldName the name of the invalid field
+     * @param message   the description of the problem
+     */
+    public Violation(String fieldName, String message) {
+        this.fieldName = fieldName;
+        this.message = message;
+    }
+
+    /**
+     * Gets the name of the invalid field.
+     *
+     * @return the field name
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * Gets the description of the problem.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Creates the exception the throwing validators report this violation
+     * with.
+     *
+     * @return a new ValidationException for the field
+     */
+    public ValidationException toException() {
+        return new ValidationException(fieldName, message);
+    }
+
+    /**
+     * Returns a string representation of this violation.
+     *
+     * @return the field name and the message
+     */
+    @Override
+    public String toString() {
+        return fieldName + ": " + message;
+    }
+
+    // ========== Helper Methods ==========
+
+    /**
+     * Throws the exception of a rule check if the rule was broken.
+     *
+     * @param violation the result of a rule check, null if the rule held
+     * @throws ValidationException if a violation was given
+     */
+    static void raise(Violation violation) throws ValidationException {
+        if (violation != null) {
+            throw violation.toException();
+        }
+    }
+
+    /**
+     * Adds the result of a rule check to the violations collected so far.
+     * <p>
+     * The list is only created for the first violation, so the checks of a
+     * valid record, chained through this method, allocate nothing.
+     * </p>
+     *
+     * @param violations the violations so far, null if there are none yet
+     * @param check      the result of the check, null if the rule held
+     * @return the violations including the check's, null if there are none
+     */
+    static List<Violation> add(List<Violation> violations, Violation check) {
+        if (check == null) {
+            return violations;
+        }
+        if (violations == null) {
+            violations = new ArrayList<>(4);
+        }
+        violations.add(check);
+        return violations;
+    }
+
+    /**
+     * Completes a series of {@link #add} calls.
+     *
+     * @param violations the collected violations, null if there are none
+     * @return the violations in check order; an immutable empty list if
+     *         every rule held
+     */
+    static List<Violation> collected(List<Violation> violations) {
+        return violations == null ? Collections.emptyList() : violations;
+    }
+}